@@ -3,6 +3,7 @@ plugins {
     id("idea")
     id("io.freefair.lombok") version "8.6"
     id("application")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.rhythmiq"
@@ -53,6 +54,7 @@ dependencies {
     implementation("software.amazon.awssdk:ssm:2.20.109")
     implementation("software.amazon.awssdk:apache-client:2.20.123")
     implementation("com.google.code.gson:gson:2.10.1")
+    implementation("com.github.ben-manes.caffeine:caffeine:3.1.8")
 
     // Unit Testing
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
@@ -86,6 +88,17 @@ tasks.test {
     useJUnitPlatform()
 }
 
+// Benchmarks live in src/jmh and reuse the in-memory DynamoDB stand-in from src/test.
+// Run with: ./gradlew jmh -PjmhIncludes=ParallelScanBenchmark
+jmh {
+    jmhVersion.set("1.37")
+    includeTests.set(true)
+    profilers.add("gc")
+    if (project.hasProperty("jmhIncludes")) {
+        includes.add(project.property("jmhIncludes").toString())
+    }
+}
+
 tasks.clean {
     delete("build")
 }
@@ -116,6 +129,12 @@ tasks.clean {
     delete(file("$rootDir/infra/cdktf.out"))
 }
 
+// One-off migration of interactions to typeShard and fixed-width createdAt; see InteractionBackfill.
+tasks.register<JavaExec>("backfillInteractions") {
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("com.rhythmiq.controlplaneservice.InteractionBackfill")
+}
+
 application {
     mainClass.set("com.rhythmiq.controlplaneservice.Main")
     applicationDefaultJvmArgs = listOf("-DSPOTIFY_REDIRECT_URI=http://localhost:3000/api/spotify/callback")
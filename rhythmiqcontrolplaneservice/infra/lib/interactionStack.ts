@@ -4,6 +4,7 @@ import { DynamodbTable } from "@cdktf/provider-aws/lib/dynamodb-table";
 
 export class InteractionStack extends TerraformStack {
   public readonly interactionsTable: DynamodbTable;
+  public readonly interactionRollupsTable: DynamodbTable;
 
   constructor(scope: App, id: string) {
     super(scope, id);
@@ -18,7 +19,9 @@ export class InteractionStack extends TerraformStack {
         { name: "userId", type: "S" },
         { name: "interactionId", type: "S" },
         { name: "songId", type: "S" },
-        { name: "createdAt", type: "S" }
+        { name: "type", type: "S" },
+        { name: "createdAt", type: "S" },
+        { name: "typeShard", type: "S" }
       ],
       hashKey: "userId",
       rangeKey: "interactionId",
@@ -32,6 +35,8 @@ export class InteractionStack extends TerraformStack {
           readCapacity: 5
         },
         {
+          // Superseded by TypeShardIndex. Kept until the backfillInteractions task has given every
+          // existing interaction a typeShard; until then older rows are only found here.
           name: "TypeIndex",
           hashKey: "type",
           rangeKey: "createdAt",
@@ -39,6 +44,15 @@ export class InteractionStack extends TerraformStack {
           writeCapacity: 5,
           readCapacity: 5
         },
+        {
+          // "<type>#<shard>": a single "PLAY" hash key would pin every play to one index partition
+          name: "TypeShardIndex",
+          hashKey: "typeShard",
+          rangeKey: "createdAt",
+          projectionType: "ALL",
+          writeCapacity: 5,
+          readCapacity: 5
+        },
         {
           name: "UserSongIndex",
           hashKey: "userId",
@@ -53,5 +67,29 @@ export class InteractionStack extends TerraformStack {
         Service: "RhythmIQ"
       }
     });
+
+    // Per-user, per-song interaction counters, updated with ADD alongside every interaction write
+    this.interactionRollupsTable = new DynamodbTable(this, "InteractionRollupsTable", {
+      name: "InteractionRollups",
+      billingMode: "PAY_PER_REQUEST",
+      attribute: [
+        { name: "userId", type: "S" },
+        { name: "songId", type: "S" },
+        { name: "engagement", type: "N" }
+      ],
+      hashKey: "userId",
+      rangeKey: "songId",
+      localSecondaryIndex: [
+        {
+          name: "EngagementIndex",
+          rangeKey: "engagement",
+          projectionType: "ALL"
+        }
+      ],
+      tags: {
+        Environment: "production",
+        Service: "RhythmIQ"
+      }
+    });
   }
 }
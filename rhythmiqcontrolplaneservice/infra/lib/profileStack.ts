@@ -46,6 +46,7 @@ export class ProfileStack extends TerraformStack {
             Action: [
               "dynamodb:PutItem",
               "dynamodb:GetItem",
+              "dynamodb:BatchGetItem",
               "dynamodb:UpdateItem",
               "dynamodb:DeleteItem",
               "dynamodb:Scan",
@@ -71,27 +72,9 @@ export class ProfileStack extends TerraformStack {
       name: "Profiles",
       billingMode: "PAY_PER_REQUEST",
       attribute: [
-        { name: "profile_id", type: "S" },
-        { name: "email", type: "S" },
-        { name: "username", type: "S" }
+        { name: "profile_id", type: "S" }
       ],
       hashKey: "profile_id",
-      globalSecondaryIndex: [
-        {
-          name: "EmailIndex",
-          hashKey: "email",
-          projectionType: "ALL",
-          writeCapacity: 5,
-          readCapacity: 5,
-        },
-        {
-          name: "UsernameIndex",
-          hashKey: "username",
-          projectionType: "ALL",
-          writeCapacity: 5,
-          readCapacity: 5,
-        }
-      ],
     });
 
     // Upload Lambda ZIP to S3 on every deployment
@@ -140,6 +123,10 @@ export class ProfileStack extends TerraformStack {
       "com.rhythmiq.controlplaneservice.api.profile.list.ListProfilesLambdaHandler",
       lambdaRole, bucket, lambdaS3Object, dynamoTable);
 
+    const batchGetProfilesLambda = this.createLambdaFunction("BatchGetProfilesLambda",
+      "com.rhythmiq.controlplaneservice.api.profile.batchget.BatchGetProfilesLambdaHandler",
+      lambdaRole, bucket, lambdaS3Object, dynamoTable);
+
     // Create API Gateway
     const api = new ApiGatewayRestApi(this, "ProfilesAPI", {
       name: "Profiles Service",
@@ -159,9 +146,17 @@ export class ProfileStack extends TerraformStack {
       pathPart: "{profileId}",
     });
 
+    // Create /profiles/batchGet resource
+    const batchGetResource = new ApiGatewayResource(this, "BatchGetProfilesResource", {
+      restApiId: api.id,
+      parentId: profilesResource.id,
+      pathPart: "batchGet",
+    });
+
     // Create methods and integrations for /profiles
     this.createMethodAndIntegration(api, profilesResource, "POST", createProfileLambda);
     this.createMethodAndIntegration(api, profilesResource, "GET", listProfilesLambda);
+    this.createMethodAndIntegration(api, batchGetResource, "POST", batchGetProfilesLambda);
 
     // Create methods and integrations for /profiles/{profileId}
     this.createMethodAndIntegration(api, profileIdResource, "GET", getProfileLambda);
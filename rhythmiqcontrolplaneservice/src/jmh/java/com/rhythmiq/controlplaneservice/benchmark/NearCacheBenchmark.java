@@ -0,0 +1,98 @@
+package com.rhythmiq.controlplaneservice.benchmark;
+
+import com.rhythmiq.controlplaneservice.cache.CompactCodecs;
+import com.rhythmiq.controlplaneservice.cache.OffHeapCache;
+import com.rhythmiq.controlplaneservice.model.Profile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profile near cache held as live objects in a {@link ConcurrentHashMap} versus serialized in an
+ * {@link OffHeapCache}. Run with {@code -prof gc}: the interesting columns are GC count and time,
+ * which for the on-heap map grow with the cached population, while the off-heap cache only adds
+ * short-lived decode garbage per hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:MaxDirectMemorySize=2g"})
+@Threads(4)
+public class NearCacheBenchmark {
+    @Param({"1000000"})
+    private int profileCount;
+
+    // Share of operations that replace an entry, which is what turns on-heap entries into old-gen garbage.
+    @Param({"0.05"})
+    private double writeRatio;
+
+    private Map<String, Profile> onHeap;
+    private OffHeapCache offHeap;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        onHeap = new ConcurrentHashMap<>(profileCount * 2);
+        offHeap = new OffHeapCache((long) profileCount * OffHeapCache.DEFAULT_BLOCK_SIZE * 2, Duration.ofHours(1));
+        keys = new String[profileCount];
+        for (int i = 0; i < profileCount; i++) {
+            keys[i] = "profile-" + i;
+            Profile profile = profile(keys[i], 1);
+            onHeap.put(keys[i], profile);
+            offHeap.put(keys[i], profile, CompactCodecs.PROFILE);
+        }
+    }
+
+    @Benchmark
+    public Profile onHeapMap() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = keys[random.nextInt(profileCount)];
+        if (random.nextDouble() < writeRatio) {
+            Profile profile = profile(key, random.nextLong());
+            onHeap.put(key, profile);
+            return profile;
+        }
+        return onHeap.get(key);
+    }
+
+    @Benchmark
+    public Profile offHeapCache() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = keys[random.nextInt(profileCount)];
+        if (random.nextDouble() < writeRatio) {
+            Profile profile = profile(key, random.nextLong());
+            offHeap.put(key, profile, CompactCodecs.PROFILE);
+            return profile;
+        }
+        return offHeap.get(key, CompactCodecs.PROFILE);
+    }
+
+    private static Profile profile(String profileId, long version) {
+        return Profile.builder()
+                .profileId(profileId)
+                .username("user-" + profileId)
+                .firstName("First")
+                .lastName("Last")
+                .email(profileId + "@example.com")
+                .phoneNumber("5555550100")
+                .version(version)
+                .build();
+    }
+}
@@ -0,0 +1,90 @@
+package com.rhythmiq.controlplaneservice.benchmark;
+
+import com.rhythmiq.controlplaneservice.dao.InMemoryDynamoDbClient;
+import com.rhythmiq.controlplaneservice.dao.ParallelScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-table walk of the Profiles table: the sequential Scan loop the DAOs used to run versus
+ * {@link ParallelScanner}. The stand-in charges a fixed latency per Scan call, which is what bounds
+ * a single-threaded walk against a real table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelScanBenchmark {
+    private static final String TABLE_NAME = "Profiles";
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"10000"})
+    private int itemCount;
+
+    @Param({"2"})
+    private int scanLatencyMillis;
+
+    @Param({"4", "8", "16"})
+    private int totalSegments;
+
+    private InMemoryDynamoDbClient dynamoDbClient;
+
+    @Setup
+    public void setUp() {
+        dynamoDbClient = new InMemoryDynamoDbClient(Duration.ofMillis(scanLatencyMillis));
+        dynamoDbClient.createTable(TABLE_NAME, "profile_id", null);
+        for (int i = 0; i < itemCount; i++) {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .item(Map.of(
+                            "profile_id", AttributeValue.builder().s("profile-" + i).build(),
+                            "username", AttributeValue.builder().s("user" + i).build()))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public long sequentialScan(Blackhole blackhole) {
+        long count = 0;
+        Map<String, AttributeValue> exclusiveStartKey = null;
+        do {
+            ScanResponse response = dynamoDbClient.scan(ScanRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .limit(PAGE_SIZE)
+                    .exclusiveStartKey(exclusiveStartKey)
+                    .build());
+            for (Map<String, AttributeValue> item : response.items()) {
+                blackhole.consume(item);
+                count++;
+            }
+            exclusiveStartKey = response.hasLastEvaluatedKey() ? response.lastEvaluatedKey() : null;
+        } while (exclusiveStartKey != null);
+        return count;
+    }
+
+    @Benchmark
+    public long parallelScan(Blackhole blackhole) {
+        return new ParallelScanner(dynamoDbClient, totalSegments)
+                .scan(ScanRequest.builder().tableName(TABLE_NAME).limit(PAGE_SIZE).build(), blackhole::consume);
+    }
+}
@@ -0,0 +1,98 @@
+package com.rhythmiq.controlplaneservice.benchmark;
+
+import com.rhythmiq.controlplaneservice.dao.InMemoryDynamoDbClient;
+import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
+import com.rhythmiq.controlplaneservice.model.Preference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-profile reads and single-preference edits against the per-item layout and the single-item
+ * document layout. The stand-in charges one latency per request whatever its size, so a full list
+ * costs one round trip in both layouts here; what the document saves on a real table is the
+ * 100-item query's read units and pages. Edits are where the document pays: each is a consistent
+ * read plus a conditional put that rewrites and recompresses the whole list, where a per-item save
+ * is a rank lookup plus a two-item transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PreferenceStorageBenchmark {
+    private static final String ITEMS_PROFILE_ID = "items-profile";
+    private static final String DOCUMENT_PROFILE_ID = "document-profile";
+
+    @Param({"10", "50", "100"})
+    private int preferenceCount;
+
+    @Param({"2"})
+    private int requestLatencyMillis;
+
+    private PreferenceDao itemsDao;
+    private PreferenceDao documentDao;
+
+    @Setup
+    public void setUp() {
+        InMemoryDynamoDbClient dynamoDbClient = new InMemoryDynamoDbClient(Duration.ofMillis(requestLatencyMillis));
+        dynamoDbClient.createTable("Preferences", "profileId", "preferenceId");
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+                .dynamoDbClient(dynamoDbClient)
+                .build();
+        itemsDao = new PreferenceDao(enhancedClient, dynamoDbClient, PreferenceDao.StorageMode.ITEMS);
+        documentDao = new PreferenceDao(enhancedClient, dynamoDbClient, PreferenceDao.StorageMode.DOCUMENT);
+
+        for (int i = 0; i < preferenceCount; i++) {
+            itemsDao.savePreference(preference(ITEMS_PROFILE_ID, i));
+            documentDao.savePreference(preference(DOCUMENT_PROFILE_ID, i));
+        }
+    }
+
+    @Benchmark
+    public List<Preference> itemsList() {
+        return itemsDao.listPreferences(ITEMS_PROFILE_ID);
+    }
+
+    @Benchmark
+    public List<Preference> documentList() {
+        return documentDao.listPreferences(DOCUMENT_PROFILE_ID);
+    }
+
+    @Benchmark
+    public void itemsEdit() {
+        itemsDao.savePreference(preference(ITEMS_PROFILE_ID, ThreadLocalRandom.current().nextInt(preferenceCount)));
+    }
+
+    @Benchmark
+    public void documentEdit() {
+        documentDao.savePreference(preference(DOCUMENT_PROFILE_ID, ThreadLocalRandom.current().nextInt(preferenceCount)));
+    }
+
+    private static Preference preference(String profileId, int index) {
+        return Preference.builder()
+                .profileId(profileId)
+                .preferenceId(String.format("pref-%03d", index))
+                .type(Preference.PreferenceType.GENRE)
+                .value("genre-" + index + "-" + ThreadLocalRandom.current().nextInt(1000))
+                .index(index)
+                .weight(1.0)
+                .isUserSet(true)
+                .build();
+    }
+}
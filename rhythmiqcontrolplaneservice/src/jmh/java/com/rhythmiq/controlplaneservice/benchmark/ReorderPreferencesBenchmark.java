@@ -0,0 +1,113 @@
+package com.rhythmiq.controlplaneservice.benchmark;
+
+import com.rhythmiq.controlplaneservice.dao.InMemoryDynamoDbClient;
+import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
+import com.rhythmiq.controlplaneservice.model.Preference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Reversing a profile's preference order: the old one-{@code putItem}-per-preference loop versus
+ * {@link PreferenceDao#reorderPreferences}, which writes only changed indexes and ranks in one
+ * transaction. Reversal changes nearly every preference, so this is the transactional path's worst
+ * case.
+ * The stand-in charges the same latency for a transaction as for a single put; real transactions
+ * cost roughly twice a single write, which still leaves one round trip against n.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReorderPreferencesBenchmark {
+    private static final String TABLE_NAME = "Preferences";
+    private static final String PROFILE_ID = "profile-1";
+
+    @Param({"10", "50", "100"})
+    private int preferenceCount;
+
+    @Param({"2"})
+    private int requestLatencyMillis;
+
+    private DynamoDbTable<Preference> table;
+    private PreferenceDao preferenceDao;
+    private List<String> order;
+
+    @Setup
+    public void setUp() {
+        InMemoryDynamoDbClient dynamoDbClient = new InMemoryDynamoDbClient(Duration.ofMillis(requestLatencyMillis));
+        dynamoDbClient.createTable(TABLE_NAME, "profileId", "preferenceId");
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+                .dynamoDbClient(dynamoDbClient)
+                .build();
+        table = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(Preference.class));
+        preferenceDao = new PreferenceDao(enhancedClient, dynamoDbClient);
+
+        order = new ArrayList<>();
+        for (int i = 0; i < preferenceCount; i++) {
+            String preferenceId = String.format("pref-%03d", i);
+            preferenceDao.savePreference(Preference.builder()
+                    .profileId(PROFILE_ID)
+                    .preferenceId(preferenceId)
+                    .type(Preference.PreferenceType.GENRE)
+                    .value("genre-" + i)
+                    .index(i)
+                    .weight(1.0)
+                    .isUserSet(true)
+                    .build());
+            order.add(preferenceId);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void reverse() {
+        Collections.reverse(order);
+    }
+
+    @Benchmark
+    public void sequentialPuts() {
+        List<Preference> preferences = table.query(QueryConditional.keyEqualTo(
+                        Key.builder().partitionValue(PROFILE_ID).build()))
+                .items()
+                .stream()
+                .filter(preference -> !preference.getPreferenceId().startsWith("#"))
+                .collect(Collectors.toList());
+        for (int i = 0; i < order.size(); i++) {
+            String preferenceId = order.get(i);
+            Preference preference = preferences.stream()
+                    .filter(p -> p.getPreferenceId().equals(preferenceId))
+                    .findFirst()
+                    .orElseThrow();
+            preference.setIndex(i);
+            table.putItem(preference);
+        }
+    }
+
+    @Benchmark
+    public void transactionalReorder() {
+        preferenceDao.reorderPreferences(PROFILE_ID, order);
+    }
+}
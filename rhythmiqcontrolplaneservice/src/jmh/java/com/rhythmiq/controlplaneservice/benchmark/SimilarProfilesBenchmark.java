@@ -0,0 +1,77 @@
+package com.rhythmiq.controlplaneservice.benchmark;
+
+import com.rhythmiq.controlplaneservice.similarity.MinHashIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Similar-profile lookups against a {@link MinHashIndex}. Profiles are drawn from taste clusters
+ * that share most of their tokens, so every query has real LSH candidates to score instead of
+ * returning from empty buckets; {@code addLike} measures the incremental update of one profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SimilarProfilesBenchmark {
+    private static final int TOKENS_PER_PROFILE = 60;
+    private static final int CLUSTER_TOKENS = 80;
+    private static final int CATALOG_SIZE = 1_000_000;
+
+    @Param({"100000"})
+    private int profileCount;
+
+    @Param({"1000"})
+    private int clusterCount;
+
+    private MinHashIndex index;
+    private String[] profileIds;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new MinHashIndex();
+        profileIds = new String[profileCount];
+        for (int i = 0; i < profileCount; i++) {
+            profileIds[i] = "profile-" + i;
+            int cluster = random.nextInt(clusterCount);
+            List<String> tokens = new ArrayList<>(TOKENS_PER_PROFILE);
+            for (int t = 0; t < TOKENS_PER_PROFILE * 3 / 4; t++) {
+                tokens.add("GENRE:c" + cluster + "-" + random.nextInt(CLUSTER_TOKENS));
+            }
+            while (tokens.size() < TOKENS_PER_PROFILE) {
+                tokens.add(MinHashIndex.likeToken("song-" + random.nextInt(CATALOG_SIZE)));
+            }
+            index.put(profileIds[i], tokens);
+        }
+    }
+
+    @Benchmark
+    public List<MinHashIndex.SimilarProfile> similarProfiles() {
+        return index.similarProfiles(profileIds[ThreadLocalRandom.current().nextInt(profileCount)], 10);
+    }
+
+    @Benchmark
+    public void addLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        index.addTokens(profileIds[random.nextInt(profileCount)],
+            List.of(MinHashIndex.likeToken("song-" + random.nextInt(CATALOG_SIZE))));
+    }
+}
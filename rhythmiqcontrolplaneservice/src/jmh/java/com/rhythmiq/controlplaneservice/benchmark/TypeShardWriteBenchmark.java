@@ -0,0 +1,105 @@
+package com.rhythmiq.controlplaneservice.benchmark;
+
+import com.rhythmiq.controlplaneservice.dao.InteractionDao;
+import com.rhythmiq.controlplaneservice.dao.Ulid;
+import com.rhythmiq.controlplaneservice.model.Interaction;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test for the TypeShardIndex write path. A peak of PLAY events is offered at a fixed rate on a
+ * simulated clock, and each write is charged against the index partition its {@code typeShard}
+ * lands on, modelled after DynamoDB's limit of {@value #PARTITION_WRITES_PER_SECOND} writes per
+ * second per partition key with one second of burst. The {@code throttled} counter is the share of
+ * writes such a partition would reject: with one shard, everything above the single partition's
+ * limit; with enough shards, none.
+ *
+ * <p>Only the key distribution is exercised here; run against a provisioned table to confirm the
+ * absolute numbers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TypeShardWriteBenchmark {
+    private static final long PARTITION_WRITES_PER_SECOND = 1_000;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Param({"1", "4", "8", "16"})
+    private int typeShards;
+
+    // Peak rate of PLAY events offered to the table.
+    @Param({"5000"})
+    private long offeredWritesPerSecond;
+
+    private final Map<String, Partition> partitions = new HashMap<>();
+    private long simulatedNanos;
+    private Instant start;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        partitions.clear();
+        simulatedNanos = 0;
+        start = Instant.now();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcome {
+        public long accepted;
+        public long throttled;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            accepted = 0;
+            throttled = 0;
+        }
+    }
+
+    @Benchmark
+    public void writePlay(Outcome outcome) {
+        simulatedNanos += NANOS_PER_SECOND / offeredWritesPerSecond;
+        String interactionId = Ulid.next(start.plusNanos(simulatedNanos));
+        String key = InteractionDao.typeShard(Interaction.InteractionType.PLAY, interactionId, typeShards);
+        if (partitions.computeIfAbsent(key, k -> new Partition()).tryWrite(simulatedNanos)) {
+            outcome.accepted++;
+        } else {
+            outcome.throttled++;
+        }
+    }
+
+    /** Write capacity of one index partition: refills continuously, holds at most one second's worth. */
+    private static final class Partition {
+        private double available = PARTITION_WRITES_PER_SECOND;
+        private long refilledAtNanos;
+
+        boolean tryWrite(long nowNanos) {
+            available = Math.min(PARTITION_WRITES_PER_SECOND,
+                    available + (double) (nowNanos - refilledAtNanos) * PARTITION_WRITES_PER_SECOND / NANOS_PER_SECOND);
+            refilledAtNanos = nowNanos;
+            if (available < 1) {
+                return false;
+            }
+            available--;
+            return true;
+        }
+    }
+}
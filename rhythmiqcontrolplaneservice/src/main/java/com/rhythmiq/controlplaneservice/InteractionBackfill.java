@@ -0,0 +1,56 @@
+package com.rhythmiq.controlplaneservice;
+
+import com.rhythmiq.controlplaneservice.dao.InteractionDao;
+import com.rhythmiq.controlplaneservice.dao.ParallelScanner;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs {@link InteractionDao#backfillTypeShards} for every user with interactions, so rows written
+ * before {@code typeShard} and the fixed-width {@code createdAt} show up in type queries and sort
+ * correctly. The users are found with a parallel scan that projects only {@code userId}.
+ *
+ * <p>Run it once right after deploying the writers that set {@code typeShard}; re-running is safe.
+ * The infra stack keeps the old {@code TypeIndex} until it has completed.
+ *
+ * <p>Run with: ./gradlew backfillInteractions
+ */
+public final class InteractionBackfill {
+    private static final String TABLE_NAME = "Interactions";
+    private static final int SCAN_SEGMENTS = 8;
+
+    private InteractionBackfill() {
+    }
+
+    /** @return the number of interactions updated */
+    public static long run(DynamoDbClient dynamoDbClient, InteractionDao interactionDao) {
+        Set<String> userIds = ConcurrentHashMap.newKeySet();
+        new ParallelScanner(dynamoDbClient, SCAN_SEGMENTS).scan(ScanRequest.builder()
+                        .tableName(TABLE_NAME)
+                        .projectionExpression("userId")
+                        .build(),
+                item -> userIds.add(item.get("userId").s()));
+
+        long updated = 0;
+        for (String userId : userIds) {
+            updated += interactionDao.backfillTypeShards(userId);
+        }
+        return updated;
+    }
+
+    public static void main(String[] args) {
+        DynamoDbClient dynamoDbClient = new AwsDynamoDbClientModule().provideDynamoDbClient();
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+                .dynamoDbClient(dynamoDbClient)
+                .build();
+        try (InteractionDao interactionDao = new InteractionDao(enhancedClient)) {
+            long updated = run(dynamoDbClient, interactionDao);
+            System.out.println("Backfilled " + updated + " interactions");
+        }
+    }
+}
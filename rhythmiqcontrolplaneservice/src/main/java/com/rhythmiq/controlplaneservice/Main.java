@@ -1,24 +1,58 @@
 package com.rhythmiq.controlplaneservice;
 
 import java.net.URI;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.internal.inject.AbstractBinder;
 import org.glassfish.jersey.server.ResourceConfig;
 
+import com.rhythmiq.controlplaneservice.cache.OffHeapCache;
+import com.rhythmiq.controlplaneservice.dao.ProfileDao;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
+
 public class Main {
     public static final String BASE_URI = "http://localhost:8080/api/";
+    // Point reads arriving within this many microseconds share one BatchGetItem; 0 turns coalescing off.
+    public static final String COALESCING_WINDOW_PROPERTY = "rhythmiq.readCoalescingWindowMicros";
+    private static final long DEFAULT_COALESCING_WINDOW_MICROS = 1_000;
+    // Direct memory reserved for the profile near cache; 0 turns it off.
+    public static final String NEAR_CACHE_MEGABYTES_PROPERTY = "rhythmiq.nearCacheMegabytes";
+    private static final long DEFAULT_NEAR_CACHE_MEGABYTES = 64;
+    private static final Duration NEAR_CACHE_TTL = Duration.ofSeconds(30);
 
     public static HttpServer startServer() {
+        return startServer(createProfileDao());
+    }
+
+    public static HttpServer startServer(ProfileDao profileDao) {
         final ResourceConfig rc = new ResourceConfig()
                 .packages("com.rhythmiq.controlplaneservice")
-                .register(RhythmIqApplication.class);
+                .register(RhythmIqApplication.class)
+                .register(new AbstractBinder() {
+                    @Override
+                    protected void configure() {
+                        bind(profileDao).to(ProfileDao.class);
+                    }
+                });
 
         return GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI), rc);
     }
 
+    private static ProfileDao createProfileDao() {
+        var dynamoDbClient = new AwsDynamoDbClientModule().provideDynamoDbClient();
+        long windowMicros = Long.getLong(COALESCING_WINDOW_PROPERTY, DEFAULT_COALESCING_WINDOW_MICROS);
+        long nearCacheMegabytes = Long.getLong(NEAR_CACHE_MEGABYTES_PROPERTY, DEFAULT_NEAR_CACHE_MEGABYTES);
+        return new ProfileDao(dynamoDbClient,
+                windowMicros > 0 ? Duration.of(windowMicros, ChronoUnit.MICROS) : null,
+                nearCacheMegabytes > 0 ? new OffHeapCache(nearCacheMegabytes << 20, NEAR_CACHE_TTL) : null);
+    }
+
     public static void main(String[] args) {
-        final HttpServer server = startServer();
+        final ProfileDao profileDao = createProfileDao();
+        final HttpServer server = startServer(profileDao);
         System.out.println(String.format("Jersey app started with WADL available at "
                 + "%sapplication.wadl", BASE_URI));
         
@@ -26,6 +60,7 @@ public class Main {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Shutting down server...");
             server.stop();
+            profileDao.close();
         }));
     }
 } 
\ No newline at end of file
@@ -1,8 +1,16 @@
 package com.rhythmiq.controlplaneservice;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.rhythmiq.controlplaneservice.common.ETags;
 import com.rhythmiq.controlplaneservice.model.*;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
+import com.rhythmiq.controlplaneservice.exception.PreconditionFailedException;
+import com.rhythmiq.controlplaneservice.exception.UnknownFieldException;
 import com.rhythmiq.controlplaneservice.exception.ValidationException;
+import com.rhythmiq.controlplaneservice.dao.FieldProjection;
 import com.rhythmiq.controlplaneservice.dao.ProfileDao;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.POST;
@@ -11,16 +19,28 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.PUT;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Path("/profiles")
 public class ProfileResource {
+    static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     private final ProfileDao profileDao;
 
+    @Inject
     public ProfileResource(ProfileDao profileDao) {
         this.profileDao = profileDao;
     }
@@ -35,37 +55,112 @@ public class ProfileResource {
                     .build();
         }
 
-        CreateProfileResponse response = profileDao.createProfile(request);
-        return Response.status(Response.Status.CREATED).entity(response).build();
+        try {
+            CreateProfileResponse response = profileDao.createProfile(request);
+            return Response.status(Response.Status.CREATED).entity(response).build();
+        } catch (ConflictException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(GetProfileResponse.builder()
+                            .success(false)
+                            .message(e.getMessage())
+                            .build())
+                    .build();
+        }
+    }
+
+    @POST
+    @Path("/batchGet")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response batchGetProfiles(BatchGetProfilesRequest request) {
+        if (request == null || request.getProfileIds() == null || request.getProfileIds().isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ValidationException("At least one profile ID is required", Map.of("profileIds", 1)))
+                    .build();
+        }
+        if (request.getProfileIds().stream().distinct().count() > ProfileDao.MAX_BATCH_GET_IDS) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ValidationException("Cannot request more than " + ProfileDao.MAX_BATCH_GET_IDS + " profiles at once",
+                            Map.of("profileIds", 1)))
+                    .build();
+        }
+
+        return Response.ok(profileDao.batchGetProfiles(request.getProfileIds())).build();
     }
 
     @GET
     @Path("/{profileId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getProfile(@PathParam("profileId") String profileId) {
-        GetProfileResponse response = profileDao.getProfile(profileId);
+    public Response getProfile(@PathParam("profileId") String profileId, @QueryParam("fields") String fields,
+                               @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
+        Set<String> fieldSet = FieldProjection.parseFields(fields);
+        if (ifNoneMatch != null) {
+            Optional<String> currentETag = profileDao.getProfileVersion(profileId).map(version -> ETags.of(version, fieldSet));
+            if (currentETag.isPresent() && ETags.matches(ifNoneMatch, currentETag.get())) {
+                return Response.notModified()
+                        .header(HttpHeaders.ETAG, currentETag.get())
+                        .build();
+            }
+        }
+
+        GetProfileResponse response;
+        try {
+            response = profileDao.getProfile(profileId, fieldSet);
+        } catch (UnknownFieldException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ValidationException(e.getMessage(), Map.of("fields", 1)))
+                    .build();
+        }
         if (!response.isSuccess()) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(response)
                     .build();
         }
-        return Response.ok(response).build();
+        return Response.ok(response)
+                .header(HttpHeaders.ETAG, ETags.of(response.getProfile().getVersion(), fieldSet))
+                .build();
     }
 
     @PUT
     @Path("/{profileId}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response updateProfile(@PathParam("profileId") String profileId, UpdateProfileRequest request) {
+    public Response updateProfile(@PathParam("profileId") String profileId, UpdateProfileRequest request,
+                                  @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch) {
         if (request.getUsername() != null && (request.getUsername().isEmpty() || request.getUsername().length() < 3)) {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity(new ValidationException("Username must be at least 3 characters long", Map.of("username", 1)))
                     .build();
         }
 
+        Long expectedVersion;
+        try {
+            expectedVersion = ETags.parseVersion(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ValidationException(e.getMessage(), Map.of("If-Match", 1)))
+                    .build();
+        }
+
         try {
-            UpdateProfileResponse response = profileDao.updateProfile(profileId, request);
-            return Response.ok(response).build();
+            UpdateProfileResponse response = profileDao.updateProfile(profileId, request, expectedVersion);
+            return Response.ok(response)
+                    .header(HttpHeaders.ETAG, ETags.of(response.getProfile().getVersion()))
+                    .build();
+        } catch (PreconditionFailedException e) {
+            return Response.status(Response.Status.PRECONDITION_FAILED)
+                    .entity(GetProfileResponse.builder()
+                            .success(false)
+                            .message(e.getMessage())
+                            .build())
+                    .build();
+        } catch (ConflictException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(GetProfileResponse.builder()
+                            .success(false)
+                            .message(e.getMessage())
+                            .build())
+                    .build();
         } catch (IllegalStateException e) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(GetProfileResponse.builder()
@@ -94,7 +189,42 @@ public class ProfileResource {
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response listProfiles() {
-        return Response.ok(profileDao.listProfiles()).build();
+    public Response listProfiles(@QueryParam("limit") Integer limit, @QueryParam("nextToken") String nextToken,
+                                 @QueryParam("fields") String fields) {
+        if (limit != null && (limit < 1 || limit > ProfileDao.MAX_PAGE_SIZE)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ValidationException("Limit must be between 1 and " + ProfileDao.MAX_PAGE_SIZE, Map.of("limit", 1)))
+                    .build();
+        }
+
+        try {
+            return Response.ok(profileDao.listProfiles(limit, nextToken, FieldProjection.parseFields(fields))).build();
+        } catch (UnknownFieldException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ValidationException(e.getMessage(), Map.of("fields", 1)))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ValidationException(e.getMessage(), Map.of("nextToken", 1)))
+                    .build();
+        }
+    }
+
+    @GET
+    @Produces(APPLICATION_NDJSON)
+    public Response streamProfiles() {
+        StreamingOutput stream = output -> {
+            try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(output)) {
+                profileDao.forEachProfilePage(page -> {
+                    try {
+                        writer.writeAll(page);
+                        writer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return Response.ok(stream).build();
     }
-}
\ No newline at end of file
+}
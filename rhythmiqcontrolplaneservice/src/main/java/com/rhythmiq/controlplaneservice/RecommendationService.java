@@ -1,11 +1,11 @@
 package com.rhythmiq.controlplaneservice;
 
-import com.rhythmiq.controlplaneservice.model.Preference;
+import com.rhythmiq.controlplaneservice.model.PreferenceVector;
 import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
 import com.rhythmiq.controlplaneservice.spotify.SpotifyService;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.StringJoiner;
 
 public class RecommendationService {
     private final PreferenceDao preferenceDao;
@@ -17,32 +17,26 @@ public class RecommendationService {
     }
 
     public String getRecommendations(String profileId) {
-        List<Preference> preferences = preferenceDao.listPreferences(profileId);
+        PreferenceVector vector = preferenceDao.getPreferenceVector(profileId);
         
-        if (preferences.isEmpty()) {
+        if (vector.isEmpty()) {
             throw new IllegalStateException("No preferences found for profile: " + profileId);
         }
 
-        // Validate preferences
-        preferences.forEach(pref -> {
-            if (pref.getValue() == null || pref.getValue().trim().isEmpty()) {
-                throw new IllegalArgumentException("Invalid preference value for type: " + pref.getType());
+        // Convert the vector to Spotify recommendation parameters; within a type the entries are
+        // already in descending score order, so the strongest preferences come first.
+        Map<String, StringJoiner> valuesByType = new LinkedHashMap<>();
+        for (int i = 0; i < vector.size(); i++) {
+            String value = vector.value(i);
+            if (value == null || value.trim().isEmpty()) {
+                throw new IllegalArgumentException("Invalid preference value for type: " + vector.type(i));
             }
-        });
-
-        // Group preferences by type and calculate weighted values
-        Map<Preference.PreferenceType, List<Preference>> preferencesByType = preferences.stream()
-            .collect(Collectors.groupingBy(Preference::getType));
-
-        // Convert preferences to Spotify recommendation parameters
-        Map<String, Object> recommendationParams = preferencesByType.entrySet().stream()
-            .collect(Collectors.toMap(
-                entry -> entry.getKey().toString().toLowerCase(),
-                entry -> entry.getValue().stream()
-                    .map(Preference::getValue)
-                    .collect(Collectors.joining(","))
-            ));
+            valuesByType.computeIfAbsent(vector.type(i).toString().toLowerCase(), type -> new StringJoiner(","))
+                .add(value);
+        }
+        Map<String, Object> recommendationParams = new LinkedHashMap<>();
+        valuesByType.forEach((type, values) -> recommendationParams.put(type, values.toString()));
 
         return spotifyService.getRecommendations(profileId, recommendationParams);
     }
-} 
\ No newline at end of file
+}
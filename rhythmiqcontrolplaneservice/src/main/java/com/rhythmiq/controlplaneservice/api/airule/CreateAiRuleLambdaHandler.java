@@ -7,6 +7,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
 import com.rhythmiq.controlplaneservice.dao.AiRuleDao;
 import com.rhythmiq.controlplaneservice.model.AiRule;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
@@ -18,7 +19,7 @@ public class CreateAiRuleLambdaHandler extends BaseLambdaHandler {
     private final AiRuleDao aiRuleDao;
 
     public CreateAiRuleLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -7,6 +7,7 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
 import com.rhythmiq.controlplaneservice.dao.AiRuleDao;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
@@ -17,7 +18,7 @@ public class GetAiRulesLambdaHandler extends BaseLambdaHandler {
     private final AiRuleDao aiRuleDao;
 
     public GetAiRulesLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -6,8 +6,10 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
 import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
 import com.rhythmiq.controlplaneservice.model.Preference;
 import com.rhythmiq.controlplaneservice.model.CreatePreferenceRequest;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
@@ -20,7 +22,7 @@ public class CreatePreferenceLambdaHandler extends BaseLambdaHandler {
     private final PreferenceDao preferenceDao;
 
     public CreatePreferenceLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -28,7 +30,7 @@ public class CreatePreferenceLambdaHandler extends BaseLambdaHandler {
         DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
                 .dynamoDbClient(dynamoDbClient)
                 .build();
-        this.preferenceDao = new PreferenceDao(enhancedClient);
+        this.preferenceDao = new PreferenceDao(enhancedClient, dynamoDbClient, PreferenceDao.StorageMode.fromEnvironment());
     }
 
     @Override
@@ -64,6 +66,8 @@ public class CreatePreferenceLambdaHandler extends BaseLambdaHandler {
         try {
             preferenceDao.createPreference(preference);
             return createSuccessResponse(200, preference);
+        } catch (ConflictException e) {
+            return createErrorResponse(409, e.getMessage());
         } catch (Exception e) {
             log.error("Failed to create preference", e);
             return createErrorResponse(500, "Failed to create preference");
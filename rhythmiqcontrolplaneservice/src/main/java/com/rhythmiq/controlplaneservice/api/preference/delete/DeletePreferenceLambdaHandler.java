@@ -5,6 +5,7 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
 import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
@@ -17,7 +18,7 @@ public class DeletePreferenceLambdaHandler extends BaseLambdaHandler {
     private final PreferenceDao preferenceDao;
 
     public DeletePreferenceLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -25,7 +26,7 @@ public class DeletePreferenceLambdaHandler extends BaseLambdaHandler {
         DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
                 .dynamoDbClient(dynamoDbClient)
                 .build();
-        this.preferenceDao = new PreferenceDao(enhancedClient);
+        this.preferenceDao = new PreferenceDao(enhancedClient, dynamoDbClient, PreferenceDao.StorageMode.fromEnvironment());
     }
 
     @Override
@@ -6,6 +6,7 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent
 import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
 import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
 import com.rhythmiq.controlplaneservice.model.Preference;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
@@ -19,7 +20,7 @@ public class GetPreferenceLambdaHandler extends BaseLambdaHandler {
     private final PreferenceDao preferenceDao;
 
     public GetPreferenceLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -27,7 +28,7 @@ public class GetPreferenceLambdaHandler extends BaseLambdaHandler {
         DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
                 .dynamoDbClient(dynamoDbClient)
                 .build();
-        this.preferenceDao = new PreferenceDao(enhancedClient);
+        this.preferenceDao = new PreferenceDao(enhancedClient, dynamoDbClient, PreferenceDao.StorageMode.fromEnvironment());
     }
 
     @Override
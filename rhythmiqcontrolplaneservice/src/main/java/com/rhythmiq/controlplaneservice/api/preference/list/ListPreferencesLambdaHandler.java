@@ -4,8 +4,10 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
+import com.rhythmiq.controlplaneservice.dao.FieldProjection;
 import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
 import com.rhythmiq.controlplaneservice.model.Preference;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
@@ -19,7 +21,7 @@ public class ListPreferencesLambdaHandler extends BaseLambdaHandler {
     private final PreferenceDao preferenceDao;
 
     public ListPreferencesLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -27,7 +29,7 @@ public class ListPreferencesLambdaHandler extends BaseLambdaHandler {
         DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
                 .dynamoDbClient(dynamoDbClient)
                 .build();
-        this.preferenceDao = new PreferenceDao(enhancedClient);
+        this.preferenceDao = new PreferenceDao(enhancedClient, dynamoDbClient, PreferenceDao.StorageMode.fromEnvironment());
     }
 
     @Override
@@ -42,8 +44,12 @@ public class ListPreferencesLambdaHandler extends BaseLambdaHandler {
         }
 
         try {
-            List<Preference> preferences = preferenceDao.listPreferences(profileId);
+            List<Preference> preferences = preferenceDao.listPreferences(profileId,
+                    FieldProjection.parseFields(getQueryParameter(request, "fields")));
             return createSuccessResponse(200, preferences);
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            return createErrorResponse(400, e.getMessage());
         } catch (Exception e) {
             log.error("Failed to list preferences", e);
             return createErrorResponse(500, "Failed to list preferences");
@@ -0,0 +1,73 @@
+package com.rhythmiq.controlplaneservice.api.preference.reorder;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
+import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
+import com.rhythmiq.controlplaneservice.model.ReorderPreferencesRequest;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
+import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import javax.inject.Inject;
+
+/**
+ * Handles {@code PUT /profiles/{profileId}/preferences/order}. The body lists preference ids in
+ * their new order; each listed preference takes the index of its position.
+ */
+@Log4j2
+public class ReorderPreferencesLambdaHandler extends BaseLambdaHandler {
+
+    private final PreferenceDao preferenceDao;
+
+    public ReorderPreferencesLambdaHandler() {
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
+    }
+
+    @Inject
+    public ReorderPreferencesLambdaHandler(DynamoDbClient dynamoDbClient) {
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+                .dynamoDbClient(dynamoDbClient)
+                .build();
+        this.preferenceDao = new PreferenceDao(enhancedClient, dynamoDbClient, PreferenceDao.StorageMode.fromEnvironment());
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        if (request.getPathParameters() == null) {
+            return createErrorResponse(400, "Missing path parameters");
+        }
+
+        String profileId = request.getPathParameters().get("profileId");
+        if (profileId == null || profileId.trim().isEmpty()) {
+            return createErrorResponse(400, "Profile ID is required");
+        }
+
+        ReorderPreferencesRequest reorderRequest;
+        try {
+            reorderRequest = objectMapper.readValue(request.getBody(), ReorderPreferencesRequest.class);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            log.error("Failed to parse request body", e);
+            return createErrorResponse(400, "Invalid request body");
+        }
+        if (reorderRequest == null || reorderRequest.getPreferenceIds() == null) {
+            return createErrorResponse(400, "Preference IDs are required");
+        }
+
+        try {
+            preferenceDao.reorderPreferences(profileId, reorderRequest.getPreferenceIds());
+            return createSuccessResponse(200, "Preferences reordered successfully");
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(400, e.getMessage());
+        } catch (ConflictException e) {
+            return createErrorResponse(409, e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to reorder preferences", e);
+            return createErrorResponse(500, "Failed to reorder preferences");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.rhythmiq.controlplaneservice.api.preference.replace;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
+import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
+import com.rhythmiq.controlplaneservice.model.Preference;
+import com.rhythmiq.controlplaneservice.model.ReplacePreferencesRequest;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
+import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import javax.inject.Inject;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Handles {@code PUT /profiles/{profileId}/preferences}. The body is the full desired preference
+ * set; rows without an id are created, rows missing from the body are deleted, and only rows that
+ * actually changed are written. Inferred preferences are kept unless listed, and keep their flag when
+ * they are.
+ */
+@Log4j2
+public class ReplacePreferencesLambdaHandler extends BaseLambdaHandler {
+
+    private final PreferenceDao preferenceDao;
+
+    public ReplacePreferencesLambdaHandler() {
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
+    }
+
+    @Inject
+    public ReplacePreferencesLambdaHandler(DynamoDbClient dynamoDbClient) {
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
+                .dynamoDbClient(dynamoDbClient)
+                .build();
+        this.preferenceDao = new PreferenceDao(enhancedClient, dynamoDbClient, PreferenceDao.StorageMode.fromEnvironment());
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        if (request.getPathParameters() == null) {
+            return createErrorResponse(400, "Missing path parameters");
+        }
+
+        String profileId = request.getPathParameters().get("profileId");
+        if (profileId == null || profileId.trim().isEmpty()) {
+            return createErrorResponse(400, "Profile ID is required");
+        }
+
+        ReplacePreferencesRequest replaceRequest;
+        try {
+            replaceRequest = objectMapper.readValue(request.getBody(), ReplacePreferencesRequest.class);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            log.error("Failed to parse request body", e);
+            return createErrorResponse(400, "Invalid request body");
+        }
+        if (replaceRequest == null || replaceRequest.getPreferences() == null) {
+            return createErrorResponse(400, "Preferences are required");
+        }
+
+        List<Preference> desired = replaceRequest.getPreferences().stream()
+                .map(item -> Preference.builder()
+                        .profileId(profileId)
+                        .preferenceId(item.getPreferenceId() != null
+                                ? item.getPreferenceId()
+                                : UUID.randomUUID().toString())
+                        .type(item.getType())
+                        .value(item.getValue())
+                        .index(item.getIndex())
+                        .weight(item.getWeight())
+                        .build())
+                .collect(Collectors.toList());
+
+        try {
+            return createSuccessResponse(200, preferenceDao.replacePreferences(profileId, desired));
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(400, e.getMessage());
+        } catch (ConflictException e) {
+            return createErrorResponse(409, e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to replace preferences", e);
+            return createErrorResponse(500, "Failed to replace preferences");
+        }
+    }
+}
@@ -6,14 +6,15 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
 import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
 import com.rhythmiq.controlplaneservice.model.Preference;
 import com.rhythmiq.controlplaneservice.model.UpdatePreferenceRequest;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 import javax.inject.Inject;
-import java.util.Optional;
 
 @Log4j2
 public class UpdatePreferenceLambdaHandler extends BaseLambdaHandler {
@@ -21,7 +22,7 @@ public class UpdatePreferenceLambdaHandler extends BaseLambdaHandler {
     private final PreferenceDao preferenceDao;
 
     public UpdatePreferenceLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -29,7 +30,7 @@ public class UpdatePreferenceLambdaHandler extends BaseLambdaHandler {
         DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder()
                 .dynamoDbClient(dynamoDbClient)
                 .build();
-        this.preferenceDao = new PreferenceDao(enhancedClient);
+        this.preferenceDao = new PreferenceDao(enhancedClient, dynamoDbClient, PreferenceDao.StorageMode.fromEnvironment());
     }
 
     @Override
@@ -56,27 +57,15 @@ public class UpdatePreferenceLambdaHandler extends BaseLambdaHandler {
             return createErrorResponse(400, "Invalid request body");
         }
 
-        // Get existing preference
-        Optional<Preference> existingPreference = preferenceDao.getPreference(profileId, preferenceId);
-        if (existingPreference.isEmpty()) {
-            return createErrorResponse(404, "Preference not found");
-        }
-
-        // Update preference with new values
-        Preference preference = existingPreference.get();
-        if (updateRequest.getValue() != null) {
-            preference.setValue(updateRequest.getValue());
-        }
-        if (updateRequest.getIndex() != null) {
-            preference.setIndex(updateRequest.getIndex());
-        }
-        if (updateRequest.getWeight() != null) {
-            preference.setWeight(updateRequest.getWeight());
-        }
-
         try {
-            preferenceDao.updatePreference(preference);
+            Preference preference = preferenceDao.patchPreference(profileId, preferenceId, updateRequest);
             return createSuccessResponse(200, preference);
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(400, e.getMessage());
+        } catch (ConflictException e) {
+            return createErrorResponse(409, e.getMessage());
+        } catch (IllegalStateException e) {
+            return createErrorResponse(404, "Preference not found");
         } catch (Exception e) {
             log.error("Failed to update preference", e);
             return createErrorResponse(500, "Failed to update preference");
@@ -0,0 +1,55 @@
+package com.rhythmiq.controlplaneservice.api.profile.batchget;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
+import com.rhythmiq.controlplaneservice.dao.ProfileDao;
+import com.rhythmiq.controlplaneservice.model.BatchGetProfilesRequest;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
+import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import javax.inject.Inject;
+
+@Log4j2
+public class BatchGetProfilesLambdaHandler extends BaseLambdaHandler {
+
+    private final ProfileDao profileDao;
+
+    public BatchGetProfilesLambdaHandler() {
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
+    }
+
+    @Inject
+    public BatchGetProfilesLambdaHandler(DynamoDbClient dynamoDbClient) {
+        this.profileDao = new ProfileDao(dynamoDbClient);
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        BatchGetProfilesRequest batchRequest;
+        try {
+            batchRequest = objectMapper.readValue(request.getBody(), BatchGetProfilesRequest.class);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to parse request body", e);
+            return createErrorResponse(400, "Invalid request format.");
+        }
+
+        if (batchRequest == null || batchRequest.getProfileIds() == null || batchRequest.getProfileIds().isEmpty()) {
+            return createErrorResponse(400, "At least one profile ID is required");
+        }
+
+        try {
+            var response = profileDao.batchGetProfiles(batchRequest.getProfileIds());
+            return createSuccessResponse(200, response);
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            return createErrorResponse(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("Error processing request", e);
+            return createErrorResponse(500, "Failed to get profiles.");
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
 import com.rhythmiq.controlplaneservice.dao.ProfileDao;
 import com.rhythmiq.controlplaneservice.model.CreateProfileRequest;
 import com.rhythmiq.controlplaneservice.model.CreateProfileResponse;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
@@ -19,7 +20,7 @@ public class CreateProfileLambdaHandler extends BaseLambdaHandler {
     private final ProfileDao profileDao;
 
     public CreateProfileLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -4,11 +4,17 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
+import com.rhythmiq.controlplaneservice.common.ETags;
+import com.rhythmiq.controlplaneservice.dao.FieldProjection;
 import com.rhythmiq.controlplaneservice.dao.ProfileDao;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 import javax.inject.Inject;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Log4j2
 public class GetProfileLambdaHandler extends BaseLambdaHandler {
@@ -16,7 +22,7 @@ public class GetProfileLambdaHandler extends BaseLambdaHandler {
     private final ProfileDao profileDao;
 
     public GetProfileLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -29,8 +35,23 @@ public class GetProfileLambdaHandler extends BaseLambdaHandler {
         String profileId = request.getPathParameters().get("profileId");
 
         try {
-            var response = profileDao.getProfile(profileId);
+            Set<String> fields = FieldProjection.parseFields(getQueryParameter(request, "fields"));
+            String ifNoneMatch = getHeader(request, "If-None-Match");
+            if (ifNoneMatch != null) {
+                Optional<String> currentETag = profileDao.getProfileVersion(profileId).map(version -> ETags.of(version, fields));
+                if (currentETag.isPresent() && ETags.matches(ifNoneMatch, currentETag.get())) {
+                    return createNotModifiedResponse(currentETag.get());
+                }
+            }
+
+            var response = profileDao.getProfile(profileId, fields);
+            if (response.isSuccess()) {
+                return createSuccessResponse(200, response, Map.of("ETag", ETags.of(response.getProfile().getVersion(), fields)));
+            }
             return createSuccessResponse(200, response);
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            return createErrorResponse(400, e.getMessage());
         } catch (IllegalStateException e) {
             log.error(e.getMessage());
             return createErrorResponse(404, e.getMessage());
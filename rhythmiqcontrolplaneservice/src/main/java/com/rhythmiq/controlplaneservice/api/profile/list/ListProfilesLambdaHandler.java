@@ -4,7 +4,9 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
+import com.rhythmiq.controlplaneservice.dao.FieldProjection;
 import com.rhythmiq.controlplaneservice.dao.ProfileDao;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
@@ -16,7 +18,7 @@ public class ListProfilesLambdaHandler extends BaseLambdaHandler {
     private final ProfileDao profileDao;
 
     public ListProfilesLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -26,12 +28,24 @@ public class ListProfilesLambdaHandler extends BaseLambdaHandler {
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
+        Integer limit;
         try {
-            var response = profileDao.listProfiles();
+            String limitParameter = getQueryParameter(request, "limit");
+            limit = limitParameter != null ? Integer.valueOf(limitParameter) : null;
+        } catch (NumberFormatException e) {
+            return createErrorResponse(400, "Limit must be a number");
+        }
+
+        try {
+            var response = profileDao.listProfiles(limit, getQueryParameter(request, "nextToken"),
+                    FieldProjection.parseFields(getQueryParameter(request, "fields")));
             return createSuccessResponse(200, response);
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            return createErrorResponse(400, e.getMessage());
         } catch (Exception e) {
             log.error("Error processing request", e);
             return createErrorResponse(500, "Failed to list profiles.");
         }
     }
-} 
\ No newline at end of file
+}
@@ -5,12 +5,17 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.rhythmiq.controlplaneservice.common.BaseLambdaHandler;
+import com.rhythmiq.controlplaneservice.common.ETags;
 import com.rhythmiq.controlplaneservice.dao.ProfileDao;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
+import com.rhythmiq.controlplaneservice.exception.PreconditionFailedException;
 import com.rhythmiq.controlplaneservice.model.UpdateProfileRequest;
+import com.rhythmiq.controlplaneservice.module.AwsDynamoDbClientModule;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 import javax.inject.Inject;
+import java.util.Map;
 
 @Log4j2
 public class UpdateProfileLambdaHandler extends BaseLambdaHandler {
@@ -18,7 +23,7 @@ public class UpdateProfileLambdaHandler extends BaseLambdaHandler {
     private final ProfileDao profileDao;
 
     public UpdateProfileLambdaHandler() {
-        this(DynamoDbClient.create());
+        this(AwsDynamoDbClientModule.withTableCaches(DynamoDbClient.create()));
     }
 
     @Inject
@@ -53,9 +58,22 @@ public class UpdateProfileLambdaHandler extends BaseLambdaHandler {
             return createErrorResponse(400, "Invalid request format.");
         }
 
+        Long expectedVersion;
         try {
-            var response = profileDao.updateProfile(profileId, updateRequest);
-            return createSuccessResponse(200, response);
+            expectedVersion = ETags.parseVersion(getHeader(request, "If-Match"));
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(400, e.getMessage());
+        }
+
+        try {
+            var response = profileDao.updateProfile(profileId, updateRequest, expectedVersion);
+            return createSuccessResponse(200, response, Map.of("ETag", ETags.of(response.getProfile().getVersion())));
+        } catch (PreconditionFailedException e) {
+            log.error(e.getMessage());
+            return createErrorResponse(412, e.getMessage());
+        } catch (ConflictException e) {
+            log.error(e.getMessage());
+            return createErrorResponse(409, e.getMessage());
         } catch (IllegalStateException e) {
             log.error(e.getMessage());
             return createErrorResponse(404, e.getMessage());
@@ -0,0 +1,585 @@
+package com.rhythmiq.controlplaneservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbServiceClientConfiguration;
+import software.amazon.awssdk.services.dynamodb.model.*;
+import software.amazon.awssdk.services.dynamodb.paginators.BatchGetItemIterable;
+import software.amazon.awssdk.services.dynamodb.paginators.ListContributorInsightsIterable;
+import software.amazon.awssdk.services.dynamodb.paginators.ListExportsIterable;
+import software.amazon.awssdk.services.dynamodb.paginators.ListImportsIterable;
+import software.amazon.awssdk.services.dynamodb.paginators.ListTablesIterable;
+import software.amazon.awssdk.services.dynamodb.paginators.QueryIterable;
+import software.amazon.awssdk.services.dynamodb.paginators.ScanIterable;
+import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbWaiter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process read-through cache in front of a {@link DynamoDbClient}, in the spirit of DAX.
+ *
+ * <p>Eventually consistent, unprojected {@code GetItem} calls and {@code BatchGetItem} keys are served
+ * from a bounded W-TinyLFU item cache (including "not found" answers), and {@code Query} responses
+ * from a short-TTL result cache. Strongly consistent or projected reads always go to DynamoDB. Every write made through this
+ * client evicts the items it touches and drops the table's cached query results; PartiQL statements
+ * cannot be attributed to a table and clear everything.
+ *
+ * <p>Writes made by other processes are only picked up when entries expire, so TTLs bound staleness.
+ * Tables without a {@link TableCacheConfig} pass straight through.
+ */
+public class CachingDynamoDbClient implements DynamoDbClient {
+    private static final Map<String, AttributeValue> NOT_FOUND = Map.of();
+
+    private final DynamoDbClient delegate;
+    private final Map<String, TableCache> tables = new HashMap<>();
+
+    public CachingDynamoDbClient(DynamoDbClient delegate, Collection<TableCacheConfig> configs) {
+        this.delegate = delegate;
+        configs.forEach(config -> tables.put(config.tableName(), new TableCache(config)));
+    }
+
+    /** Item cache statistics for a table, or {@link CacheStats#empty()} if it is not cached. */
+    public CacheStats itemStats(String tableName) {
+        TableCache table = tables.get(tableName);
+        return table != null && table.items != null ? table.items.stats() : CacheStats.empty();
+    }
+
+    /** Query cache statistics for a table, or {@link CacheStats#empty()} if queries are not cached. */
+    public CacheStats queryStats(String tableName) {
+        TableCache table = tables.get(tableName);
+        return table != null && table.queries != null ? table.queries.stats() : CacheStats.empty();
+    }
+
+    public void invalidateAll() {
+        tables.values().forEach(TableCache::invalidateAll);
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        TableCache table = tables.get(request.tableName());
+        if (table == null || table.items == null || Boolean.TRUE.equals(request.consistentRead())
+                || request.projectionExpression() != null || request.hasAttributesToGet()) {
+            return delegate.getItem(request);
+        }
+
+        Map<String, AttributeValue> key = table.keyOf(request.key());
+        if (key == null) {
+            return delegate.getItem(request);
+        }
+        Map<String, AttributeValue> cached = table.items.getIfPresent(key);
+        if (cached != null) {
+            return cached.isEmpty() ? GetItemResponse.builder().build() : GetItemResponse.builder().item(cached).build();
+        }
+
+        long generation = table.generation.get();
+        GetItemResponse response = delegate.getItem(request);
+        table.cacheItem(key, response.hasItem() ? response.item() : NOT_FOUND, generation);
+        return response;
+    }
+
+    @Override
+    public QueryResponse query(QueryRequest request) {
+        TableCache table = tables.get(request.tableName());
+        if (table == null || table.queries == null || Boolean.TRUE.equals(request.consistentRead())) {
+            return delegate.query(request);
+        }
+
+        QueryResponse cached = table.queries.getIfPresent(request);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = table.generation.get();
+        QueryResponse response = delegate.query(request);
+        table.cacheQuery(request, response, generation);
+        return response;
+    }
+
+    @Override
+    public QueryIterable queryPaginator(QueryRequest request) {
+        return new QueryIterable(this, request);
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        return afterWrite(() -> delegate.putItem(request), () -> invalidate(request.tableName(), request.item()));
+    }
+
+    @Override
+    public UpdateItemResponse updateItem(UpdateItemRequest request) {
+        return afterWrite(() -> delegate.updateItem(request), () -> invalidate(request.tableName(), request.key()));
+    }
+
+    @Override
+    public DeleteItemResponse deleteItem(DeleteItemRequest request) {
+        return afterWrite(() -> delegate.deleteItem(request), () -> invalidate(request.tableName(), request.key()));
+    }
+
+    @Override
+    public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+        return afterWrite(() -> delegate.batchWriteItem(request), () -> request.requestItems().forEach((tableName, writes) ->
+                writes.forEach(write -> invalidate(tableName,
+                        write.putRequest() != null ? write.putRequest().item() : write.deleteRequest().key()))));
+    }
+
+    @Override
+    public TransactWriteItemsResponse transactWriteItems(TransactWriteItemsRequest request) {
+        return afterWrite(() -> delegate.transactWriteItems(request), () -> request.transactItems().forEach(write -> {
+            if (write.put() != null) {
+                invalidate(write.put().tableName(), write.put().item());
+            } else if (write.update() != null) {
+                invalidate(write.update().tableName(), write.update().key());
+            } else if (write.delete() != null) {
+                invalidate(write.delete().tableName(), write.delete().key());
+            }
+        }));
+    }
+
+    @Override
+    public ExecuteStatementResponse executeStatement(ExecuteStatementRequest request) {
+        return afterWrite(() -> delegate.executeStatement(request), this::invalidateAll);
+    }
+
+    @Override
+    public BatchExecuteStatementResponse batchExecuteStatement(BatchExecuteStatementRequest request) {
+        return afterWrite(() -> delegate.batchExecuteStatement(request), this::invalidateAll);
+    }
+
+    @Override
+    public ExecuteTransactionResponse executeTransaction(ExecuteTransactionRequest request) {
+        return afterWrite(() -> delegate.executeTransaction(request), this::invalidateAll);
+    }
+
+    /**
+     * Answers the keys the item cache holds and asks DynamoDB only for the rest. Keys DynamoDB left
+     * unprocessed are returned as such and are not cached as missing.
+     */
+    @Override
+    public BatchGetItemResponse batchGetItem(BatchGetItemRequest request) {
+        Map<String, List<Map<String, AttributeValue>>> hits = new HashMap<>();
+        Map<String, KeysAndAttributes> misses = new LinkedHashMap<>();
+        Map<String, Long> generations = new HashMap<>();
+        request.requestItems().forEach((tableName, keysAndAttributes) -> {
+            TableCache table = tables.get(tableName);
+            if (table == null || table.items == null || Boolean.TRUE.equals(keysAndAttributes.consistentRead())
+                    || keysAndAttributes.projectionExpression() != null || keysAndAttributes.hasAttributesToGet()) {
+                misses.put(tableName, keysAndAttributes);
+                return;
+            }
+            generations.put(tableName, table.generation.get());
+            List<Map<String, AttributeValue>> found = new ArrayList<>();
+            List<Map<String, AttributeValue>> missing = new ArrayList<>();
+            for (Map<String, AttributeValue> key : keysAndAttributes.keys()) {
+                Map<String, AttributeValue> cacheKey = table.keyOf(key);
+                Map<String, AttributeValue> cached = cacheKey != null ? table.items.getIfPresent(cacheKey) : null;
+                if (cached == null) {
+                    missing.add(key);
+                } else if (!cached.isEmpty()) {
+                    found.add(cached);
+                }
+            }
+            hits.put(tableName, found);
+            if (!missing.isEmpty()) {
+                misses.put(tableName, keysAndAttributes.toBuilder().keys(missing).build());
+            }
+        });
+        if (generations.isEmpty()) {
+            return delegate.batchGetItem(request);
+        }
+        if (misses.isEmpty()) {
+            return BatchGetItemResponse.builder().responses(hits).build();
+        }
+
+        BatchGetItemResponse response = delegate.batchGetItem(request.toBuilder().requestItems(misses).build());
+        Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+        response.responses().forEach((tableName, items) -> responses.put(tableName, new ArrayList<>(items)));
+        generations.forEach((tableName, generation) -> {
+            TableCache table = tables.get(tableName);
+            KeysAndAttributes requested = misses.get(tableName);
+            if (requested != null) {
+                Set<Map<String, AttributeValue>> unprocessed = new HashSet<>();
+                KeysAndAttributes retry = response.unprocessedKeys().get(tableName);
+                if (retry != null) {
+                    retry.keys().forEach(key -> unprocessed.add(table.keyOf(key)));
+                }
+                Map<Map<String, AttributeValue>, Map<String, AttributeValue>> returned = new HashMap<>();
+                responses.getOrDefault(tableName, List.of()).forEach(item -> returned.put(table.keyOf(item), item));
+                for (Map<String, AttributeValue> key : requested.keys()) {
+                    Map<String, AttributeValue> cacheKey = table.keyOf(key);
+                    if (cacheKey != null && !unprocessed.contains(cacheKey)) {
+                        table.cacheItem(cacheKey, returned.getOrDefault(cacheKey, NOT_FOUND), generation);
+                    }
+                }
+            }
+            responses.computeIfAbsent(tableName, name -> new ArrayList<>()).addAll(hits.get(tableName));
+        });
+        return response.toBuilder().responses(responses).build();
+    }
+
+    @Override
+    public TransactGetItemsResponse transactGetItems(TransactGetItemsRequest request) {
+        return delegate.transactGetItems(request);
+    }
+
+    @Override
+    public ScanResponse scan(ScanRequest request) {
+        return delegate.scan(request);
+    }
+
+    @Override
+    public ScanIterable scanPaginator(ScanRequest request) {
+        return new ScanIterable(this, request);
+    }
+
+    @Override
+    public CreateTableResponse createTable(CreateTableRequest request) {
+        return delegate.createTable(request);
+    }
+
+    @Override
+    public DeleteTableResponse deleteTable(DeleteTableRequest request) {
+        TableCache table = tables.get(request.tableName());
+        if (table != null) {
+            table.invalidateAll();
+        }
+        return delegate.deleteTable(request);
+    }
+
+    @Override
+    public DescribeTableResponse describeTable(DescribeTableRequest request) {
+        return delegate.describeTable(request);
+    }
+
+    @Override
+    public ListTablesResponse listTables(ListTablesRequest request) {
+        return delegate.listTables(request);
+    }
+
+    @Override
+    public UpdateTableResponse updateTable(UpdateTableRequest request) {
+        return delegate.updateTable(request);
+    }
+
+    @Override
+    public DescribeTimeToLiveResponse describeTimeToLive(DescribeTimeToLiveRequest request) {
+        return delegate.describeTimeToLive(request);
+    }
+
+    @Override
+    public UpdateTimeToLiveResponse updateTimeToLive(UpdateTimeToLiveRequest request) {
+        return delegate.updateTimeToLive(request);
+    }
+
+    // Control-plane operations never touch cached items and go straight to DynamoDB. The interface
+    // defaults throw UnsupportedOperationException, so every operation has to be forwarded here.
+    @Override
+    public BatchGetItemIterable batchGetItemPaginator(BatchGetItemRequest request) {
+        return new BatchGetItemIterable(this, request);
+    }
+
+    @Override
+    public CreateBackupResponse createBackup(CreateBackupRequest request) {
+        return delegate.createBackup(request);
+    }
+
+    @Override
+    public CreateGlobalTableResponse createGlobalTable(CreateGlobalTableRequest request) {
+        return delegate.createGlobalTable(request);
+    }
+
+    @Override
+    public DeleteBackupResponse deleteBackup(DeleteBackupRequest request) {
+        return delegate.deleteBackup(request);
+    }
+
+    @Override
+    public DescribeBackupResponse describeBackup(DescribeBackupRequest request) {
+        return delegate.describeBackup(request);
+    }
+
+    @Override
+    public DescribeContinuousBackupsResponse describeContinuousBackups(DescribeContinuousBackupsRequest request) {
+        return delegate.describeContinuousBackups(request);
+    }
+
+    @Override
+    public DescribeContributorInsightsResponse describeContributorInsights(DescribeContributorInsightsRequest request) {
+        return delegate.describeContributorInsights(request);
+    }
+
+    @Override
+    public DescribeEndpointsResponse describeEndpoints(DescribeEndpointsRequest request) {
+        return delegate.describeEndpoints(request);
+    }
+
+    @Override
+    public DescribeExportResponse describeExport(DescribeExportRequest request) {
+        return delegate.describeExport(request);
+    }
+
+    @Override
+    public DescribeGlobalTableResponse describeGlobalTable(DescribeGlobalTableRequest request) {
+        return delegate.describeGlobalTable(request);
+    }
+
+    @Override
+    public DescribeGlobalTableSettingsResponse describeGlobalTableSettings(DescribeGlobalTableSettingsRequest request) {
+        return delegate.describeGlobalTableSettings(request);
+    }
+
+    @Override
+    public DescribeImportResponse describeImport(DescribeImportRequest request) {
+        return delegate.describeImport(request);
+    }
+
+    @Override
+    public DescribeKinesisStreamingDestinationResponse describeKinesisStreamingDestination(DescribeKinesisStreamingDestinationRequest request) {
+        return delegate.describeKinesisStreamingDestination(request);
+    }
+
+    @Override
+    public DescribeLimitsResponse describeLimits(DescribeLimitsRequest request) {
+        return delegate.describeLimits(request);
+    }
+
+    @Override
+    public DescribeTableReplicaAutoScalingResponse describeTableReplicaAutoScaling(DescribeTableReplicaAutoScalingRequest request) {
+        return delegate.describeTableReplicaAutoScaling(request);
+    }
+
+    @Override
+    public DisableKinesisStreamingDestinationResponse disableKinesisStreamingDestination(DisableKinesisStreamingDestinationRequest request) {
+        return delegate.disableKinesisStreamingDestination(request);
+    }
+
+    @Override
+    public EnableKinesisStreamingDestinationResponse enableKinesisStreamingDestination(EnableKinesisStreamingDestinationRequest request) {
+        return delegate.enableKinesisStreamingDestination(request);
+    }
+
+    @Override
+    public ExportTableToPointInTimeResponse exportTableToPointInTime(ExportTableToPointInTimeRequest request) {
+        return delegate.exportTableToPointInTime(request);
+    }
+
+    @Override
+    public ImportTableResponse importTable(ImportTableRequest request) {
+        return delegate.importTable(request);
+    }
+
+    @Override
+    public ListBackupsResponse listBackups(ListBackupsRequest request) {
+        return delegate.listBackups(request);
+    }
+
+    @Override
+    public ListContributorInsightsResponse listContributorInsights(ListContributorInsightsRequest request) {
+        return delegate.listContributorInsights(request);
+    }
+
+    @Override
+    public ListContributorInsightsIterable listContributorInsightsPaginator(ListContributorInsightsRequest request) {
+        return new ListContributorInsightsIterable(this, request);
+    }
+
+    @Override
+    public ListExportsResponse listExports(ListExportsRequest request) {
+        return delegate.listExports(request);
+    }
+
+    @Override
+    public ListExportsIterable listExportsPaginator(ListExportsRequest request) {
+        return new ListExportsIterable(this, request);
+    }
+
+    @Override
+    public ListGlobalTablesResponse listGlobalTables(ListGlobalTablesRequest request) {
+        return delegate.listGlobalTables(request);
+    }
+
+    @Override
+    public ListImportsResponse listImports(ListImportsRequest request) {
+        return delegate.listImports(request);
+    }
+
+    @Override
+    public ListImportsIterable listImportsPaginator(ListImportsRequest request) {
+        return new ListImportsIterable(this, request);
+    }
+
+    @Override
+    public ListTablesIterable listTablesPaginator(ListTablesRequest request) {
+        return new ListTablesIterable(this, request);
+    }
+
+    @Override
+    public ListTagsOfResourceResponse listTagsOfResource(ListTagsOfResourceRequest request) {
+        return delegate.listTagsOfResource(request);
+    }
+
+    @Override
+    public RestoreTableFromBackupResponse restoreTableFromBackup(RestoreTableFromBackupRequest request) {
+        return delegate.restoreTableFromBackup(request);
+    }
+
+    @Override
+    public RestoreTableToPointInTimeResponse restoreTableToPointInTime(RestoreTableToPointInTimeRequest request) {
+        return delegate.restoreTableToPointInTime(request);
+    }
+
+    @Override
+    public TagResourceResponse tagResource(TagResourceRequest request) {
+        return delegate.tagResource(request);
+    }
+
+    @Override
+    public UntagResourceResponse untagResource(UntagResourceRequest request) {
+        return delegate.untagResource(request);
+    }
+
+    @Override
+    public UpdateContinuousBackupsResponse updateContinuousBackups(UpdateContinuousBackupsRequest request) {
+        return delegate.updateContinuousBackups(request);
+    }
+
+    @Override
+    public UpdateContributorInsightsResponse updateContributorInsights(UpdateContributorInsightsRequest request) {
+        return delegate.updateContributorInsights(request);
+    }
+
+    @Override
+    public UpdateGlobalTableResponse updateGlobalTable(UpdateGlobalTableRequest request) {
+        return delegate.updateGlobalTable(request);
+    }
+
+    @Override
+    public UpdateGlobalTableSettingsResponse updateGlobalTableSettings(UpdateGlobalTableSettingsRequest request) {
+        return delegate.updateGlobalTableSettings(request);
+    }
+
+    @Override
+    public UpdateTableReplicaAutoScalingResponse updateTableReplicaAutoScaling(UpdateTableReplicaAutoScalingRequest request) {
+        return delegate.updateTableReplicaAutoScaling(request);
+    }
+
+    @Override
+    public DynamoDbWaiter waiter() {
+        return DynamoDbWaiter.builder().client(this).build();
+    }
+
+    @Override
+    public DynamoDbServiceClientConfiguration serviceClientConfiguration() {
+        return delegate.serviceClientConfiguration();
+    }
+
+    @Override
+    public String serviceName() {
+        return delegate.serviceName();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Runs a write and then evicts what it may have changed. Eviction also happens when the write
+     * fails, since a timed-out or cancelled request may still have been applied.
+     */
+    private <T> T afterWrite(Supplier<T> write, Runnable invalidation) {
+        try {
+            return write.get();
+        } finally {
+            invalidation.run();
+        }
+    }
+
+    private void invalidate(String tableName, Map<String, AttributeValue> itemOrKey) {
+        TableCache table = tables.get(tableName);
+        if (table != null) {
+            table.invalidate(itemOrKey);
+        }
+    }
+
+    private static final class TableCache {
+        private final TableCacheConfig config;
+        private final Cache<Map<String, AttributeValue>, Map<String, AttributeValue>> items;
+        private final Cache<QueryRequest, QueryResponse> queries;
+        // Bumped before every eviction so a read that started before a write never caches its result.
+        private final AtomicLong generation = new AtomicLong();
+
+        TableCache(TableCacheConfig config) {
+            this.config = config;
+            this.items = config.cachesItems()
+                    ? Caffeine.newBuilder()
+                            .maximumSize(config.maxItems())
+                            .expireAfterWrite(config.itemTtl())
+                            .recordStats()
+                            .build()
+                    : null;
+            this.queries = config.cachesQueries()
+                    ? Caffeine.newBuilder()
+                            .maximumSize(config.maxQueries())
+                            .expireAfterWrite(config.queryTtl())
+                            .recordStats()
+                            .build()
+                    : null;
+        }
+
+        Map<String, AttributeValue> keyOf(Map<String, AttributeValue> itemOrKey) {
+            Map<String, AttributeValue> key = new LinkedHashMap<>();
+            for (String attribute : config.keyAttributes()) {
+                AttributeValue value = itemOrKey.get(attribute);
+                if (value == null) {
+                    return null;
+                }
+                key.put(attribute, value);
+            }
+            return key;
+        }
+
+        void cacheItem(Map<String, AttributeValue> key, Map<String, AttributeValue> item, long readGeneration) {
+            items.asMap().compute(key, (k, current) -> generation.get() == readGeneration ? item : current);
+        }
+
+        void cacheQuery(QueryRequest request, QueryResponse response, long readGeneration) {
+            queries.asMap().compute(request, (k, current) -> generation.get() == readGeneration ? response : current);
+        }
+
+        void invalidate(Map<String, AttributeValue> itemOrKey) {
+            generation.incrementAndGet();
+            Map<String, AttributeValue> key = itemOrKey != null ? keyOf(itemOrKey) : null;
+            if (items != null) {
+                if (key != null) {
+                    items.invalidate(key);
+                } else {
+                    items.invalidateAll();
+                }
+            }
+            if (queries != null) {
+                queries.invalidateAll();
+            }
+        }
+
+        void invalidateAll() {
+            generation.incrementAndGet();
+            if (items != null) {
+                items.invalidateAll();
+            }
+            if (queries != null) {
+                queries.invalidateAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.rhythmiq.controlplaneservice.cache;
+
+import com.rhythmiq.controlplaneservice.model.Preference;
+import com.rhythmiq.controlplaneservice.model.Profile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codecs for the values kept in the off-heap near cache, plus the persisted preference document.
+ * A leading presence byte marks nullable fields; bump {@link #FORMAT_VERSION} whenever a cached
+ * layout changes so stale bytes are never misread.
+ */
+public final class CompactCodecs {
+    private static final byte FORMAT_VERSION = 2;
+    private static final byte DOCUMENT_FORMAT_VERSION = 1;
+    private static final Preference.PreferenceType[] PREFERENCE_TYPES = Preference.PreferenceType.values();
+
+    public static final ValueCodec<Profile> PROFILE = new ValueCodec<>() {
+        @Override
+        public void write(Profile profile, DataOutput out) throws IOException {
+            out.writeByte(FORMAT_VERSION);
+            writeString(out, profile.getProfileId());
+            writeString(out, profile.getUsername());
+            writeString(out, profile.getFirstName());
+            writeString(out, profile.getLastName());
+            writeString(out, profile.getEmail());
+            writeString(out, profile.getPhoneNumber());
+            writeLong(out, profile.getVersion());
+        }
+
+        @Override
+        public Profile read(DataInput in) throws IOException {
+            checkVersion(in);
+            return Profile.builder()
+                    .profileId(readString(in))
+                    .username(readString(in))
+                    .firstName(readString(in))
+                    .lastName(readString(in))
+                    .email(readString(in))
+                    .phoneNumber(readString(in))
+                    .version(readLong(in))
+                    .build();
+        }
+    };
+
+    public static final ValueCodec<List<Preference>> PREFERENCE_LIST = new ValueCodec<>() {
+        @Override
+        public void write(List<Preference> preferences, DataOutput out) throws IOException {
+            out.writeByte(FORMAT_VERSION);
+            writePreferences(preferences, out);
+        }
+
+        @Override
+        public List<Preference> read(DataInput in) throws IOException {
+            checkVersion(in);
+            return readPreferences(in);
+        }
+    };
+
+    /**
+     * Preference list layout persisted by the single-item document storage mode. Unlike the cache
+     * codecs these bytes outlive a deployment: a layout change needs a new
+     * {@link #DOCUMENT_FORMAT_VERSION} and {@code read} must keep accepting every older one.
+     */
+    public static final ValueCodec<List<Preference>> PREFERENCE_DOCUMENT = new ValueCodec<>() {
+        @Override
+        public void write(List<Preference> preferences, DataOutput out) throws IOException {
+            out.writeByte(DOCUMENT_FORMAT_VERSION);
+            writePreferences(preferences, out);
+        }
+
+        @Override
+        public List<Preference> read(DataInput in) throws IOException {
+            byte version = in.readByte();
+            if (version != DOCUMENT_FORMAT_VERSION) {
+                throw new IOException("Unsupported preference document version: " + version);
+            }
+            return readPreferences(in);
+        }
+    };
+
+    private CompactCodecs() {
+    }
+
+    private static void checkVersion(DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported cache format version: " + version);
+        }
+    }
+
+    private static void writePreferences(List<Preference> preferences, DataOutput out) throws IOException {
+        out.writeInt(preferences.size());
+        for (Preference preference : preferences) {
+            writeString(out, preference.getProfileId());
+            writeString(out, preference.getPreferenceId());
+            out.writeByte(preference.getType() != null ? preference.getType().ordinal() : -1);
+            writeString(out, preference.getValue());
+            out.writeBoolean(preference.getIndex() != null);
+            if (preference.getIndex() != null) {
+                out.writeInt(preference.getIndex());
+            }
+            writeString(out, preference.getRank());
+            out.writeBoolean(preference.getWeight() != null);
+            if (preference.getWeight() != null) {
+                out.writeDouble(preference.getWeight());
+            }
+            out.writeByte(preference.getIsUserSet() == null ? -1 : preference.getIsUserSet() ? 1 : 0);
+            writeInstant(out, preference.getCreatedAt());
+            writeInstant(out, preference.getUpdatedAt());
+        }
+    }
+
+    private static List<Preference> readPreferences(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<Preference> preferences = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Preference preference = new Preference();
+            preference.setProfileId(readString(in));
+            preference.setPreferenceId(readString(in));
+            byte type = in.readByte();
+            preference.setType(type >= 0 ? PREFERENCE_TYPES[type] : null);
+            preference.setValue(readString(in));
+            preference.setIndex(in.readBoolean() ? in.readInt() : null);
+            preference.setRank(readString(in));
+            preference.setWeight(in.readBoolean() ? in.readDouble() : null);
+            byte isUserSet = in.readByte();
+            preference.setIsUserSet(isUserSet < 0 ? null : isUserSet == 1);
+            preference.setCreatedAt(readInstant(in));
+            preference.setUpdatedAt(readInstant(in));
+            preferences.add(preference);
+        }
+        return preferences;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeInstant(DataOutput out, Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getEpochSecond());
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInput in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+}
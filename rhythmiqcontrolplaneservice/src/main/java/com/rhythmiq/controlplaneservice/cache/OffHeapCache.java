@@ -0,0 +1,355 @@
+package com.rhythmiq.controlplaneservice.cache;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Near cache that keeps serialized values in direct memory so that large populations of cached
+ * profiles and preference lists add nothing to the Java heap the collector has to trace.
+ *
+ * <p>The cache is split into lock-striped segments. Each segment owns one direct buffer carved into
+ * fixed-size blocks; a value occupies as many blocks as it needs, so there is no fragmentation to
+ * compact. Eviction is segmented LRU: new entries land in a probation queue and are promoted to a
+ * protected queue on their second hit, so a one-off scan cannot flush the hot set. Protected entries
+ * that overflow their share are demoted back to probation rather than dropped.
+ *
+ * <p>Hits are decoded straight from the blocks by the caller's {@link ValueCodec}; no intermediate
+ * heap copy of the bytes is made. Values larger than a segment are not cached. Entries expire after a
+ * fixed time-to-live, which bounds how stale a value written by another process can be.
+ */
+@Log4j2
+public final class OffHeapCache {
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public OffHeapCache(long capacityBytes, Duration ttl) {
+        this(capacityBytes, ttl, DEFAULT_BLOCK_SIZE, DEFAULT_SEGMENTS);
+    }
+
+    public OffHeapCache(long capacityBytes, Duration ttl, int blockSize, int segmentCount) {
+        if (blockSize <= 0 || segmentCount <= 0 || !ttl.isPositive()) {
+            throw new IllegalArgumentException("Block size, segment count and TTL must be positive");
+        }
+        this.ttlNanos = ttl.toNanos();
+        long blocksPerSegment = capacityBytes / segmentCount / blockSize;
+        if (blocksPerSegment <= 0 || blocksPerSegment * blockSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Unsupported off-heap cache capacity: " + capacityBytes);
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment((int) blocksPerSegment, blockSize);
+        }
+        log.info("Allocated off-heap cache: {} bytes in {} segments", blocksPerSegment * blockSize * segmentCount,
+                segmentCount);
+    }
+
+    /** Returns the decoded value for {@code key}, or {@code null} if it is not cached. */
+    public <T> T get(String key, ValueCodec<T> codec) {
+        T value = segmentFor(key).get(key, codec);
+        (value != null ? hits : misses).incrementAndGet();
+        return value;
+    }
+
+    public <T> void put(String key, T value, ValueCodec<T> codec) {
+        put(key, codec.encode(value));
+    }
+
+    public void put(String key, byte[] bytes) {
+        segmentFor(key).put(key, bytes, null);
+    }
+
+    /**
+     * Stores {@code value} only if {@code condition} still holds once the key's segment is locked.
+     * Readers filling the cache after a miss use this with a check that no write has happened since
+     * the read began, so a slow read cannot overwrite a newer value put or removed by a writer.
+     */
+    public <T> void putIf(String key, T value, ValueCodec<T> codec, BooleanSupplier condition) {
+        segmentFor(key).put(key, codec.encode(value), condition);
+    }
+
+    public void remove(String key) {
+        segmentFor(key).remove(key);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /** Off-heap bytes currently held by cached values, counted in whole blocks. */
+    public long usedBytes() {
+        long used = 0;
+        for (Segment segment : segments) {
+            used += segment.usedBytes();
+        }
+        return used;
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[Math.floorMod(hash, segments.length)];
+    }
+
+    private record Entry(int[] blocks, int length, long expiresAt) {
+    }
+
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ByteBuffer slab;
+        private final int blockSize;
+        private final int[] freeBlocks;
+        private int freeCount;
+        private final int protectedCapacity;
+        private int protectedBlocks;
+        // Both maps are kept in LRU-to-MRU order; a hit re-inserts the entry at the tail.
+        private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Entry> protectedEntries = new LinkedHashMap<>();
+
+        Segment(int blockCount, int blockSize) {
+            this.slab = ByteBuffer.allocateDirect(blockCount * blockSize);
+            this.blockSize = blockSize;
+            this.freeBlocks = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                freeBlocks[i] = blockCount - 1 - i;
+            }
+            this.freeCount = blockCount;
+            this.protectedCapacity = (int) (blockCount * PROTECTED_RATIO);
+        }
+
+        <T> T get(String key, ValueCodec<T> codec) {
+            lock.lock();
+            try {
+                Entry entry = protectedEntries.get(key);
+                if (entry == null) {
+                    entry = probation.get(key);
+                }
+                if (entry == null) {
+                    return null;
+                }
+                if (System.nanoTime() - entry.expiresAt() >= 0) {
+                    release(key);
+                    return null;
+                }
+                if (protectedEntries.remove(key) != null) {
+                    protectedEntries.put(key, entry);
+                } else {
+                    probation.remove(key);
+                    promote(key, entry);
+                }
+                T value = decode(entry, codec);
+                if (value == null) {
+                    release(key);
+                }
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(String key, byte[] bytes, BooleanSupplier condition) {
+            int needed = Math.max(1, (bytes.length + blockSize - 1) / blockSize);
+            if (needed > freeBlocks.length) {
+                remove(key);
+                return;
+            }
+            lock.lock();
+            try {
+                if (condition != null && !condition.getAsBoolean()) {
+                    return;
+                }
+                release(key);
+                while (freeCount < needed) {
+                    evictOne();
+                }
+                int[] blocks = new int[needed];
+                for (int i = 0; i < needed; i++) {
+                    int block = freeBlocks[--freeCount];
+                    blocks[i] = block;
+                    int offset = i * blockSize;
+                    slab.put(block * blockSize, bytes, offset, Math.min(blockSize, bytes.length - offset));
+                }
+                probation.put(key, new Entry(blocks, bytes.length, System.nanoTime() + ttlNanos));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(String key) {
+            lock.lock();
+            try {
+                release(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                probation.values().forEach(this::free);
+                protectedEntries.values().forEach(this::free);
+                probation.clear();
+                protectedEntries.clear();
+                protectedBlocks = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return probation.size() + protectedEntries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long usedBytes() {
+            lock.lock();
+            try {
+                return (long) (freeBlocks.length - freeCount) * blockSize;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void promote(String key, Entry entry) {
+            protectedEntries.put(key, entry);
+            protectedBlocks += entry.blocks().length;
+            Iterator<Map.Entry<String, Entry>> lru = protectedEntries.entrySet().iterator();
+            while (protectedBlocks > protectedCapacity && lru.hasNext()) {
+                Map.Entry<String, Entry> demoted = lru.next();
+                if (demoted.getKey().equals(key)) {
+                    break;
+                }
+                lru.remove();
+                protectedBlocks -= demoted.getValue().blocks().length;
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+
+        private void release(String key) {
+            Entry entry = probation.remove(key);
+            if (entry == null) {
+                entry = protectedEntries.remove(key);
+                if (entry != null) {
+                    protectedBlocks -= entry.blocks().length;
+                }
+            }
+            if (entry != null) {
+                free(entry);
+            }
+        }
+
+        private void evictOne() {
+            LinkedHashMap<String, Entry> victims = probation.isEmpty() ? protectedEntries : probation;
+            Iterator<Entry> lru = victims.values().iterator();
+            Entry victim = lru.next();
+            lru.remove();
+            if (victims == protectedEntries) {
+                protectedBlocks -= victim.blocks().length;
+            }
+            free(victim);
+            evictions.incrementAndGet();
+        }
+
+        private void free(Entry entry) {
+            for (int block : entry.blocks()) {
+                freeBlocks[freeCount++] = block;
+            }
+        }
+
+        private <T> T decode(Entry entry, ValueCodec<T> codec) {
+            try {
+                return codec.read(new DataInputStream(new BlockInputStream(entry)));
+            } catch (IOException e) {
+                log.warn("Dropping unreadable off-heap cache entry", e);
+                return null;
+            }
+        }
+
+        /** Reads an entry's bytes in place from the slab. Only valid while the segment lock is held. */
+        private final class BlockInputStream extends InputStream {
+            private final Entry entry;
+            private int position;
+
+            BlockInputStream(Entry entry) {
+                this.entry = entry;
+            }
+
+            @Override
+            public int read() {
+                if (position >= entry.length()) {
+                    return -1;
+                }
+                int block = entry.blocks()[position / blockSize];
+                byte value = slab.get(block * blockSize + position % blockSize);
+                position++;
+                return value & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] destination, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                int remaining = entry.length() - position;
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int block = entry.blocks()[position / blockSize];
+                int inBlock = position % blockSize;
+                int count = Math.min(length, Math.min(remaining, blockSize - inBlock));
+                slab.get(block * blockSize + inBlock, destination, offset, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return entry.length() - position;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.rhythmiq.controlplaneservice.cache;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Cache settings for one table. {@code keyAttributes} are the table's primary key attributes and are
+ * used to find the cached item a write touches. A zero TTL or size disables that part of the cache.
+ */
+public record TableCacheConfig(
+        String tableName,
+        List<String> keyAttributes,
+        Duration itemTtl,
+        long maxItems,
+        Duration queryTtl,
+        long maxQueries) {
+
+    public TableCacheConfig {
+        if (keyAttributes == null || keyAttributes.isEmpty() || keyAttributes.size() > 2) {
+            throw new IllegalArgumentException("A table key has one or two attributes: " + tableName);
+        }
+        keyAttributes = List.copyOf(keyAttributes);
+    }
+
+    public static TableCacheConfig items(String tableName, List<String> keyAttributes, Duration ttl, long maxItems) {
+        return new TableCacheConfig(tableName, keyAttributes, ttl, maxItems, Duration.ZERO, 0);
+    }
+
+    public TableCacheConfig withQueries(Duration ttl, long maxQueries) {
+        return new TableCacheConfig(tableName, keyAttributes, itemTtl, maxItems, ttl, maxQueries);
+    }
+
+    boolean cachesItems() {
+        return maxItems > 0 && itemTtl.isPositive();
+    }
+
+    boolean cachesQueries() {
+        return maxQueries > 0 && queryTtl.isPositive();
+    }
+}
@@ -20,10 +20,17 @@ public abstract class BaseLambdaHandler implements RequestHandler<APIGatewayProx
     public abstract APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context);
 
     protected APIGatewayProxyResponseEvent createSuccessResponse(int statusCode, Object responseBody) {
+        return createSuccessResponse(statusCode, responseBody, Map.of());
+    }
+
+    protected APIGatewayProxyResponseEvent createSuccessResponse(int statusCode, Object responseBody,
+                                                                 Map<String, String> extraHeaders) {
+        Map<String, String> headers = getHeaders();
+        headers.putAll(extraHeaders);
         try {
             return new APIGatewayProxyResponseEvent()
                     .withStatusCode(statusCode)
-                    .withHeaders(getHeaders())
+                    .withHeaders(headers)
                     .withBody(objectMapper.writeValueAsString(responseBody));
         } catch (Exception e) {
             log.error("Failed to serialize response", e);
@@ -48,6 +55,34 @@ public abstract class BaseLambdaHandler implements RequestHandler<APIGatewayProx
         }
     }
 
+    protected APIGatewayProxyResponseEvent createNotModifiedResponse(String etag) {
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(304)
+                .withHeaders(Map.of("ETag", etag));
+    }
+
+    /**
+     * Looks up a request header ignoring case, since API Gateway forwards header names as the
+     * client sent them.
+     */
+    protected String getHeader(APIGatewayProxyRequestEvent request, String name) {
+        Map<String, String> headers = request.getHeaders();
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    protected String getQueryParameter(APIGatewayProxyRequestEvent request, String name) {
+        Map<String, String> parameters = request.getQueryStringParameters();
+        return parameters != null ? parameters.get(name) : null;
+    }
+
     private Map<String, String> getHeaders() {
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "application/json");
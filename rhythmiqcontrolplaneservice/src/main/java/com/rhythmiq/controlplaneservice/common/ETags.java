@@ -0,0 +1,75 @@
+package com.rhythmiq.controlplaneservice.common;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Builds and compares the entity tags used for conditional requests. An ETag is the profile's
+ * {@code version} number in quotes; items written before versioning existed are treated as version 0.
+ * A projection selected with {@code fields=} is a different representation, so its ETag also names
+ * the sorted field set, as in {@code "3;email,username"}.
+ */
+public final class ETags {
+    private ETags() {
+    }
+
+    public static String of(Long version) {
+        return of(version, null);
+    }
+
+    /** The ETag of the given projection; {@code null} or empty {@code fields} is the whole profile. */
+    public static String of(Long version, Set<String> fields) {
+        String tag = Long.toString(version != null ? version : 0L);
+        if (fields != null && !fields.isEmpty()) {
+            tag += ";" + String.join(",", new TreeSet<>(fields));
+        }
+        return "\"" + tag + "\"";
+    }
+
+    /**
+     * Evaluates an {@code If-None-Match} header against the current ETag using weak comparison, so
+     * {@code W/"3"} matches {@code "3"}. A {@code null} header never matches.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(stripWeak(etag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the version out of an {@code If-Match} header. Returns {@code null} when the header is
+     * missing or {@code *}. Weak or malformed tags are rejected because If-Match uses strong comparison.
+     * The ETag of a projection is accepted too: it pins the same version as the whole profile's.
+     */
+    public static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new IllegalArgumentException("Invalid If-Match header: " + ifMatch);
+        }
+        String opaque = tag.substring(1, tag.length() - 1);
+        int fields = opaque.indexOf(';');
+        try {
+            long version = Long.parseLong(fields >= 0 ? opaque.substring(0, fields) : opaque);
+            if (version < 0) {
+                throw new IllegalArgumentException("Invalid If-Match header: " + ifMatch);
+            }
+            return version;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid If-Match header: " + ifMatch, e);
+        }
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
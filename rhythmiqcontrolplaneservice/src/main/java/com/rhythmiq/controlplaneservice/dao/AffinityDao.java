@@ -0,0 +1,137 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import com.rhythmiq.controlplaneservice.model.Affinity;
+import com.rhythmiq.controlplaneservice.model.Preference;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores a profile's inferred affinities on an {@value #AFFINITY_ID} metadata item in the preferences
+ * table, one map attribute ({@code score}, {@code updatedAt}) per artist or genre. A write sets and
+ * removes only the affinities it names, so an event costs one attribute per artist and genre of the
+ * song rather than a rewrite of the profile's history. Writes are conditioned on the version they were
+ * read at.
+ */
+@Singleton
+public class AffinityDao {
+    static final String AFFINITY_ID = "#AFFINITY";
+    private static final String TABLE_NAME = "Preferences";
+    private static final String ATTRIBUTE_PREFIX = "a:";
+    private static final String VERSION_ATTRIBUTE = "version";
+
+    private final DynamoDbClient dynamoDbClient;
+
+    @Inject
+    public AffinityDao(DynamoDbClient dynamoDbClient) {
+        this.dynamoDbClient = dynamoDbClient;
+    }
+
+    /** Reads a profile's affinities with a consistent read; a profile without any has version 0. */
+    public Snapshot load(String profileId) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+            .tableName(TABLE_NAME)
+            .key(key(profileId))
+            .consistentRead(true)
+            .build());
+        if (!response.hasItem() || response.item().isEmpty()) {
+            return new Snapshot(new HashMap<>(), 0);
+        }
+        Map<String, Affinity> affinities = new HashMap<>();
+        response.item().forEach((name, value) -> {
+            if (!name.startsWith(ATTRIBUTE_PREFIX)) {
+                return;
+            }
+            int separator = name.indexOf(':', ATTRIBUTE_PREFIX.length());
+            Preference.PreferenceType type = Preference.PreferenceType.valueOf(
+                name.substring(ATTRIBUTE_PREFIX.length(), separator));
+            Map<String, AttributeValue> fields = value.m();
+            affinities.put(name, new Affinity(type, name.substring(separator + 1),
+                Double.parseDouble(fields.get("score").n()),
+                Instant.ofEpochMilli(Long.parseLong(fields.get("updatedAt").n()))));
+        });
+        return new Snapshot(affinities, Long.parseLong(response.item().get(VERSION_ATTRIBUTE).n()));
+    }
+
+    /**
+     * Sets {@code updated} and removes {@code removed} in one {@code UpdateItem}, provided the item is
+     * still at {@code expectedVersion}.
+     *
+     * @throws ConditionalCheckFailedException if the affinities changed since they were loaded
+     */
+    public void write(String profileId, Collection<Affinity> updated, Collection<Affinity> removed, long expectedVersion) {
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        List<String> sets = new ArrayList<>();
+        int i = 0;
+        for (Affinity affinity : updated) {
+            names.put("#a" + i, attributeName(affinity));
+            values.put(":a" + i, AttributeValue.builder().m(Map.of(
+                "score", AttributeValue.builder().n(Double.toString(affinity.score())).build(),
+                "updatedAt", AttributeValue.builder().n(Long.toString(affinity.updatedAt().toEpochMilli())).build()))
+                .build());
+            sets.add("#a" + i + " = :a" + i);
+            i++;
+        }
+        List<String> removes = new ArrayList<>();
+        for (Affinity affinity : removed) {
+            names.put("#a" + i, attributeName(affinity));
+            removes.add("#a" + i);
+            i++;
+        }
+        names.put("#version", VERSION_ATTRIBUTE);
+        values.put(":nextVersion", AttributeValue.builder().n(Long.toString(expectedVersion + 1)).build());
+        sets.add("#version = :nextVersion");
+
+        StringBuilder expression = new StringBuilder("SET ").append(String.join(", ", sets));
+        if (!removes.isEmpty()) {
+            expression.append(" REMOVE ").append(String.join(", ", removes));
+        }
+        String condition;
+        if (expectedVersion == 0) {
+            condition = "attribute_not_exists(#version)";
+        } else {
+            condition = "#version = :expectedVersion";
+            values.put(":expectedVersion", AttributeValue.builder().n(Long.toString(expectedVersion)).build());
+        }
+        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+            .tableName(TABLE_NAME)
+            .key(key(profileId))
+            .updateExpression(expression.toString())
+            .conditionExpression(condition)
+            .expressionAttributeNames(names)
+            .expressionAttributeValues(values)
+            .build());
+    }
+
+    /** The attribute an affinity is stored under, which also identifies it within a {@link Snapshot}. */
+    public static String attributeName(Affinity affinity) {
+        return attributeName(affinity.type(), affinity.value());
+    }
+
+    public static String attributeName(Preference.PreferenceType type, String value) {
+        return ATTRIBUTE_PREFIX + type.name() + ":" + value;
+    }
+
+    private static Map<String, AttributeValue> key(String profileId) {
+        return Map.of(
+            "profileId", AttributeValue.builder().s(profileId).build(),
+            "preferenceId", AttributeValue.builder().s(AFFINITY_ID).build());
+    }
+
+    /** A profile's affinities keyed by {@link #attributeName}, with the version they were read at. */
+    public record Snapshot(Map<String, Affinity> affinities, long version) {
+    }
+}
@@ -14,10 +14,13 @@ import java.util.UUID;
 @Log4j2
 public class AiRuleDao {
     private static final String TABLE_NAME = "AiRules";
+    private static final int SCAN_SEGMENTS = 4;
     private final DynamoDbClient dynamoDbClient;
+    private final ParallelScanner scanner;
 
     public AiRuleDao(DynamoDbClient dynamoDbClient) {
         this.dynamoDbClient = dynamoDbClient;
+        this.scanner = new ParallelScanner(dynamoDbClient, SCAN_SEGMENTS);
     }
 
     public AiRule createRule(AiRule rule) {
@@ -50,13 +53,8 @@ public class AiRuleDao {
                 .tableName(TABLE_NAME)
                 .build();
 
-        ScanResponse scanResponse = dynamoDbClient.scan(scanRequest);
         List<AiRule> rules = new ArrayList<>();
-
-        for (Map<String, AttributeValue> item : scanResponse.items()) {
-            rules.add(mapToAiRule(item));
-        }
-
+        scanner.scan(scanRequest, item -> rules.add(mapToAiRule(item)));
         return rules;
     }
 
@@ -0,0 +1,37 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter for the retries the DAOs do on their own (unprocessed batch
+ * keys, throttled scan segments) on top of the SDK's retry policy.
+ */
+final class Backoff {
+    private static final long BASE_DELAY_MILLIS = 50;
+    private static final long MAX_DELAY_MILLIS = 5_000;
+
+    private Backoff() {
+    }
+
+    static long delayMillis(int attempt) {
+        long ceiling = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt - 1, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    static void pause(int attempt) throws InterruptedException {
+        Thread.sleep(delayMillis(attempt));
+    }
+
+    /**
+     * Same as {@link #pause(int)} for callers that cannot throw {@link InterruptedException}; the
+     * interrupt flag is restored and the wait surfaces as an {@link IllegalStateException}.
+     */
+    static void pauseUninterruptibly(int attempt) {
+        try {
+            pause(attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+}
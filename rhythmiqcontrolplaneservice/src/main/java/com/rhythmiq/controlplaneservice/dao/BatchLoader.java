@@ -0,0 +1,151 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces point reads that arrive within a short window into a single batch call. A key requested
+ * while no batch is in flight is sent at once, so an uncontended read never waits. Otherwise the
+ * first key of a window schedules a flush {@code window} later; keys requested again before the
+ * flush share the same future, and a window that fills up to {@code maxBatchSize} is flushed
+ * immediately.
+ *
+ * <p>The batch function receives the distinct keys and returns the values it found. Keys missing from
+ * the result complete with {@code null}; a failing batch fails every caller waiting on it.
+ */
+@Log4j2
+public final class BatchLoader<K, V> implements AutoCloseable {
+    private final Function<List<K>, Map<K, V>> batchFunction;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+    private final Object lock = new Object();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private int inFlight;
+
+    public BatchLoader(Function<List<K>, Map<K, V>> batchFunction, Duration window, int maxBatchSize) {
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Coalescing window must be positive");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.batchFunction = batchFunction;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-loader-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<V> load(K key) {
+        loads.increment();
+        Map<K, CompletableFuture<V>> ready = null;
+        CompletableFuture<V> future;
+        synchronized (lock) {
+            future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+            if (pending.size() >= maxBatchSize || (pending.size() == 1 && inFlight == 0)) {
+                ready = takePending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (ready != null) {
+            dispatch(ready);
+        }
+        return future;
+    }
+
+    /**
+     * Sends whatever is waiting right away instead of at the end of the window.
+     */
+    public void flush() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    /** Number of {@link #load} calls, including ones answered by an already pending key. */
+    public long loadCount() {
+        return loads.sum();
+    }
+
+    /** Number of batch calls issued. */
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        scheduler.shutdown();
+        dispatcher.shutdown();
+    }
+
+    private Map<K, CompletableFuture<V>> takePending() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        inFlight++;
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<K, CompletableFuture<V>> batch) {
+        batches.increment();
+        dispatcher.execute(() -> {
+            Map<K, V> results = null;
+            Throwable failure = null;
+            try {
+                results = batchFunction.apply(new ArrayList<>(batch.keySet()));
+            } catch (Throwable t) {
+                failure = t;
+            }
+            // Leave the in-flight state before waking callers, so one that reads again right away
+            // is not made to wait for a window.
+            synchronized (lock) {
+                inFlight--;
+            }
+            if (failure == null) {
+                Map<K, V> found = results;
+                batch.forEach((key, future) -> future.complete(found.get(key)));
+            } else {
+                log.warn("Batch load of {} keys failed: {}", batch.size(), failure.getMessage());
+                Throwable cause = failure;
+                batch.values().forEach(future -> future.completeExceptionally(cause));
+            }
+        });
+    }
+}
@@ -0,0 +1,100 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import com.rhythmiq.controlplaneservice.exception.UnknownFieldException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Translates a client's {@code fields=} selection into the attributes DynamoDB should return, either
+ * as a {@code ProjectionExpression} for the low-level client or as {@code attributesToProject} for
+ * the enhanced client. A projection built from a {@code null} selection reads whole items, and an
+ * unknown field name is rejected with an {@link UnknownFieldException}.
+ */
+public final class FieldProjection {
+    private static final FieldProjection ALL = new FieldProjection(List.of());
+
+    private final List<String> attributes;
+
+    private FieldProjection(List<String> attributes) {
+        this.attributes = attributes;
+    }
+
+    /**
+     * Splits a comma separated {@code fields} parameter. Returns {@code null} when the parameter is
+     * absent or blank, meaning "all fields".
+     */
+    public static Set<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        return Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * @param fields            requested API field names, or {@code null} for whole items
+     * @param attributesByField every selectable API field mapped to its DynamoDB attribute name
+     * @param keyFields         fields that are always returned so items stay addressable
+     */
+    public static FieldProjection of(Set<String> fields, Map<String, String> attributesByField, String... keyFields) {
+        if (fields == null) {
+            return ALL;
+        }
+
+        Set<String> selected = new LinkedHashSet<>(Arrays.asList(keyFields));
+        selected.addAll(fields);
+
+        List<String> attributes = new ArrayList<>();
+        for (String field : selected) {
+            String attribute = attributesByField.get(field);
+            if (attribute == null) {
+                throw new UnknownFieldException(field);
+            }
+            attributes.add(attribute);
+        }
+        return new FieldProjection(Collections.unmodifiableList(attributes));
+    }
+
+    public boolean isAll() {
+        return attributes.isEmpty();
+    }
+
+    /** Attribute names for the enhanced client's {@code attributesToProject}. */
+    public List<String> attributes() {
+        return attributes;
+    }
+
+    /** Placeholder based expression, safe for reserved words such as {@code index}; null for whole items. */
+    public String projectionExpression() {
+        if (isAll()) {
+            return null;
+        }
+        List<String> placeholders = new ArrayList<>();
+        for (int i = 0; i < attributes.size(); i++) {
+            placeholders.add("#f" + i);
+        }
+        return String.join(", ", placeholders);
+    }
+
+    /** Names backing {@link #projectionExpression()}; null for whole items. */
+    public Map<String, String> expressionAttributeNames() {
+        if (isAll()) {
+            return null;
+        }
+        Map<String, String> names = new HashMap<>();
+        for (int i = 0; i < attributes.size(); i++) {
+            names.put("#f" + i, attributes.get(i));
+        }
+        return names;
+    }
+}
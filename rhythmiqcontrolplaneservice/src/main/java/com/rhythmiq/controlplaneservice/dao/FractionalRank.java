@@ -0,0 +1,133 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lexicographically sortable ordering keys. A rank is read as the base-62 fraction
+ * {@code 0.d1d2d3...}, using digits whose ASCII order matches their value, so DynamoDB's string
+ * ordering of the sort key is the numeric ordering of the fractions. There is always room between
+ * two distinct ranks, so moving an item only ever rewrites that item's rank.
+ *
+ * <p>Ranks never end in the zero digit; otherwise nothing could be placed directly before them.
+ */
+public final class FractionalRank {
+    static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int BASE = DIGITS.length();
+    private static final char ZERO = DIGITS.charAt(0);
+
+    private FractionalRank() {
+    }
+
+    /**
+     * Returns a rank strictly between {@code before} and {@code after}. A {@code null} bound means
+     * the start or end of the list respectively.
+     */
+    public static String between(String before, String after) {
+        String low = before != null ? before : "";
+        validate(low);
+        if (after != null) {
+            validate(after);
+            if (low.compareTo(after) >= 0) {
+                throw new IllegalArgumentException("Rank " + low + " does not sort before " + after);
+            }
+        }
+        return midpoint(low, after);
+    }
+
+    /**
+     * Returns {@code count} increasing ranks strictly between {@code before} and {@code after}. The
+     * interval is split by repeated midpoints rather than filled one rank after the other, so the
+     * ranks grow by about one digit per 62-fold increase of {@code count} instead of one per six.
+     */
+    public static List<String> between(String before, String after, int count) {
+        List<String> ranks = new ArrayList<>(count);
+        fill(ranks, before, after, count);
+        return ranks;
+    }
+
+    /**
+     * Returns {@code count} evenly spaced ranks of equal, minimal length, leaving the same gap
+     * before the first and after the last. Used to seed and to rebalance a list.
+     */
+    public static List<String> spread(int count) {
+        int width = 1;
+        long slots = BASE;
+        while (slots <= count) {
+            width++;
+            slots *= BASE;
+        }
+        List<String> ranks = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            ranks.add(stripZeros(encode(slots * i / (count + 1), width)));
+        }
+        return ranks;
+    }
+
+    private static void fill(List<String> ranks, String before, String after, int count) {
+        if (count == 0) {
+            return;
+        }
+        String middle = between(before, after);
+        int left = (count - 1) / 2;
+        fill(ranks, before, middle, left);
+        ranks.add(middle);
+        fill(ranks, middle, after, count - 1 - left);
+    }
+
+    private static String midpoint(String low, String high) {
+        if (high != null) {
+            // Copy the common prefix; low is padded with zero digits where it is shorter.
+            int prefix = 0;
+            while (prefix < high.length() && digitAt(low, prefix) == high.charAt(prefix)) {
+                prefix++;
+            }
+            if (prefix > 0) {
+                return high.substring(0, prefix)
+                        + midpoint(low.substring(Math.min(prefix, low.length())), high.substring(prefix));
+            }
+        }
+
+        int lowDigit = low.isEmpty() ? 0 : DIGITS.indexOf(low.charAt(0));
+        int highDigit = high != null ? DIGITS.indexOf(high.charAt(0)) : BASE;
+        if (highDigit - lowDigit > 1) {
+            return String.valueOf(DIGITS.charAt((lowDigit + highDigit) / 2));
+        }
+        if (high != null && high.length() > 1) {
+            return high.substring(0, 1);
+        }
+        return DIGITS.charAt(lowDigit) + midpoint(low.isEmpty() ? "" : low.substring(1), null);
+    }
+
+    private static char digitAt(String rank, int position) {
+        return position < rank.length() ? rank.charAt(position) : ZERO;
+    }
+
+    private static String encode(long value, int width) {
+        char[] digits = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = DIGITS.charAt((int) (value % BASE));
+            value /= BASE;
+        }
+        return new String(digits);
+    }
+
+    private static String stripZeros(String rank) {
+        int end = rank.length();
+        while (end > 0 && rank.charAt(end - 1) == ZERO) {
+            end--;
+        }
+        return rank.substring(0, end);
+    }
+
+    private static void validate(String rank) {
+        for (int i = 0; i < rank.length(); i++) {
+            if (DIGITS.indexOf(rank.charAt(i)) < 0) {
+                throw new IllegalArgumentException("Invalid rank: " + rank);
+            }
+        }
+        if (!rank.isEmpty() && rank.charAt(rank.length() - 1) == ZERO) {
+            throw new IllegalArgumentException("Rank must not end in " + ZERO + ": " + rank);
+        }
+    }
+}
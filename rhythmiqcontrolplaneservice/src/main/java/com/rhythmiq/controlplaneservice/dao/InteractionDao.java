@@ -1,47 +1,273 @@
 package com.rhythmiq.controlplaneservice.dao;
 
 import com.rhythmiq.controlplaneservice.model.Interaction;
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactWriteItemsEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.UpdateItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.Delete;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+import lombok.extern.log4j.Log4j2;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+@Log4j2
 @Singleton
-public class InteractionDao {
-    private static final String TYPE_INDEX = "TypeIndex";
+public class InteractionDao implements AutoCloseable {
     private static final String USER_SONG_INDEX = "UserSongIndex";
     private static final String SONG_ID_INDEX = "SongIdIndex";
     private static final String TABLE_NAME = "Interactions";
+    private static final int MAX_QUERY_PAGE_SIZE = 1_000;
+    // Attributes that make up the LastEvaluatedKey of a query on the table and on each index.
+    private static final List<String> TABLE_KEY = List.of("userId", "interactionId");
+    private static final List<String> TYPE_SHARD_INDEX_KEY = List.of("userId", "interactionId", "typeShard", "createdAt");
+    private static final List<String> USER_SONG_INDEX_KEY = List.of("userId", "interactionId", "songId");
+    private static final List<String> SONG_ID_INDEX_KEY = List.of("userId", "interactionId", "songId", "createdAt");
+    private static final Map<String, String> INTERACTION_FIELDS = Stream.of(
+                    "userId", "interactionId", "songId", "type", "rating", "feedback", "createdAt")
+            .collect(Collectors.toMap(Function.identity(), Function.identity()));
+    // BatchWriteItem accepts at most 25 requests.
+    private static final int BATCH_WRITE_SIZE = 25;
+    private static final int DEFAULT_WRITE_QUEUE_CAPACITY = 10_000;
+    private static final int DEFAULT_WRITE_FLUSHERS = 4;
+    // How far ahead of this host's clock another writer's interaction ids may be and still be read.
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
+    private static final Expression INTERACTION_EXISTS = Expression.builder()
+            .expression("attribute_exists(interactionId)")
+            .build();
+    public static final int DEFAULT_TYPE_SHARDS = 8;
+    private static final Comparator<Interaction> BY_CREATED_AT =
+            Comparator.comparing(Interaction::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()));
+    private final DynamoDbEnhancedClient dynamoDbClient;
     private final DynamoDbTable<Interaction> table;
+    private final WriteBehindBuffer<Interaction> writeBuffer;
+    private final int typeShards;
+    private final InteractionRollupDao rollups;
+    private final Consumer<Interaction> writeListener;
+    private final ExecutorService shardReaders = Executors.newVirtualThreadPerTaskExecutor();
 
-    @Inject
     public InteractionDao(DynamoDbEnhancedClient dynamoDbClient) {
+        this(dynamoDbClient, (Duration) null);
+    }
+
+    @Inject
+    public InteractionDao(DynamoDbEnhancedClient dynamoDbClient, InteractionRollupDao rollups) {
+        this(dynamoDbClient, null, DEFAULT_WRITE_QUEUE_CAPACITY, DEFAULT_WRITE_FLUSHERS, DEFAULT_TYPE_SHARDS, rollups);
+    }
+
+    /**
+     * @param flushDeadline longest an interaction passed to {@link #createInteractionAsync} waits for its
+     *                      batch to fill up before it is written anyway; {@code null} writes each one
+     *                      synchronously
+     */
+    public InteractionDao(DynamoDbEnhancedClient dynamoDbClient, Duration flushDeadline) {
+        this(dynamoDbClient, flushDeadline, DEFAULT_WRITE_QUEUE_CAPACITY, DEFAULT_WRITE_FLUSHERS);
+    }
+
+    public InteractionDao(DynamoDbEnhancedClient dynamoDbClient, Duration flushDeadline, int queueCapacity, int flushers) {
+        this(dynamoDbClient, flushDeadline, queueCapacity, flushers, DEFAULT_TYPE_SHARDS);
+    }
+
+    /**
+     * @param typeShards number of {@code typeShard} values each interaction type is spread over. Writers
+     *                   and readers must agree on it; when raising it, raise it on readers first, since
+     *                   querying shards nobody writes to only costs an empty query each.
+     */
+    public InteractionDao(DynamoDbEnhancedClient dynamoDbClient, Duration flushDeadline, int queueCapacity, int flushers,
+                          int typeShards) {
+        this(dynamoDbClient, flushDeadline, queueCapacity, flushers, typeShards, null);
+    }
+
+    /**
+     * @param rollups per-user, per-song counters kept up to date with every interaction created here,
+     *                or {@code null} to keep none
+     */
+    public InteractionDao(DynamoDbEnhancedClient dynamoDbClient, Duration flushDeadline, int queueCapacity, int flushers,
+                          int typeShards, InteractionRollupDao rollups) {
+        this(dynamoDbClient, flushDeadline, queueCapacity, flushers, typeShards, rollups, null);
+    }
+
+    /**
+     * @param writeListener called with every interaction once it is stored, for example the
+     *                      {@code accept} method of an {@code ImplicitPreferenceEngine}; its failures
+     *                      are logged and do not fail the write. {@code null} for none
+     */
+    public InteractionDao(DynamoDbEnhancedClient dynamoDbClient, Duration flushDeadline, int queueCapacity, int flushers,
+                          int typeShards, InteractionRollupDao rollups, Consumer<Interaction> writeListener) {
+        if (typeShards < 1) {
+            throw new IllegalArgumentException("typeShards must be at least 1");
+        }
+        this.typeShards = typeShards;
+        this.rollups = rollups;
+        this.writeListener = writeListener;
+        this.dynamoDbClient = dynamoDbClient;
         this.table = dynamoDbClient.table(TABLE_NAME, TableSchema.fromBean(Interaction.class));
+        this.writeBuffer = flushDeadline != null
+                ? new WriteBehindBuffer<>(this::writeBatch, BATCH_WRITE_SIZE, flushDeadline, queueCapacity, flushers)
+                : null;
     }
 
     public Interaction createInteraction(String userId, String songId, Interaction.InteractionType type, Double rating, String feedback) {
-        String interactionId = UUID.randomUUID().toString();
-        Interaction interaction = Interaction.builder()
+        Interaction interaction = newInteraction(userId, songId, type, rating, feedback);
+        if (rollups == null) {
+            table.putItem(interaction);
+        } else {
+            rollups.putWithRollup(interactionPut(interaction), interaction);
+        }
+        notifyWritten(List.of(interaction));
+        return interaction;
+    }
+
+    /**
+     * Queues the interaction for a batched write. The future completes with the interaction once it
+     * has been written, or exceptionally if the write failed; without a flush deadline the write
+     * happens before this returns.
+     *
+     * @throws RejectedExecutionException if the write queue is full, which callers should treat as
+     *                                    a signal to shed or slow down
+     */
+    public CompletableFuture<Interaction> createInteractionAsync(String userId, String songId, Interaction.InteractionType type,
+                                                                 Double rating, String feedback) {
+        if (writeBuffer == null) {
+            return CompletableFuture.completedFuture(createInteraction(userId, songId, type, rating, feedback));
+        }
+        return writeBuffer.submit(newInteraction(userId, songId, type, rating, feedback));
+    }
+
+    /** Writes out any queued interactions. */
+    @Override
+    public void close() {
+        if (writeBuffer != null) {
+            writeBuffer.close();
+        }
+        shardReaders.shutdown();
+    }
+
+    /**
+     * The {@code typeShard} of an interaction: its type and a shard picked by hashing the interaction
+     * id, so that one type's writes are spread evenly over {@code shards} index partitions.
+     */
+    public static String typeShard(Interaction.InteractionType type, String interactionId, int shards) {
+        int hash = interactionId.hashCode() * 0x9E3779B9;
+        return type.name() + "#" + Math.floorMod(hash ^ (hash >>> 16), shards);
+    }
+
+    private Interaction newInteraction(String userId, String songId, Interaction.InteractionType type, Double rating,
+                                              String feedback) {
+        Instant createdAt = Instant.now();
+        String interactionId = Ulid.next(createdAt);
+        return Interaction.builder()
                 .userId(userId)
                 .interactionId(interactionId)
                 .songId(songId)
                 .type(type)
                 .rating(rating)
                 .feedback(feedback)
-                .createdAt(Instant.now())
+                .createdAt(createdAt)
+                .typeShard(typeShard(type, interactionId, typeShards))
                 .build();
+    }
 
-        table.putItem(interaction);
-        return interaction;
+    private Put interactionPut(Interaction interaction) {
+        return Put.builder()
+                .tableName(TABLE_NAME)
+                .item(table.tableSchema().itemToMap(interaction, true))
+                .build();
+    }
+
+    /**
+     * Writes one {@code BatchWriteItem} and returns the interactions DynamoDB left unprocessed. With
+     * rollups the batch goes out as a transaction instead; see {@link #writeBatchWithRollups}.
+     */
+    private List<Interaction> writeBatch(List<Interaction> interactions) {
+        if (rollups != null) {
+            return writeBatchWithRollups(interactions);
+        }
+        WriteBatch.Builder<Interaction> batch = WriteBatch.builder(Interaction.class).mappedTableResource(table);
+        Map<String, Interaction> byKey = new HashMap<>();
+        for (Interaction interaction : interactions) {
+            batch.addPutItem(interaction);
+            byKey.put(interaction.getUserId() + "#" + interaction.getInteractionId(), interaction);
+        }
+        List<Interaction> unprocessed = new ArrayList<>();
+        dynamoDbClient.batchWriteItem(BatchWriteItemEnhancedRequest.builder().writeBatches(batch.build()).build())
+                .unprocessedPutItemsForTable(table)
+                .forEach(item -> unprocessed.add(byKey.get(item.getUserId() + "#" + item.getInteractionId())));
+        if (writeListener != null) {
+            Map<Interaction, Boolean> skipped = new IdentityHashMap<>();
+            unprocessed.forEach(interaction -> skipped.put(interaction, true));
+            notifyWritten(interactions.stream().filter(interaction -> !skipped.containsKey(interaction)).toList());
+        }
+        return unprocessed;
+    }
+
+    /**
+     * Writes the batch together with its rollup updates in one transaction, so the counters cannot
+     * drift from the interactions stored, the same guarantee {@link #createInteraction} gets from
+     * {@link InteractionRollupDao#putWithRollup}. A transaction cancelled by a conflicting write hands
+     * the whole batch back to be retried; any other failure fails every interaction in it.
+     */
+    private List<Interaction> writeBatchWithRollups(List<Interaction> interactions) {
+        try {
+            rollups.putAllWithRollups(interactions.stream().map(this::interactionPut).toList(), interactions);
+        } catch (TransactionCanceledException e) {
+            if (e.hasCancellationReasons() && e.cancellationReasons().stream()
+                    .anyMatch(reason -> "TransactionConflict".equals(reason.code()))) {
+                return interactions;
+            }
+            throw e;
+        }
+        notifyWritten(interactions);
+        return List.of();
+    }
+
+    private void notifyWritten(List<Interaction> written) {
+        if (writeListener == null) {
+            return;
+        }
+        for (Interaction interaction : written) {
+            try {
+                writeListener.accept(interaction);
+            } catch (RuntimeException e) {
+                log.warn("Interaction write listener failed for {}", interaction.getInteractionId(), e);
+            }
+        }
     }
 
     public Interaction getInteraction(String userId, String interactionId) {
@@ -62,6 +288,224 @@ public class InteractionDao {
         return interactions;
     }
 
+    public List<Interaction> getUserInteractions(String userId, Set<String> fields) {
+        FieldProjection projection = FieldProjection.of(fields, INTERACTION_FIELDS, "userId", "interactionId");
+        if (projection.isAll()) {
+            return getUserInteractions(userId);
+        }
+
+        List<Interaction> interactions = new ArrayList<>();
+        table.query(QueryEnhancedRequest.builder()
+                        .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(userId).build()))
+                        .attributesToProject(projection.attributes())
+                        .build())
+                .items()
+                .forEach(interactions::add);
+        return interactions;
+    }
+
+    /**
+     * Lazily pages through the user's interactions, {@code pageSize} at a time, stopping after
+     * {@code limit} of them ({@code null} for no limit). {@code exclusiveStartKey} is a token from a
+     * previous cursor's {@link QueryCursor#nextToken()}, or {@code null} to start at the beginning.
+     */
+    public QueryCursor<Interaction> queryUserInteractions(String userId, Integer limit, int pageSize, String exclusiveStartKey) {
+        QueryConditional condition = QueryConditional.keyEqualTo(Key.builder().partitionValue(userId).build());
+        return cursor(startKey -> table.query(pagedQuery(condition, pageSize, startKey)), TABLE_KEY, limit, pageSize, exclusiveStartKey);
+    }
+
+    /** Same as {@link #queryUserInteractions}, for {@link #getUserSongInteractions}. */
+    public QueryCursor<Interaction> queryUserSongInteractions(String userId, String songId, Integer limit, int pageSize,
+                                                              String exclusiveStartKey) {
+        QueryConditional condition = QueryConditional.keyEqualTo(Key.builder().partitionValue(userId).sortValue(songId).build());
+        return cursor(startKey -> table.index(USER_SONG_INDEX).query(pagedQuery(condition, pageSize, startKey)),
+                USER_SONG_INDEX_KEY, limit, pageSize, exclusiveStartKey);
+    }
+
+    /**
+     * Same as {@link #queryUserInteractions}, for {@link #getInteractionsByType}: one query per type
+     * shard, merged by {@code createdAt}. The first page of every shard is read in parallel, so a page
+     * costs up to {@code typeShards} queries of {@code pageSize} items each.
+     */
+    public MergedQueryCursor<Interaction> queryInteractionsByType(Interaction.InteractionType type, Integer limit, int pageSize,
+                                                                  String exclusiveStartKey) {
+        validatePageSize(pageSize);
+        List<Function<Map<String, AttributeValue>, SdkIterable<Page<Interaction>>>> shardQueries = new ArrayList<>(typeShards);
+        for (int shard = 0; shard < typeShards; shard++) {
+            QueryConditional condition = typeShardCondition(type, shard);
+            shardQueries.add(startKey -> table.index(Interaction.TYPE_SHARD_INDEX).query(pagedQuery(condition, pageSize, startKey)));
+        }
+        return new MergedQueryCursor<>(shardQueries, item -> table.tableSchema().itemToMap(item, TYPE_SHARD_INDEX_KEY),
+                BY_CREATED_AT, exclusiveStartKey, limit, shardReaders);
+    }
+
+    /** Same as {@link #queryUserInteractions}, for {@link #getInteractionsBySong}. */
+    public QueryCursor<Interaction> queryInteractionsBySong(String songId, Integer limit, int pageSize, String exclusiveStartKey) {
+        QueryConditional condition = QueryConditional.keyEqualTo(Key.builder().partitionValue(songId).build());
+        return cursor(startKey -> table.index(SONG_ID_INDEX).query(pagedQuery(condition, pageSize, startKey)),
+                SONG_ID_INDEX_KEY, limit, pageSize, exclusiveStartKey);
+    }
+
+    private QueryCursor<Interaction> cursor(Function<Map<String, AttributeValue>, SdkIterable<Page<Interaction>>> query,
+                                            List<String> keyAttributes, Integer limit, int pageSize, String exclusiveStartKey) {
+        validatePageSize(pageSize);
+        return new QueryCursor<>(query, item -> table.tableSchema().itemToMap(item, keyAttributes),
+                PaginationToken.decode(exclusiveStartKey), limit);
+    }
+
+    private static void validatePageSize(int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_QUERY_PAGE_SIZE) {
+            throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_QUERY_PAGE_SIZE);
+        }
+    }
+
+    private static QueryConditional typeShardCondition(Interaction.InteractionType type, int shard) {
+        return QueryConditional.keyEqualTo(Key.builder().partitionValue(type.name() + "#" + shard).build());
+    }
+
+    private static QueryEnhancedRequest pagedQuery(QueryConditional condition, int pageSize, Map<String, AttributeValue> startKey) {
+        return QueryEnhancedRequest.builder()
+                .queryConditional(condition)
+                .limit(pageSize)
+                .exclusiveStartKey(startKey)
+                .build();
+    }
+
+    /**
+     * The user's {@code limit} most recent interactions, newest first. Interaction ids are ULIDs, so
+     * this is a descending query over the user's id range that stops after {@code limit} items.
+     * Interactions still keyed by a legacy UUID are skipped until {@link #migrateLegacyInteractionIds}
+     * has re-keyed them.
+     */
+    public List<Interaction> getRecentInteractions(String userId, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        return queryNewestFirst(userId, Ulid.lowerBound(Instant.EPOCH), limit)
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Up to {@code limit} of the user's interactions created at or after {@code since}, newest first,
+     * read as a descending query over the id range starting at {@code since}. Legacy UUID-keyed
+     * interactions are skipped as in {@link #getRecentInteractions}.
+     */
+    public List<Interaction> getInteractionsSince(String userId, Instant since, int limit) {
+        if (limit < 1 || limit > MAX_QUERY_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_QUERY_PAGE_SIZE);
+        }
+        return queryNewestFirst(userId, Ulid.lowerBound(since), limit)
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Re-keys the user's interactions that still have a random UUID as their id to a ULID built from
+     * their {@code createdAt}, so the recent and since queries find them. Each interaction is moved
+     * with a transaction that puts the new item and deletes the old one; the new id is derived from
+     * the old one, so running this again after a partial failure is safe. Returns the number of
+     * interactions moved.
+     */
+    public int migrateLegacyInteractionIds(String userId) {
+        int migrated = 0;
+        for (Interaction interaction : getUserInteractions(userId)) {
+            if (Ulid.isUlid(interaction.getInteractionId())) {
+                continue;
+            }
+            Instant createdAt = interaction.getCreatedAt() != null ? interaction.getCreatedAt() : Instant.EPOCH;
+            String interactionId = Ulid.fromUuid(createdAt, legacyUuid(interaction.getInteractionId()));
+            Interaction rekeyed = Interaction.builder()
+                    .userId(userId)
+                    .interactionId(interactionId)
+                    .songId(interaction.getSongId())
+                    .type(interaction.getType())
+                    .rating(interaction.getRating())
+                    .feedback(interaction.getFeedback())
+                    .createdAt(interaction.getCreatedAt())
+                    .typeShard(interaction.getType() != null
+                            ? typeShard(interaction.getType(), interactionId, typeShards)
+                            : null)
+                    .build();
+            dynamoDbClient.transactWriteItems(TransactWriteItemsEnhancedRequest.builder()
+                    .addPutItem(table, rekeyed)
+                    .addDeleteItem(table, Key.builder()
+                            .partitionValue(userId)
+                            .sortValue(interaction.getInteractionId())
+                            .build())
+                    .build());
+            migrated++;
+        }
+        return migrated;
+    }
+
+    /**
+     * Brings the user's interactions written before {@code typeShard} and the fixed-width
+     * {@code createdAt} existed up to date: sets {@code typeShard}, so they show up in
+     * {@link #getInteractionsByType}, and rewrites {@code createdAt}, so they sort correctly on the
+     * indexes keyed by it. Only those two attributes are written. Legacy strings cannot be told apart
+     * once read, so every interaction with a {@code createdAt} is rewritten; re-running is harmless.
+     * Each update is conditioned on the interaction still existing, so one deleted after it was read
+     * is skipped rather than recreated as a partial item. Returns the number updated.
+     * {@code InteractionBackfill} runs this for every user.
+     */
+    public int backfillTypeShards(String userId) {
+        int updated = 0;
+        for (Interaction interaction : getUserInteractions(userId)) {
+            String shard = interaction.getTypeShard() == null && interaction.getType() != null
+                    ? typeShard(interaction.getType(), interaction.getInteractionId(), typeShards)
+                    : null;
+            if (shard == null && interaction.getCreatedAt() == null) {
+                continue;
+            }
+            try {
+                table.updateItem(UpdateItemEnhancedRequest.builder(Interaction.class)
+                        .item(Interaction.builder()
+                                .userId(userId)
+                                .interactionId(interaction.getInteractionId())
+                                .typeShard(shard)
+                                .createdAt(interaction.getCreatedAt())
+                                .build())
+                        .ignoreNulls(true)
+                        .conditionExpression(INTERACTION_EXISTS)
+                        .build());
+                updated++;
+            } catch (ConditionalCheckFailedException e) {
+                log.debug("Skipped backfilling interaction {}, deleted since it was read", interaction.getInteractionId());
+            }
+        }
+        return updated;
+    }
+
+    private static UUID legacyUuid(String interactionId) {
+        try {
+            return UUID.fromString(interactionId);
+        } catch (IllegalArgumentException e) {
+            return UUID.nameUUIDFromBytes(interactionId.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Reads the user's ULID-keyed interactions from {@code lowerBound} up to a little past the current
+     * time, newest first. The upper bound tolerates clock skew between writers while keeping most legacy
+     * UUIDs out of the range: ULIDs issued until 2039 start with {@code 01}, so UUIDs starting with
+     * anything higher sort after them, and the few that fall inside the range are filtered out.
+     */
+    private Stream<Interaction> queryNewestFirst(String userId, String lowerBound, int pageSize) {
+        QueryEnhancedRequest.Builder request = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.sortBetween(
+                        Key.builder().partitionValue(userId).sortValue(lowerBound).build(),
+                        Key.builder().partitionValue(userId).sortValue(Ulid.upperBound(Instant.now().plus(CLOCK_SKEW))).build()))
+                .scanIndexForward(false);
+        if (pageSize > 0) {
+            request.limit(pageSize);
+        }
+        return table.query(request.build())
+                .items()
+                .stream()
+                .filter(interaction -> Ulid.isUlid(interaction.getInteractionId()));
+    }
+
     public List<Interaction> getUserSongInteractions(String userId, String songId) {
         QueryConditional queryConditional = QueryConditional
                 .keyEqualTo(Key.builder()
@@ -76,17 +520,34 @@ public class InteractionDao {
         return interactions;
     }
 
+    /**
+     * All interactions of one type, oldest first. Each type shard is queried on its own virtual thread
+     * and the per-shard results, which the index already sorts by {@code createdAt}, are merged.
+     */
     public List<Interaction> getInteractionsByType(Interaction.InteractionType type) {
-        QueryConditional queryConditional = QueryConditional
-                .keyEqualTo(Key.builder()
-                        .partitionValue(type.toString())
-                        .build());
-
-        List<Interaction> interactions = new ArrayList<>();
-        table.index(TYPE_INDEX)
-                .query(queryConditional)
-                .forEach(page -> page.items().forEach(interactions::add));
-        return interactions;
+        List<CompletableFuture<List<Interaction>>> shards = new ArrayList<>(typeShards);
+        for (int shard = 0; shard < typeShards; shard++) {
+            QueryConditional queryConditional = typeShardCondition(type, shard);
+            shards.add(CompletableFuture.supplyAsync(() -> {
+                List<Interaction> interactions = new ArrayList<>();
+                table.index(Interaction.TYPE_SHARD_INDEX)
+                        .query(queryConditional)
+                        .forEach(page -> page.items().forEach(interactions::add));
+                return interactions;
+            }, shardReaders));
+        }
+        List<List<Interaction>> results = new ArrayList<>(typeShards);
+        for (CompletableFuture<List<Interaction>> shard : shards) {
+            try {
+                results.add(shard.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return MergedQueryCursor.merge(results, BY_CREATED_AT);
     }
 
     public List<Interaction> getInteractionsBySong(String songId) {
@@ -102,11 +563,28 @@ public class InteractionDao {
         return interactions;
     }
 
+    /**
+     * Deletes the interaction. With rollups it is read first so that its contribution can be taken
+     * back out of its rollup in the same transaction as the delete.
+     */
     public void deleteInteraction(String userId, String interactionId) {
         Key key = Key.builder()
                 .partitionValue(userId)
                 .sortValue(interactionId)
                 .build();
-        table.deleteItem(key);
+        if (rollups == null) {
+            table.deleteItem(key);
+            return;
+        }
+        Interaction interaction = table.getItem(GetItemEnhancedRequest.builder().key(key).consistentRead(true).build());
+        if (interaction == null) {
+            return;
+        }
+        rollups.deleteWithRollup(Delete.builder()
+                .tableName(TABLE_NAME)
+                .key(Map.of(
+                        "userId", AttributeValue.builder().s(userId).build(),
+                        "interactionId", AttributeValue.builder().s(interactionId).build()))
+                .build(), interaction);
     }
 }
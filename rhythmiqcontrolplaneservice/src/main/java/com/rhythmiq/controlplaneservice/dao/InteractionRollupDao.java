@@ -0,0 +1,272 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import com.rhythmiq.controlplaneservice.model.Interaction;
+import com.rhythmiq.controlplaneservice.model.InteractionRollup;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.Delete;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Per-user, per-song interaction counters in the {@value #TABLE_NAME} table, keyed by
+ * ({@code userId}, {@code songId}). Every interaction is folded in with an {@code ADD} update, so
+ * concurrent writers never overwrite each other and reading a pair's totals is a single
+ * {@code GetItem}. The {@value #ENGAGEMENT_INDEX} local secondary index sorts a user's songs by
+ * {@code engagement}, which makes a user's top songs one bounded query.
+ */
+@Singleton
+public class InteractionRollupDao {
+    static final String TABLE_NAME = "InteractionRollups";
+    static final String ENGAGEMENT_INDEX = "EngagementIndex";
+    public static final int MAX_TOP_SONGS = 100;
+
+    private final DynamoDbClient dynamoDbClient;
+
+    @Inject
+    public InteractionRollupDao(DynamoDbClient dynamoDbClient) {
+        this.dynamoDbClient = dynamoDbClient;
+    }
+
+    /**
+     * Writes {@code interactionPut} and the rollup update for {@code interaction} in one transaction,
+     * so the counters never disagree with the interactions actually stored. An interaction without a
+     * song has no rollup and is written with a plain put.
+     */
+    public void putWithRollup(Put interactionPut, Interaction interaction) {
+        if (interaction.getSongId() == null) {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                .tableName(interactionPut.tableName())
+                .item(interactionPut.item())
+                .conditionExpression(interactionPut.conditionExpression())
+                .expressionAttributeNames(interactionPut.hasExpressionAttributeNames()
+                    ? interactionPut.expressionAttributeNames() : null)
+                .expressionAttributeValues(interactionPut.hasExpressionAttributeValues()
+                    ? interactionPut.expressionAttributeValues() : null)
+                .build());
+            return;
+        }
+        dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+            .transactItems(
+                TransactWriteItem.builder().put(interactionPut).build(),
+                rollupUpdate(interaction.getUserId(), interaction.getSongId(), Delta.of(interaction)))
+            .build());
+    }
+
+    /**
+     * Deletes {@code interaction} and takes it back out of its rollup in one transaction. The delete
+     * is conditional on the interaction still existing, so a concurrent delete of the same
+     * interaction cannot decrement the counters twice; if it has already gone this does nothing.
+     * An interaction without a song has no rollup and is deleted with a plain delete.
+     */
+    public void deleteWithRollup(Delete interactionDelete, Interaction interaction) {
+        if (interaction.getSongId() == null) {
+            dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                .tableName(interactionDelete.tableName())
+                .key(interactionDelete.key())
+                .build());
+            return;
+        }
+        try {
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                .transactItems(
+                    TransactWriteItem.builder().delete(interactionDelete.toBuilder()
+                        .conditionExpression("attribute_exists(#interactionId)")
+                        .expressionAttributeNames(Map.of("#interactionId", "interactionId"))
+                        .build()).build(),
+                    rollupUpdate(interaction.getUserId(), interaction.getSongId(), Delta.of(interaction).negate()))
+                .build());
+        } catch (TransactionCanceledException e) {
+            if (!e.hasCancellationReasons() || e.cancellationReasons().isEmpty()
+                    || !"ConditionalCheckFailed".equals(e.cancellationReasons().get(0).code())) {
+                throw e;
+            }
+        }
+    }
+
+    private static TransactWriteItem rollupUpdate(String userId, String songId, Delta delta) {
+        return TransactWriteItem.builder().update(Update.builder()
+            .tableName(TABLE_NAME)
+            .key(key(userId, songId))
+            .updateExpression(delta.expression())
+            .expressionAttributeNames(delta.names())
+            .expressionAttributeValues(delta.values())
+            .build()).build();
+    }
+
+    /**
+     * Writes a batch of interactions and their rollup updates in one transaction, coalescing
+     * interactions with the same user and song into a single update, since a transaction may touch
+     * each item only once. Interactions without a song are written without a rollup. A transaction
+     * holds at most 100 items, so a batch may carry at most 50 interactions. Returns the number of
+     * rollup updates sent.
+     */
+    public int putAllWithRollups(List<Put> interactionPuts, Collection<Interaction> interactions) {
+        Map<List<String>, Delta> deltas = new LinkedHashMap<>();
+        for (Interaction interaction : interactions) {
+            if (interaction.getSongId() == null) {
+                continue;
+            }
+            deltas.merge(List.of(interaction.getUserId(), interaction.getSongId()), Delta.of(interaction), Delta::plus);
+        }
+        List<TransactWriteItem> items = new ArrayList<>(interactionPuts.size() + deltas.size());
+        interactionPuts.forEach(put -> items.add(TransactWriteItem.builder().put(put).build()));
+        deltas.forEach((pair, delta) -> items.add(rollupUpdate(pair.get(0), pair.get(1), delta)));
+        dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(items).build());
+        return deltas.size();
+    }
+
+    public Optional<InteractionRollup> getRollup(String userId, String songId) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+            .tableName(TABLE_NAME)
+            .key(key(userId, songId))
+            .build());
+        return response.hasItem() && !response.item().isEmpty() ? Optional.of(toRollup(response.item())) : Optional.empty();
+    }
+
+    /** The user's {@code limit} songs with the highest engagement, highest first. */
+    public List<InteractionRollup> getTopSongs(String userId, int limit) {
+        if (limit < 1 || limit > MAX_TOP_SONGS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_TOP_SONGS);
+        }
+        List<InteractionRollup> rollups = new ArrayList<>(limit);
+        dynamoDbClient.query(QueryRequest.builder()
+                .tableName(TABLE_NAME)
+                .indexName(ENGAGEMENT_INDEX)
+                .keyConditionExpression("#userId = :userId")
+                .expressionAttributeNames(Map.of("#userId", "userId"))
+                .expressionAttributeValues(Map.of(":userId", AttributeValue.builder().s(userId).build()))
+                .scanIndexForward(false)
+                .limit(limit)
+                .build())
+            .items()
+            .forEach(item -> rollups.add(toRollup(item)));
+        return rollups;
+    }
+
+    private static Map<String, AttributeValue> key(String userId, String songId) {
+        return Map.of(
+            "userId", AttributeValue.builder().s(userId).build(),
+            "songId", AttributeValue.builder().s(songId).build());
+    }
+
+    private static InteractionRollup toRollup(Map<String, AttributeValue> item) {
+        return new InteractionRollup(item.get("userId").s(), item.get("songId").s(),
+            number(item, "interactions").longValue(), number(item, "plays").longValue(),
+            number(item, "skips").longValue(), number(item, "likes").longValue(),
+            number(item, "dislikes").longValue(), number(item, "ratingSum").doubleValue(),
+            number(item, "ratingCount").longValue(), number(item, "engagement").doubleValue());
+    }
+
+    private static BigDecimal number(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value != null && value.n() != null ? new BigDecimal(value.n()) : BigDecimal.ZERO;
+    }
+
+    /**
+     * What one or more interactions add to a rollup. Engagement uses the same signal strengths as
+     * implicit preference inference: a play or skip counts 1, a like or dislike 4, and a rating its
+     * distance from 3 stars, doubled.
+     */
+    record Delta(long interactions, long plays, long skips, long likes, long dislikes, double ratingSum, long ratingCount,
+                 double engagement) {
+
+        static Delta of(Interaction interaction) {
+            Interaction.InteractionType type = interaction.getType();
+            Double rating = interaction.getRating();
+            double engagement = switch (type == null ? Interaction.InteractionType.FEEDBACK : type) {
+                case PLAY -> 1;
+                case SKIP -> -1;
+                case LIKE -> 4;
+                case DISLIKE -> -4;
+                case RATE -> rating != null ? (rating - 3) * 2 : 0;
+                case FEEDBACK -> 0;
+            };
+            return new Delta(1,
+                type == Interaction.InteractionType.PLAY ? 1 : 0,
+                type == Interaction.InteractionType.SKIP ? 1 : 0,
+                type == Interaction.InteractionType.LIKE ? 1 : 0,
+                type == Interaction.InteractionType.DISLIKE ? 1 : 0,
+                rating != null ? rating : 0,
+                rating != null ? 1 : 0,
+                engagement);
+        }
+
+        Delta plus(Delta other) {
+            return new Delta(interactions + other.interactions, plays + other.plays, skips + other.skips,
+                likes + other.likes, dislikes + other.dislikes, ratingSum + other.ratingSum,
+                ratingCount + other.ratingCount, engagement + other.engagement);
+        }
+
+        /** What removing the same interactions takes away from a rollup. */
+        Delta negate() {
+            return new Delta(-interactions, -plays, -skips, -likes, -dislikes, -ratingSum, -ratingCount, -engagement);
+        }
+
+        /**
+         * The counters that change. {@code interactions} and {@code engagement} are always included so
+         * that every rollup item carries the engagement index's sort key.
+         */
+        private Map<String, Number> counters() {
+            Map<String, Number> counters = new LinkedHashMap<>();
+            counters.put("interactions", interactions);
+            counters.put("plays", plays);
+            counters.put("skips", skips);
+            counters.put("likes", likes);
+            counters.put("dislikes", dislikes);
+            counters.put("ratingSum", ratingSum);
+            counters.put("ratingCount", ratingCount);
+            counters.values().removeIf(value -> value.doubleValue() == 0);
+            counters.put("engagement", engagement);
+            return counters;
+        }
+
+        String expression() {
+            List<String> adds = new ArrayList<>();
+            int size = counters().size();
+            for (int i = 0; i < size; i++) {
+                adds.add("#c" + i + " :c" + i);
+            }
+            return "ADD " + String.join(", ", adds);
+        }
+
+        Map<String, String> names() {
+            Map<String, String> names = new HashMap<>();
+            int i = 0;
+            for (String counter : counters().keySet()) {
+                names.put("#c" + i++, counter);
+            }
+            return names;
+        }
+
+        Map<String, AttributeValue> values() {
+            Map<String, AttributeValue> values = new HashMap<>();
+            int i = 0;
+            for (Number amount : counters().values()) {
+                values.put(":c" + i++, AttributeValue.builder()
+                    .n(new BigDecimal(amount.toString()).stripTrailingZeros().toPlainString())
+                    .build());
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Merges the results of one query per write shard into a single ordered sequence. Every shard is
+ * itself sorted by {@code order} (the index's sort key), so a k-way merge over one {@link QueryCursor}
+ * per shard yields the same order a single unsharded index would, holding at most one page per shard.
+ * The first page of every shard is requested in parallel; later pages are fetched as each shard runs out.
+ *
+ * <p>{@link #nextToken()} records, per shard, the key of the last item handed out from it, so a
+ * resumed cursor continues every shard exactly where this one stopped.
+ */
+public final class MergedQueryCursor<T> implements Iterator<T> {
+    private static final String SHARD_COUNT_ATTRIBUTE = "shards";
+    private static final String EXHAUSTED_SUFFIX = "done";
+    private static final Map<String, AttributeValue> EXHAUSTED = Collections.unmodifiableMap(new HashMap<>());
+
+    private final List<Function<Map<String, AttributeValue>, SdkIterable<Page<T>>>> shardQueries;
+    private final Function<T, Map<String, AttributeValue>> keyOf;
+    private final Comparator<T> order;
+    private final Integer limit;
+    private final Executor executor;
+    // Where each shard resumes: its start key, the key of the last item taken from it, or EXHAUSTED.
+    private final List<Map<String, AttributeValue>> positions;
+
+    private List<QueryCursor<T>> cursors;
+    private PriorityQueue<Head<T>> heads;
+    private int returned;
+
+    /**
+     * @param shardQueries one query per shard, each run from the given exclusive start key
+     * @param keyOf        the key attributes of an item, including those of the index being queried
+     * @param order        the order every shard's results are sorted in
+     * @param token        a previous cursor's {@link #nextToken()}, or {@code null} to start at the beginning
+     * @param limit        the most items to return, or {@code null} for all of them
+     * @param executor     runs the first query of each shard
+     */
+    public MergedQueryCursor(List<Function<Map<String, AttributeValue>, SdkIterable<Page<T>>>> shardQueries,
+                             Function<T, Map<String, AttributeValue>> keyOf, Comparator<T> order,
+                             String token, Integer limit, Executor executor) {
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        this.shardQueries = shardQueries;
+        this.keyOf = keyOf;
+        this.order = order;
+        this.limit = limit;
+        this.executor = executor;
+        this.positions = decode(token, shardQueries.size());
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (limit != null && returned >= limit) {
+            return false;
+        }
+        if (heads == null) {
+            prime();
+        }
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Head<T> head = heads.poll();
+        QueryCursor<T> cursor = cursors.get(head.shard());
+        if (cursor.hasNext()) {
+            positions.set(head.shard(), keyOf.apply(head.item()));
+            heads.add(new Head<>(head.shard(), cursor.next()));
+        } else {
+            positions.set(head.shard(), EXHAUSTED);
+        }
+        returned++;
+        return head.item();
+    }
+
+    /** The remaining items as a sequential stream over this cursor. */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /** A token that resumes every shard after the last item taken from it, or {@code null} if all are exhausted. */
+    public String nextToken() {
+        if (positions.stream().allMatch(position -> position == EXHAUSTED)) {
+            return null;
+        }
+        Map<String, AttributeValue> token = new HashMap<>();
+        token.put(SHARD_COUNT_ATTRIBUTE, AttributeValue.builder().n(Integer.toString(positions.size())).build());
+        for (int shard = 0; shard < positions.size(); shard++) {
+            Map<String, AttributeValue> position = positions.get(shard);
+            if (position == EXHAUSTED) {
+                token.put(shard + "." + EXHAUSTED_SUFFIX, AttributeValue.builder().n("1").build());
+            } else if (position != null) {
+                int prefix = shard;
+                position.forEach((name, value) -> token.put(prefix + "." + name, value));
+            }
+        }
+        return PaginationToken.encode(token);
+    }
+
+    /** Merges lists that are each sorted by {@code order} into one sorted list. */
+    public static <T> List<T> merge(List<List<T>> sorted, Comparator<T> order) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, sorted.size()), headOrder(order));
+        List<Iterator<T>> iterators = new ArrayList<>(sorted.size());
+        int total = 0;
+        for (int shard = 0; shard < sorted.size(); shard++) {
+            Iterator<T> iterator = sorted.get(shard).iterator();
+            iterators.add(iterator);
+            total += sorted.get(shard).size();
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(shard, iterator.next()));
+            }
+        }
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            Head<T> head = heads.poll();
+            merged.add(head.item());
+            Iterator<T> iterator = iterators.get(head.shard());
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(head.shard(), iterator.next()));
+            }
+        }
+        return merged;
+    }
+
+    private void prime() {
+        cursors = new ArrayList<>(shardQueries.size());
+        List<CompletableFuture<Boolean>> firstPages = new ArrayList<>(shardQueries.size());
+        for (int shard = 0; shard < shardQueries.size(); shard++) {
+            Map<String, AttributeValue> position = positions.get(shard);
+            QueryCursor<T> cursor = new QueryCursor<>(shardQueries.get(shard), keyOf, position == EXHAUSTED ? null : position, null);
+            cursors.add(cursor);
+            firstPages.add(position == EXHAUSTED
+                    ? CompletableFuture.completedFuture(false)
+                    : CompletableFuture.supplyAsync(cursor::hasNext, executor));
+        }
+        heads = new PriorityQueue<>(Math.max(1, cursors.size()), headOrder(order));
+        for (int shard = 0; shard < cursors.size(); shard++) {
+            if (firstPage(firstPages.get(shard))) {
+                heads.add(new Head<>(shard, cursors.get(shard).next()));
+            } else {
+                positions.set(shard, EXHAUSTED);
+            }
+        }
+    }
+
+    private static boolean firstPage(CompletableFuture<Boolean> query) {
+        try {
+            return query.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static <T> Comparator<Head<T>> headOrder(Comparator<T> order) {
+        return Comparator.<Head<T>, T>comparing(Head::item, order).thenComparingInt(Head::shard);
+    }
+
+    private static List<Map<String, AttributeValue>> decode(String token, int shardCount) {
+        List<Map<String, AttributeValue>> positions = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            positions.add(null);
+        }
+        Map<String, AttributeValue> decoded = PaginationToken.decode(token);
+        if (decoded == null) {
+            return positions;
+        }
+        AttributeValue count = decoded.get(SHARD_COUNT_ATTRIBUTE);
+        if (count == null || count.n() == null || !count.n().equals(Integer.toString(shardCount))) {
+            throw new IllegalArgumentException("Invalid pagination token");
+        }
+        decoded.forEach((name, value) -> {
+            if (name.equals(SHARD_COUNT_ATTRIBUTE)) {
+                return;
+            }
+            int separator = name.indexOf('.');
+            int shard;
+            try {
+                shard = separator > 0 ? Integer.parseInt(name.substring(0, separator)) : -1;
+            } catch (NumberFormatException e) {
+                shard = -1;
+            }
+            if (shard < 0 || shard >= shardCount) {
+                throw new IllegalArgumentException("Invalid pagination token");
+            }
+            String attribute = name.substring(separator + 1);
+            if (attribute.equals(EXHAUSTED_SUFFIX)) {
+                positions.set(shard, EXHAUSTED);
+            } else if (positions.get(shard) != EXHAUSTED) {
+                if (positions.get(shard) == null) {
+                    positions.set(shard, new HashMap<>());
+                }
+                positions.get(shard).put(attribute, value);
+            }
+        });
+        return positions;
+    }
+
+    private record Head<T>(int shard, T item) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encodes a DynamoDB {@code LastEvaluatedKey} as an opaque, URL-safe token that clients hand back
+ * as {@code nextToken}. Only string and number key attributes are supported, which covers every
+ * table and index key in this service.
+ */
+public final class PaginationToken {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Map<String, String>>> TOKEN_TYPE = new TypeReference<>() {};
+
+    private PaginationToken() {
+    }
+
+    public static String encode(Map<String, AttributeValue> lastEvaluatedKey) {
+        if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Map<String, String>> encoded = new TreeMap<>();
+        lastEvaluatedKey.forEach((name, value) -> {
+            if (value.s() != null) {
+                encoded.put(name, Map.of("S", value.s()));
+            } else if (value.n() != null) {
+                encoded.put(name, Map.of("N", value.n()));
+            } else {
+                throw new IllegalArgumentException("Unsupported key attribute type for: " + name);
+            }
+        });
+
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(encoded));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode pagination token", e);
+        }
+    }
+
+    public static Map<String, AttributeValue> decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Map<String, String>> encoded;
+        try {
+            encoded = objectMapper.readValue(Base64.getUrlDecoder().decode(token), TOKEN_TYPE);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalArgumentException("Invalid pagination token", e);
+        }
+        if (encoded == null || encoded.isEmpty()) {
+            throw new IllegalArgumentException("Invalid pagination token");
+        }
+
+        Map<String, AttributeValue> key = new HashMap<>();
+        encoded.forEach((name, value) -> {
+            if (value == null) {
+                throw new IllegalArgumentException("Invalid pagination token");
+            } else if (value.containsKey("S")) {
+                key.put(name, AttributeValue.builder().s(value.get("S")).build());
+            } else if (value.containsKey("N")) {
+                key.put(name, AttributeValue.builder().n(value.get("N")).build());
+            } else {
+                throw new IllegalArgumentException("Invalid pagination token");
+            }
+        });
+        return key;
+    }
+}
@@ -0,0 +1,161 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.InternalServerErrorException;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.RequestLimitExceededException;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Walks a whole table with a parallel Scan: the table is split into {@code totalSegments} segments,
+ * each read by its own virtual thread. Items are handed to the consumer on the calling thread
+ * through a bounded queue, so a slow consumer blocks the segment workers instead of letting
+ * pages pile up in memory.
+ *
+ * <p>Each segment retries throttling and transient failures on its own, resuming from the last
+ * page it read. If a segment still fails, the remaining workers are cancelled and the failure is
+ * rethrown; items already delivered to the consumer are not rolled back.
+ */
+@Log4j2
+public class ParallelScanner {
+    private static final int DEFAULT_QUEUE_CAPACITY = 1_000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Map<String, AttributeValue> SEGMENT_DONE = Collections.unmodifiableMap(new HashMap<>());
+
+    private final DynamoDbClient dynamoDbClient;
+    private final int totalSegments;
+    private final int queueCapacity;
+
+    public ParallelScanner(DynamoDbClient dynamoDbClient, int totalSegments) {
+        this(dynamoDbClient, totalSegments, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public ParallelScanner(DynamoDbClient dynamoDbClient, int totalSegments, int queueCapacity) {
+        if (totalSegments < 1 || totalSegments > 1_000_000) {
+            throw new IllegalArgumentException("Total segments must be between 1 and 1000000");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        this.dynamoDbClient = dynamoDbClient;
+        this.totalSegments = totalSegments;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long scan(ScanRequest template, Consumer<Map<String, AttributeValue>> consumer) {
+        return scan(template, consumer, ScanProgressListener.NONE);
+    }
+
+    /**
+     * Scans every segment of the table described by {@code template} and returns the number of
+     * items delivered. {@code Segment}, {@code TotalSegments} and {@code ExclusiveStartKey} on the
+     * template are overwritten; everything else (filters, projections, limit as page size) is kept.
+     */
+    public long scan(ScanRequest template, Consumer<Map<String, AttributeValue>> consumer, ScanProgressListener listener) {
+        BlockingQueue<Map<String, AttributeValue>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        try {
+            for (int segment = 0; segment < totalSegments; segment++) {
+                int currentSegment = segment;
+                executor.execute(() -> {
+                    try {
+                        scanSegment(template, currentSegment, queue, listener);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        signalDone(queue);
+                    }
+                });
+            }
+
+            long delivered = 0;
+            int completedSegments = 0;
+            while (completedSegments < totalSegments) {
+                Map<String, AttributeValue> item = queue.take();
+                if (item == SEGMENT_DONE) {
+                    completedSegments++;
+                    if (failure.get() != null) {
+                        throw failure.get();
+                    }
+                } else {
+                    consumer.accept(item);
+                    delivered++;
+                }
+            }
+            return delivered;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning " + template.tableName(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void scanSegment(ScanRequest template, int segment, BlockingQueue<Map<String, AttributeValue>> queue,
+                             ScanProgressListener listener) throws InterruptedException {
+        Map<String, AttributeValue> exclusiveStartKey = null;
+        long segmentItemCount = 0;
+        boolean complete;
+
+        do {
+            ScanResponse response = scanWithRetry(template.toBuilder()
+                    .segment(segment)
+                    .totalSegments(totalSegments)
+                    .exclusiveStartKey(exclusiveStartKey)
+                    .build());
+
+            for (Map<String, AttributeValue> item : response.items()) {
+                queue.put(item);
+            }
+            segmentItemCount += response.items().size();
+            exclusiveStartKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? response.lastEvaluatedKey()
+                    : null;
+            complete = exclusiveStartKey == null;
+            listener.onPage(segment, response.items().size(), segmentItemCount, complete);
+        } while (!complete);
+    }
+
+    private ScanResponse scanWithRetry(ScanRequest request) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return dynamoDbClient.scan(request);
+            } catch (ProvisionedThroughputExceededException | RequestLimitExceededException
+                     | InternalServerErrorException | SdkClientException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Scan of segment {} of {} failed (attempt {}), retrying: {}",
+                        request.segment(), request.tableName(), attempt, e.getMessage());
+                Backoff.pause(attempt);
+            }
+        }
+    }
+
+    private static void signalDone(BlockingQueue<Map<String, AttributeValue>> queue) {
+        try {
+            queue.put(SEGMENT_DONE);
+        } catch (InterruptedException e) {
+            // The scan was cancelled and nobody is draining the queue any more.
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,41 +5,139 @@ import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
 import com.rhythmiq.controlplaneservice.model.Preference;
+import com.rhythmiq.controlplaneservice.model.PreferenceVector;
+import com.rhythmiq.controlplaneservice.model.UpdatePreferenceRequest;
+import lombok.extern.log4j.Log4j2;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import software.amazon.awssdk.enhanced.dynamodb.Expression;
-import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.Delete;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
 import java.util.stream.Collectors;
 import java.util.Map;
 import java.util.HashMap;
 
+@Log4j2
 @Singleton
 public class PreferenceDao {
 
     private static final String TABLE_NAME = "Preferences";
-    private static final int MAX_PREFERENCES = 100;
+    public static final int MAX_PREFERENCES = 100;
+    private static final Map<String, String> PREFERENCE_FIELDS = Stream.of(
+            "profileId", "preferenceId", "type", "value", "index", "rank", "weight", "isUserSet", "createdAt", "updatedAt")
+        .collect(Collectors.toMap(Function.identity(), Function.identity()));
+    // Per-profile metadata items share the partition with the preferences; their sort keys start with '#'.
+    private static final String METADATA_PREFIX = "#";
+    static final String COUNTER_ID = METADATA_PREFIX + "COUNT";
+    private static final String COUNT_ATTRIBUTE = "preferenceCount";
+    private static final int MAX_OVERWRITE_ATTEMPTS = 3;
+    static final int TRANSACT_CHUNK_SIZE = 100;
+    static final String RANK_INDEX = "RankIndex";
+    static final String TYPE_INDEX = "TypeIndex";
+    private static final String TYPE_SORT_KEY = "typeSortKey";
+    // Ranks longer than this trigger a background rebalance of the profile's list.
+    static final int MAX_RANK_LENGTH = 12;
+    private static final ExecutorService REBALANCE_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final ExecutorService QUERY_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final TableSchema<Preference> SCHEMA = TableSchema.fromBean(Preference.class);
+    private final DynamoDbClient dynamoDbClient;
     private final DynamoDbTable<Preference> table;
+    private final Set<String> rebalancing = ConcurrentHashMap.newKeySet();
+    private final StorageMode storageMode;
+    private final PreferenceDocumentStore documentStore;
+    private final PreferenceVectorStore vectorStore;
 
+    /** How a profile's preferences are laid out in the table. */
+    public enum StorageMode {
+        /** One item per preference, plus the counter item. */
+        ITEMS,
+        /** The whole list in one versioned document item; see {@link PreferenceDocumentStore}. */
+        DOCUMENT;
 
+        /** Reads {@code PREFERENCE_STORAGE_MODE}, defaulting to {@link #ITEMS}. */
+        public static StorageMode fromEnvironment() {
+            String mode = System.getenv("PREFERENCE_STORAGE_MODE");
+            return mode != null && !mode.isBlank() ? valueOf(mode.trim().toUpperCase()) : ITEMS;
+        }
+    }
+
+    /**
+     * The low-level client is used for the transactional writes that keep the per-profile counter
+     * in step, which the enhanced client cannot express.
+     */
     @Inject
-    public PreferenceDao(DynamoDbEnhancedClient dynamoDbClient) {
-        this.table = dynamoDbClient.table(TABLE_NAME, TableSchema.fromBean(Preference.class));
+    public PreferenceDao(DynamoDbEnhancedClient enhancedClient, DynamoDbClient dynamoDbClient) {
+        this(enhancedClient, dynamoDbClient, StorageMode.ITEMS);
+    }
+
+    /**
+     * Creates a DAO using the given storage mode. In {@link StorageMode#DOCUMENT} mode every method
+     * reads and writes the profile's document item instead of the per-item layout; profiles not yet
+     * migrated are read from their items and move to a document on their first write.
+     */
+    public PreferenceDao(DynamoDbEnhancedClient enhancedClient, DynamoDbClient dynamoDbClient, StorageMode storageMode) {
+        this.storageMode = storageMode;
+        this.documentStore = new PreferenceDocumentStore(dynamoDbClient, TABLE_NAME, this::queryPreferences);
+        this.vectorStore = new PreferenceVectorStore(dynamoDbClient, TABLE_NAME, this::queryPreferences);
+        this.dynamoDbClient = dynamoDbClient;
+        this.table = enhancedClient.table(TABLE_NAME, SCHEMA);
     }
 
     public void createPreference(Preference preference) {
         Instant now = Instant.now();
         preference.setCreatedAt(now);
         preference.setUpdatedAt(now);
-        table.putItem(preference);
+        if (storageMode == StorageMode.DOCUMENT) {
+            upsertDocument(preference);
+        } else {
+            putCounted(preference);
+        }
     }
 
     public Optional<Preference> getPreference(String profileId, String preferenceId) {
+        if (isMetadataId(preferenceId)) {
+            return Optional.empty();
+        }
+        if (storageMode == StorageMode.DOCUMENT) {
+            return Optional.ofNullable(find(listPreferences(profileId), preferenceId));
+        }
         Key key = Key.builder()
             .partitionValue(profileId)
             .sortValue(preferenceId)
@@ -48,74 +146,1181 @@ public class PreferenceDao {
     }
 
     public List<Preference> listPreferences(String profileId) {
+        return storageMode == StorageMode.DOCUMENT ? documentStore.load(profileId) : queryPreferences(profileId);
+    }
+
+    private List<Preference> queryPreferences(String profileId) {
         return table.query(QueryConditional.keyEqualTo(Key.builder().partitionValue(profileId).build()))
             .items()
             .stream()
+            .filter(preference -> !isMetadataId(preference.getPreferenceId()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the profile's weighted preference vector. In item mode it is read from the vector item
+     * that every write keeps up to date, with one {@code GetItem}; profiles whose vector was never
+     * built have it rebuilt from their preferences first. In document mode it is computed from the
+     * document, which is a single read as well.
+     */
+    public PreferenceVector getPreferenceVector(String profileId) {
+        if (storageMode == StorageMode.DOCUMENT) {
+            return PreferenceVector.inListOrder(listPreferences(profileId));
+        }
+        return vectorStore.read(profileId);
+    }
+
+    /**
+     * Recomputes a profile's vector item from its preferences. Used to seed vectors for profiles
+     * written before they existed, or to repair one after a failed partial write.
+     */
+    public PreferenceVector rebuildPreferenceVector(String profileId) {
+        if (storageMode == StorageMode.DOCUMENT) {
+            return PreferenceVector.inListOrder(listPreferences(profileId));
+        }
+        return vectorStore.rebuild(profileId);
+    }
+
+    /**
+     * Lists one type of preference in index order with a {@code begins_with} query on the
+     * {@value #TYPE_INDEX} local secondary index, so other types are never read.
+     */
+    public List<Preference> listPreferences(String profileId, Preference.PreferenceType type) {
+        if (storageMode == StorageMode.DOCUMENT) {
+            return listPreferences(profileId).stream()
+                .filter(preference -> preference.getType() == type)
+                .sorted(Comparator.comparing(Preference::getIndex, Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+        }
+        return table.index(TYPE_INDEX)
+            .query(QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.sortBeginsWith(Key.builder()
+                    .partitionValue(profileId)
+                    .sortValue(type.name() + "#")
+                    .build()))
+                .build())
+            .stream()
+            .flatMap(page -> page.items().stream())
             .collect(Collectors.toList());
     }
 
+    /**
+     * Lists several types at once, querying each type's range of the {@value #TYPE_INDEX} index in
+     * parallel. Every requested type has an entry, in index order; named distinctly from the field
+     * projection overload, whose {@code Set} parameter erases to the same type.
+     */
+    public Map<Preference.PreferenceType, List<Preference>> listPreferencesByType(
+            String profileId, Set<Preference.PreferenceType> types) {
+        Map<Preference.PreferenceType, List<Preference>> result = new EnumMap<>(Preference.PreferenceType.class);
+        if (storageMode == StorageMode.DOCUMENT) {
+            types.forEach(type -> result.put(type, new ArrayList<>()));
+            listPreferences(profileId).stream()
+                .filter(preference -> types.contains(preference.getType()))
+                .sorted(Comparator.comparing(Preference::getIndex, Comparator.nullsLast(Comparator.naturalOrder())))
+                .forEach(preference -> result.get(preference.getType()).add(preference));
+            return result;
+        }
+
+        Map<Preference.PreferenceType, CompletableFuture<List<Preference>>> queries =
+            new EnumMap<>(Preference.PreferenceType.class);
+        for (Preference.PreferenceType type : types) {
+            queries.put(type, CompletableFuture.supplyAsync(() -> listPreferences(profileId, type), QUERY_EXECUTOR));
+        }
+        queries.forEach((type, query) -> result.put(type, join(query)));
+        return result;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Lists preferences, projecting only the requested fields in DynamoDB. The key fields are
+     * always included; unknown field names are rejected with an {@link IllegalArgumentException}.
+     * In document mode the whole document is read regardless, so full preferences are returned.
+     */
+    public List<Preference> listPreferences(String profileId, Set<String> fields) {
+        FieldProjection projection = FieldProjection.of(fields, PREFERENCE_FIELDS, "profileId", "preferenceId");
+        if (projection.isAll() || storageMode == StorageMode.DOCUMENT) {
+            return listPreferences(profileId);
+        }
+
+        return table.query(QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(profileId).build()))
+                .attributesToProject(projection.attributes())
+                .build())
+            .items()
+            .stream()
+            .filter(preference -> !isMetadataId(preference.getPreferenceId()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Writes a whole preference, inserting it if it does not exist yet. Goes through
+     * {@link #savePreference} so an insert is validated and counted against {@link #MAX_PREFERENCES}.
+     */
     public void updatePreference(Preference preference) {
         preference.setUpdatedAt(Instant.now());
-        table.putItem(preference);
+        savePreference(preference);
+    }
+
+    /**
+     * Applies the non-null fields of {@code changes} to a stored preference with a single
+     * {@code UpdateItem} that sets only those fields, and returns the item as written. Fields left
+     * {@code null} are untouched, so a concurrent change to another field is not overwritten. An index
+     * change also sets {@code typeSortKey} in that write, which needs the stored type read first; if
+     * the type changes in between, a {@link ConflictException} is thrown.
+     *
+     * @throws IllegalStateException if the preference does not exist
+     */
+    public Preference patchPreference(String profileId, String preferenceId, UpdatePreferenceRequest changes) {
+        if (changes.getIndex() != null && (changes.getIndex() < 0 || changes.getIndex() >= MAX_PREFERENCES)) {
+            throw new IllegalArgumentException("Preference index must be between 0 and " + (MAX_PREFERENCES - 1));
+        }
+        if (isMetadataId(preferenceId)) {
+            throw new IllegalStateException("Preference not found: " + preferenceId);
+        }
+        Instant now = Instant.now();
+        try {
+            if (storageMode == StorageMode.DOCUMENT) {
+                return documentStore.modify(profileId, preferences -> {
+                    Preference preference = find(preferences, preferenceId);
+                    if (preference == null) {
+                        throw new IllegalStateException("Preference not found: " + preferenceId);
+                    }
+                    if (changes.getValue() != null) {
+                        preference.setValue(changes.getValue());
+                    }
+                    if (changes.getIndex() != null) {
+                        preference.setIndex(changes.getIndex());
+                    }
+                    if (changes.getWeight() != null) {
+                        preference.setWeight(changes.getWeight());
+                    }
+                    preference.setUpdatedAt(now);
+                    return preference;
+                });
+            }
+
+            Map<String, String> names = new HashMap<>();
+            Map<String, AttributeValue> values = new HashMap<>();
+            StringBuilder updateExpression = new StringBuilder("SET #updatedAt = :updatedAt");
+            names.put("#updatedAt", "updatedAt");
+            values.put(":updatedAt", string(now.toString()));
+            if (changes.getValue() != null) {
+                appendSet(updateExpression, names, values, "value", string(changes.getValue()));
+            }
+            String condition = "attribute_exists(preferenceId)";
+            if (changes.getIndex() != null) {
+                appendSet(updateExpression, names, values, "index", number(changes.getIndex()));
+                // typeSortKey embeds the index, so it is set in the same write, from the stored type.
+                // The type is read first and the write is conditioned on it not having changed since.
+                Preference.PreferenceType type = storedType(profileId, preferenceId);
+                names.put("#type", "type");
+                if (type != null) {
+                    appendSet(updateExpression, names, values, TYPE_SORT_KEY,
+                        string(Preference.typeSortKey(type, changes.getIndex())));
+                    values.put(":type", string(type.name()));
+                    condition += " AND #type = :type";
+                } else {
+                    condition += " AND attribute_not_exists(#type)";
+                }
+            }
+            if (changes.getWeight() != null) {
+                appendSet(updateExpression, names, values, "weight",
+                    AttributeValue.builder().n(Double.toString(changes.getWeight())).build());
+            }
+
+            UpdateItemResponse response = dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .key(preferenceKey(profileId, preferenceId))
+                .updateExpression(updateExpression.toString())
+                .conditionExpression(condition)
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .returnValues(ReturnValue.ALL_NEW)
+                .build());
+            Preference patched = SCHEMA.mapToItem(response.attributes());
+            if (changes.getValue() != null || changes.getIndex() != null || changes.getWeight() != null) {
+                vectorStore.apply(profileId, List.of(patched), List.of());
+            }
+            return patched;
+        } catch (ConditionalCheckFailedException e) {
+            if (changes.getIndex() != null) {
+                throw new ConflictException("Preference was modified concurrently: " + preferenceId, e);
+            }
+            throw new IllegalStateException("Preference not found: " + preferenceId, e);
+        }
     }
 
+    /**
+     * Reads just the type of a stored preference, strongly consistent, which may be {@code null} for
+     * rows written without one.
+     *
+     * @throws IllegalStateException if the preference does not exist
+     */
+    private Preference.PreferenceType storedType(String profileId, String preferenceId) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+            .tableName(TABLE_NAME)
+            .key(preferenceKey(profileId, preferenceId))
+            .projectionExpression("preferenceId, #type")
+            .expressionAttributeNames(Map.of("#type", "type"))
+            .consistentRead(true)
+            .build());
+        if (!response.hasItem() || response.item().isEmpty()) {
+            throw new IllegalStateException("Preference not found: " + preferenceId);
+        }
+        AttributeValue type = response.item().get("type");
+        return type != null ? Preference.PreferenceType.valueOf(type.s()) : null;
+    }
+
+    private static void appendSet(StringBuilder updateExpression, Map<String, String> names,
+                                  Map<String, AttributeValue> values, String attribute, AttributeValue value) {
+        updateExpression.append(", #").append(attribute).append(" = :").append(attribute);
+        names.put("#" + attribute, attribute);
+        values.put(":" + attribute, value);
+    }
+
+    /**
+     * Deletes a preference and decrements the profile's counter in the same transaction. Deleting a
+     * preference that does not exist is a no-op. A profile without a counter gets one seeded first; a
+     * counter that has drifted to zero falls back to a plain delete.
+     */
     public void deletePreference(String profileId, String preferenceId) {
-        Preference preference = Preference.builder()
+        if (storageMode == StorageMode.DOCUMENT) {
+            documentStore.modify(profileId, preferences ->
+                preferences.removeIf(preference -> preference.getPreferenceId().equals(preferenceId)));
+            return;
+        }
+        Map<String, AttributeValue> key = preferenceKey(profileId, preferenceId);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                    .transactItems(
+                        TransactWriteItem.builder()
+                            .delete(Delete.builder()
+                                .tableName(TABLE_NAME)
+                                .key(key)
+                                .conditionExpression("attribute_exists(preferenceId)")
+                                .build())
+                            .build(),
+                        counterUpdate(profileId, -1, "#count > :zero", Map.of(":zero", number(0))),
+                        vectorStore.update(profileId, List.of(), List.of(preferenceId)))
+                    .build());
+                return;
+            } catch (TransactionCanceledException e) {
+                if (isConditionalFailure(e, 0)) {
+                    return;
+                }
+                if (!isConditionalFailure(e, 1)) {
+                    throw e;
+                }
+                if (attempt == 0 && isCounterMissing(e, 1)) {
+                    seedPreferenceCount(profileId);
+                    continue;
+                }
+            }
+            table.deleteItem(Preference.builder()
                 .profileId(profileId)
                 .preferenceId(preferenceId)
-                .build();
-        table.deleteItem(preference);
+                .build());
+            vectorStore.apply(profileId, List.of(), List.of(preferenceId));
+            return;
+        }
     }
 
     public void savePreference(Preference preference) {
         validatePreference(preference);
-        validatePreferenceCount(preference.getProfileId());
-        table.putItem(preference);
-    }
-
-    private void validatePreference(Preference preference) {
-        if (preference.getIndex() < 0 || preference.getIndex() >= MAX_PREFERENCES) {
-            throw new IllegalArgumentException("Preference index must be between 0 and " + (MAX_PREFERENCES - 1));
+        if (storageMode == StorageMode.DOCUMENT) {
+            upsertDocument(preference);
+        } else {
+            putCounted(preference);
         }
     }
 
-    private void validatePreferenceCount(String profileId) {
-        Map<String, AttributeValue> expressionValues = new HashMap<>();
-        expressionValues.put(":profileId", AttributeValue.builder().s(profileId).build());
-
-        long count = table.scan(ScanEnhancedRequest.builder()
-            .filterExpression(Expression.builder()
-                .expression("profileId = :profileId")
-                .expressionValues(expressionValues)
+    /**
+     * Creates the counter item of a profile that has none, from a consistent count of its
+     * preferences. Profiles written before the counter existed get one on their first counted write.
+     * Every counted write fails while the counter is missing, so no insert can slip past the count;
+     * if another writer seeds the counter first, its value is kept.
+     */
+    private void seedPreferenceCount(String profileId) {
+        long count = table.query(QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(profileId).build()))
+                .attributesToProject("profileId", "preferenceId")
+                .consistentRead(true)
                 .build())
-            .build())
             .items()
             .stream()
+            .filter(preference -> !isMetadataId(preference.getPreferenceId()))
             .count();
+        Map<String, AttributeValue> counter = new HashMap<>(preferenceKey(profileId, COUNTER_ID));
+        counter.put(COUNT_ATTRIBUTE, number(count));
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .item(counter)
+                .conditionExpression("attribute_not_exists(preferenceId)")
+                .build());
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Preference counter for profile {} was seeded concurrently", profileId);
+        }
+    }
+
+    /**
+     * Writes {@code typeSortKey} onto every preference of a profile, so items stored before the
+     * {@value #TYPE_INDEX} index existed show up in type queries. Each write is conditioned on the
+     * index it was computed from; a concurrent reorder raises {@link ConflictException}, after which
+     * the backfill can simply be re-run.
+     *
+     * @return the number of preferences written
+     */
+    public int backfillTypeSortKeys(String profileId) {
+        List<TransactWriteItem> updates = new ArrayList<>();
+        for (Preference preference : queryPreferences(profileId)) {
+            String typeSortKey = preference.getTypeSortKey();
+            if (typeSortKey == null) {
+                continue;
+            }
+            Map<String, AttributeValue> values = new HashMap<>(Map.of(":typeSortKey", string(typeSortKey)));
+            String condition;
+            if (preference.getIndex() != null) {
+                values.put(":index", number(preference.getIndex()));
+                condition = "#index = :index";
+            } else {
+                condition = "attribute_exists(preferenceId) AND attribute_not_exists(#index)";
+            }
+            updates.add(TransactWriteItem.builder()
+                .update(Update.builder()
+                    .tableName(TABLE_NAME)
+                    .key(preferenceKey(profileId, preference.getPreferenceId()))
+                    .updateExpression("SET #typeSortKey = :typeSortKey")
+                    .conditionExpression(condition)
+                    .expressionAttributeNames(Map.of("#typeSortKey", TYPE_SORT_KEY, "#index", "index"))
+                    .expressionAttributeValues(values)
+                    .build())
+                .build());
+        }
+        writeOrderingUpdates(profileId, updates);
+        return updates.size();
+    }
+
+    /**
+     * Copies a profile's per-item preferences into its document item, for moving existing profiles
+     * to {@link StorageMode#DOCUMENT} ahead of switching the mode. Safe to re-run: profiles that
+     * already have a document are skipped. The per-item rows are left in place for rollback.
+     *
+     * @return the number of preferences copied, or 0 if the profile already had a document
+     */
+    public int migrateToDocument(String profileId) {
+        return documentStore.migrate(profileId);
+    }
+
+    private void upsertDocument(Preference preference) {
+        if (isMetadataId(preference.getPreferenceId())) {
+            throw new IllegalArgumentException("Preference ID must not start with '" + METADATA_PREFIX + "'");
+        }
+        documentStore.modify(preference.getProfileId(), preferences -> {
+            for (int i = 0; i < preferences.size(); i++) {
+                if (preferences.get(i).getPreferenceId().equals(preference.getPreferenceId())) {
+                    return preferences.set(i, preference);
+                }
+            }
+            if (preferences.size() >= MAX_PREFERENCES) {
+                throw new ConflictException("Maximum number of preferences (" + MAX_PREFERENCES
+                    + ") reached for profile: " + preference.getProfileId());
+            }
+            preferences.add(preference);
+            return null;
+        });
+    }
+
+    /**
+     * Inserts a preference together with an {@code ADD} on the profile's counter item. The counter
+     * update is conditioned on the limit, so enforcing {@link #MAX_PREFERENCES} costs one extra item
+     * write no matter how large the table is. If the preference already exists it is overwritten in
+     * place and the count is left alone. A profile without a counter gets one seeded, then the insert
+     * is retried.
+     */
+    private void putCounted(Preference preference) {
+        if (isMetadataId(preference.getPreferenceId())) {
+            throw new IllegalArgumentException("Preference ID must not start with '" + METADATA_PREFIX + "'");
+        }
+        String profileId = preference.getProfileId();
+        boolean assignedRank = preference.getRank() == null;
+        if (assignedRank) {
+            preference.setRank(nextRank(profileId));
+        }
+        for (int attempt = 0; attempt < MAX_OVERWRITE_ATTEMPTS; attempt++) {
+            try {
+                dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                    .transactItems(
+                        TransactWriteItem.builder()
+                            .put(Put.builder()
+                                .tableName(TABLE_NAME)
+                                .item(SCHEMA.itemToMap(preference, true))
+                                .conditionExpression("attribute_not_exists(preferenceId)")
+                                .build())
+                            .build(),
+                        counterUpdate(profileId, 1, "#count < :max", Map.of(":max", number(MAX_PREFERENCES))),
+                        vectorStore.update(profileId, List.of(preference), List.of()))
+                    .build());
+                scheduleRebalanceIfLong(profileId, preference.getRank());
+                return;
+            } catch (TransactionCanceledException e) {
+                if (isConditionalFailure(e, 1) && !isConditionalFailure(e, 0)) {
+                    if (isCounterMissing(e, 1)) {
+                        seedPreferenceCount(profileId);
+                        continue;
+                    }
+                    throw new ConflictException(
+                        "Maximum number of preferences (" + MAX_PREFERENCES + ") reached for profile: " + profileId, e);
+                }
+                if (!isConditionalFailure(e, 0)) {
+                    throw e;
+                }
+            }
+
+            // The preference exists; overwrite it unless it was deleted in the meantime, in which case
+            // the insert has to be retried so the counter sees it. An overwrite keeps the existing
+            // position unless the caller asked for a specific rank.
+            if (assignedRank) {
+                Preference existing = table.getItem(Key.builder()
+                    .partitionValue(profileId)
+                    .sortValue(preference.getPreferenceId())
+                    .build());
+                if (existing == null) {
+                    continue;
+                }
+                preference.setRank(existing.getRank() != null ? existing.getRank() : preference.getRank());
+            }
+            try {
+                table.putItem(PutItemEnhancedRequest.builder(Preference.class)
+                    .item(preference)
+                    .conditionExpression(Expression.builder()
+                        .expression("attribute_exists(preferenceId)")
+                        .build())
+                    .build());
+                vectorStore.apply(profileId, List.of(preference), List.of());
+                return;
+            } catch (ConditionalCheckFailedException e) {
+                log.debug("Preference {} was deleted while being saved, retrying insert", preference.getPreferenceId());
+            }
+        }
+        throw new ConflictException("Preference was modified concurrently: " + preference.getPreferenceId());
+    }
+
+    private TransactWriteItem counterUpdate(String profileId, int delta, String condition,
+                                            Map<String, AttributeValue> conditionValues) {
+        Map<String, AttributeValue> values = new HashMap<>(conditionValues);
+        values.put(":delta", number(delta));
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(TABLE_NAME)
+                .key(preferenceKey(profileId, COUNTER_ID))
+                .updateExpression("ADD #count :delta")
+                .conditionExpression(condition)
+                .expressionAttributeNames(Map.of("#count", COUNT_ATTRIBUTE))
+                .expressionAttributeValues(values)
+                .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                .build())
+            .build();
+    }
+
+    /**
+     * Whether the counter update at {@code index} failed because the profile has no counter item.
+     * Counter updates return the old item on a failed check, so an absent item means no counter.
+     */
+    private static boolean isCounterMissing(TransactionCanceledException e, int index) {
+        if (!isConditionalFailure(e, index)) {
+            return false;
+        }
+        CancellationReason reason = e.cancellationReasons().get(index);
+        return !reason.hasItem() || reason.item().isEmpty();
+    }
+
+    private static boolean hasConditionalFailure(TransactionCanceledException e) {
+        return e.hasCancellationReasons() && e.cancellationReasons().stream()
+            .anyMatch(reason -> "ConditionalCheckFailed".equals(reason.code()));
+    }
+
+    private static boolean isConditionalFailure(TransactionCanceledException e, int index) {
+        if (!e.hasCancellationReasons() || e.cancellationReasons().size() <= index) {
+            return false;
+        }
+        CancellationReason reason = e.cancellationReasons().get(index);
+        return "ConditionalCheckFailed".equals(reason.code());
+    }
+
+    private static Map<String, AttributeValue> preferenceKey(String profileId, String preferenceId) {
+        return Map.of(
+            "profileId", AttributeValue.builder().s(profileId).build(),
+            "preferenceId", AttributeValue.builder().s(preferenceId).build());
+    }
+
+    private static AttributeValue string(String value) {
+        return AttributeValue.builder().s(value).build();
+    }
+
+    private static AttributeValue number(long value) {
+        return AttributeValue.builder().n(Long.toString(value)).build();
+    }
+
+    static boolean isMetadataId(String preferenceId) {
+        return preferenceId != null && preferenceId.startsWith(METADATA_PREFIX);
+    }
 
-        if (count >= MAX_PREFERENCES) {
-            throw new IllegalStateException("Maximum number of preferences (" + MAX_PREFERENCES + ") reached for profile: " + profileId);
+    private void validatePreference(Preference preference) {
+        if (preference.getIndex() != null
+            && (preference.getIndex() < 0 || preference.getIndex() >= MAX_PREFERENCES)) {
+            throw new IllegalArgumentException("Preference index must be between 0 and " + (MAX_PREFERENCES - 1));
         }
     }
 
+    /**
+     * Gives the listed preferences the indexes of their positions in {@code preferenceIds}, and in
+     * item mode ranks in the same order, so {@link #listPreferencesByRank} and the preference vector
+     * follow the reorder. Ranks that are already in order are kept and the rest are placed between
+     * them. Only preferences whose index or rank actually changes are written, each with a
+     * {@code SET} rather than a full put, in a single transaction, so the reorder is applied
+     * atomically; {@link #MAX_PREFERENCES} updates always fit in one. The vector update joins that
+     * transaction when there is room for it; otherwise the vector is marked for a rebuild once the
+     * transaction is done. Every update is conditioned on the values that were read; if another
+     * writer got there first a {@link ConflictException} is thrown.
+     */
     public void reorderPreferences(String profileId, List<String> preferenceIds) {
         if (preferenceIds.size() > MAX_PREFERENCES) {
             throw new IllegalArgumentException("Cannot have more than " + MAX_PREFERENCES + " preferences");
         }
 
-        // Get all preferences for the profile
-        List<Preference> preferences = listPreferences(profileId);
-        
-        // Update indices based on the new order
-        for (int i = 0; i < preferenceIds.size(); i++) {
-            String preferenceId = preferenceIds.get(i);
-            Preference preference = preferences.stream()
-                .filter(p -> p.getPreferenceId().equals(preferenceId))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Preference not found: " + preferenceId));
-            
-            preference.setIndex(i);
-            table.putItem(preference);
+        if (storageMode == StorageMode.DOCUMENT) {
+            documentStore.modify(profileId, preferences -> {
+                List<Preference> ordered = inRequestedOrder(preferences, preferenceIds);
+                for (int i = 0; i < ordered.size(); i++) {
+                    ordered.get(i).setIndex(i);
+                }
+                preferences.sort(Comparator.comparing(Preference::getIndex,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+                return null;
+            });
+            return;
+        }
+
+        List<Preference> current = queryPreferences(profileId);
+        if (current.stream().anyMatch(preference -> preference.getRank() != null)
+            && current.stream().anyMatch(preference -> preference.getRank() == null)) {
+            // Ranks only give an order once every preference has one.
+            rebalanceRanks(profileId);
+            current = queryPreferences(profileId);
+        }
+        List<Preference> ordered = inRequestedOrder(current, preferenceIds);
+        List<String> ranks = current.stream().allMatch(preference -> preference.getRank() != null)
+            ? ranksInOrder(ordered)
+            : null;
+
+        String now = Instant.now().toString();
+        List<TransactWriteItem> items = new ArrayList<>();
+        List<Preference> changed = new ArrayList<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            Preference preference = ordered.get(i);
+            List<OrderingChange> changes = new ArrayList<>(2);
+            String typeSortKey = null;
+            if (!Integer.valueOf(i).equals(preference.getIndex())) {
+                changes.add(new OrderingChange("index", number(i),
+                    preference.getIndex() != null ? number(preference.getIndex()) : null));
+                typeSortKey = Preference.typeSortKey(preference.getType(), i);
+                preference.setIndex(i);
+            }
+            if (ranks != null && !ranks.get(i).equals(preference.getRank())) {
+                changes.add(new OrderingChange("rank", string(ranks.get(i)), string(preference.getRank())));
+                preference.setRank(ranks.get(i));
+            }
+            if (!changes.isEmpty()) {
+                items.add(orderingUpdate(profileId, preference.getPreferenceId(), changes, now, typeSortKey));
+                changed.add(preference);
+            }
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+
+        if (items.size() < TRANSACT_CHUNK_SIZE) {
+            items.add(vectorStore.update(profileId, changed, List.of()));
+            transact(profileId, items);
+        } else {
+            try {
+                transact(profileId, items);
+            } finally {
+                vectorStore.invalidate(profileId);
+            }
+        }
+        changed.forEach(preference -> scheduleRebalanceIfLong(profileId, preference.getRank()));
+    }
+
+    /**
+     * Ranks for {@code ordered} that sort in list order while rewriting as few as possible: the
+     * longest run of ranks that is already increasing is kept, and each gap between kept ranks is
+     * filled with evenly subdivided new ones.
+     */
+    private static List<String> ranksInOrder(List<Preference> ordered) {
+        int size = ordered.size();
+        int[] length = new int[size];
+        int[] previous = new int[size];
+        int end = -1;
+        for (int i = 0; i < size; i++) {
+            length[i] = 1;
+            previous[i] = -1;
+            for (int j = 0; j < i; j++) {
+                if (ordered.get(j).getRank().compareTo(ordered.get(i).getRank()) < 0 && length[j] + 1 > length[i]) {
+                    length[i] = length[j] + 1;
+                    previous[i] = j;
+                }
+            }
+            if (end < 0 || length[i] > length[end]) {
+                end = i;
+            }
+        }
+        boolean[] kept = new boolean[size];
+        for (int i = end; i >= 0; i = previous[i]) {
+            kept[i] = true;
+        }
+
+        List<String> ranks = new ArrayList<>(size);
+        String before = null;
+        int gapStart = 0;
+        for (int i = 0; i <= size; i++) {
+            if (i < size && !kept[i]) {
+                continue;
+            }
+            String after = i < size ? ordered.get(i).getRank() : null;
+            ranks.addAll(FractionalRank.between(before, after, i - gapStart));
+            if (i < size) {
+                ranks.add(after);
+            }
+            before = after;
+            gapStart = i + 1;
+        }
+        return ranks;
+    }
+
+    private static List<Preference> inRequestedOrder(List<Preference> preferences, List<String> preferenceIds) {
+        Map<String, Preference> byId = preferences.stream()
+            .collect(Collectors.toMap(Preference::getPreferenceId, Function.identity()));
+        Set<String> seen = new HashSet<>();
+        List<Preference> ordered = new ArrayList<>(preferenceIds.size());
+        for (String preferenceId : preferenceIds) {
+            if (!seen.add(preferenceId)) {
+                throw new IllegalArgumentException("Duplicate preference ID: " + preferenceId);
+            }
+            Preference preference = byId.get(preferenceId);
+            if (preference == null) {
+                throw new IllegalArgumentException("Preference not found: " + preferenceId);
+            }
+            ordered.add(preference);
+        }
+        return ordered;
+    }
+
+    /**
+     * Makes {@code desired} the profile's complete preference set in one call. The current list is
+     * diffed against it by preference id: new ids are inserted, ids whose content changed are
+     * overwritten and ids no longer present are deleted; unchanged preferences cost no write.
+     * Inferred preferences ({@code isUserSet=false}) belong to the inference engine, so leaving one
+     * out keeps it, and a row that does not say whether it is user-set keeps the stored flag. In
+     * item mode the changes go out as one transaction together with the counter adjustment and the
+     * vector update, so they land atomically. Change sets too large for one transaction are written
+     * in chunks, deletes first, each chunk carrying its own counter adjustment, and the vector is
+     * marked for a rebuild afterwards; if a chunk fails the earlier ones stay written, and repeating
+     * the replace finishes it. Overwrites are conditioned on the {@code updatedAt} that was read, so a
+     * concurrent edit surfaces as a {@link ConflictException} rather than being lost.
+     *
+     * @return the profile's preferences after the replace, in {@code desired} order followed by any kept
+     *         inferred preferences
+     */
+    public List<Preference> replacePreferences(String profileId, List<Preference> desired) {
+        validateReplacement(profileId, desired);
+        if (storageMode == StorageMode.DOCUMENT) {
+            return documentStore.modify(profileId, preferences -> {
+                List<Preference> merged = diff(preferences, desired, Instant.now()).merged();
+                preferences.clear();
+                preferences.addAll(merged);
+                return merged;
+            });
+        }
+
+        List<Preference> current = queryPreferences(profileId);
+        Map<String, Preference> previous = current.stream()
+            .collect(Collectors.toMap(Preference::getPreferenceId, Function.identity()));
+        PreferenceDiff diff = diff(current, desired, Instant.now());
+        List<Change> changes = new ArrayList<>();
+        for (Preference deleted : diff.deletes()) {
+            changes.add(new Change(TransactWriteItem.builder()
+                .delete(Delete.builder()
+                    .tableName(TABLE_NAME)
+                    .key(preferenceKey(profileId, deleted.getPreferenceId()))
+                    .conditionExpression("attribute_exists(preferenceId)")
+                    .build())
+                .build(), -1, deleted));
+        }
+        for (Preference updated : diff.updates()) {
+            changes.add(new Change(overwrite(updated, previous.get(updated.getPreferenceId())), 0, updated));
+        }
+        for (Preference inserted : diff.inserts()) {
+            changes.add(new Change(TransactWriteItem.builder()
+                .put(Put.builder()
+                    .tableName(TABLE_NAME)
+                    .item(SCHEMA.itemToMap(inserted, true))
+                    .conditionExpression("attribute_not_exists(preferenceId)")
+                    .build())
+                .build(), 1, inserted));
+        }
+
+        int delta = diff.inserts().size() - diff.deletes().size();
+        if (changes.size() + (delta != 0 ? 1 : 0) < TRANSACT_CHUNK_SIZE) {
+            if (!changes.isEmpty()) {
+                writeCountedChanges(profileId, changes, true);
+            }
+        } else {
+            try {
+                for (int start = 0; start < changes.size(); start += TRANSACT_CHUNK_SIZE - 1) {
+                    writeCountedChanges(profileId,
+                        changes.subList(start, Math.min(changes.size(), start + TRANSACT_CHUNK_SIZE - 1)), false);
+                }
+            } finally {
+                vectorStore.invalidate(profileId);
+            }
+        }
+        diff.inserts().forEach(inserted -> scheduleRebalanceIfLong(profileId, inserted.getRank()));
+        return diff.merged();
+    }
+
+    private static void validateReplacement(String profileId, List<Preference> desired) {
+        if (desired.size() > MAX_PREFERENCES) {
+            throw new IllegalArgumentException("Cannot have more than " + MAX_PREFERENCES + " preferences");
+        }
+        Set<String> seen = new HashSet<>();
+        for (Preference preference : desired) {
+            String preferenceId = preference.getPreferenceId();
+            if (preferenceId == null || preferenceId.isBlank() || isMetadataId(preferenceId)) {
+                throw new IllegalArgumentException("Invalid preference ID: " + preferenceId);
+            }
+            if (!seen.add(preferenceId)) {
+                throw new IllegalArgumentException("Duplicate preference ID: " + preferenceId);
+            }
+            if (preference.getIndex() != null
+                && (preference.getIndex() < 0 || preference.getIndex() >= MAX_PREFERENCES)) {
+                throw new IllegalArgumentException("Preference index must be between 0 and " + (MAX_PREFERENCES - 1));
+            }
+            preference.setProfileId(profileId);
+        }
+    }
+
+    /**
+     * Splits {@code desired} against {@code current}. Unchanged preferences keep the stored object;
+     * changed ones keep their creation time, rank and, unless given, their {@code isUserSet} flag; new
+     * ones are user-set unless given and are ranked after the current last. Omitted inferred
+     * preferences are kept after the desired ones instead of being deleted.
+     */
+    private static PreferenceDiff diff(List<Preference> current, List<Preference> desired, Instant now) {
+        Map<String, Preference> remaining = current.stream()
+            .collect(Collectors.toMap(Preference::getPreferenceId, Function.identity()));
+        String lastRank = current.stream()
+            .map(Preference::getRank)
+            .filter(Objects::nonNull)
+            .max(Comparator.naturalOrder())
+            .orElse(null);
+        List<Preference> merged = new ArrayList<>(desired.size());
+        List<Preference> inserts = new ArrayList<>();
+        List<Preference> updates = new ArrayList<>();
+        for (Preference wanted : desired) {
+            Preference existing = remaining.remove(wanted.getPreferenceId());
+            if (existing == null) {
+                if (wanted.getIsUserSet() == null) {
+                    wanted.setIsUserSet(true);
+                }
+                if (wanted.getRank() == null) {
+                    lastRank = FractionalRank.between(lastRank, null);
+                    wanted.setRank(lastRank);
+                }
+                wanted.setCreatedAt(now);
+                wanted.setUpdatedAt(now);
+                inserts.add(wanted);
+                merged.add(wanted);
+                continue;
+            }
+            if (wanted.getIsUserSet() == null) {
+                wanted.setIsUserSet(existing.getIsUserSet());
+            }
+            if (sameContent(existing, wanted)) {
+                merged.add(existing);
+            } else {
+                if (wanted.getRank() == null) {
+                    wanted.setRank(existing.getRank());
+                }
+                wanted.setCreatedAt(existing.getCreatedAt());
+                wanted.setUpdatedAt(now);
+                updates.add(wanted);
+                merged.add(wanted);
+            }
+        }
+        List<Preference> deletes = new ArrayList<>();
+        for (Preference omitted : current) {
+            if (!remaining.containsKey(omitted.getPreferenceId())) {
+                continue;
+            }
+            if (Boolean.FALSE.equals(omitted.getIsUserSet())) {
+                merged.add(omitted);
+            } else {
+                deletes.add(omitted);
+            }
+        }
+        return new PreferenceDiff(merged, inserts, updates, deletes);
+    }
+
+    private static boolean sameContent(Preference existing, Preference wanted) {
+        return Objects.equals(existing.getType(), wanted.getType())
+            && Objects.equals(existing.getValue(), wanted.getValue())
+            && Objects.equals(existing.getIndex(), wanted.getIndex())
+            && Objects.equals(existing.getWeight(), wanted.getWeight())
+            && Objects.equals(existing.getIsUserSet(), wanted.getIsUserSet())
+            && (wanted.getRank() == null || wanted.getRank().equals(existing.getRank()));
+    }
+
+    private static TransactWriteItem overwrite(Preference updated, Preference previous) {
+        Put.Builder put = Put.builder()
+            .tableName(TABLE_NAME)
+            .item(SCHEMA.itemToMap(updated, true))
+            .expressionAttributeNames(Map.of("#updatedAt", "updatedAt"));
+        if (previous.getUpdatedAt() != null) {
+            put.conditionExpression("#updatedAt = :previousUpdatedAt")
+                .expressionAttributeValues(Map.of(":previousUpdatedAt", SCHEMA.attributeValue(previous, "updatedAt")));
+        } else {
+            put.conditionExpression("attribute_exists(preferenceId) AND attribute_not_exists(#updatedAt)");
+        }
+        return TransactWriteItem.builder().put(put.build()).build();
+    }
+
+    /**
+     * Writes the changes in one transaction plus an {@code ADD} of their net count and, if
+     * {@code withVector}, the matching vector update. A profile without a counter gets one seeded,
+     * then the write is retried. If the counter exists but has drifted below a net removal, the
+     * changes are retried without it, as {@link #deletePreference} does.
+     */
+    private void writeCountedChanges(String profileId, List<Change> changes, boolean withVector) {
+        List<TransactWriteItem> writes = changes.stream().map(Change::write).collect(Collectors.toList());
+        int delta = changes.stream().mapToInt(Change::delta).sum();
+        TransactWriteItem vectorUpdate = withVector
+            ? vectorStore.update(profileId,
+                changes.stream().filter(change -> change.delta() >= 0).map(Change::preference).toList(),
+                changes.stream().filter(change -> change.delta() < 0).map(change -> change.preference().getPreferenceId()).toList())
+            : null;
+        List<TransactWriteItem> items = new ArrayList<>(writes);
+        if (delta > 0) {
+            items.add(counterUpdate(profileId, delta, "#count <= :limit",
+                Map.of(":limit", number(MAX_PREFERENCES - delta))));
+        } else if (delta < 0) {
+            items.add(counterUpdate(profileId, delta, "#count >= :removed", Map.of(":removed", number(-delta))));
+        }
+        if (vectorUpdate != null) {
+            items.add(vectorUpdate);
+        }
+        for (int attempt = 0; ; attempt++) {
+            try {
+                dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(items).build());
+                return;
+            } catch (TransactionCanceledException e) {
+                for (int i = 0; i < writes.size(); i++) {
+                    if (isConditionalFailure(e, i)) {
+                        throw new ConflictException("Preferences were modified concurrently for profile: " + profileId, e);
+                    }
+                }
+                if (delta == 0 || !isConditionalFailure(e, writes.size())) {
+                    throw e;
+                }
+                if (attempt == 0 && isCounterMissing(e, writes.size())) {
+                    seedPreferenceCount(profileId);
+                    continue;
+                }
+                if (delta > 0) {
+                    throw new ConflictException(
+                        "Maximum number of preferences (" + MAX_PREFERENCES + ") reached for profile: " + profileId, e);
+                }
+            }
+            List<TransactWriteItem> uncounted = new ArrayList<>(writes);
+            if (vectorUpdate != null) {
+                uncounted.add(vectorUpdate);
+            }
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder().transactItems(uncounted).build());
+            return;
+        }
+    }
+
+    private record Change(TransactWriteItem write, int delta, Preference preference) {
+    }
+
+    private record PreferenceDiff(List<Preference> merged, List<Preference> inserts, List<Preference> updates,
+                                  List<Preference> deletes) {
+    }
+
+    /**
+     * Lists a profile's ranked preferences in rank order, straight from the {@value #RANK_INDEX}
+     * local secondary index. Preferences written before ranks existed have no rank and are absent
+     * until {@link #rebalanceRanks} has run for the profile. In document mode the document order is
+     * the list order and is returned as is.
+     */
+    public List<Preference> listPreferencesByRank(String profileId) {
+        if (storageMode == StorageMode.DOCUMENT) {
+            return listPreferences(profileId);
+        }
+        return table.index(RANK_INDEX)
+            .query(QueryConditional.keyEqualTo(Key.builder().partitionValue(profileId).build()))
+            .stream()
+            .flatMap(page -> page.items().stream())
+            .filter(preference -> !isMetadataId(preference.getPreferenceId()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Moves a preference directly after {@code afterPreferenceId}, or to the top when that is
+     * {@code null}, by giving it a rank between its new neighbours. Only the moved preference and its
+     * preference vector entry are written, in one transaction. The legacy {@code index} is not
+     * maintained by moves. If the list has unranked
+     * preferences or two neighbours share a rank, the list is rebalanced first.
+     *
+     * @return the moved preference with its new rank
+     */
+    public Preference movePreference(String profileId, String preferenceId, String afterPreferenceId) {
+        if (preferenceId.equals(afterPreferenceId)) {
+            throw new IllegalArgumentException("Cannot move a preference after itself: " + preferenceId);
         }
+        if (storageMode == StorageMode.DOCUMENT) {
+            return documentStore.modify(profileId, preferences -> {
+                Preference moved = find(preferences, preferenceId);
+                Preference anchor = afterPreferenceId != null ? find(preferences, afterPreferenceId) : null;
+                if (moved == null || (afterPreferenceId != null && anchor == null)) {
+                    throw new IllegalArgumentException("Preference not found: "
+                        + (moved == null ? preferenceId : afterPreferenceId));
+                }
+                preferences.remove(moved);
+                preferences.add(anchor != null ? preferences.indexOf(anchor) + 1 : 0, moved);
+                moved.setUpdatedAt(Instant.now());
+                return moved;
+            });
+        }
+        for (int attempt = 0; ; attempt++) {
+            List<Preference> ordered = listPreferencesByRank(profileId);
+            Preference moved = find(ordered, preferenceId);
+            Preference anchor = afterPreferenceId != null ? find(ordered, afterPreferenceId) : null;
+            if (moved != null && (afterPreferenceId == null || anchor != null)) {
+                ordered.remove(moved);
+                int position = anchor != null ? ordered.indexOf(anchor) + 1 : 0;
+                String before = position > 0 ? ordered.get(position - 1).getRank() : null;
+                String after = position < ordered.size() ? ordered.get(position).getRank() : null;
+                if (before == null || after == null || before.compareTo(after) < 0) {
+                    return writeRank(moved, FractionalRank.between(before, after));
+                }
+            }
+            if (attempt > 0) {
+                throw new IllegalArgumentException("Preference not found: "
+                    + (moved == null ? preferenceId : afterPreferenceId));
+            }
+            rebalanceRanks(profileId);
+        }
+    }
+
+    /**
+     * Rewrites a profile's ranks as short, evenly spaced keys, keeping the current order (unranked
+     * preferences follow the ranked ones in index order). Only ranks that change are written, each
+     * conditioned on the rank it was read with, so a concurrent move surfaces as a
+     * {@link ConflictException} rather than being overwritten. The rewrite may span several
+     * transactions, so the preference vector, whose entries carry the ranks, is marked for a rebuild
+     * once it is done.
+     *
+     * @return the number of preferences whose rank was rewritten; always 0 in document mode, where
+     *     order is kept by position
+     */
+    public int rebalanceRanks(String profileId) {
+        if (storageMode == StorageMode.DOCUMENT) {
+            return 0;
+        }
+        List<Preference> preferences = queryPreferences(profileId);
+        preferences.sort(Comparator.comparing(Preference::getRank, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Preference::getIndex, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Preference::getPreferenceId));
+        List<String> ranks = FractionalRank.spread(preferences.size());
+
+        String now = Instant.now().toString();
+        List<TransactWriteItem> updates = new ArrayList<>();
+        for (int i = 0; i < preferences.size(); i++) {
+            Preference preference = preferences.get(i);
+            if (!ranks.get(i).equals(preference.getRank())) {
+                updates.add(orderingUpdate(profileId, preference.getPreferenceId(),
+                    List.of(new OrderingChange("rank", string(ranks.get(i)),
+                        preference.getRank() != null ? string(preference.getRank()) : null)),
+                    now, null));
+            }
+        }
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        try {
+            writeOrderingUpdates(profileId, updates);
+        } finally {
+            vectorStore.invalidate(profileId);
+        }
+        return updates.size();
+    }
+
+    private String nextRank(String profileId) {
+        QueryResponse last = dynamoDbClient.query(QueryRequest.builder()
+            .tableName(TABLE_NAME)
+            .indexName(RANK_INDEX)
+            .keyConditionExpression("profileId = :profileId")
+            .expressionAttributeNames(Map.of("#rank", "rank"))
+            .expressionAttributeValues(Map.of(":profileId", string(profileId)))
+            .projectionExpression("#rank")
+            .scanIndexForward(false)
+            .limit(1)
+            .build());
+        String lastRank = last.hasItems() && !last.items().isEmpty() && last.items().get(0).containsKey("rank")
+            ? last.items().get(0).get("rank").s()
+            : null;
+        return FractionalRank.between(lastRank, null);
+    }
+
+    private Preference writeRank(Preference preference, String rank) {
+        String now = Instant.now().toString();
+        String previousRank = preference.getRank();
+        preference.setRank(rank);
+        TransactWriteItem rankUpdate = TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(TABLE_NAME)
+                .key(preferenceKey(preference.getProfileId(), preference.getPreferenceId()))
+                .updateExpression("SET #rank = :rank, #updatedAt = :updatedAt")
+                .conditionExpression("attribute_exists(preferenceId)")
+                .expressionAttributeNames(Map.of("#rank", "rank", "#updatedAt", "updatedAt"))
+                .expressionAttributeValues(Map.of(":rank", string(rank), ":updatedAt", string(now)))
+                .build())
+            .build();
+        try {
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                .transactItems(rankUpdate,
+                    vectorStore.update(preference.getProfileId(), List.of(preference), List.of()))
+                .build());
+        } catch (TransactionCanceledException e) {
+            preference.setRank(previousRank);
+            if (isConditionalFailure(e, 0)) {
+                throw new IllegalStateException("Preference not found: " + preference.getPreferenceId(), e);
+            }
+            throw e;
+        }
+        preference.setUpdatedAt(Instant.parse(now));
+        scheduleRebalanceIfLong(preference.getProfileId(), rank);
+        return preference;
+    }
+
+    /**
+     * Repeated inserts at the same spot lengthen ranks by roughly one digit per six moves, so once a
+     * rank passes {@link #MAX_RANK_LENGTH} the profile is rebalanced off the request path. At most
+     * one rebalance per profile runs at a time; a failed one is retried by the next long rank.
+     */
+    private void scheduleRebalanceIfLong(String profileId, String rank) {
+        if (rank == null || rank.length() <= MAX_RANK_LENGTH || !rebalancing.add(profileId)) {
+            return;
+        }
+        REBALANCE_EXECUTOR.execute(() -> {
+            try {
+                int rewritten = rebalanceRanks(profileId);
+                log.info("Rebalanced {} preference ranks for profile {}", rewritten, profileId);
+            } catch (RuntimeException e) {
+                log.warn("Failed to rebalance preference ranks for profile {}", profileId, e);
+            } finally {
+                rebalancing.remove(profileId);
+            }
+        });
+    }
+
+    /**
+     * Writes independent ordering updates in {@link #TRANSACT_CHUNK_SIZE}-item transactions. Each
+     * chunk is atomic on its own, but not the whole list.
+     */
+    private void writeOrderingUpdates(String profileId, List<TransactWriteItem> updates) {
+        for (int start = 0; start < updates.size(); start += TRANSACT_CHUNK_SIZE) {
+            transact(profileId, updates.subList(start, Math.min(updates.size(), start + TRANSACT_CHUNK_SIZE)));
+        }
+    }
+
+    private void transact(String profileId, List<TransactWriteItem> items) {
+        try {
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                .transactItems(items)
+                .build());
+        } catch (TransactionCanceledException e) {
+            if (hasConditionalFailure(e)) {
+                throw new ConflictException("Preferences were modified concurrently for profile: " + profileId, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sets ordering attributes ({@code index} and/or {@code rank}), each conditioned on the value it
+     * was read with, or on the preference existing without one. A non-null {@code typeSortKey} is
+     * set alongside, since it embeds the index.
+     */
+    private TransactWriteItem orderingUpdate(String profileId, String preferenceId, List<OrderingChange> changes,
+                                             String updatedAt, String typeSortKey) {
+        List<String> sets = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        Map<String, String> names = new HashMap<>(Map.of("#updatedAt", "updatedAt"));
+        Map<String, AttributeValue> values = new HashMap<>();
+        for (OrderingChange change : changes) {
+            String attribute = change.attribute();
+            String name = "#" + attribute;
+            String placeholder = ":" + attribute;
+            names.put(name, attribute);
+            values.put(placeholder, change.value());
+            sets.add(name + " = " + placeholder);
+            if (change.previous() != null) {
+                String previousPlaceholder = ":previous" + Character.toUpperCase(attribute.charAt(0)) + attribute.substring(1);
+                values.put(previousPlaceholder, change.previous());
+                conditions.add(name + " = " + previousPlaceholder);
+            } else {
+                conditions.add("attribute_exists(preferenceId) AND attribute_not_exists(" + name + ")");
+            }
+        }
+        StringBuilder updateExpression = new StringBuilder("SET " + String.join(", ", sets) + ", #updatedAt = :updatedAt");
+        values.put(":updatedAt", string(updatedAt));
+        if (typeSortKey != null) {
+            appendSet(updateExpression, names, values, TYPE_SORT_KEY, string(typeSortKey));
+        }
+        String condition = String.join(" AND ", conditions);
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(TABLE_NAME)
+                .key(preferenceKey(profileId, preferenceId))
+                .updateExpression(updateExpression.toString())
+                .conditionExpression(condition)
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .build())
+            .build();
+    }
+
+    private record OrderingChange(String attribute, AttributeValue value, AttributeValue previous) {
+    }
+
+    private static Preference find(List<Preference> preferences, String preferenceId) {
+        return preferences.stream()
+            .filter(preference -> preference.getPreferenceId().equals(preferenceId))
+            .findFirst()
+            .orElse(null);
     }
 }
@@ -0,0 +1,162 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import com.rhythmiq.controlplaneservice.cache.CompactCodecs;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
+import com.rhythmiq.controlplaneservice.model.Preference;
+import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Keeps a profile's whole preference list as one deflated binary attribute on a single
+ * {@value #DOCUMENT_ID} item in the preferences table, so a full read is one {@code GetItem}.
+ * Every write replaces the document conditioned on the version it was read at; a lost race is
+ * retried from a fresh read.
+ *
+ * <p>Profiles without a document are read through {@code legacyLoader} (the per-item layout), and
+ * their first write creates the document, so profiles migrate as they are touched.
+ */
+@Log4j2
+final class PreferenceDocumentStore {
+    static final String DOCUMENT_ID = "#DOC";
+    private static final String DOCUMENT_ATTRIBUTE = "document";
+    private static final String VERSION_ATTRIBUTE = "version";
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    private final Function<String, List<Preference>> legacyLoader;
+
+    PreferenceDocumentStore(DynamoDbClient dynamoDbClient, String tableName,
+                            Function<String, List<Preference>> legacyLoader) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+        this.legacyLoader = legacyLoader;
+    }
+
+    List<Preference> load(String profileId) {
+        return read(profileId, false).preferences();
+    }
+
+    /**
+     * Applies {@code mutation} to the current list and writes the result back, unless the mutation
+     * left the encoded document unchanged. The mutation may run more than once under contention, and
+     * anything it throws aborts the write.
+     */
+    <T> T modify(String profileId, Function<List<Preference>, T> mutation) {
+        for (int attempt = 0; attempt < MAX_WRITE_ATTEMPTS; attempt++) {
+            Snapshot snapshot = read(profileId, true);
+            T result = mutation.apply(snapshot.preferences());
+            byte[] document = encode(snapshot.preferences());
+            if (snapshot.version() > 0 && Arrays.equals(document, snapshot.document())) {
+                return result;
+            }
+            try {
+                write(profileId, document, snapshot.version());
+                return result;
+            } catch (ConditionalCheckFailedException e) {
+                log.debug("Preference document for {} changed at version {}, retrying", profileId, snapshot.version());
+            }
+        }
+        throw new ConflictException("Preferences were modified concurrently for profile: " + profileId);
+    }
+
+    /**
+     * Copies the per-item preferences of a profile into a new document. Profiles that already have
+     * one are left alone, so the migration can be re-run safely.
+     *
+     * @return the number of preferences migrated, or 0 if the profile already had a document
+     */
+    int migrate(String profileId) {
+        Snapshot snapshot = read(profileId, true);
+        if (snapshot.version() > 0) {
+            return 0;
+        }
+        try {
+            write(profileId, encode(snapshot.preferences()), 0);
+            return snapshot.preferences().size();
+        } catch (ConditionalCheckFailedException e) {
+            return 0;
+        }
+    }
+
+    private Snapshot read(String profileId, boolean consistent) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+            .tableName(tableName)
+            .key(key(profileId))
+            .consistentRead(consistent)
+            .build());
+        if (!response.hasItem() || response.item().isEmpty()) {
+            return new Snapshot(new ArrayList<>(legacyLoader.apply(profileId)), null, 0);
+        }
+        Map<String, AttributeValue> item = response.item();
+        byte[] document = item.get(DOCUMENT_ATTRIBUTE).b().asByteArray();
+        return new Snapshot(decode(document), document, Long.parseLong(item.get(VERSION_ATTRIBUTE).n()));
+    }
+
+    private void write(String profileId, byte[] document, long expectedVersion) {
+        Map<String, AttributeValue> item = new HashMap<>(key(profileId));
+        item.put(DOCUMENT_ATTRIBUTE, AttributeValue.builder().b(SdkBytes.fromByteArray(document)).build());
+        item.put(VERSION_ATTRIBUTE, AttributeValue.builder().n(Long.toString(expectedVersion + 1)).build());
+        PutItemRequest.Builder request = PutItemRequest.builder()
+            .tableName(tableName)
+            .item(item);
+        if (expectedVersion == 0) {
+            request.conditionExpression("attribute_not_exists(preferenceId)");
+        } else {
+            request.conditionExpression("#version = :expectedVersion")
+                .expressionAttributeNames(Map.of("#version", VERSION_ATTRIBUTE))
+                .expressionAttributeValues(Map.of(":expectedVersion",
+                    AttributeValue.builder().n(Long.toString(expectedVersion)).build()));
+        }
+        dynamoDbClient.putItem(request.build());
+    }
+
+    private static Map<String, AttributeValue> key(String profileId) {
+        return Map.of(
+            "profileId", AttributeValue.builder().s(profileId).build(),
+            "preferenceId", AttributeValue.builder().s(DOCUMENT_ID).build());
+    }
+
+    static byte[] encode(List<Preference> preferences) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            CompactCodecs.PREFERENCE_DOCUMENT.write(preferences, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<Preference> decode(byte[] document) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(document)))) {
+            return CompactCodecs.PREFERENCE_DOCUMENT.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable preference document", e);
+        }
+    }
+
+    /** A decoded document with the bytes and version it was read at; version 0 means no document yet. */
+    private record Snapshot(List<Preference> preferences, byte[] document, long version) {
+    }
+}
@@ -0,0 +1,245 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import com.rhythmiq.controlplaneservice.model.Preference;
+import com.rhythmiq.controlplaneservice.model.PreferenceVector;
+import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Maintains each profile's {@link PreferenceVector} on a {@value #VECTOR_ID} item in the preferences
+ * table. The item holds one small binary attribute per preference (type, weight, value, order key),
+ * named after the preference id, so a write only has to {@code SET} or {@code REMOVE} the entries of
+ * the preferences it touched and never needs their previous values. Positions are derived from the
+ * order keys when the vector is read, so a move rewrites one entry. Reading the vector is one
+ * {@code GetItem}; weighting and normalization happen on the decoded entries.
+ *
+ * <p>Entry updates also bump a version. The item is only trusted once {@link #rebuild} has written
+ * it in full, in the current entry format, and marked it complete; until then, and after
+ * {@link #invalidate}, reads rebuild it from {@code legacyLoader}.
+ */
+@Log4j2
+final class PreferenceVectorStore {
+    static final String VECTOR_ID = "#VECTOR";
+    private static final String ENTRY_PREFIX = "p:";
+    private static final String VERSION_ATTRIBUTE = "version";
+    private static final String COMPLETE_ATTRIBUTE = "complete";
+    private static final String FORMAT_ATTRIBUTE = "format";
+    // Format 1 entries held a precomputed index-discounted score and no order key.
+    static final int FORMAT = 2;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    private final Function<String, List<Preference>> legacyLoader;
+
+    PreferenceVectorStore(DynamoDbClient dynamoDbClient, String tableName,
+                          Function<String, List<Preference>> legacyLoader) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+        this.legacyLoader = legacyLoader;
+    }
+
+    /**
+     * An update that sets the entries of {@code upserts} and removes those of {@code removedIds},
+     * for inclusion in the transaction that writes the preferences themselves.
+     */
+    TransactWriteItem update(String profileId, Collection<Preference> upserts, Collection<String> removedIds) {
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        String expression = expression(upserts, removedIds, names, values);
+        return TransactWriteItem.builder()
+            .update(Update.builder()
+                .tableName(tableName)
+                .key(key(profileId))
+                .updateExpression(expression)
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .build())
+            .build();
+    }
+
+    /** Applies the same change as {@link #update} on its own, for writes that are not transactional. */
+    void apply(String profileId, Collection<Preference> upserts, Collection<String> removedIds) {
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        String expression = expression(upserts, removedIds, names, values);
+        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(key(profileId))
+            .updateExpression(expression)
+            .expressionAttributeNames(names)
+            .expressionAttributeValues(values)
+            .build());
+    }
+
+    /**
+     * Marks the vector for a rebuild on its next read, for writes that change many order keys
+     * without touching the entries, such as a rank rebalance. Bumping the version also makes a
+     * rebuild already in flight discard its result.
+     */
+    void invalidate(String profileId) {
+        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(key(profileId))
+            .updateExpression("REMOVE #complete ADD #version :one")
+            .expressionAttributeNames(Map.of("#complete", COMPLETE_ATTRIBUTE, "#version", VERSION_ATTRIBUTE))
+            .expressionAttributeValues(Map.of(":one", AttributeValue.builder().n("1").build()))
+            .build());
+    }
+
+    PreferenceVector read(String profileId) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+            .tableName(tableName)
+            .key(key(profileId))
+            .build());
+        if (!response.hasItem() || !isComplete(response.item())) {
+            return rebuild(profileId);
+        }
+        return PreferenceVector.fromEntries(decodeEntries(response.item()));
+    }
+
+    /**
+     * Recomputes the vector from the profile's preferences and writes it in full. The write is
+     * conditioned on the version read beforehand, so an entry update that lands in between is not
+     * overwritten; the recomputed vector is still returned, and a later read rebuilds again.
+     */
+    PreferenceVector rebuild(String profileId) {
+        GetItemResponse current = dynamoDbClient.getItem(GetItemRequest.builder()
+            .tableName(tableName)
+            .key(key(profileId))
+            .consistentRead(true)
+            .build());
+        AttributeValue version = current.hasItem() ? current.item().get(VERSION_ATTRIBUTE) : null;
+        List<Preference> preferences = legacyLoader.apply(profileId);
+
+        Map<String, AttributeValue> item = new HashMap<>(key(profileId));
+        for (Preference preference : preferences) {
+            if (preference.getType() != null) {
+                item.put(ENTRY_PREFIX + preference.getPreferenceId(), encode(preference));
+            }
+        }
+        long nextVersion = version != null ? Long.parseLong(version.n()) + 1 : 1;
+        item.put(VERSION_ATTRIBUTE, AttributeValue.builder().n(Long.toString(nextVersion)).build());
+        item.put(COMPLETE_ATTRIBUTE, AttributeValue.builder().bool(true).build());
+        item.put(FORMAT_ATTRIBUTE, AttributeValue.builder().n(Integer.toString(FORMAT)).build());
+
+        PutItemRequest.Builder request = PutItemRequest.builder()
+            .tableName(tableName)
+            .item(item);
+        if (version != null) {
+            request.conditionExpression("#version = :version")
+                .expressionAttributeNames(Map.of("#version", VERSION_ATTRIBUTE))
+                .expressionAttributeValues(Map.of(":version", version));
+        } else {
+            request.conditionExpression("attribute_not_exists(#version)")
+                .expressionAttributeNames(Map.of("#version", VERSION_ATTRIBUTE));
+        }
+        try {
+            dynamoDbClient.putItem(request.build());
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Preference vector for {} changed during rebuild; not storing it", profileId);
+        }
+        return PreferenceVector.of(preferences);
+    }
+
+    private static String expression(Collection<Preference> upserts, Collection<String> removedIds,
+                                     Map<String, String> names, Map<String, AttributeValue> values) {
+        List<String> sets = new ArrayList<>();
+        int i = 0;
+        for (Preference preference : upserts) {
+            if (preference.getType() == null) {
+                continue;
+            }
+            names.put("#e" + i, ENTRY_PREFIX + preference.getPreferenceId());
+            values.put(":e" + i, encode(preference));
+            sets.add("#e" + i + " = :e" + i);
+            i++;
+        }
+        List<String> removes = new ArrayList<>();
+        for (String preferenceId : removedIds) {
+            names.put("#e" + i, ENTRY_PREFIX + preferenceId);
+            removes.add("#e" + i);
+            i++;
+        }
+        names.put("#version", VERSION_ATTRIBUTE);
+        values.put(":one", AttributeValue.builder().n("1").build());
+
+        StringBuilder expression = new StringBuilder();
+        if (!sets.isEmpty()) {
+            expression.append("SET ").append(String.join(", ", sets)).append(' ');
+        }
+        if (!removes.isEmpty()) {
+            expression.append("REMOVE ").append(String.join(", ", removes)).append(' ');
+        }
+        return expression.append("ADD #version :one").toString();
+    }
+
+    private static boolean isComplete(Map<String, AttributeValue> item) {
+        AttributeValue format = item.get(FORMAT_ATTRIBUTE);
+        return item.containsKey(COMPLETE_ATTRIBUTE) && format != null && Integer.toString(FORMAT).equals(format.n());
+    }
+
+    private static Map<String, AttributeValue> key(String profileId) {
+        return Map.of(
+            "profileId", AttributeValue.builder().s(profileId).build(),
+            "preferenceId", AttributeValue.builder().s(VECTOR_ID).build());
+    }
+
+    static AttributeValue encode(Preference preference) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(preference.getType().ordinal());
+            out.writeFloat(PreferenceVector.weight(preference));
+            out.writeUTF(preference.getValue() != null ? preference.getValue() : "");
+            String order = PreferenceVector.orderKey(preference);
+            out.writeBoolean(order != null);
+            if (order != null) {
+                out.writeUTF(order);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return AttributeValue.builder().b(SdkBytes.fromByteArray(bytes.toByteArray())).build();
+    }
+
+    static List<PreferenceVector.Entry> decodeEntries(Map<String, AttributeValue> item) {
+        Preference.PreferenceType[] types = Preference.PreferenceType.values();
+        List<PreferenceVector.Entry> entries = new ArrayList<>();
+        item.forEach((name, value) -> {
+            if (!name.startsWith(ENTRY_PREFIX)) {
+                return;
+            }
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value.b().asByteArray()))) {
+                Preference.PreferenceType type = types[in.readByte()];
+                float weight = in.readFloat();
+                String entryValue = in.readUTF();
+                String order = in.readBoolean() ? in.readUTF() : null;
+                entries.add(new PreferenceVector.Entry(type, entryValue, weight, order));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unreadable preference vector entry " + name, e);
+            }
+        });
+        return entries;
+    }
+}
@@ -1,5 +1,9 @@
 package com.rhythmiq.controlplaneservice.dao;
 
+import com.rhythmiq.controlplaneservice.cache.CompactCodecs;
+import com.rhythmiq.controlplaneservice.cache.OffHeapCache;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
+import com.rhythmiq.controlplaneservice.exception.PreconditionFailedException;
 import com.rhythmiq.controlplaneservice.model.*;
 import lombok.extern.log4j.Log4j2;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
@@ -7,23 +11,94 @@ import software.amazon.awssdk.services.dynamodb.model.*;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Log4j2
 @Singleton
-public class ProfileDao {
+public class ProfileDao implements AutoCloseable {
     private static final String TABLE_NAME = "Profiles";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_BATCH_GET_IDS = 500;
+    private static final int ADMIN_SCAN_SEGMENTS = 8;
+    private static final int BATCH_GET_CHUNK_SIZE = 100;
+    private static final int MAX_BATCH_ATTEMPTS = 8;
+    private static final String EMAIL_MARKER_PREFIX = "EMAIL#";
+    private static final String USERNAME_MARKER_PREFIX = "USERNAME#";
+    private static final String PROFILES_ONLY_FILTER = "attribute_not_exists(owner_id)";
+    private static final String MARKER_RELEASE_CONDITION = "attribute_not_exists(profile_id) OR owner_id = :owner_id";
+    private static final ExecutorService BATCH_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Map<String, String> SUMMARY_FIELDS = Map.of(
+            "profileId", "profile_id",
+            "username", "username",
+            "firstName", "first_name",
+            "lastName", "last_name",
+            "email", "email");
+    private static final Map<String, String> PROFILE_FIELDS = Map.of(
+            "profileId", "profile_id",
+            "username", "username",
+            "firstName", "first_name",
+            "lastName", "last_name",
+            "email", "email",
+            "phoneNumber", "phone_number",
+            "version", "version");
+    private static final FieldProjection ALL_PROFILE_FIELDS = FieldProjection.of(null, PROFILE_FIELDS);
+    private static final FieldProjection VERSION_ONLY = FieldProjection.of(Set.of("version"), PROFILE_FIELDS, "profileId");
     private final DynamoDbClient dynamoDbClient;
+    private final BatchLoader<String, Map<String, AttributeValue>> profileLoader;
+    private final OffHeapCache nearCache;
+    // Bumped before every eviction; a read only fills the near cache if no write happened while it ran.
+    private final AtomicLong nearCacheGeneration = new AtomicLong();
 
     @Inject
     public ProfileDao(DynamoDbClient dynamoDbClient) {
+        this(dynamoDbClient, null, null);
+    }
+
+    /**
+     * Creates a DAO whose full-profile point reads are coalesced: concurrent {@link #getProfile} calls
+     * arriving within {@code coalescingWindow} of each other share one BatchGetItem.
+     */
+    public ProfileDao(DynamoDbClient dynamoDbClient, Duration coalescingWindow) {
+        this(dynamoDbClient, coalescingWindow, null);
+    }
+
+    /**
+     * Creates a DAO that additionally keeps full profiles in {@code nearCache}. Writes made through
+     * this DAO evict the cached copy, and the next read fills it again. Either argument may be {@code null} to disable it.
+     */
+    public ProfileDao(DynamoDbClient dynamoDbClient, Duration coalescingWindow, OffHeapCache nearCache) {
         this.dynamoDbClient = dynamoDbClient;
+        this.profileLoader = coalescingWindow != null
+                ? new BatchLoader<>(this::loadProfileItems, coalescingWindow, BATCH_GET_CHUNK_SIZE)
+                : null;
+        this.nearCache = nearCache;
+    }
+
+    /** Sends any coalesced reads still waiting and stops the loader's threads. */
+    @Override
+    public void close() {
+        if (profileLoader != null) {
+            profileLoader.close();
+        }
     }
 
     public CreateProfileResponse createProfile(CreateProfileRequest request) {
@@ -39,40 +114,76 @@ public class ProfileDao {
         item.put("phone_number", AttributeValue.builder().s(request.getPhoneNumber()).build());
         item.put("created_at", AttributeValue.builder().s(now.toString()).build());
         item.put("updated_at", AttributeValue.builder().s(now.toString()).build());
+        item.put("version", AttributeValue.builder().n("1").build());
 
-        try {
-            PutItemRequest putItemRequest = PutItemRequest.builder()
-                    .tableName(TABLE_NAME)
-                    .item(item)
-                    .conditionExpression("attribute_not_exists(email) AND attribute_not_exists(username)")
-                    .build();
+        List<TransactWriteItem> writes = new ArrayList<>();
+        writes.add(TransactWriteItem.builder()
+                .put(Put.builder()
+                        .tableName(TABLE_NAME)
+                        .item(item)
+                        .conditionExpression("attribute_not_exists(profile_id)")
+                        .build())
+                .build());
+        if (request.getEmail() != null) {
+            writes.add(claimMarker(emailMarkerId(request.getEmail()), profileId));
+        }
+        if (request.getUsername() != null) {
+            writes.add(claimMarker(usernameMarkerId(request.getUsername()), profileId));
+        }
 
-            dynamoDbClient.putItem(putItemRequest);
+        try {
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                    .transactItems(writes)
+                    .build());
             return CreateProfileResponse.builder()
                     .id(profileId)
                     .message("Profile created successfully")
                     .build();
-        } catch (ConditionalCheckFailedException e) {
-            throw new IllegalStateException("Email or username already exists", e);
+        } catch (TransactionCanceledException e) {
+            if (isConditionalFailure(e)) {
+                throw new ConflictException("Email or username already exists", e);
+            }
+            throw e;
         }
     }
 
     public GetProfileResponse getProfile(String profileId) {
+        return getProfile(profileId, null);
+    }
+
+    /**
+     * Reads a profile, asking DynamoDB only for the requested fields when {@code fields} is given.
+     * The version is always returned so callers can derive an ETag. Unknown field names are rejected
+     * with an {@link IllegalArgumentException}.
+     */
+    public GetProfileResponse getProfile(String profileId, Set<String> fields) {
+        FieldProjection projection = FieldProjection.of(fields, PROFILE_FIELDS, "profileId", "version");
+        boolean fullProfile = projection.isAll() && !isMarkerId(profileId);
         try {
-            GetItemRequest request = GetItemRequest.builder()
-                .tableName("Profiles")
-                .key(Map.of("profileId", AttributeValue.builder().s(profileId).build()))
-                .build();
+            Profile cached = fullProfile && nearCache != null ? nearCache.get(profileId, CompactCodecs.PROFILE) : null;
+            if (cached != null) {
+                return GetProfileResponse.builder()
+                    .success(true)
+                    .profile(cached)
+                    .build();
+            }
 
-            GetItemResponse response = dynamoDbClient.getItem(request);
-            if (!response.hasItem()) {
+            long generation = nearCacheGeneration.get();
+            Map<String, AttributeValue> item = profileLoader != null && fullProfile
+                ? join(profileLoader.load(profileId))
+                : getProfileItem(profileId, projection, false);
+            if (item == null) {
                 return GetProfileResponse.builder()
                     .success(false)
                     .message("Profile not found")
                     .build();
             }
 
-            Profile profile = mapToProfile(response.item());
+            Profile profile = mapToProfile(item);
+            if (fullProfile && nearCache != null) {
+                nearCache.putIf(profileId, profile, CompactCodecs.PROFILE,
+                    () -> nearCacheGeneration.get() == generation);
+            }
             return GetProfileResponse.builder()
                 .success(true)
                 .profile(profile)
@@ -86,30 +197,144 @@ public class ProfileDao {
         }
     }
 
+    /**
+     * Reads just the version of a profile, which is all a conditional GET needs to decide on a 304.
+     * The read is strongly consistent, so a write that just succeeded is never answered with a stale
+     * 304. Profiles written before versioning existed report version 0.
+     */
+    public Optional<Long> getProfileVersion(String profileId) {
+        Map<String, AttributeValue> item = getProfileItem(profileId, VERSION_ONLY, true);
+        if (item == null) {
+            return Optional.empty();
+        }
+        AttributeValue version = item.get("version");
+        return Optional.of(version != null ? Long.parseLong(version.n()) : 0L);
+    }
+
+    /**
+     * Fetches many profiles with BatchGetItem. Ids are de-duplicated and split into chunks of 100
+     * that are requested concurrently; unprocessed keys are retried with backoff. Profiles come back
+     * in request order and ids that do not exist are simply absent from the result.
+     */
+    public List<Profile> getProfiles(Collection<String> profileIds) {
+        List<String> uniqueIds = profileIds.stream()
+                .distinct()
+                .filter(id -> !isMarkerId(id))
+                .collect(Collectors.toList());
+        if (uniqueIds.size() > MAX_BATCH_GET_IDS) {
+            throw new IllegalArgumentException("Cannot request more than " + MAX_BATCH_GET_IDS + " profiles at once");
+        }
+
+        List<CompletableFuture<List<Map<String, AttributeValue>>>> chunks = new ArrayList<>();
+        for (int start = 0; start < uniqueIds.size(); start += BATCH_GET_CHUNK_SIZE) {
+            List<String> chunk = uniqueIds.subList(start, Math.min(start + BATCH_GET_CHUNK_SIZE, uniqueIds.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> batchGetChunk(chunk), BATCH_EXECUTOR));
+        }
+
+        Map<String, Profile> found = new HashMap<>();
+        for (CompletableFuture<List<Map<String, AttributeValue>>> chunk : chunks) {
+            for (Map<String, AttributeValue> item : join(chunk)) {
+                Profile profile = mapToProfile(item);
+                found.put(profile.getProfileId(), profile);
+            }
+        }
+
+        return uniqueIds.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    public BatchGetProfilesResponse batchGetProfiles(List<String> profileIds) {
+        List<Profile> profiles = getProfiles(profileIds);
+        Set<String> foundIds = profiles.stream().map(Profile::getProfileId).collect(Collectors.toSet());
+        return BatchGetProfilesResponse.builder()
+                .profiles(profiles)
+                .notFound(profileIds.stream()
+                        .distinct()
+                        .filter(id -> !foundIds.contains(id))
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    private Map<String, Map<String, AttributeValue>> loadProfileItems(List<String> profileIds) {
+        return batchGetChunk(profileIds).stream()
+                .collect(Collectors.toMap(item -> getStringValue(item, "profile_id"), item -> item));
+    }
+
+    private List<Map<String, AttributeValue>> batchGetChunk(List<String> profileIds) {
+        Map<String, KeysAndAttributes> requestItems = Map.of(TABLE_NAME, KeysAndAttributes.builder()
+                .keys(profileIds.stream()
+                        .map(id -> Map.of("profile_id", AttributeValue.builder().s(id).build()))
+                        .collect(Collectors.toList()))
+                .build());
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        for (int attempt = 1; ; attempt++) {
+            BatchGetItemResponse response = dynamoDbClient.batchGetItem(BatchGetItemRequest.builder()
+                    .requestItems(requestItems)
+                    .build());
+            items.addAll(response.responses().getOrDefault(TABLE_NAME, List.of()));
+
+            if (!response.hasUnprocessedKeys() || response.unprocessedKeys().isEmpty()) {
+                return items;
+            }
+            if (attempt >= MAX_BATCH_ATTEMPTS) {
+                throw new IllegalStateException("Unprocessed profile keys remain after " + attempt + " attempts");
+            }
+            requestItems = response.unprocessedKeys();
+            Backoff.pauseUninterruptibly(attempt);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Resolves the profile that owns {@code email} through its uniqueness marker. Both reads are
+     * strongly consistent, so a profile is visible here as soon as {@link #createProfile} returns.
+     */
     public GetProfileResponse getProfileByEmail(String email) {
+        return getProfileByMarker(emailMarkerId(email));
+    }
+
+    public GetProfileResponse getProfileByUsername(String username) {
+        return getProfileByMarker(usernameMarkerId(username));
+    }
+
+    private GetProfileResponse getProfileByMarker(String markerId) {
         try {
-            QueryRequest request = QueryRequest.builder()
+            GetItemResponse marker = dynamoDbClient.getItem(GetItemRequest.builder()
                 .tableName(TABLE_NAME)
-                .indexName("EmailIndex")
-                .keyConditionExpression("email = :email")
-                .expressionAttributeValues(Map.of(":email", AttributeValue.builder().s(email).build()))
-                .build();
+                .key(profileKey(markerId))
+                .consistentRead(true)
+                .build());
 
-            QueryResponse response = dynamoDbClient.query(request);
-            if (response.items().isEmpty()) {
+            String ownerId = marker.hasItem() ? getStringValue(marker.item(), "owner_id") : null;
+            Map<String, AttributeValue> item = ownerId != null
+                ? getProfileItem(ownerId, ALL_PROFILE_FIELDS, true)
+                : null;
+            if (item == null) {
                 return GetProfileResponse.builder()
                     .success(false)
                     .message("Profile not found")
                     .build();
             }
 
-            Profile profile = mapToProfile(response.items().get(0));
             return GetProfileResponse.builder()
                 .success(true)
-                .profile(profile)
+                .profile(mapToProfile(item))
                 .build();
         } catch (Exception e) {
-            log.error("Error getting profile by email: {}", e.getMessage());
+            log.error("Error getting profile by {}: {}", markerId.substring(0, markerId.indexOf('#')), e.getMessage());
             return GetProfileResponse.builder()
                 .success(false)
                 .message("Error getting profile")
@@ -118,103 +343,453 @@ public class ProfileDao {
     }
 
     public UpdateProfileResponse updateProfile(String profileId, UpdateProfileRequest request) {
+        return updateProfile(profileId, request, null);
+    }
+
+    /**
+     * Applies the non-null fields of {@code request} and returns the profile as written, so callers
+     * get read-after-write without a second request. When {@code expectedVersion} is given the write
+     * only succeeds if the stored version still matches, otherwise a {@link PreconditionFailedException}
+     * is thrown. A username change moves the username marker in the same transaction as the profile
+     * update, so two profiles can never end up sharing a name.
+     */
+    public UpdateProfileResponse updateProfile(String profileId, UpdateProfileRequest request, Long expectedVersion) {
+        try {
+            return writeProfileUpdate(profileId, request, expectedVersion);
+        } finally {
+            evictCached(profileId);
+        }
+    }
+
+    private UpdateProfileResponse writeProfileUpdate(String profileId, UpdateProfileRequest request,
+                                                     Long expectedVersion) {
         Instant now = Instant.now();
-        Map<String, AttributeValue> key = Map.of("profile_id", AttributeValue.builder().s(profileId).build());
-        
+
         Map<String, String> expressionAttributeNames = new HashMap<>();
         Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
         StringBuilder updateExpression = new StringBuilder("SET updated_at = :updated_at");
 
         expressionAttributeValues.put(":updated_at", AttributeValue.builder().s(now.toString()).build());
+        updateExpression.append(", #version = if_not_exists(#version, :zero) + :one");
+        expressionAttributeNames.put("#version", "version");
+        expressionAttributeValues.put(":zero", AttributeValue.builder().n("0").build());
+        expressionAttributeValues.put(":one", AttributeValue.builder().n("1").build());
+        appendSet(updateExpression, expressionAttributeNames, expressionAttributeValues, "username", request.getUsername());
+        appendSet(updateExpression, expressionAttributeNames, expressionAttributeValues, "first_name", request.getFirstName());
+        appendSet(updateExpression, expressionAttributeNames, expressionAttributeValues, "last_name", request.getLastName());
+        appendSet(updateExpression, expressionAttributeNames, expressionAttributeValues, "phone_number", request.getPhoneNumber());
 
         if (request.getUsername() != null) {
-            updateExpression.append(", username = :username");
-            expressionAttributeNames.put("#username", "username");
-            expressionAttributeValues.put(":username", AttributeValue.builder().s(request.getUsername()).build());
-        }
-
-        if (request.getFirstName() != null) {
-            updateExpression.append(", first_name = :first_name");
-            expressionAttributeNames.put("#first_name", "first_name");
-            expressionAttributeValues.put(":first_name", AttributeValue.builder().s(request.getFirstName()).build());
-        }
-
-        if (request.getLastName() != null) {
-            updateExpression.append(", last_name = :last_name");
-            expressionAttributeNames.put("#last_name", "last_name");
-            expressionAttributeValues.put(":last_name", AttributeValue.builder().s(request.getLastName()).build());
+            Map<String, AttributeValue> current = getProfileItem(profileId, ALL_PROFILE_FIELDS, true);
+            if (current == null) {
+                throw new IllegalStateException("Profile not found: " + profileId);
+            }
+            String currentUsername = getStringValue(current, "username");
+            if (currentUsername == null
+                    || !usernameMarkerId(currentUsername).equals(usernameMarkerId(request.getUsername()))) {
+                Profile updated = changeUsername(profileId, current, request, expectedVersion, updateExpression.toString(),
+                        expressionAttributeNames, expressionAttributeValues);
+                return UpdateProfileResponse.builder()
+                        .message("Profile updated successfully")
+                        .profile(updated)
+                        .build();
+            }
         }
 
-        if (request.getPhoneNumber() != null) {
-            updateExpression.append(", phone_number = :phone_number");
-            expressionAttributeNames.put("#phone_number", "phone_number");
-            expressionAttributeValues.put(":phone_number", AttributeValue.builder().s(request.getPhoneNumber()).build());
+        String condition = "attribute_exists(profile_id)";
+        if (expectedVersion != null) {
+            condition += " AND " + versionCondition(expectedVersion, ":expected_version", expressionAttributeValues);
         }
 
         try {
             UpdateItemRequest updateItemRequest = UpdateItemRequest.builder()
                     .tableName(TABLE_NAME)
-                    .key(key)
+                    .key(profileKey(profileId))
                     .updateExpression(updateExpression.toString())
                     .expressionAttributeNames(expressionAttributeNames)
                     .expressionAttributeValues(expressionAttributeValues)
-                    .conditionExpression("attribute_exists(profile_id)")
+                    .conditionExpression(condition)
+                    .returnValues(ReturnValue.ALL_NEW)
+                    .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
                     .build();
 
-            dynamoDbClient.updateItem(updateItemRequest);
+            UpdateItemResponse response = dynamoDbClient.updateItem(updateItemRequest);
             return UpdateProfileResponse.builder()
                     .message("Profile updated successfully")
+                    .profile(mapToProfile(response.attributes()))
                     .build();
         } catch (ConditionalCheckFailedException e) {
+            if (expectedVersion != null && e.hasItem()) {
+                throw new PreconditionFailedException("Profile version does not match: " + profileId, e);
+            }
             throw new IllegalStateException("Profile not found: " + profileId, e);
         }
     }
 
+    /**
+     * Runs the transactional variant of an update. Transactions cannot return the written item, so
+     * the update is pinned to the version that was just read and the result is computed locally.
+     */
+    private Profile changeUsername(String profileId, Map<String, AttributeValue> current, UpdateProfileRequest request,
+                                   Long expectedVersion, String updateExpression,
+                                   Map<String, String> expressionAttributeNames,
+                                   Map<String, AttributeValue> expressionAttributeValues) {
+        Profile updated = mapToProfile(current);
+        long currentVersion = updated.getVersion() != null ? updated.getVersion() : 0L;
+        if (expectedVersion != null && expectedVersion != currentVersion) {
+            throw new PreconditionFailedException("Profile version does not match: " + profileId);
+        }
+
+        Map<String, AttributeValue> values = new HashMap<>(expressionAttributeValues);
+        String condition = "attribute_exists(profile_id) AND "
+                + versionCondition(currentVersion, ":current_version", values);
+
+        String currentUsername = updated.getUsername();
+        List<TransactWriteItem> writes = new ArrayList<>();
+        writes.add(TransactWriteItem.builder()
+                .update(Update.builder()
+                        .tableName(TABLE_NAME)
+                        .key(profileKey(profileId))
+                        .updateExpression(updateExpression)
+                        .expressionAttributeNames(expressionAttributeNames)
+                        .expressionAttributeValues(values)
+                        .conditionExpression(condition)
+                        .build())
+                .build());
+        writes.add(claimMarker(usernameMarkerId(request.getUsername()), profileId));
+        if (currentUsername != null) {
+            writes.add(releaseMarker(usernameMarkerId(currentUsername), profileId));
+        }
+
+        try {
+            transactReleasingMarkers(writes, 2);
+        } catch (TransactionCanceledException e) {
+            if (!isConditionalFailure(e)) {
+                throw e;
+            }
+            if (isConditionalFailure(e, 1)) {
+                throw new ConflictException("Username already exists", e);
+            }
+            if (expectedVersion != null) {
+                throw new PreconditionFailedException("Profile version does not match: " + profileId, e);
+            }
+            throw new ConflictException("Profile was modified concurrently: " + profileId, e);
+        }
+
+        updated.setUsername(request.getUsername());
+        if (request.getFirstName() != null) {
+            updated.setFirstName(request.getFirstName());
+        }
+        if (request.getLastName() != null) {
+            updated.setLastName(request.getLastName());
+        }
+        if (request.getPhoneNumber() != null) {
+            updated.setPhoneNumber(request.getPhoneNumber());
+        }
+        return updated.setVersion(currentVersion + 1);
+    }
+
+    /**
+     * Drops the cached copy rather than writing the new one through: two writers can finish in either
+     * order, and only DynamoDB knows which version is newest.
+     */
+    private void evictCached(String profileId) {
+        if (nearCache != null) {
+            nearCacheGeneration.incrementAndGet();
+            nearCache.remove(profileId);
+        }
+    }
+
+    /**
+     * Profiles written before versioning have no version attribute; they count as version 0.
+     */
+    private static String versionCondition(long version, String placeholder, Map<String, AttributeValue> values) {
+        if (version == 0) {
+            return "attribute_not_exists(#version)";
+        }
+        values.put(placeholder, AttributeValue.builder().n(Long.toString(version)).build());
+        return "#version = " + placeholder;
+    }
+
+    /**
+     * Deletes the profile together with the uniqueness markers it owns. Markers that are missing,
+     * which is the case for profiles written before markers existed, are ignored, and so are markers
+     * the backfill found already owned by another profile.
+     */
     public void deleteProfile(String profileId) {
-        DeleteItemRequest deleteItemRequest = DeleteItemRequest.builder()
-                .tableName(TABLE_NAME)
-                .key(Map.of("profile_id", AttributeValue.builder().s(profileId).build()))
-                .conditionExpression("attribute_exists(profile_id)")
-                .build();
+        Map<String, AttributeValue> current = getProfileItem(profileId, ALL_PROFILE_FIELDS, true);
+        if (current == null) {
+            throw new IllegalStateException("Profile not found: " + profileId);
+        }
+
+        List<TransactWriteItem> writes = new ArrayList<>();
+        writes.add(TransactWriteItem.builder()
+                .delete(Delete.builder()
+                        .tableName(TABLE_NAME)
+                        .key(profileKey(profileId))
+                        .conditionExpression("attribute_exists(profile_id)")
+                        .build())
+                .build());
+        String email = getStringValue(current, "email");
+        if (email != null) {
+            writes.add(releaseMarker(emailMarkerId(email), profileId));
+        }
+        String username = getStringValue(current, "username");
+        if (username != null) {
+            writes.add(releaseMarker(usernameMarkerId(username), profileId));
+        }
+
+        try {
+            transactReleasingMarkers(writes, 1);
+        } catch (TransactionCanceledException e) {
+            if (isConditionalFailure(e)) {
+                throw new IllegalStateException("Profile not found: " + profileId, e);
+            }
+            throw e;
+        } finally {
+            evictCached(profileId);
+        }
+    }
+
+    /**
+     * Runs {@code writes}, where every write from {@code firstRelease} on is a {@link #releaseMarker}.
+     * A release whose condition fails names a marker owned by another profile, which is not ours to
+     * delete, so it is dropped and the rest of the transaction retried instead of failing the write.
+     */
+    private void transactReleasingMarkers(List<TransactWriteItem> writes, int firstRelease) {
+        List<TransactWriteItem> remaining = writes;
+        while (true) {
+            try {
+                dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                        .transactItems(remaining)
+                        .build());
+                return;
+            } catch (TransactionCanceledException e) {
+                List<TransactWriteItem> retry = new ArrayList<>(remaining.size());
+                for (int i = 0; i < remaining.size(); i++) {
+                    if (i >= firstRelease && isConditionalFailure(e, i)) {
+                        log.warn("Marker {} is owned by another profile, leaving it in place",
+                                remaining.get(i).delete().key().get("profile_id").s());
+                    } else {
+                        retry.add(remaining.get(i));
+                    }
+                }
+                if (retry.size() == remaining.size()) {
+                    throw e;
+                }
+                remaining = retry;
+            }
+        }
+    }
+
+    /**
+     * Writes the email and username markers for profiles created before markers existed. Safe to run
+     * more than once. A marker already owned by another profile is logged and counted rather than
+     * overwritten; the returned count is the number of such conflicts left for manual cleanup.
+     */
+    public long backfillUniquenessMarkers() {
+        long[] conflicts = new long[1];
+        new ParallelScanner(dynamoDbClient, ADMIN_SCAN_SEGMENTS)
+                .scan(ScanRequest.builder()
+                                .tableName(TABLE_NAME)
+                                .limit(MAX_PAGE_SIZE)
+                                .filterExpression(PROFILES_ONLY_FILTER)
+                                .build(),
+                        item -> {
+                            String profileId = getStringValue(item, "profile_id");
+                            String email = getStringValue(item, "email");
+                            String username = getStringValue(item, "username");
+                            if (email != null && !backfillMarker(emailMarkerId(email), profileId)) {
+                                conflicts[0]++;
+                            }
+                            if (username != null && !backfillMarker(usernameMarkerId(username), profileId)) {
+                                conflicts[0]++;
+                            }
+                        });
+        return conflicts[0];
+    }
 
+    private boolean backfillMarker(String markerId, String profileId) {
         try {
-            dynamoDbClient.deleteItem(deleteItemRequest);
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .item(markerItem(markerId, profileId))
+                    .conditionExpression(MARKER_RELEASE_CONDITION)
+                    .expressionAttributeValues(Map.of(":owner_id", AttributeValue.builder().s(profileId).build()))
+                    .build());
+            return true;
         } catch (ConditionalCheckFailedException e) {
-            throw new IllegalStateException("Profile not found: " + profileId, e);
+            log.warn("Marker {} is already owned by another profile, skipping {}", markerId, profileId);
+            return false;
         }
     }
 
-    public ListProfilesResponse listProfiles() {
-        ScanRequest scanRequest = ScanRequest.builder()
-                .tableName(TABLE_NAME)
-                .build();
+    public ListProfilesResponse listProfiles(Integer limit, String nextToken) {
+        return listProfiles(limit, nextToken, null);
+    }
 
-        List<ProfileSummary> profiles = new ArrayList<>();
-        String lastEvaluatedKey = null;
+    /**
+     * Lists one page of profiles. The marker filter is applied after {@code Limit}, so a Scan page that
+     * met markers comes back short; further pages are read, each limited to the profiles still
+     * missing, until the page is full or the table ends.
+     */
+    public ListProfilesResponse listProfiles(Integer limit, String nextToken, Set<String> fields) {
+        FieldProjection projection = FieldProjection.of(fields, SUMMARY_FIELDS, "profileId");
+        int pageSize = resolvePageSize(limit);
+        Map<String, AttributeValue> startKey = PaginationToken.decode(nextToken);
+        List<ProfileSummary> profiles = new ArrayList<>(pageSize);
+        do {
+            ScanResponse result = dynamoDbClient.scan(ScanRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .limit(pageSize - profiles.size())
+                    .exclusiveStartKey(startKey)
+                    .filterExpression(PROFILES_ONLY_FILTER)
+                    .projectionExpression(projection.projectionExpression())
+                    .expressionAttributeNames(projection.expressionAttributeNames())
+                    .build());
+            result.items().forEach(item -> profiles.add(mapToProfileSummary(item)));
+            startKey = lastEvaluatedKey(result);
+        } while (startKey != null && profiles.size() < pageSize);
 
+        return ListProfilesResponse.builder()
+                .profiles(profiles)
+                .nextToken(PaginationToken.encode(startKey))
+                .build();
+    }
+
+    /**
+     * Walks the whole table one Scan page at a time, handing each page to the consumer before the
+     * next one is requested so that only a single page is ever held in memory.
+     */
+    public void forEachProfilePage(Consumer<List<ProfileSummary>> pageConsumer) {
+        Map<String, AttributeValue> exclusiveStartKey = null;
         do {
-            ScanResponse result = dynamoDbClient.scan(scanRequest);
-            profiles.addAll(result.items().stream()
+            ScanResponse result = dynamoDbClient.scan(ScanRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .limit(MAX_PAGE_SIZE)
+                    .exclusiveStartKey(exclusiveStartKey)
+                    .filterExpression(PROFILES_ONLY_FILTER)
+                    .build());
+
+            pageConsumer.accept(result.items().stream()
                     .map(this::mapToProfileSummary)
                     .collect(Collectors.toList()));
+            exclusiveStartKey = lastEvaluatedKey(result);
+        } while (exclusiveStartKey != null);
+    }
 
-            Map<String, AttributeValue> lastKey = result.lastEvaluatedKey();
-            lastEvaluatedKey = (lastKey != null && lastKey.containsKey("profile_id")) 
-                ? lastKey.get("profile_id").s() 
-                : null;
-            if (lastEvaluatedKey != null) {
-                scanRequest = ScanRequest.builder()
+    /**
+     * Visits every profile using a parallel segmented Scan. Intended for admin jobs that need the
+     * whole table and do not care about order; the consumer is always called on the caller's thread.
+     */
+    public long scanAllProfiles(Consumer<ProfileSummary> consumer, ScanProgressListener listener) {
+        return new ParallelScanner(dynamoDbClient, ADMIN_SCAN_SEGMENTS)
+                .scan(ScanRequest.builder()
+                                .tableName(TABLE_NAME)
+                                .limit(MAX_PAGE_SIZE)
+                                .filterExpression(PROFILES_ONLY_FILTER)
+                                .build(),
+                        item -> consumer.accept(mapToProfileSummary(item)),
+                        listener);
+    }
+
+    /**
+     * Reads a profile item by id, returning {@code null} when it does not exist. Marker ids are
+     * never handed to DynamoDB so they cannot be read back as profiles.
+     */
+    private Map<String, AttributeValue> getProfileItem(String profileId, FieldProjection projection, boolean consistentRead) {
+        if (isMarkerId(profileId)) {
+            return null;
+        }
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .key(profileKey(profileId))
+                .projectionExpression(projection.projectionExpression())
+                .expressionAttributeNames(projection.expressionAttributeNames())
+                .consistentRead(consistentRead)
+                .build());
+        return response.hasItem() ? response.item() : null;
+    }
+
+    private static void appendSet(StringBuilder updateExpression, Map<String, String> names,
+                                  Map<String, AttributeValue> values, String attribute, String value) {
+        if (value == null) {
+            return;
+        }
+        updateExpression.append(", #").append(attribute).append(" = :").append(attribute);
+        names.put("#" + attribute, attribute);
+        values.put(":" + attribute, AttributeValue.builder().s(value).build());
+    }
+
+    private static TransactWriteItem claimMarker(String markerId, String profileId) {
+        return TransactWriteItem.builder()
+                .put(Put.builder()
                         .tableName(TABLE_NAME)
-                        .exclusiveStartKey(result.lastEvaluatedKey())
-                        .build();
-            }
-        } while (lastEvaluatedKey != null);
+                        .item(markerItem(markerId, profileId))
+                        .conditionExpression("attribute_not_exists(profile_id)")
+                        .build())
+                .build();
+    }
 
-        return ListProfilesResponse.builder()
-                .profiles(profiles)
+    private static TransactWriteItem releaseMarker(String markerId, String profileId) {
+        return TransactWriteItem.builder()
+                .delete(Delete.builder()
+                        .tableName(TABLE_NAME)
+                        .key(profileKey(markerId))
+                        .conditionExpression(MARKER_RELEASE_CONDITION)
+                        .expressionAttributeValues(Map.of(":owner_id", AttributeValue.builder().s(profileId).build()))
+                        .build())
                 .build();
     }
 
+    private static Map<String, AttributeValue> markerItem(String markerId, String profileId) {
+        return Map.of(
+                "profile_id", AttributeValue.builder().s(markerId).build(),
+                "owner_id", AttributeValue.builder().s(profileId).build());
+    }
+
+    private static Map<String, AttributeValue> profileKey(String profileId) {
+        return Map.of("profile_id", AttributeValue.builder().s(profileId).build());
+    }
+
+    static String emailMarkerId(String email) {
+        return EMAIL_MARKER_PREFIX + email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static String usernameMarkerId(String username) {
+        return USERNAME_MARKER_PREFIX + username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isMarkerId(String profileId) {
+        return profileId.startsWith(EMAIL_MARKER_PREFIX) || profileId.startsWith(USERNAME_MARKER_PREFIX);
+    }
+
+    private static boolean isConditionalFailure(TransactionCanceledException e) {
+        return e.hasCancellationReasons() && e.cancellationReasons().stream()
+                .anyMatch(reason -> "ConditionalCheckFailed".equals(reason.code()));
+    }
+
+    private static boolean isConditionalFailure(TransactionCanceledException e, int index) {
+        return e.hasCancellationReasons() && e.cancellationReasons().size() > index
+                && "ConditionalCheckFailed".equals(e.cancellationReasons().get(index).code());
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    private Map<String, AttributeValue> lastEvaluatedKey(ScanResponse result) {
+        return result.hasLastEvaluatedKey() && !result.lastEvaluatedKey().isEmpty()
+                ? result.lastEvaluatedKey()
+                : null;
+    }
+
     private ProfileSummary mapToProfileSummary(Map<String, AttributeValue> item) {
         return ProfileSummary.builder()
             .profileId(getStringValue(item, "profile_id"))
@@ -238,6 +813,7 @@ public class ProfileDao {
             .lastName(getStringValue(item, "last_name"))
             .email(getStringValue(item, "email"))
             .phoneNumber(getStringValue(item, "phone_number"))
+            .version(item.containsKey("version") ? Long.valueOf(item.get("version").n()) : null)
             .build();
     }
 }
@@ -0,0 +1,108 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates the results of a query one page at a time. A page is only requested once the previous one
+ * has been consumed, so at most one page is held in memory and a caller that stops early never pays
+ * for the pages it did not reach. Iteration stops after {@code limit} items even mid-page.
+ *
+ * <p>{@link #nextToken()} is a {@link PaginationToken} for resuming right after the last item handed
+ * out, whether or not that item ended its page; it is {@code null} once the query is exhausted.
+ * Cursors are not thread-safe.
+ */
+public final class QueryCursor<T> implements Iterator<T> {
+    private final Function<Map<String, AttributeValue>, SdkIterable<Page<T>>> query;
+    private final Function<T, Map<String, AttributeValue>> keyOf;
+    private final Map<String, AttributeValue> startKey;
+    private final Integer limit;
+
+    private Iterator<Page<T>> pages;
+    private Iterator<T> items = Collections.emptyIterator();
+    private boolean lastPage;
+    private T last;
+    private int returned;
+
+    /**
+     * @param query   runs the query from the given exclusive start key ({@code null} for the start)
+     * @param keyOf   the key attributes of an item, including those of the index being queried
+     * @param startKey where a previous cursor stopped, or {@code null}
+     * @param limit   the most items to return, or {@code null} for all of them
+     */
+    public QueryCursor(Function<Map<String, AttributeValue>, SdkIterable<Page<T>>> query,
+                       Function<T, Map<String, AttributeValue>> keyOf,
+                       Map<String, AttributeValue> startKey, Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        this.query = query;
+        this.keyOf = keyOf;
+        this.startKey = startKey;
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return (limit == null || returned < limit) && fill();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        last = items.next();
+        returned++;
+        return last;
+    }
+
+    /** The remaining items as a sequential stream over this cursor. */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * A token that resumes the query after the last item returned, or {@code null} if the query is
+     * known to be exhausted. This never fetches a page: stopping exactly at the end of a page that had
+     * a successor yields a token whose query may turn out empty, as with DynamoDB's own
+     * {@code LastEvaluatedKey}.
+     */
+    public String nextToken() {
+        if (!items.hasNext() && lastPage) {
+            return null;
+        }
+        return PaginationToken.encode(last != null ? keyOf.apply(last) : startKey);
+    }
+
+    /** Requests pages until one has an unread item; false once the last page has been read. */
+    private boolean fill() {
+        while (!items.hasNext()) {
+            if (lastPage) {
+                return false;
+            }
+            if (pages == null) {
+                pages = query.apply(startKey).iterator();
+            }
+            if (!pages.hasNext()) {
+                lastPage = true;
+                return false;
+            }
+            Page<T> page = pages.next();
+            items = page.items().iterator();
+            lastPage = page.lastEvaluatedKey() == null || page.lastEvaluatedKey().isEmpty();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,12 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+/**
+ * Receives per-segment progress from a {@link ParallelScanner}. Callbacks arrive on the segment's
+ * worker thread, so implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface ScanProgressListener {
+    ScanProgressListener NONE = (segment, pageItemCount, segmentItemCount, segmentComplete) -> { };
+
+    void onPage(int segment, int pageItemCount, long segmentItemCount, boolean segmentComplete);
+}
@@ -0,0 +1,109 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Time-ordered identifiers in the ULID format: 26 Crockford base-32 characters holding a 48-bit
+ * millisecond timestamp followed by 80 random bits. The characters' ASCII order matches their value,
+ * so DynamoDB's string ordering of an id is its creation order, and a time range maps to a key range.
+ *
+ * <p>Randomness comes from {@link ThreadLocalRandom} rather than {@code SecureRandom}, so generating
+ * an id never contends on a shared lock. Ids generated on the same thread within one millisecond
+ * increment the random part instead of drawing a new one, so they still sort in generation order.
+ */
+public final class Ulid {
+    static final int LENGTH = 26;
+    private static final String DIGITS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    private static final int TIME_LENGTH = 10;
+    private static final long MAX_TIME = (1L << 48) - 1;
+    private static final ThreadLocal<Generator> GENERATOR = ThreadLocal.withInitial(Generator::new);
+
+    private Ulid() {
+    }
+
+    public static String next(Instant at) {
+        return GENERATOR.get().next(at.toEpochMilli());
+    }
+
+    /**
+     * A deterministic id for {@code at} that takes its random part from {@code uuid}, so re-keying
+     * the same UUID twice yields the same id.
+     */
+    public static String fromUuid(Instant at, UUID uuid) {
+        return encode(at.toEpochMilli(), uuid.getMostSignificantBits() >>> 48, uuid.getLeastSignificantBits());
+    }
+
+    /** The smallest id that can be generated at {@code at}. */
+    public static String lowerBound(Instant at) {
+        return encode(at.toEpochMilli(), 0, 0);
+    }
+
+    /** The largest id that can be generated at {@code at}. */
+    public static String upperBound(Instant at) {
+        return encode(at.toEpochMilli(), 0xFFFF, -1L);
+    }
+
+    public static boolean isUlid(String id) {
+        if (id == null || id.length() != LENGTH || id.charAt(0) > '7') {
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            if (DIGITS.indexOf(id.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static Instant timestamp(String id) {
+        if (!isUlid(id)) {
+            throw new IllegalArgumentException("Not a ULID: " + id);
+        }
+        long millis = 0;
+        for (int i = 0; i < TIME_LENGTH; i++) {
+            millis = (millis << 5) | DIGITS.indexOf(id.charAt(i));
+        }
+        return Instant.ofEpochMilli(millis);
+    }
+
+    /** Encodes a timestamp, the low 16 bits of {@code high} and all 64 bits of {@code low}. */
+    private static String encode(long millis, long high, long low) {
+        if (millis < 0 || millis > MAX_TIME) {
+            throw new IllegalArgumentException("Timestamp out of ULID range: " + millis);
+        }
+        char[] chars = new char[LENGTH];
+        for (int i = TIME_LENGTH - 1; i >= 0; i--) {
+            chars[i] = DIGITS.charAt((int) (millis & 31));
+            millis >>>= 5;
+        }
+        // The 80-bit value high:low, five bits per character from the least significant end.
+        long hi = high & 0xFFFF;
+        long lo = low;
+        for (int i = LENGTH - 1; i >= TIME_LENGTH; i--) {
+            chars[i] = DIGITS.charAt((int) (lo & 31));
+            lo = (lo >>> 5) | ((hi & 31) << 59);
+            hi >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private static final class Generator {
+        private long lastMillis = -1;
+        private long high;
+        private long low;
+
+        String next(long millis) {
+            if (millis != lastMillis) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                lastMillis = millis;
+                high = random.nextInt(1 << 16);
+                low = random.nextLong();
+            } else if (++low == 0) {
+                high = (high + 1) & 0xFFFF;
+            }
+            return encode(millis, high, low);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Queues writes and hands them to a batch writer from a fixed set of flusher threads. Each flusher
+ * takes up to {@code batchSize} items off a lock-free queue and writes them once the batch is full
+ * or its oldest item has waited {@code maxDelay}, so the batch size adapts to load instead of
+ * costing a round trip per item.
+ *
+ * <p>The batch writer returns the items it could not write (for {@code BatchWriteItem}, the
+ * unprocessed items); those are retried with backoff up to {@value #MAX_ATTEMPTS} attempts. Each
+ * {@link #submit} returns a future that completes with the item once it was written, or
+ * exceptionally if the writer threw or the item was still unprocessed after the last attempt.
+ *
+ * <p>The queue holds at most {@code capacity} items; {@link #submit} rejects anything beyond that
+ * rather than blocking, so callers see backpressure immediately. {@link #close} - and, if the buffer
+ * was not closed, a JVM shutdown hook - stops intake and writes out everything still queued.
+ */
+@Log4j2
+public final class WriteBehindBuffer<T> implements AutoCloseable {
+    static final int MAX_ATTEMPTS = 8;
+
+    private final Function<List<T>, List<T>> batchWriter;
+    private final int batchSize;
+    private final int capacity;
+    private final long maxDelayNanos;
+    private final ConcurrentLinkedQueue<Entry<T>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger nextFlusher = new AtomicInteger();
+    private final LongAdder batches = new LongAdder();
+    private final Thread[] flushers;
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+
+    public WriteBehindBuffer(Function<List<T>, List<T>> batchWriter, int batchSize, Duration maxDelay,
+                             int capacity, int flusherCount) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        if (maxDelay.isNegative() || maxDelay.isZero()) {
+            throw new IllegalArgumentException("Flush deadline must be positive");
+        }
+        if (capacity < batchSize) {
+            throw new IllegalArgumentException("capacity must be at least batchSize");
+        }
+        if (flusherCount < 1) {
+            throw new IllegalArgumentException("flusherCount must be at least 1");
+        }
+        this.batchWriter = batchWriter;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.flushers = new Thread[flusherCount];
+        for (int i = 0; i < flusherCount; i++) {
+            flushers[i] = new Thread(this::runFlusher, "write-behind-flush-" + i);
+            flushers[i].setDaemon(true);
+            flushers[i].start();
+        }
+        this.shutdownHook = new Thread(this::drain, "write-behind-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues {@code item} for the next batch.
+     *
+     * @throws RejectedExecutionException if the queue is full or the buffer is closed
+     */
+    public CompletableFuture<T> submit(T item) {
+        if (closed) {
+            throw new RejectedExecutionException("Write-behind buffer is closed");
+        }
+        int size;
+        do {
+            size = queued.get();
+            if (size >= capacity) {
+                throw new RejectedExecutionException("Write-behind buffer is full (" + capacity + " items queued)");
+            }
+        } while (!queued.compareAndSet(size, size + 1));
+
+        Entry<T> entry = new Entry<>(item, new CompletableFuture<>(), System.nanoTime());
+        queue.offer(entry);
+        if (closed && queue.remove(entry)) {
+            // Lost a race with close(); the flushers may already have stopped.
+            queued.decrementAndGet();
+            throw new RejectedExecutionException("Write-behind buffer is closed");
+        }
+        // Wake a flusher when the queue stops being empty, so the deadline starts counting, and
+        // whenever another full batch is waiting.
+        if (size == 0 || (size + 1) % batchSize == 0) {
+            LockSupport.unpark(flushers[Math.floorMod(nextFlusher.getAndIncrement(), flushers.length)]);
+        }
+        return entry.future();
+    }
+
+    /** Number of items waiting to be picked up by a flusher. */
+    public int queuedCount() {
+        return queued.get();
+    }
+
+    /** Number of batch writer calls issued, retries included. */
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    @Override
+    public void close() {
+        drain();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook is running or has run.
+        }
+    }
+
+    private void drain() {
+        closed = true;
+        for (Thread flusher : flushers) {
+            LockSupport.unpark(flusher);
+        }
+        for (Thread flusher : flushers) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runFlusher() {
+        List<Entry<T>> batch = new ArrayList<>(batchSize);
+        long deadline = 0;
+        while (true) {
+            Entry<T> entry;
+            while (batch.size() < batchSize && (entry = queue.poll()) != null) {
+                queued.decrementAndGet();
+                if (batch.isEmpty()) {
+                    deadline = entry.enqueuedNanos() + maxDelayNanos;
+                }
+                batch.add(entry);
+            }
+            boolean stopping = closed;
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() == batchSize || (!batch.isEmpty() && (stopping || remaining <= 0))) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            } else if (batch.isEmpty() && stopping && queue.isEmpty()) {
+                return;
+            } else {
+                LockSupport.parkNanos(this, batch.isEmpty() ? maxDelayNanos : remaining);
+            }
+        }
+    }
+
+    private void write(List<Entry<T>> batch) {
+        List<Entry<T>> pending = batch;
+        for (int attempt = 1; ; attempt++) {
+            List<T> unprocessed;
+            try {
+                batches.increment();
+                unprocessed = batchWriter.apply(pending.stream().map(Entry::item).toList());
+            } catch (Throwable t) {
+                log.warn("Batch write of {} items failed: {}", pending.size(), t.getMessage());
+                pending.forEach(entry -> entry.future().completeExceptionally(t));
+                return;
+            }
+            Set<T> retry = Collections.newSetFromMap(new IdentityHashMap<>());
+            retry.addAll(unprocessed);
+            List<Entry<T>> remaining = new ArrayList<>(retry.size());
+            for (Entry<T> entry : pending) {
+                if (retry.contains(entry.item())) {
+                    remaining.add(entry);
+                } else {
+                    entry.future().complete(entry.item());
+                }
+            }
+            if (remaining.isEmpty()) {
+                return;
+            }
+            if (attempt == MAX_ATTEMPTS) {
+                IllegalStateException failure = new IllegalStateException(
+                    remaining.size() + " items still unprocessed after " + MAX_ATTEMPTS + " attempts");
+                remaining.forEach(entry -> entry.future().completeExceptionally(failure));
+                return;
+            }
+            pending = remaining;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Backoff.delayMillis(attempt)));
+        }
+    }
+
+    private record Entry<T>(T item, CompletableFuture<T> future, long enqueuedNanos) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.rhythmiq.controlplaneservice.exception;
+
+/**
+ * Raised when a write loses to a uniqueness constraint or a concurrent change. Extends
+ * {@link IllegalStateException} so existing callers that only know about that type keep working.
+ */
+public class ConflictException extends IllegalStateException {
+    public ConflictException(String message) {
+        super(message);
+    }
+
+    public ConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,14 @@
+package com.rhythmiq.controlplaneservice.exception;
+
+/**
+ * Raised when a conditional write names a version (If-Match) that is no longer current.
+ */
+public class PreconditionFailedException extends IllegalStateException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+
+    public PreconditionFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
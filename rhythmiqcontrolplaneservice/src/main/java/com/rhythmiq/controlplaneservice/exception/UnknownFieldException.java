@@ -0,0 +1,7 @@
+package com.rhythmiq.controlplaneservice.exception;
+
+public class UnknownFieldException extends IllegalArgumentException {
+    public UnknownFieldException(String field) {
+        super("Unknown field: " + field);
+    }
+}
@@ -0,0 +1,415 @@
+package com.rhythmiq.controlplaneservice.inference;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rhythmiq.controlplaneservice.dao.AffinityDao;
+import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
+import com.rhythmiq.controlplaneservice.model.Affinity;
+import com.rhythmiq.controlplaneservice.model.Interaction;
+import com.rhythmiq.controlplaneservice.model.Preference;
+import lombok.extern.log4j.Log4j2;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Turns interactions into system-inferred preferences ({@code isUserSet=false}). Each interaction
+ * adds a signed signal to the decayed affinity of the song's artists and genres; the strongest
+ * positive affinities of each type are kept as the profile's inferred preferences.
+ *
+ * <p>The work is incremental: an interaction only touches the affinities of its own song, stored as
+ * individual attributes by {@link AffinityDao}, and only inferred preferences whose content changes
+ * are written. Interactions are buffered by {@link #accept} and applied per profile by
+ * {@link #flush}, either on a fixed interval or explicitly by the caller, so a burst of plays costs
+ * one affinity write for the profile. Every write goes through a token bucket, which keeps this
+ * background traffic from competing with user requests for table capacity.
+ *
+ * <p>Interactions reach the engine by passing {@link #accept} as the write listener of
+ * {@code InteractionDao}, which calls it for every interaction it has stored. This service has no
+ * song catalogue of its own, so no {@link SongMetadataProvider} ships with it; the deployment that
+ * enables inference has to supply one, and until then nothing constructs the engine.
+ */
+@Log4j2
+public class ImplicitPreferenceEngine implements AutoCloseable {
+    static final String INFERRED_ID_PREFIX = "inferred-";
+    static final Duration DEFAULT_HALF_LIFE = Duration.ofDays(30);
+    static final int DEFAULT_MAX_INFERRED_PER_TYPE = 10;
+    static final double DEFAULT_WRITES_PER_SECOND = 10;
+    private static final Set<Preference.PreferenceType> INFERRED_TYPES =
+        EnumSet.of(Preference.PreferenceType.ARTIST, Preference.PreferenceType.GENRE);
+    // Affinities that have decayed below this are dropped from the profile's item.
+    private static final double MIN_TRACKED_SCORE = 0.05;
+    private static final int MAX_TRACKED_AFFINITIES = 500;
+    private static final int MAX_PENDING_INTERACTIONS = 10_000;
+    private static final int MAX_AFFINITY_WRITE_ATTEMPTS = 3;
+    private static final int WRITE_BURST = 5;
+
+    private final PreferenceDao preferenceDao;
+    private final AffinityDao affinityDao;
+    private final SongMetadataProvider songMetadataProvider;
+    private final Cache<String, Optional<SongMetadataProvider.SongMetadata>> songMetadata = Caffeine.newBuilder()
+        .maximumSize(10_000)
+        .expireAfterWrite(Duration.ofHours(6))
+        .build();
+    private final Duration halfLife;
+    private final int maxInferredPerType;
+    private final TokenBucket writeLimiter;
+    private final ScheduledExecutorService scheduler;
+    private final Object pendingLock = new Object();
+    private final Object flushLock = new Object();
+
+    private Map<String, List<Signal>> pending = new LinkedHashMap<>();
+    private int pendingCount;
+
+    /** Creates an engine with default tuning that is only flushed by explicit {@link #flush} calls. */
+    public ImplicitPreferenceEngine(PreferenceDao preferenceDao, AffinityDao affinityDao,
+                                    SongMetadataProvider songMetadataProvider) {
+        this(preferenceDao, affinityDao, songMetadataProvider, DEFAULT_HALF_LIFE, DEFAULT_MAX_INFERRED_PER_TYPE,
+            DEFAULT_WRITES_PER_SECOND, null);
+    }
+
+    /**
+     * @param halfLife           how long it takes an affinity to lose half its weight
+     * @param maxInferredPerType how many inferred preferences of each type a profile keeps
+     * @param writesPerSecond    the sustained rate of affinity and preference writes
+     * @param flushInterval      how often buffered interactions are applied in the background, or
+     *                           {@code null} to leave flushing to the caller
+     */
+    public ImplicitPreferenceEngine(PreferenceDao preferenceDao, AffinityDao affinityDao,
+                                    SongMetadataProvider songMetadataProvider, Duration halfLife,
+                                    int maxInferredPerType, double writesPerSecond, Duration flushInterval) {
+        if (halfLife.isNegative() || halfLife.isZero()) {
+            throw new IllegalArgumentException("Half-life must be positive");
+        }
+        this.preferenceDao = preferenceDao;
+        this.affinityDao = affinityDao;
+        this.songMetadataProvider = songMetadataProvider;
+        this.halfLife = halfLife;
+        this.maxInferredPerType = maxInferredPerType;
+        this.writeLimiter = new TokenBucket(writesPerSecond, WRITE_BURST);
+        if (flushInterval != null) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "implicit-preference-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = flushInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Buffers an interaction for the next flush. Interactions that carry no signal (feedback, or a
+     * rating without a value) are ignored, and so is everything past the buffer's capacity.
+     *
+     * @return whether the interaction was buffered
+     */
+    public boolean accept(Interaction interaction) {
+        double strength = signalStrength(interaction);
+        if (strength == 0 || interaction.getUserId() == null || interaction.getSongId() == null) {
+            return false;
+        }
+        Instant at = interaction.getCreatedAt() != null ? interaction.getCreatedAt() : Instant.now();
+        synchronized (pendingLock) {
+            if (pendingCount >= MAX_PENDING_INTERACTIONS) {
+                log.warn("Implicit preference buffer is full, dropping interaction {}", interaction.getInteractionId());
+                return false;
+            }
+            pending.computeIfAbsent(interaction.getUserId(), userId -> new ArrayList<>())
+                .add(new Signal(interaction.getSongId(), strength, at));
+            pendingCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Applies everything buffered so far, one profile at a time. Interactions whose affinity update
+     * could not be written are put back for the next flush.
+     *
+     * @return the number of profiles whose affinities were updated
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            Map<String, List<Signal>> batch;
+            synchronized (pendingLock) {
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                pendingCount = 0;
+            }
+            int updated = 0;
+            for (Map.Entry<String, List<Signal>> entry : batch.entrySet()) {
+                String profileId = entry.getKey();
+                Collection<Affinity> affinities;
+                try {
+                    affinities = updateAffinities(profileId, entry.getValue());
+                } catch (RuntimeException e) {
+                    log.warn("Failed to update affinities for profile {}, retrying on the next flush", profileId, e);
+                    requeue(profileId, entry.getValue());
+                    continue;
+                }
+                if (affinities == null) {
+                    continue;
+                }
+                updated++;
+                try {
+                    syncInferredPreferences(profileId, affinities);
+                } catch (RuntimeException e) {
+                    // The affinities are stored; the next interaction for the profile syncs again.
+                    log.warn("Failed to update inferred preferences for profile {}", profileId, e);
+                }
+            }
+            return updated;
+        }
+    }
+
+    /** Stops background flushing and applies whatever is still buffered. */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        flush();
+    }
+
+    /**
+     * How much one interaction moves the affinity of each artist and genre of its song. Ratings are
+     * taken to be on a 1 to 5 scale, with 3 neutral.
+     */
+    static double signalStrength(Interaction interaction) {
+        if (interaction.getType() == null) {
+            return 0;
+        }
+        return switch (interaction.getType()) {
+            case PLAY -> 1;
+            case SKIP -> -1;
+            case LIKE -> 4;
+            case DISLIKE -> -4;
+            case RATE -> interaction.getRating() != null ? (interaction.getRating() - 3) * 2 : 0;
+            case FEEDBACK -> 0;
+        };
+    }
+
+    /**
+     * Adds the signals to the profile's stored affinities and writes back the ones they touched,
+     * dropping affinities that have decayed to nothing. Returns every affinity of the profile as
+     * written, or {@code null} if none of the songs were known.
+     */
+    private Collection<Affinity> updateAffinities(String profileId, List<Signal> signals) {
+        for (int attempt = 0; attempt < MAX_AFFINITY_WRITE_ATTEMPTS; attempt++) {
+            AffinityDao.Snapshot snapshot = affinityDao.load(profileId);
+            Map<String, Affinity> affinities = new HashMap<>(snapshot.affinities());
+            Set<String> touched = new HashSet<>();
+            for (Signal signal : signals) {
+                Optional<SongMetadataProvider.SongMetadata> metadata = lookup(signal.songId());
+                if (metadata.isEmpty()) {
+                    continue;
+                }
+                for (String artist : metadata.get().artists()) {
+                    add(affinities, touched, Preference.PreferenceType.ARTIST, artist, signal);
+                }
+                for (String genre : metadata.get().genres()) {
+                    add(affinities, touched, Preference.PreferenceType.GENRE, genre, signal);
+                }
+            }
+            if (touched.isEmpty()) {
+                return null;
+            }
+
+            Instant now = Instant.now();
+            List<Affinity> removed = new ArrayList<>();
+            List<Affinity> ranked = affinities.values().stream()
+                .sorted(Comparator.comparingDouble((Affinity affinity) -> Math.abs(affinity.scoreAt(now, halfLife)))
+                    .reversed())
+                .collect(Collectors.toList());
+            for (int i = 0; i < ranked.size(); i++) {
+                Affinity affinity = ranked.get(i);
+                if (i >= MAX_TRACKED_AFFINITIES || Math.abs(affinity.scoreAt(now, halfLife)) < MIN_TRACKED_SCORE) {
+                    String name = AffinityDao.attributeName(affinity);
+                    affinities.remove(name);
+                    touched.remove(name);
+                    removed.add(affinity);
+                }
+            }
+
+            writeLimiter.acquire();
+            try {
+                affinityDao.write(profileId, touched.stream().map(affinities::get).toList(), removed,
+                    snapshot.version());
+                return affinities.values();
+            } catch (ConditionalCheckFailedException e) {
+                log.debug("Affinities of profile {} changed concurrently, retrying", profileId);
+            }
+        }
+        throw new ConflictException("Affinities were modified concurrently for profile: " + profileId);
+    }
+
+    private void add(Map<String, Affinity> affinities, Set<String> touched, Preference.PreferenceType type,
+                     String value, Signal signal) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        String name = AffinityDao.attributeName(type, value);
+        Affinity current = affinities.get(name);
+        affinities.put(name, current != null
+            ? current.plus(signal.strength(), signal.at(), halfLife)
+            : new Affinity(type, value, signal.strength(), signal.at()));
+        touched.add(name);
+    }
+
+    /**
+     * Makes the profile's inferred preferences the top positive affinities of each type, skipping
+     * values the user already set and staying within the profile's preference limit. Inferred
+     * preferences are numbered after the user-set ones, strongest first, so their indexes never
+     * collide with an index the user chose. Unchanged inferred preferences are not rewritten.
+     */
+    private void syncInferredPreferences(String profileId, Collection<Affinity> affinities) {
+        Instant now = Instant.now();
+        List<Preference> current = preferenceDao.listPreferences(profileId);
+        Map<String, Preference> currentInferred = current.stream()
+            .filter(ImplicitPreferenceEngine::isInferred)
+            .collect(Collectors.toMap(Preference::getPreferenceId, preference -> preference));
+        Set<String> userSet = current.stream()
+            .filter(preference -> !isInferred(preference) && preference.getType() != null && preference.getValue() != null)
+            .map(preference -> AffinityDao.attributeName(preference.getType(), preference.getValue()))
+            .collect(Collectors.toSet());
+        Set<Integer> userIndexes = current.stream()
+            .filter(preference -> !isInferred(preference) && preference.getIndex() != null)
+            .map(Preference::getIndex)
+            .collect(Collectors.toSet());
+
+        List<Preference> desired = new ArrayList<>();
+        for (Preference.PreferenceType type : INFERRED_TYPES) {
+            List<Affinity> top = affinities.stream()
+                .filter(affinity -> affinity.type() == type && affinity.scoreAt(now, halfLife) > 0)
+                .filter(affinity -> !userSet.contains(AffinityDao.attributeName(affinity)))
+                .sorted(Comparator.comparingDouble((Affinity affinity) -> affinity.scoreAt(now, halfLife)).reversed())
+                .limit(maxInferredPerType)
+                .toList();
+            for (int i = 0; i < top.size(); i++) {
+                Affinity affinity = top.get(i);
+                double weight = affinity.scoreAt(now, halfLife) / top.get(0).scoreAt(now, halfLife);
+                desired.add(Preference.builder()
+                    .profileId(profileId)
+                    .preferenceId(inferredId(type, affinity.value()))
+                    .type(type)
+                    .value(affinity.value())
+                    .weight(Math.round(weight * 100) / 100.0)
+                    .isUserSet(false)
+                    .build());
+            }
+        }
+        int capacity = PreferenceDao.MAX_PREFERENCES - (current.size() - currentInferred.size());
+        desired.sort(Comparator.comparing(Preference::getWeight).reversed());
+        if (desired.size() > capacity) {
+            desired = new ArrayList<>(desired.subList(0, Math.max(0, capacity)));
+        }
+        List<Integer> indexes = freeIndexes(userIndexes, desired.size());
+        for (int i = 0; i < desired.size(); i++) {
+            desired.get(i).setIndex(indexes.get(i));
+        }
+
+        // Deletes first, so replaced entries free their slots before new ones are counted.
+        Set<String> desiredIds = desired.stream().map(Preference::getPreferenceId).collect(Collectors.toSet());
+        for (String stale : currentInferred.keySet()) {
+            if (!desiredIds.contains(stale)) {
+                writeLimiter.acquire();
+                preferenceDao.deletePreference(profileId, stale);
+            }
+        }
+        for (Preference preference : desired) {
+            Preference existing = currentInferred.get(preference.getPreferenceId());
+            if (existing != null && Objects.equals(existing.getIndex(), preference.getIndex())
+                && Objects.equals(existing.getWeight(), preference.getWeight())) {
+                continue;
+            }
+            preference.setCreatedAt(existing != null && existing.getCreatedAt() != null ? existing.getCreatedAt() : now);
+            preference.setUpdatedAt(now);
+            writeLimiter.acquire();
+            try {
+                preferenceDao.savePreference(preference);
+            } catch (ConflictException e) {
+                log.debug("Could not save inferred preference {} for profile {}", preference.getPreferenceId(), profileId, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The first {@code count} indexes no user-set preference holds: those after the last user-set
+     * index, then any gaps before it. The profile limit leaves at least {@code count} of them.
+     */
+    private static List<Integer> freeIndexes(Set<Integer> taken, int count) {
+        int next = taken.stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        List<Integer> free = new ArrayList<>(count);
+        for (int index = next; index < PreferenceDao.MAX_PREFERENCES && free.size() < count; index++) {
+            free.add(index);
+        }
+        for (int index = 0; index < next && free.size() < count; index++) {
+            if (!taken.contains(index)) {
+                free.add(index);
+            }
+        }
+        return free;
+    }
+
+    private Optional<SongMetadataProvider.SongMetadata> lookup(String songId) {
+        return songMetadata.get(songId, songMetadataProvider::lookup);
+    }
+
+    private void requeue(String profileId, List<Signal> signals) {
+        synchronized (pendingLock) {
+            if (pendingCount + signals.size() > MAX_PENDING_INTERACTIONS) {
+                log.warn("Implicit preference buffer is full, dropping {} interactions for profile {}",
+                    signals.size(), profileId);
+                return;
+            }
+            pending.computeIfAbsent(profileId, id -> new ArrayList<>()).addAll(signals);
+            pendingCount += signals.size();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Implicit preference flush failed", e);
+        }
+    }
+
+    static boolean isInferred(Preference preference) {
+        return Boolean.FALSE.equals(preference.getIsUserSet())
+            && preference.getPreferenceId() != null
+            && preference.getPreferenceId().startsWith(INFERRED_ID_PREFIX);
+    }
+
+    /** A stable id per type and value, so re-inferring the same value updates it in place. */
+    static String inferredId(Preference.PreferenceType type, String value) {
+        return INFERRED_ID_PREFIX + type.name().toLowerCase() + "-"
+            + UUID.nameUUIDFromBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Signal(String songId, double strength, Instant at) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.rhythmiq.controlplaneservice.inference;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Resolves the artists and genres of a song, which interactions only reference by id. Lookups are
+ * cached by {@link ImplicitPreferenceEngine}, so implementations may call out to a catalogue service.
+ * This service keeps no song catalogue, so it has no implementation of its own.
+ */
+@FunctionalInterface
+public interface SongMetadataProvider {
+
+    /** Returns the song's metadata, or empty if the song is unknown. */
+    Optional<SongMetadata> lookup(String songId);
+
+    record SongMetadata(List<String> artists, List<String> genres) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.rhythmiq.controlplaneservice.inference;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A blocking token bucket: up to {@code burst} permits are available at once and they refill at
+ * {@code permitsPerSecond}. Used to pace background writes, so callers are expected to be threads
+ * that can afford to wait.
+ */
+final class TokenBucket {
+    private final double permitsPerNano;
+    private final double burst;
+    private double available;
+    private long refilledAtNanos;
+
+    TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.available = burst;
+        this.refilledAtNanos = System.nanoTime();
+    }
+
+    /** Takes one permit, waiting for it if the bucket is empty. */
+    void acquire() {
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            available -= 1;
+            waitNanos = available >= 0 ? 0 : (long) Math.ceil(-available / permitsPerNano);
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                // The permit stays taken; the caller sees the interrupt and decides whether to go on.
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(burst, available + (now - refilledAtNanos) * permitsPerNano);
+        refilledAtNanos = now;
+    }
+}
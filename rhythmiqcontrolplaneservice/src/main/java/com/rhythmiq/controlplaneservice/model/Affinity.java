@@ -0,0 +1,35 @@
+package com.rhythmiq.controlplaneservice.model;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A profile's inferred affinity for one artist or genre. The score decays exponentially with the
+ * given half-life, so it is stored together with the time it was last brought up to date and only
+ * ever decayed forward from there; an event is added on top of the score decayed to the event's time.
+ */
+public record Affinity(Preference.PreferenceType type, String value, double score, Instant updatedAt) {
+
+    /** The score as it stands at {@code at}; times before {@link #updatedAt} leave it undecayed. */
+    public double scoreAt(Instant at, Duration halfLife) {
+        long elapsedMillis = Math.max(0, Duration.between(updatedAt, at).toMillis());
+        return score * Math.pow(0.5, (double) elapsedMillis / halfLife.toMillis());
+    }
+
+    public Affinity decayedTo(Instant at, Duration halfLife) {
+        return at.isAfter(updatedAt) ? new Affinity(type, value, scoreAt(at, halfLife), at) : this;
+    }
+
+    /**
+     * Adds an event of strength {@code delta} that happened at {@code at}. An event older than the
+     * last update is decayed to that time instead, so out-of-order events still count for what they
+     * would have been worth.
+     */
+    public Affinity plus(double delta, Instant at, Duration halfLife) {
+        if (at.isBefore(updatedAt)) {
+            double decayedDelta = new Affinity(type, value, delta, at).scoreAt(updatedAt, halfLife);
+            return new Affinity(type, value, score + decayedDelta, updatedAt);
+        }
+        return new Affinity(type, value, scoreAt(at, halfLife) + delta, at);
+    }
+}
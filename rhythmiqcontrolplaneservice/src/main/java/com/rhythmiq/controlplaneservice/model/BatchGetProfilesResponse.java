@@ -0,0 +1,18 @@
+package com.rhythmiq.controlplaneservice.model;
+
+import lombok.Data;
+import lombok.Builder;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.experimental.Accessors;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class BatchGetProfilesResponse {
+    private List<Profile> profiles;
+    private List<String> notFound;
+}
@@ -0,0 +1,46 @@
+package com.rhythmiq.controlplaneservice.model;
+
+import software.amazon.awssdk.enhanced.dynamodb.AttributeConverter;
+import software.amazon.awssdk.enhanced.dynamodb.AttributeValueType;
+import software.amazon.awssdk.enhanced.dynamodb.EnhancedType;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Stores an {@link Instant} as a UTC ISO-8601 string with exactly nine fraction digits, such as
+ * {@code 2024-01-01T00:00:00.500000000Z}. {@link Instant#toString()} drops trailing zero digit
+ * groups, and {@code Z} sorts after {@code .}, so {@code ...00Z} would sort after {@code ...00.5Z};
+ * fixed-width strings sort in time order, which index sort keys and resume positions rely on.
+ * Strings in either form are read back.
+ */
+public class FixedWidthInstantConverter implements AttributeConverter<Instant> {
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSSSSS'Z'").withZone(ZoneOffset.UTC);
+
+    public static String format(Instant instant) {
+        return FORMAT.format(instant);
+    }
+
+    @Override
+    public AttributeValue transformFrom(Instant input) {
+        return AttributeValue.builder().s(format(input)).build();
+    }
+
+    @Override
+    public Instant transformTo(AttributeValue input) {
+        return Instant.parse(input.s());
+    }
+
+    @Override
+    public EnhancedType<Instant> type() {
+        return EnhancedType.of(Instant.class);
+    }
+
+    @Override
+    public AttributeValueType attributeValueType() {
+        return AttributeValueType.S;
+    }
+}
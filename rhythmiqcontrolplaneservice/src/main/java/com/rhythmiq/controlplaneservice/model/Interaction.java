@@ -1,11 +1,16 @@
 package com.rhythmiq.controlplaneservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbConvertedBy;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
 
 import java.time.Instant;
@@ -15,7 +20,10 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 @DynamoDbBean
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Interaction {
+    public static final String TYPE_SHARD_INDEX = "TypeShardIndex";
+
     private String userId;
     private String interactionId;
     private String songId;
@@ -23,6 +31,8 @@ public class Interaction {
     private Double rating;
     private String feedback;
     private Instant createdAt;
+    // "<type>#<shard>", the hash key of TypeShardIndex; spreads one type over several GSI partitions.
+    private String typeShard;
 
     @DynamoDbPartitionKey
     public String getUserId() {
@@ -74,6 +84,8 @@ public class Interaction {
         this.feedback = feedback;
     }
 
+    @DynamoDbSecondarySortKey(indexNames = TYPE_SHARD_INDEX)
+    @DynamoDbConvertedBy(FixedWidthInstantConverter.class)
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -82,6 +94,16 @@ public class Interaction {
         this.createdAt = createdAt;
     }
 
+    @JsonIgnore
+    @DynamoDbSecondaryPartitionKey(indexNames = TYPE_SHARD_INDEX)
+    public String getTypeShard() {
+        return typeShard;
+    }
+
+    public void setTypeShard(String typeShard) {
+        this.typeShard = typeShard;
+    }
+
     public enum InteractionType {
         PLAY,
         SKIP,
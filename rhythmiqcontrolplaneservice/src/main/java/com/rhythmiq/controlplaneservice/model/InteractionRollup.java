@@ -0,0 +1,14 @@
+package com.rhythmiq.controlplaneservice.model;
+
+/**
+ * Running totals of one user's interactions with one song. {@code engagement} weighs each
+ * interaction by how much it says about the user's taste, and is what a user's songs are ranked by.
+ */
+public record InteractionRollup(String userId, String songId, long interactions, long plays, long skips, long likes,
+                                long dislikes, double ratingSum, long ratingCount, double engagement) {
+
+    /** The mean rating, or {@code null} if the song was never rated. */
+    public Double averageRating() {
+        return ratingCount > 0 ? ratingSum / ratingCount : null;
+    }
+}
@@ -14,4 +14,5 @@ import java.util.List;
 @Accessors(chain = true)
 public class ListProfilesResponse {
     private List<ProfileSummary> profiles;
+    private String nextToken;
 } 
\ No newline at end of file
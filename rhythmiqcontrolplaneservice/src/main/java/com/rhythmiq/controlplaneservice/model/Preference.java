@@ -1,8 +1,11 @@
 package com.rhythmiq.controlplaneservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondarySortKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,12 +19,14 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 @DynamoDbBean
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Preference {
     private String profileId;
     private String preferenceId;
     private PreferenceType type;
     private String value;
     private Integer index;
+    private String rank;
     private Double weight;
     private Boolean isUserSet;
     private Instant createdAt;
@@ -72,6 +77,45 @@ public class Preference {
         this.index = index;
     }
 
+    /**
+     * Fractional ordering key (see {@code FractionalRank}). It is the sort key of the {@code RankIndex}
+     * local secondary index, so querying that index returns preferences in display order.
+     */
+    @DynamoDbAttribute("rank")
+    @DynamoDbSecondarySortKey(indexNames = "RankIndex")
+    public String getRank() {
+        return rank;
+    }
+
+    public void setRank(String rank) {
+        this.rank = rank;
+    }
+
+    /**
+     * Sort key of the {@code TypeIndex} local secondary index: the type name, {@code #}, and the
+     * index zero-padded to three digits ({@code ~} when unset, which sorts last). A
+     * {@code begins_with} query on one type therefore returns that type in index order. The value is
+     * derived from {@link #type} and {@link #index} whenever the item is written in full; stored
+     * values are ignored on read.
+     */
+    @JsonIgnore
+    @DynamoDbAttribute("typeSortKey")
+    @DynamoDbSecondarySortKey(indexNames = "TypeIndex")
+    public String getTypeSortKey() {
+        return typeSortKey(type, index);
+    }
+
+    public void setTypeSortKey(String typeSortKey) {
+        // Derived from type and index.
+    }
+
+    public static String typeSortKey(PreferenceType type, Integer index) {
+        if (type == null) {
+            return null;
+        }
+        return type.name() + "#" + (index != null ? String.format("%03d", index) : "~");
+    }
+
     @DynamoDbAttribute("weight")
     public Double getWeight() {
         return weight;
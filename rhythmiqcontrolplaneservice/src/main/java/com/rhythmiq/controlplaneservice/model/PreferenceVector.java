@@ -0,0 +1,153 @@
+package com.rhythmiq.controlplaneservice.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A profile's preferences reduced to weighted, normalized scores, held in parallel primitive arrays.
+ * Entries are sorted by type and then by descending score, and the scores of each type sum to 1.
+ *
+ * <p>An entry's raw score is its weight (1 when unset, never negative) discounted by its position
+ * {@code p} in the profile's list, {@code 1 / log2(p + 2)}, so the first preference counts fully and
+ * later ones taper off gently. Positions follow {@link #orderKey}: ranked preferences in rank order,
+ * then unranked ones in index order, with preferences that have neither first. Because only the
+ * relative order matters, moving one preference changes only its own key.
+ */
+public final class PreferenceVector {
+    private static final Preference.PreferenceType[] TYPES = Preference.PreferenceType.values();
+    private static final PreferenceVector EMPTY = new PreferenceVector(new byte[0], new String[0], new float[0]);
+    private static final Comparator<Entry> LIST_ORDER = Comparator.comparing(Entry::order,
+                    Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(Entry::type)
+            .thenComparing(Entry::value, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Entry::weight, Comparator.reverseOrder());
+
+    private final byte[] types;
+    private final String[] values;
+    private final float[] scores;
+
+    private PreferenceVector(byte[] types, String[] values, float[] scores) {
+        this.types = types;
+        this.values = values;
+        this.scores = scores;
+    }
+
+    /** One preference's contribution before normalization: its weight and where it sorts in the list. */
+    public record Entry(Preference.PreferenceType type, String value, float weight, String order) {
+        public static Entry of(Preference preference) {
+            return new Entry(preference.getType(), preference.getValue(), PreferenceVector.weight(preference),
+                    orderKey(preference));
+        }
+    }
+
+    public static float weight(Preference preference) {
+        return preference.getWeight() != null ? (float) Math.max(0, preference.getWeight()) : 1f;
+    }
+
+    /**
+     * The key a preference sorts by in the list: its rank, or for a preference written before ranks
+     * existed its zero-padded index behind a {@code ~}, which sorts after every rank digit.
+     */
+    public static String orderKey(Preference preference) {
+        if (preference.getRank() != null) {
+            return preference.getRank();
+        }
+        return preference.getIndex() != null ? String.format("~%03d", Math.max(0, preference.getIndex())) : null;
+    }
+
+    /** The vector of preferences stored as individual items, positioned by {@link #orderKey}. */
+    public static PreferenceVector of(List<Preference> preferences) {
+        return fromEntries(preferences.stream()
+                .filter(preference -> preference.getType() != null)
+                .map(Entry::of)
+                .toList());
+    }
+
+    /** The vector of a list that is kept in order by position, as a preference document is. */
+    public static PreferenceVector inListOrder(List<Preference> preferences) {
+        return weighted(preferences.stream()
+                .filter(preference -> preference.getType() != null)
+                .map(Entry::of)
+                .toList());
+    }
+
+    public static PreferenceVector fromEntries(Collection<Entry> entries) {
+        List<Entry> ordered = new ArrayList<>(entries);
+        ordered.sort(LIST_ORDER);
+        return weighted(ordered);
+    }
+
+    private static PreferenceVector weighted(List<Entry> ordered) {
+        if (ordered.isEmpty()) {
+            return EMPTY;
+        }
+        List<Scored> sorted = new ArrayList<>(ordered.size());
+        for (int position = 0; position < ordered.size(); position++) {
+            Entry entry = ordered.get(position);
+            sorted.add(new Scored(entry.type(), entry.value(),
+                    (float) (entry.weight() * Math.log(2) / Math.log(position + 2))));
+        }
+        sorted.sort(Comparator.comparing(Scored::type)
+                .thenComparing(Scored::rawScore, Comparator.reverseOrder())
+                .thenComparing(Scored::value, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        double[] totals = new double[TYPES.length];
+        int[] counts = new int[TYPES.length];
+        for (Scored entry : sorted) {
+            totals[entry.type().ordinal()] += entry.rawScore();
+            counts[entry.type().ordinal()]++;
+        }
+
+        byte[] types = new byte[sorted.size()];
+        String[] values = new String[sorted.size()];
+        float[] scores = new float[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            Scored entry = sorted.get(i);
+            int type = entry.type().ordinal();
+            types[i] = (byte) type;
+            values[i] = entry.value();
+            // A type whose weights are all zero splits its share evenly.
+            scores[i] = totals[type] > 0 ? (float) (entry.rawScore() / totals[type]) : 1f / counts[type];
+        }
+        return new PreferenceVector(types, values, scores);
+    }
+
+    private record Scored(Preference.PreferenceType type, String value, float rawScore) {
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    public Preference.PreferenceType type(int i) {
+        return TYPES[types[i]];
+    }
+
+    public String value(int i) {
+        return values[i];
+    }
+
+    public float score(int i) {
+        return scores[i];
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PreferenceVector vector
+                && Arrays.equals(types, vector.types)
+                && Arrays.equals(values, vector.values)
+                && Arrays.equals(scores, vector.scores);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Arrays.hashCode(types) + Arrays.hashCode(values)) + Arrays.hashCode(scores);
+    }
+}
@@ -1,5 +1,6 @@
 package com.rhythmiq.controlplaneservice.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.Builder;
 import lombok.NoArgsConstructor;
@@ -11,6 +12,7 @@ import lombok.experimental.Accessors;
 @NoArgsConstructor
 @AllArgsConstructor
 @Accessors(chain = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Profile {
     private String profileId;
     private String username;
@@ -18,4 +20,5 @@ public class Profile {
     private String lastName;
     private String email;
     private String phoneNumber;
+    private Long version;
 } 
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.rhythmiq.controlplaneservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReorderPreferencesRequest {
+    private List<String> preferenceIds;
+}
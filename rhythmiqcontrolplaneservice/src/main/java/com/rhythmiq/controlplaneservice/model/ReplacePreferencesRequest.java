@@ -0,0 +1,29 @@
+package com.rhythmiq.controlplaneservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplacePreferencesRequest {
+    private List<Item> preferences;
+
+    /** One row of the desired set; a missing {@code preferenceId} means a new preference. */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String preferenceId;
+        private Preference.PreferenceType type;
+        private String value;
+        private Integer index;
+        private Double weight;
+    }
+}
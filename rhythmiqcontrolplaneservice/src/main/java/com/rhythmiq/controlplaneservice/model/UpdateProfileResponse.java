@@ -13,4 +13,5 @@ import lombok.experimental.Accessors;
 @Accessors(chain = true)
 public class UpdateProfileResponse {
     private String message;
+    private Profile profile;
 } 
\ No newline at end of file
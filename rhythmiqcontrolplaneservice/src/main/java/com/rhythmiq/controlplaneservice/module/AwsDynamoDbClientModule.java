@@ -1,5 +1,7 @@
 package com.rhythmiq.controlplaneservice.module;
 
+import com.rhythmiq.controlplaneservice.cache.CachingDynamoDbClient;
+import com.rhythmiq.controlplaneservice.cache.TableCacheConfig;
 import dagger.Module;
 import dagger.Provides;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
@@ -11,10 +13,27 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 import javax.inject.Singleton;
 import java.time.Duration;
+import java.util.List;
 
 @Module
 public class AwsDynamoDbClientModule {
 
+    // Entries written by other instances are only seen once they expire, so TTLs are kept short.
+    // Profiles are not cached: their version is the ETag behind If-None-Match and If-Match, and a copy
+    // cached in one container would hand out stale ETags after a write made through another.
+    private static final List<TableCacheConfig> TABLE_CACHES = List.of(
+            TableCacheConfig.items("Preferences", List.of("profileId", "preferenceId"), Duration.ofSeconds(30), 50_000)
+                    .withQueries(Duration.ofSeconds(5), 10_000),
+            TableCacheConfig.items("AiRules", List.of("ruleId"), Duration.ofMinutes(5), 1_000));
+
+    /**
+     * Wraps {@code client} in the per-table read cache. Lambda handlers build their own client and
+     * use this so that warm invocations share the container's cache.
+     */
+    public static DynamoDbClient withTableCaches(DynamoDbClient client) {
+        return new CachingDynamoDbClient(client, TABLE_CACHES);
+    }
+
     @Provides
     @Singleton
     public DynamoDbClient provideDynamoDbClient() {
@@ -28,10 +47,11 @@ public class AwsDynamoDbClientModule {
                 .build();
 
         // Build the DynamoDB client
-        return DynamoDbClient.builder()
+        DynamoDbClient client = DynamoDbClient.builder()
                 .region(Region.US_EAST_1)
                 .credentialsProvider(DefaultCredentialsProvider.create())
                 .overrideConfiguration(config -> config.retryPolicy(retryPolicy))
                 .build();
+        return withTableCaches(client);
     }
 }
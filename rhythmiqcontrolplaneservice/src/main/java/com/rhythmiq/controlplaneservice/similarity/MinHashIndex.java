@@ -0,0 +1,407 @@
+package com.rhythmiq.controlplaneservice.similarity;
+
+import com.rhythmiq.controlplaneservice.model.Interaction;
+import com.rhythmiq.controlplaneservice.model.Preference;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory "listeners like you" index. Each profile is reduced to a {@value #NUM_HASHES}-value
+ * MinHash signature of its tokens (preference values and liked songs, see {@link #tokensOf}), and the
+ * signature is split into {@value #BANDS} bands of {@value #ROWS} rows for locality-sensitive
+ * hashing: two profiles become candidates when any band matches exactly, which happens with
+ * probability {@code 1 - (1 - s^4)^32} for Jaccard similarity {@code s} (about 0.23 at s = 0.3,
+ * 0.87 at s = 0.5 and 0.99 at s = 0.6). Candidates are ranked by the share of equal signature values, an unbiased
+ * estimate of their Jaccard similarity, so a query never compares against the whole population.
+ *
+ * <p>Updates touch only the profile concerned: {@link #put} re-signs it and moves it between the
+ * buckets of the bands whose values changed, and {@link #addTokens} folds new tokens into the
+ * existing signature without needing the rest of the profile. Removing a token needs the full
+ * token set again, since a minimum cannot be un-taken.
+ *
+ * <p>{@link #snapshot} writes the signatures to a file through a memory mapping and {@link #load}
+ * maps it back, so a restart re-buckets the stored signatures instead of re-reading every profile.
+ */
+@Log4j2
+public final class MinHashIndex {
+    static final int NUM_HASHES = 128;
+    static final int BANDS = 32;
+    static final int ROWS = NUM_HASHES / BANDS;
+    // Caps the work of one query on pathological buckets (e.g. thousands of profiles with one shared like).
+    private static final int MAX_CANDIDATES = 5_000;
+    private static final int SNAPSHOT_MAGIC = 0x4D484958;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final long[] SEEDS = new long[NUM_HASHES];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            SEEDS[i] = mix(seed);
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<Map<Long, Bucket>> bands = new ArrayList<>(BANDS);
+    private final List<Integer> freeSlots = new ArrayList<>();
+    private String[] profileIds = new String[1024];
+    private int[] signatures = new int[1024 * NUM_HASHES];
+    private int slotCount;
+
+    public MinHashIndex() {
+        for (int band = 0; band < BANDS; band++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    /** A candidate profile with its estimated Jaccard similarity to the queried one. */
+    public record SimilarProfile(String profileId, double similarity) {
+    }
+
+    /**
+     * The tokens a profile is compared on: each preference as its type and lower-cased value, and
+     * each liked song. Other interaction types are ignored.
+     */
+    public static Set<String> tokensOf(Collection<Preference> preferences, Collection<Interaction> interactions) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (Preference preference : preferences) {
+            if (preference.getType() != null && preference.getValue() != null) {
+                tokens.add(preferenceToken(preference.getType(), preference.getValue()));
+            }
+        }
+        for (Interaction interaction : interactions) {
+            if (interaction.getType() == Interaction.InteractionType.LIKE && interaction.getSongId() != null) {
+                tokens.add(likeToken(interaction.getSongId()));
+            }
+        }
+        return tokens;
+    }
+
+    public static String preferenceToken(Preference.PreferenceType type, String value) {
+        return type.name() + ":" + value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static String likeToken(String songId) {
+        return "LIKE:" + songId;
+    }
+
+    /** Replaces a profile's signature with that of {@code tokens}; an empty set removes the profile. */
+    public void put(String profileId, Collection<String> tokens) {
+        if (tokens.isEmpty()) {
+            remove(profileId);
+            return;
+        }
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String token : tokens) {
+            fold(signature, token);
+        }
+        lock.writeLock().lock();
+        try {
+            store(profileId, signature);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds tokens to a profile without its other tokens, e.g. when a new like arrives. Profiles not
+     * yet indexed start from these tokens alone.
+     */
+    public void addTokens(String profileId, Collection<String> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(profileId);
+            int[] signature = new int[NUM_HASHES];
+            if (slot != null) {
+                System.arraycopy(signatures, slot * NUM_HASHES, signature, 0, NUM_HASHES);
+            } else {
+                Arrays.fill(signature, Integer.MAX_VALUE);
+            }
+            for (String token : tokens) {
+                fold(signature, token);
+            }
+            store(profileId, signature);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String profileId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(profileId);
+            if (slot == null) {
+                return;
+            }
+            for (int band = 0; band < BANDS; band++) {
+                unbucket(band, bandKey(signatures, slot * NUM_HASHES, band), slot);
+            }
+            profileIds[slot] = null;
+            freeSlots.add(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code k} profiles most similar to {@code profileId}, most similar first. Only
+     * profiles sharing at least one band are considered, so weakly similar profiles may be missing;
+     * an unknown profile has no neighbours.
+     */
+    public List<SimilarProfile> similarProfiles(String profileId, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(profileId);
+            if (slot == null) {
+                return List.of();
+            }
+            int offset = slot * NUM_HASHES;
+            Set<Integer> seen = new HashSet<>();
+            seen.add(slot);
+            PriorityQueue<SimilarProfile> top = new PriorityQueue<>(k + 1,
+                Comparator.comparingDouble(SimilarProfile::similarity));
+            int candidates = 0;
+            for (int band = 0; band < BANDS && candidates < MAX_CANDIDATES; band++) {
+                Bucket bucket = bands.get(band).get(bandKey(signatures, offset, band));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size && candidates < MAX_CANDIDATES; i++) {
+                    int candidate = bucket.members[i];
+                    if (!seen.add(candidate)) {
+                        continue;
+                    }
+                    candidates++;
+                    double similarity = similarity(offset, candidate * NUM_HASHES);
+                    if (top.size() < k) {
+                        top.add(new SimilarProfile(profileIds[candidate], similarity));
+                    } else if (similarity > top.peek().similarity()) {
+                        top.poll();
+                        top.add(new SimilarProfile(profileIds[candidate], similarity));
+                    }
+                }
+            }
+            List<SimilarProfile> result = new ArrayList<>(top);
+            result.sort(Comparator.comparingDouble(SimilarProfile::similarity).reversed()
+                .thenComparing(SimilarProfile::profileId));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes every signature to {@code file} through a memory mapping. The file is written next to
+     * its destination and moved into place, so a reader never maps a half-written snapshot.
+     */
+    public void snapshot(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try {
+            List<Map.Entry<byte[], Integer>> entries = new ArrayList<>(slots.size());
+            long size = 5L * Integer.BYTES;
+            for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+                byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                entries.add(Map.entry(id, entry.getValue()));
+                size += Short.BYTES + id.length + (long) NUM_HASHES * Integer.BYTES;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("MinHash snapshot too large to map: " + size + " bytes");
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(NUM_HASHES).putInt(BANDS)
+                    .putInt(entries.size());
+                for (Map.Entry<byte[], Integer> entry : entries) {
+                    byte[] id = entry.getKey();
+                    buffer.putShort((short) id.length).put(id);
+                    buffer.asIntBuffer().put(signatures, entry.getValue() * NUM_HASHES, NUM_HASHES);
+                    buffer.position(buffer.position() + NUM_HASHES * Integer.BYTES);
+                }
+                buffer.force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Maps a file written by {@link #snapshot} and rebuilds the index from it. */
+    public static MinHashIndex load(Path file) throws IOException {
+        MinHashIndex index = new MinHashIndex();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION
+                || buffer.getInt() != NUM_HASHES || buffer.getInt() != BANDS) {
+                throw new IOException("Not a compatible MinHash snapshot: " + file);
+            }
+            int count = buffer.getInt();
+            index.lock.writeLock().lock();
+            try {
+                for (int i = 0; i < count; i++) {
+                    byte[] id = new byte[buffer.getShort() & 0xFFFF];
+                    buffer.get(id);
+                    int[] signature = new int[NUM_HASHES];
+                    buffer.asIntBuffer().get(signature);
+                    buffer.position(buffer.position() + NUM_HASHES * Integer.BYTES);
+                    index.store(new String(id, StandardCharsets.UTF_8), signature);
+                }
+            } finally {
+                index.lock.writeLock().unlock();
+            }
+        }
+        log.info("Loaded MinHash index with {} profiles from {}", index.size(), file);
+        return index;
+    }
+
+    /** Must be called with the write lock held. */
+    private void store(String profileId, int[] signature) {
+        Integer existing = slots.get(profileId);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+        } else {
+            slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.remove(freeSlots.size() - 1);
+            ensureCapacity(slot + 1);
+            slots.put(profileId, slot);
+            profileIds[slot] = profileId;
+        }
+        int offset = slot * NUM_HASHES;
+        for (int band = 0; band < BANDS; band++) {
+            long newKey = bandKey(signature, 0, band);
+            if (existing != null) {
+                long oldKey = bandKey(signatures, offset, band);
+                if (oldKey == newKey) {
+                    continue;
+                }
+                unbucket(band, oldKey, slot);
+            }
+            bands.get(band).computeIfAbsent(newKey, key -> new Bucket()).add(slot);
+        }
+        System.arraycopy(signature, 0, signatures, offset, NUM_HASHES);
+    }
+
+    private void unbucket(int band, long key, int slot) {
+        Map<Long, Bucket> buckets = bands.get(band);
+        Bucket bucket = buckets.get(key);
+        if (bucket != null && bucket.remove(slot) && bucket.size == 0) {
+            buckets.remove(key);
+        }
+    }
+
+    private void ensureCapacity(int slots) {
+        if (slots > profileIds.length) {
+            int capacity = Math.max(slots, profileIds.length * 2);
+            profileIds = Arrays.copyOf(profileIds, capacity);
+            signatures = Arrays.copyOf(signatures, capacity * NUM_HASHES);
+        }
+    }
+
+    private double similarity(int left, int right) {
+        int equal = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (signatures[left + i] == signatures[right + i]) {
+                equal++;
+            }
+        }
+        return (double) equal / NUM_HASHES;
+    }
+
+    private static void fold(int[] signature, String token) {
+        long base = hash(token);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            int value = (int) (mix(base ^ SEEDS[i]) >>> 33);
+            if (value < signature[i]) {
+                signature[i] = value;
+            }
+        }
+    }
+
+    private static long bandKey(int[] signature, int offset, int band) {
+        long key = band;
+        int start = offset + band * ROWS;
+        for (int row = 0; row < ROWS; row++) {
+            key = mix(key * 31 + signature[start + row]);
+        }
+        return key;
+    }
+
+    /** 64-bit FNV-1a over the token's characters. */
+    private static long hash(String token) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < token.length(); i++) {
+            hash ^= token.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /** The SplitMix64 finalizer, which spreads every input bit over the whole output. */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /** The members of one LSH bucket; buckets are small, so removal is a linear scan. */
+    private static final class Bucket {
+        private int[] members = new int[2];
+        private int size;
+
+        void add(int slot) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+            }
+            members[size++] = slot;
+        }
+
+        boolean remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (members[i] == slot) {
+                    members[i] = members[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,18 +1,30 @@
 package com.rhythmiq.controlplaneservice;
 
 import com.rhythmiq.controlplaneservice.dao.ProfileDao;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
+import com.rhythmiq.controlplaneservice.exception.PreconditionFailedException;
+import com.rhythmiq.controlplaneservice.exception.UnknownFieldException;
 import com.rhythmiq.controlplaneservice.model.*;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 class ProfileResourceTest {
@@ -56,6 +68,26 @@ class ProfileResourceTest {
         verify(profileDao).createProfile(request);
     }
 
+    @Test
+    void createProfile_TakenEmailOrUsername_ReturnsConflict() {
+        // Given
+        CreateProfileRequest request = CreateProfileRequest.builder()
+            .email("test@example.com")
+            .username("testuser")
+            .build();
+        when(profileDao.createProfile(any(CreateProfileRequest.class)))
+            .thenThrow(new ConflictException("Email already in use: test@example.com"));
+
+        // When
+        Response response = profileResource.createProfile(request);
+
+        // Then
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), response.getStatus());
+        GetProfileResponse entity = (GetProfileResponse) response.getEntity();
+        assertFalse(entity.isSuccess());
+        assertEquals("Email already in use: test@example.com", entity.getMessage());
+    }
+
     @Test
     void createProfile_InvalidUsername() {
         // Given
@@ -82,13 +114,14 @@ class ProfileResourceTest {
         GetProfileResponse daoResponse = GetProfileResponse.builder()
             .success(true)
             .message("Profile found")
+            .profile(Profile.builder().profileId(profileId).version(3L).build())
             .build();
 
-        when(profileDao.getProfile(profileId))
+        when(profileDao.getProfile(profileId, null))
             .thenReturn(daoResponse);
 
         // When
-        Response response = profileResource.getProfile(profileId);
+        Response response = profileResource.getProfile(profileId, null, null);
 
         // Then
         assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
@@ -96,7 +129,71 @@ class ProfileResourceTest {
         assertNotNull(entity);
         assertTrue(entity.isSuccess());
         assertEquals("Profile found", entity.getMessage());
-        verify(profileDao).getProfile(profileId);
+        assertEquals("\"3\"", response.getHeaderString(HttpHeaders.ETAG));
+        verify(profileDao).getProfile(profileId, null);
+        verify(profileDao, never()).getProfileVersion(any());
+    }
+
+    @Test
+    void getProfile_IfNoneMatchCurrent_ReturnsNotModified() {
+        // Given
+        when(profileDao.getProfileVersion("test-id")).thenReturn(Optional.of(3L));
+
+        // When
+        Response response = profileResource.getProfile("test-id", null, "W/\"3\"");
+
+        // Then
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        assertEquals("\"3\"", response.getHeaderString(HttpHeaders.ETAG));
+        assertNull(response.getEntity());
+        verify(profileDao, never()).getProfile(any(), any());
+    }
+
+    @Test
+    void getProfile_ETagNamesTheProjection() {
+        // Given
+        when(profileDao.getProfileVersion("test-id")).thenReturn(Optional.of(3L));
+        when(profileDao.getProfile("test-id", Set.of("username", "email"))).thenReturn(GetProfileResponse.builder()
+            .success(true)
+            .profile(Profile.builder().profileId("test-id").version(3L).build())
+            .build());
+
+        // When: the client holds the ETag of the whole profile at the same version
+        Response response = profileResource.getProfile("test-id", "username,email", "\"3\"");
+
+        // Then
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals("\"3;email,username\"", response.getHeaderString(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void getProfile_IfNoneMatchProjection_ReturnsNotModified() {
+        // Given
+        when(profileDao.getProfileVersion("test-id")).thenReturn(Optional.of(3L));
+
+        // When
+        Response response = profileResource.getProfile("test-id", "email, username", "\"3;email,username\"");
+
+        // Then
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        verify(profileDao, never()).getProfile(any(), any());
+    }
+
+    @Test
+    void getProfile_IfNoneMatchStale_ReturnsProfile() {
+        // Given
+        when(profileDao.getProfileVersion("test-id")).thenReturn(Optional.of(4L));
+        when(profileDao.getProfile("test-id", null)).thenReturn(GetProfileResponse.builder()
+            .success(true)
+            .profile(Profile.builder().profileId("test-id").version(4L).build())
+            .build());
+
+        // When
+        Response response = profileResource.getProfile("test-id", null, "\"3\"");
+
+        // Then
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals("\"4\"", response.getHeaderString(HttpHeaders.ETAG));
     }
 
     @Test
@@ -108,18 +205,18 @@ class ProfileResourceTest {
             .message("Profile not found")
             .build();
 
-        when(profileDao.getProfile(profileId))
+        when(profileDao.getProfile(profileId, null))
             .thenReturn(daoResponse);
 
         // When
-        Response response = profileResource.getProfile(profileId);
+        Response response = profileResource.getProfile(profileId, null, null);
 
         // Then
         assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
         GetProfileResponse entity = (GetProfileResponse) response.getEntity();
         assertFalse(entity.isSuccess());
         assertEquals("Profile not found", entity.getMessage());
-        verify(profileDao).getProfile(profileId);
+        verify(profileDao).getProfile(profileId, null);
     }
 
     @Test
@@ -136,20 +233,64 @@ class ProfileResourceTest {
 
         UpdateProfileResponse daoResponse = UpdateProfileResponse.builder()
             .message("Profile updated successfully")
+            .profile(Profile.builder().profileId(profileId).username("newusername").version(2L).build())
             .build();
 
-        when(profileDao.updateProfile(eq(profileId), any(UpdateProfileRequest.class)))
+        when(profileDao.updateProfile(eq(profileId), any(UpdateProfileRequest.class), isNull()))
             .thenReturn(daoResponse);
 
         // When
-        Response response = profileResource.updateProfile(profileId, request);
+        Response response = profileResource.updateProfile(profileId, request, null);
 
         // Then
         assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
         UpdateProfileResponse entity = (UpdateProfileResponse) response.getEntity();
         assertNotNull(entity);
         assertEquals("Profile updated successfully", entity.getMessage());
-        verify(profileDao).updateProfile(profileId, request);
+        assertEquals("newusername", entity.getProfile().getUsername());
+        assertEquals("\"2\"", response.getHeaderString(HttpHeaders.ETAG));
+        verify(profileDao).updateProfile(profileId, request, null);
+    }
+
+    @Test
+    void updateProfile_IfMatchPassesExpectedVersion() {
+        // Given
+        UpdateProfileRequest request = UpdateProfileRequest.builder().firstName("NewFirst").build();
+        when(profileDao.updateProfile("test-id", request, 4L))
+            .thenReturn(UpdateProfileResponse.builder()
+                .profile(Profile.builder().profileId("test-id").version(5L).build())
+                .build());
+
+        // When
+        Response response = profileResource.updateProfile("test-id", request, "\"4\"");
+
+        // Then
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals("\"5\"", response.getHeaderString(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void updateProfile_StaleIfMatch() {
+        // Given
+        UpdateProfileRequest request = UpdateProfileRequest.builder().firstName("NewFirst").build();
+        when(profileDao.updateProfile("test-id", request, 4L))
+            .thenThrow(new PreconditionFailedException("Profile version does not match: test-id"));
+
+        // When
+        Response response = profileResource.updateProfile("test-id", request, "\"4\"");
+
+        // Then
+        assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    void updateProfile_MalformedIfMatch() {
+        // When
+        Response response = profileResource.updateProfile("test-id", new UpdateProfileRequest(), "W/\"4\"");
+
+        // Then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        verify(profileDao, never()).updateProfile(any(), any(), any());
     }
 
     @Test
@@ -161,11 +302,11 @@ class ProfileResourceTest {
             .build();
 
         // When
-        Response response = profileResource.updateProfile(profileId, request);
+        Response response = profileResource.updateProfile(profileId, request, null);
 
         // Then
         assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
-        verify(profileDao, never()).updateProfile(any(), any());
+        verify(profileDao, never()).updateProfile(any(), any(), any());
     }
 
     @Test
@@ -188,16 +329,83 @@ class ProfileResourceTest {
             .profiles(Arrays.asList())
             .build();
 
-        when(profileDao.listProfiles())
+        when(profileDao.listProfiles(null, null, null))
             .thenReturn(daoResponse);
 
         // When
-        Response response = profileResource.listProfiles();
+        Response response = profileResource.listProfiles(null, null, null);
 
         // Then
         assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
         ListProfilesResponse entity = (ListProfilesResponse) response.getEntity();
         assertNotNull(entity);
-        verify(profileDao).listProfiles();
+        verify(profileDao).listProfiles(null, null);
+    }
+
+    @Test
+    void listProfiles_InvalidLimit() {
+        // When
+        Response response = profileResource.listProfiles(0, null, null);
+
+        // Then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        verify(profileDao, never()).listProfiles(any(), any(), any());
+    }
+
+    @Test
+    void listProfiles_InvalidNextToken() {
+        // Given
+        when(profileDao.listProfiles(null, "bad", null))
+            .thenThrow(new IllegalArgumentException("Invalid pagination token"));
+
+        // When
+        Response response = profileResource.listProfiles(null, "bad", null);
+
+        // Then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    void getProfile_UnknownField() {
+        // Given
+        when(profileDao.getProfile("test-id", Set.of("shoeSize")))
+            .thenThrow(new UnknownFieldException("shoeSize"));
+
+        // When
+        Response response = profileResource.getProfile("test-id", "shoeSize", null);
+
+        // Then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    void batchGetProfiles_CountsDistinctIdsAgainstTheLimit() {
+        // Given
+        List<String> ids = new ArrayList<>(Collections.nCopies(ProfileDao.MAX_BATCH_GET_IDS, "p1"));
+        ids.add("p2");
+        BatchGetProfilesResponse daoResponse = BatchGetProfilesResponse.builder().build();
+        when(profileDao.batchGetProfiles(ids)).thenReturn(daoResponse);
+
+        // When
+        Response response = profileResource.batchGetProfiles(BatchGetProfilesRequest.builder().profileIds(ids).build());
+
+        // Then
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertSame(daoResponse, response.getEntity());
+    }
+
+    @Test
+    void batchGetProfiles_TooManyDistinctIds() {
+        // Given
+        List<String> ids = IntStream.rangeClosed(0, ProfileDao.MAX_BATCH_GET_IDS)
+            .mapToObj(i -> "p" + i)
+            .collect(Collectors.toList());
+
+        // When
+        Response response = profileResource.batchGetProfiles(BatchGetProfilesRequest.builder().profileIds(ids).build());
+
+        // Then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        verify(profileDao, never()).batchGetProfiles(any());
     }
-} 
\ No newline at end of file
+}
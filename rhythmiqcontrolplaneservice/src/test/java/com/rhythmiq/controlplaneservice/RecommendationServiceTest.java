@@ -1,6 +1,7 @@
 package com.rhythmiq.controlplaneservice;
 
 import com.rhythmiq.controlplaneservice.model.Preference;
+import com.rhythmiq.controlplaneservice.model.PreferenceVector;
 import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
 import com.rhythmiq.controlplaneservice.spotify.SpotifyService;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,10 +16,12 @@ import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -47,7 +50,7 @@ public class RecommendationServiceTest {
             createPreference(profileId, Preference.PreferenceType.ARTIST, "The Beatles", 3, 0.9)
         );
 
-        when(preferenceDao.listPreferences(profileId)).thenReturn(preferences);
+        when(preferenceDao.getPreferenceVector(profileId)).thenReturn(PreferenceVector.of(preferences));
         when(spotifyService.getRecommendations(any(), any())).thenReturn("mock_recommendations");
 
         // Act
@@ -55,7 +58,7 @@ public class RecommendationServiceTest {
 
         // Assert
         assertNotNull(recommendations);
-        verify(preferenceDao).listPreferences(profileId);
+        verify(preferenceDao).getPreferenceVector(profileId);
         verify(spotifyService).getRecommendations(any(), any());
     }
 
@@ -63,13 +66,13 @@ public class RecommendationServiceTest {
     void testGetRecommendations_WithNoPreferences() {
         // Arrange
         String profileId = UUID.randomUUID().toString();
-        when(preferenceDao.listPreferences(profileId)).thenReturn(List.of());
+        when(preferenceDao.getPreferenceVector(profileId)).thenReturn(PreferenceVector.of(List.of()));
 
         // Act & Assert
         assertThrows(IllegalStateException.class, () -> {
             recommendationService.getRecommendations(profileId);
         });
-        verify(preferenceDao).listPreferences(profileId);
+        verify(preferenceDao).getPreferenceVector(profileId);
         verifyNoInteractions(spotifyService);
     }
 
@@ -82,13 +85,13 @@ public class RecommendationServiceTest {
             createPreference(profileId, Preference.PreferenceType.TEMPO, null, 2, 0.6)
         );
 
-        when(preferenceDao.listPreferences(profileId)).thenReturn(preferences);
+        when(preferenceDao.getPreferenceVector(profileId)).thenReturn(PreferenceVector.of(preferences));
 
         // Act & Assert
         assertThrows(IllegalArgumentException.class, () -> {
             recommendationService.getRecommendations(profileId);
         });
-        verify(preferenceDao).listPreferences(profileId);
+        verify(preferenceDao).getPreferenceVector(profileId);
         verifyNoInteractions(spotifyService);
     }
 
@@ -100,14 +103,14 @@ public class RecommendationServiceTest {
             createPreference(profileId, Preference.PreferenceType.GENRE, "rock", 1, 0.8)
         );
 
-        when(preferenceDao.listPreferences(profileId)).thenReturn(preferences);
+        when(preferenceDao.getPreferenceVector(profileId)).thenReturn(PreferenceVector.of(preferences));
         when(spotifyService.getRecommendations(any(), any())).thenThrow(new RuntimeException("Spotify API error"));
 
         // Act & Assert
         assertThrows(RuntimeException.class, () -> {
             recommendationService.getRecommendations(profileId);
         });
-        verify(preferenceDao).listPreferences(profileId);
+        verify(preferenceDao).getPreferenceVector(profileId);
         verify(spotifyService).getRecommendations(any(), any());
     }
 
@@ -120,7 +123,7 @@ public class RecommendationServiceTest {
             createPreference(profileId, Preference.PreferenceType.GENRE, "jazz", 2, 0.2)
         );
 
-        when(preferenceDao.listPreferences(profileId)).thenReturn(preferences);
+        when(preferenceDao.getPreferenceVector(profileId)).thenReturn(PreferenceVector.of(preferences));
         when(spotifyService.getRecommendations(any(), any())).thenReturn("mock_recommendations");
 
         // Act
@@ -128,8 +131,27 @@ public class RecommendationServiceTest {
 
         // Assert
         assertNotNull(recommendations);
-        verify(preferenceDao).listPreferences(profileId);
-        verify(spotifyService).getRecommendations(any(), any());
+        verify(preferenceDao).getPreferenceVector(profileId);
+        verify(spotifyService).getRecommendations(any(), eq(Map.of("genre", "rock,jazz")));
+    }
+
+    @Test
+    void testGetRecommendations_OrdersValuesByScore() {
+        // Arrange
+        String profileId = UUID.randomUUID().toString();
+        List<Preference> preferences = Arrays.asList(
+            createPreference(profileId, Preference.PreferenceType.GENRE, "jazz", 0, 0.1),
+            createPreference(profileId, Preference.PreferenceType.GENRE, "rock", 1, 0.9)
+        );
+
+        when(preferenceDao.getPreferenceVector(profileId)).thenReturn(PreferenceVector.of(preferences));
+        when(spotifyService.getRecommendations(any(), any())).thenReturn("mock_recommendations");
+
+        // Act
+        recommendationService.getRecommendations(profileId);
+
+        // Assert
+        verify(spotifyService).getRecommendations(eq(profileId), eq(Map.of("genre", "rock,jazz")));
     }
 
     private Preference createPreference(String profileId, Preference.PreferenceType type, String value, int index, double weight) {
@@ -5,6 +5,9 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rhythmiq.controlplaneservice.dao.ProfileDao;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
+import com.rhythmiq.controlplaneservice.exception.PreconditionFailedException;
+import com.rhythmiq.controlplaneservice.model.Profile;
 import com.rhythmiq.controlplaneservice.model.UpdateProfileRequest;
 import com.rhythmiq.controlplaneservice.model.UpdateProfileResponse;
 import org.junit.jupiter.api.BeforeEach;
@@ -65,8 +68,9 @@ class UpdateProfileLambdaHandlerTest {
 
         UpdateProfileResponse expectedResponse = new UpdateProfileResponse();
         expectedResponse.setMessage("Profile updated successfully");
+        expectedResponse.setProfile(new Profile().setProfileId(profileId).setFirstName("John").setVersion(2L));
 
-        when(profileDao.updateProfile(any(), any()))
+        when(profileDao.updateProfile(any(), any(), any()))
             .thenReturn(expectedResponse);
 
         // Act
@@ -77,6 +81,44 @@ class UpdateProfileLambdaHandlerTest {
         assertEquals(200, response.getStatusCode());
         UpdateProfileResponse actualResponse = objectMapper.readValue(response.getBody(), UpdateProfileResponse.class);
         assertEquals(expectedResponse.getMessage(), actualResponse.getMessage());
+        assertEquals(expectedResponse.getProfile(), actualResponse.getProfile());
+        assertEquals("\"2\"", response.getHeaders().get("ETag"));
+    }
+
+    @Test
+    void handleRequest_StaleIfMatch_ReturnsPreconditionFailed() throws Exception {
+        // Arrange
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent()
+            .withPathParameters(Map.of("profileId", "test-id"))
+            .withHeaders(Map.of("if-match", "\"1\""))
+            .withBody(objectMapper.writeValueAsString(new UpdateProfileRequest().setFirstName("John")));
+
+        when(profileDao.updateProfile(eq("test-id"), any(), eq(1L)))
+            .thenThrow(new PreconditionFailedException("Profile version does not match: test-id"));
+
+        // Act
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, context);
+
+        // Assert
+        assertEquals(412, response.getStatusCode());
+    }
+
+    @Test
+    void handleRequest_ProjectionETagInIfMatch_PinsItsVersion() throws Exception {
+        // Arrange
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent()
+            .withPathParameters(Map.of("profileId", "test-id"))
+            .withHeaders(Map.of("if-match", "\"1;email,username\""))
+            .withBody(objectMapper.writeValueAsString(new UpdateProfileRequest().setFirstName("John")));
+
+        when(profileDao.updateProfile(eq("test-id"), any(), eq(1L)))
+            .thenThrow(new PreconditionFailedException("Profile version does not match: test-id"));
+
+        // Act
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, context);
+
+        // Assert
+        assertEquals(412, response.getStatusCode());
     }
 
     @Test
@@ -114,7 +156,7 @@ class UpdateProfileLambdaHandlerTest {
             .withPathParameters(pathParameters)
             .withBody(objectMapper.writeValueAsString(updateRequest));
 
-        when(profileDao.updateProfile(any(), any()))
+        when(profileDao.updateProfile(any(), any(), any()))
             .thenThrow(new IllegalStateException("Profile not found"));
 
         // Act
@@ -126,6 +168,27 @@ class UpdateProfileLambdaHandlerTest {
         assertTrue(response.getBody().contains("Profile not found"));
     }
 
+    @Test
+    void handleRequest_UsernameTaken_ReturnsConflict() throws Exception {
+        // Arrange
+        UpdateProfileRequest updateRequest = new UpdateProfileRequest()
+            .setUsername("takenname");
+
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent()
+            .withPathParameters(Map.of("profileId", "test-id"))
+            .withBody(objectMapper.writeValueAsString(updateRequest));
+
+        when(profileDao.updateProfile(any(), any(), any()))
+            .thenThrow(new ConflictException("Username already exists"));
+
+        // Act
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, context);
+
+        // Assert
+        assertEquals(409, response.getStatusCode());
+        assertTrue(response.getBody().contains("Username already exists"));
+    }
+
     @Test
     void handleRequest_MissingProfileId_ReturnsBadRequest() {
         // Arrange
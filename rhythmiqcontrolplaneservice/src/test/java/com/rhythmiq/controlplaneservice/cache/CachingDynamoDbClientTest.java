@@ -0,0 +1,241 @@
+package com.rhythmiq.controlplaneservice.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CachingDynamoDbClientTest {
+    private static final Map<String, AttributeValue> KEY = Map.of("profile_id", AttributeValue.builder().s("p1").build());
+    private static final Map<String, AttributeValue> ITEM = Map.of(
+        "profile_id", AttributeValue.builder().s("p1").build(),
+        "first_name", AttributeValue.builder().s("Test").build());
+
+    @Mock
+    private DynamoDbClient delegate;
+
+    private CachingDynamoDbClient client;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        client = new CachingDynamoDbClient(delegate, List.of(
+            TableCacheConfig.items("Profiles", List.of("profile_id"), Duration.ofMinutes(1), 100),
+            TableCacheConfig.items("Preferences", List.of("profileId", "preferenceId"), Duration.ofMinutes(1), 100)
+                .withQueries(Duration.ofMinutes(1), 100)));
+        when(delegate.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(ITEM).build());
+    }
+
+    @Test
+    void getItem_SecondReadIsServedFromCache() {
+        // When
+        GetItemResponse first = client.getItem(getProfile());
+        GetItemResponse second = client.getItem(getProfile());
+
+        // Then
+        assertEquals(ITEM, first.item());
+        assertEquals(ITEM, second.item());
+        verify(delegate, times(1)).getItem(any(GetItemRequest.class));
+        assertEquals(1, client.itemStats("Profiles").hitCount());
+        assertEquals(1, client.itemStats("Profiles").missCount());
+    }
+
+    @Test
+    void getItem_NotFoundIsCached() {
+        // Given
+        when(delegate.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().build());
+
+        // When
+        client.getItem(getProfile());
+        GetItemResponse second = client.getItem(getProfile());
+
+        // Then
+        assertFalse(second.hasItem());
+        verify(delegate, times(1)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void getItem_ConsistentAndProjectedReadsBypassCache() {
+        // When
+        client.getItem(getProfile());
+        client.getItem(getProfile().toBuilder().consistentRead(true).build());
+        client.getItem(getProfile().toBuilder().projectionExpression("profile_id").build());
+
+        // Then
+        verify(delegate, times(3)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void getItem_UncachedTablePassesThrough() {
+        // When
+        GetItemRequest request = GetItemRequest.builder()
+            .tableName("Other")
+            .key(KEY)
+            .build();
+        client.getItem(request);
+        client.getItem(request);
+
+        // Then
+        verify(delegate, times(2)).getItem(request);
+    }
+
+    @Test
+    void controlPlaneAndScanCalls_AreForwarded() {
+        // Given
+        when(delegate.scan(any(ScanRequest.class))).thenReturn(ScanResponse.builder().build());
+        when(delegate.describeLimits(any(DescribeLimitsRequest.class))).thenReturn(DescribeLimitsResponse.builder().build());
+        when(delegate.listTables(any(ListTablesRequest.class))).thenReturn(ListTablesResponse.builder().build());
+
+        // When
+        client.scan(ScanRequest.builder().tableName("Profiles").build());
+        client.describeLimits(DescribeLimitsRequest.builder().build());
+        client.listTablesPaginator(ListTablesRequest.builder().build()).forEach(page -> { });
+
+        // Then
+        verify(delegate).scan(any(ScanRequest.class));
+        verify(delegate).describeLimits(any(DescribeLimitsRequest.class));
+        verify(delegate).listTables(any(ListTablesRequest.class));
+    }
+
+    @Test
+    void updateItem_InvalidatesCachedItem() {
+        // Given
+        client.getItem(getProfile());
+
+        // When
+        client.updateItem(UpdateItemRequest.builder().tableName("Profiles").key(KEY).build());
+        client.getItem(getProfile());
+
+        // Then
+        verify(delegate, times(2)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void transactWriteItems_InvalidatesEveryTouchedItem() {
+        // Given
+        client.getItem(getProfile());
+
+        // When
+        client.transactWriteItems(TransactWriteItemsRequest.builder()
+            .transactItems(TransactWriteItem.builder()
+                .put(Put.builder().tableName("Profiles").item(ITEM).build())
+                .build())
+            .build());
+        client.getItem(getProfile());
+
+        // Then
+        verify(delegate, times(2)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void writeFailure_StillInvalidates() {
+        // Given
+        client.getItem(getProfile());
+        when(delegate.deleteItem(any(DeleteItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().build());
+
+        // When
+        assertThrows(ConditionalCheckFailedException.class,
+            () -> client.deleteItem(DeleteItemRequest.builder().tableName("Profiles").key(KEY).build()));
+        client.getItem(getProfile());
+
+        // Then
+        verify(delegate, times(2)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void query_IsCachedUntilTableIsWritten() {
+        // Given
+        QueryRequest query = QueryRequest.builder()
+            .tableName("Preferences")
+            .keyConditionExpression("profileId = :profileId")
+            .expressionAttributeValues(Map.of(":profileId", AttributeValue.builder().s("p1").build()))
+            .build();
+        when(delegate.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder().items(List.of()).build());
+
+        // When
+        client.query(query);
+        client.query(query);
+        client.putItem(PutItemRequest.builder()
+            .tableName("Preferences")
+            .item(Map.of(
+                "profileId", AttributeValue.builder().s("p1").build(),
+                "preferenceId", AttributeValue.builder().s("pref1").build()))
+            .build());
+        client.query(query);
+
+        // Then
+        verify(delegate, times(2)).query(query);
+        assertEquals(1, client.queryStats("Preferences").hitCount());
+    }
+
+    @Test
+    void batchGetItem_FetchesOnlyUncachedKeys() {
+        // Given: p1 is cached, p2 exists, p3 does not
+        Map<String, AttributeValue> key2 = Map.of("profile_id", AttributeValue.builder().s("p2").build());
+        Map<String, AttributeValue> key3 = Map.of("profile_id", AttributeValue.builder().s("p3").build());
+        Map<String, AttributeValue> item2 = Map.of(
+            "profile_id", AttributeValue.builder().s("p2").build(),
+            "first_name", AttributeValue.builder().s("Other").build());
+        client.getItem(getProfile());
+        when(delegate.batchGetItem(any(BatchGetItemRequest.class)))
+            .thenReturn(BatchGetItemResponse.builder().responses(Map.of("Profiles", List.of(item2))).build());
+
+        // When
+        BatchGetItemResponse first = client.batchGetItem(batchGetProfiles(KEY, key2, key3));
+        BatchGetItemResponse second = client.batchGetItem(batchGetProfiles(KEY, key2, key3));
+
+        // Then
+        ArgumentCaptor<BatchGetItemRequest> captor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+        verify(delegate, times(1)).batchGetItem(captor.capture());
+        assertEquals(List.of(key2, key3), captor.getValue().requestItems().get("Profiles").keys());
+        assertEquals(Set.of(ITEM, item2), Set.copyOf(first.responses().get("Profiles")));
+        assertEquals(Set.of(ITEM, item2), Set.copyOf(second.responses().get("Profiles")));
+    }
+
+    @Test
+    void batchGetItem_UnprocessedKeysAreNotCached() {
+        // Given
+        Map<String, AttributeValue> key2 = Map.of("profile_id", AttributeValue.builder().s("p2").build());
+        when(delegate.batchGetItem(any(BatchGetItemRequest.class)))
+            .thenReturn(BatchGetItemResponse.builder()
+                .responses(Map.of("Profiles", List.of()))
+                .unprocessedKeys(Map.of("Profiles", KeysAndAttributes.builder().keys(key2).build()))
+                .build());
+
+        // When
+        BatchGetItemResponse response = client.batchGetItem(batchGetProfiles(key2));
+        client.batchGetItem(batchGetProfiles(key2));
+
+        // Then
+        assertEquals(List.of(key2), response.unprocessedKeys().get("Profiles").keys());
+        verify(delegate, times(2)).batchGetItem(any(BatchGetItemRequest.class));
+    }
+
+    @SafeVarargs
+    private static BatchGetItemRequest batchGetProfiles(Map<String, AttributeValue>... keys) {
+        return BatchGetItemRequest.builder()
+            .requestItems(Map.of("Profiles", KeysAndAttributes.builder().keys(keys).build()))
+            .build();
+    }
+
+    private static GetItemRequest getProfile() {
+        return GetItemRequest.builder()
+            .tableName("Profiles")
+            .key(KEY)
+            .build();
+    }
+}
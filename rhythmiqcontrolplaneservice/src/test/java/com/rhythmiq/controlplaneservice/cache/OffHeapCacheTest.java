@@ -0,0 +1,142 @@
+package com.rhythmiq.controlplaneservice.cache;
+
+import com.rhythmiq.controlplaneservice.model.Preference;
+import com.rhythmiq.controlplaneservice.model.Profile;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapCacheTest {
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    @Test
+    void get_ReturnsDecodedProfile() {
+        // Given
+        OffHeapCache cache = new OffHeapCache(64 * 1024, TTL);
+        Profile profile = profile("p1");
+
+        // When
+        cache.put("p1", profile, CompactCodecs.PROFILE);
+        Profile cached = cache.get("p1", CompactCodecs.PROFILE);
+
+        // Then
+        assertEquals(profile, cached);
+        assertNotSame(profile, cached);
+        assertEquals(1, cache.hitCount());
+        assertNull(cache.get("p2", CompactCodecs.PROFILE));
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void get_DecodesValuesSpanningSeveralBlocks() {
+        // Given
+        OffHeapCache cache = new OffHeapCache(64 * 1024, TTL, 32, 1);
+        Instant now = Instant.parse("2024-01-01T00:00:00.123456789Z");
+        List<Preference> preferences = List.of(
+                Preference.builder().profileId("p1").preferenceId("pref1").type(Preference.PreferenceType.GENRE)
+                        .value("jazz").index(0).rank("V").weight(0.5).isUserSet(true).createdAt(now).updatedAt(now).build(),
+                Preference.builder().profileId("p1").preferenceId("pref2").type(Preference.PreferenceType.ARTIST)
+                        .value("Miles Davis").index(1).createdAt(now).build());
+
+        // When
+        cache.put("p1", preferences, CompactCodecs.PREFERENCE_LIST);
+
+        // Then
+        assertEquals(preferences, cache.get("p1", CompactCodecs.PREFERENCE_LIST));
+        assertTrue(cache.usedBytes() > 32);
+    }
+
+    @Test
+    void put_ReplacesAndRemoveDrops() {
+        // Given
+        OffHeapCache cache = new OffHeapCache(64 * 1024, TTL);
+        cache.put("p1", profile("p1"), CompactCodecs.PROFILE);
+
+        // When
+        cache.put("p1", profile("p1").setFirstName("Changed"), CompactCodecs.PROFILE);
+
+        // Then
+        assertEquals("Changed", cache.get("p1", CompactCodecs.PROFILE).getFirstName());
+        assertEquals(1, cache.size());
+
+        cache.remove("p1");
+        assertNull(cache.get("p1", CompactCodecs.PROFILE));
+        assertEquals(0, cache.usedBytes());
+    }
+
+    @Test
+    void putIf_StoresOnlyWhenConditionHolds() {
+        // Given
+        OffHeapCache cache = new OffHeapCache(64 * 1024, TTL);
+        cache.put("p1", profile("p1"), CompactCodecs.PROFILE);
+
+        // When
+        cache.putIf("p1", profile("p1").setFirstName("Stale"), CompactCodecs.PROFILE, () -> false);
+        cache.putIf("p2", profile("p2"), CompactCodecs.PROFILE, () -> true);
+
+        // Then
+        assertEquals(profile("p1"), cache.get("p1", CompactCodecs.PROFILE));
+        assertEquals(profile("p2"), cache.get("p2", CompactCodecs.PROFILE));
+    }
+
+    @Test
+    void put_EvictsProbationBeforeProtectedEntries() {
+        // Given: one segment holding ten single-block entries
+        OffHeapCache cache = new OffHeapCache(10 * 256, TTL, 256, 1);
+        cache.put("hot", profile("hot"), CompactCodecs.PROFILE);
+        cache.get("hot", CompactCodecs.PROFILE);
+
+        // When: a one-off scan writes far more entries than fit
+        for (int i = 0; i < 50; i++) {
+            cache.put("scan-" + i, profile("scan-" + i), CompactCodecs.PROFILE);
+        }
+
+        // Then
+        assertNotNull(cache.get("hot", CompactCodecs.PROFILE));
+        assertNull(cache.get("scan-0", CompactCodecs.PROFILE));
+        assertEquals(10, cache.size());
+        assertTrue(cache.evictionCount() >= 41);
+    }
+
+    @Test
+    void put_SkipsValuesLargerThanASegment() {
+        // Given
+        OffHeapCache cache = new OffHeapCache(1024, TTL, 256, 1);
+        cache.put("big", new byte[100]);
+
+        // When
+        cache.put("big", new byte[2048]);
+
+        // Then
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void get_ExpiredEntryIsAMiss() throws InterruptedException {
+        // Given
+        OffHeapCache cache = new OffHeapCache(64 * 1024, Duration.ofMillis(10));
+        cache.put("p1", profile("p1"), CompactCodecs.PROFILE);
+
+        // When
+        Thread.sleep(20);
+
+        // Then
+        assertNull(cache.get("p1", CompactCodecs.PROFILE));
+        assertEquals(0, cache.size());
+    }
+
+    private static Profile profile(String profileId) {
+        return Profile.builder()
+                .profileId(profileId)
+                .username("user-" + profileId)
+                .firstName("Test")
+                .lastName("User")
+                .email(profileId + "@example.com")
+                .version(3L)
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import com.rhythmiq.controlplaneservice.model.Affinity;
+import com.rhythmiq.controlplaneservice.model.Preference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class AffinityDaoTest {
+    private static final String PROFILE_ID = "profile1";
+
+    private InMemoryDynamoDbClient dynamoDbClient;
+    private AffinityDao affinityDao;
+
+    @BeforeEach
+    void setUp() {
+        dynamoDbClient = new InMemoryDynamoDbClient();
+        dynamoDbClient.createTable("Preferences", "profileId", "preferenceId");
+        affinityDao = new AffinityDao(dynamoDbClient);
+    }
+
+    @Test
+    void testLoad_MissingItemIsEmptyAtVersionZero() {
+        // Act
+        AffinityDao.Snapshot snapshot = affinityDao.load(PROFILE_ID);
+
+        // Assert
+        assertTrue(snapshot.affinities().isEmpty());
+        assertEquals(0, snapshot.version());
+    }
+
+    @Test
+    void testWrite_SetsAndRemovesOnlyTheNamedAffinities() {
+        // Arrange
+        Instant at = Instant.parse("2024-03-01T12:00:00Z");
+        Affinity jazz = new Affinity(Preference.PreferenceType.GENRE, "jazz", 2.5, at);
+        Affinity soul = new Affinity(Preference.PreferenceType.GENRE, "soul", 1.0, at);
+        Affinity artist = new Affinity(Preference.PreferenceType.ARTIST, "Nina Simone: Live", 4.0, at);
+        affinityDao.write(PROFILE_ID, List.of(jazz, soul), List.of(), 0);
+
+        // Act
+        affinityDao.write(PROFILE_ID, List.of(artist), List.of(soul), 1);
+        AffinityDao.Snapshot snapshot = affinityDao.load(PROFILE_ID);
+
+        // Assert
+        assertEquals(2, snapshot.version());
+        assertEquals(Map.of(
+            AffinityDao.attributeName(jazz), jazz,
+            AffinityDao.attributeName(artist), artist), snapshot.affinities());
+    }
+
+    @Test
+    void testWrite_IsConditionedOnTheVersionRead() {
+        // Arrange
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        Affinity jazz = new Affinity(Preference.PreferenceType.GENRE, "jazz", 1.0, Instant.now());
+
+        // Act
+        new AffinityDao(client).write(PROFILE_ID, List.of(jazz), List.of(), 4);
+
+        // Assert
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(client).updateItem(captor.capture());
+        assertEquals("SET #a0 = :a0, #version = :nextVersion", captor.getValue().updateExpression());
+        assertEquals("#version = :expectedVersion", captor.getValue().conditionExpression());
+        assertEquals("4", captor.getValue().expressionAttributeValues().get(":expectedVersion").n());
+        assertEquals("5", captor.getValue().expressionAttributeValues().get(":nextVersion").n());
+    }
+}
@@ -0,0 +1,164 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchLoaderTest {
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    private BatchLoader<String, String> loader;
+
+    @AfterEach
+    void tearDown() {
+        loader.close();
+    }
+
+    @Test
+    void load_ConcurrentCallersShareOneBatch() throws Exception {
+        // Given
+        loader = new BatchLoader<>(upperCase(), Duration.ofMillis(50), 100);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 32; i++) {
+            String key = "key-" + (i % 16);
+            results.add(CompletableFuture.supplyAsync(() -> {
+                await(start);
+                return loader.load(key).join();
+            }, callers));
+        }
+        start.countDown();
+
+        // Then
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("KEY-" + (i % 16), results.get(i).get(5, TimeUnit.SECONDS));
+        }
+        callers.shutdown();
+        assertEquals(32, loader.loadCount());
+        assertEquals(batches.size(), loader.batchCount());
+        assertTrue(batches.size() < 32, "expected coalescing, got " + batches.size() + " batches");
+        batches.forEach(batch -> assertEquals(batch.size(), Set.copyOf(batch).size()));
+    }
+
+    @Test
+    void load_IdleLoaderSendsWithoutWaitingForWindow() throws Exception {
+        // Given
+        loader = new BatchLoader<>(upperCase(), Duration.ofSeconds(10), 100);
+
+        // When
+        String result = loader.load("a").get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals("A", result);
+        assertEquals(List.of(List.of("a")), batches);
+    }
+
+    @Test
+    void load_DuplicateKeySharesFuture() {
+        // Given: a batch in flight, so new keys wait for the window
+        CountDownLatch release = new CountDownLatch(1);
+        loader = new BatchLoader<>(blockingOn("busy", release), Duration.ofSeconds(10), 100);
+        CompletableFuture<String> busy = loader.load("busy");
+
+        // When
+        CompletableFuture<String> first = loader.load("a");
+        CompletableFuture<String> second = loader.load("a");
+        release.countDown();
+        loader.flush();
+
+        // Then
+        assertSame(first, second);
+        assertEquals("A", first.join());
+        assertEquals("BUSY", busy.join());
+        assertEquals(Set.of(List.of("busy"), List.of("a")), Set.copyOf(batches));
+    }
+
+    @Test
+    void load_FullBatchIsSentWithoutWaitingForWindow() {
+        // Given: a batch in flight, so new keys wait for the window
+        CountDownLatch release = new CountDownLatch(1);
+        loader = new BatchLoader<>(blockingOn("busy", release), Duration.ofSeconds(10), 3);
+        CompletableFuture<String> busy = loader.load("busy");
+
+        // When
+        List<CompletableFuture<String>> results = List.of(loader.load("a"), loader.load("b"), loader.load("c"));
+
+        // Then
+        assertEquals(List.of("A", "B", "C"), results.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+        release.countDown();
+        assertEquals("BUSY", busy.join());
+        assertEquals(Set.of(List.of("busy"), List.of("a", "b", "c")), Set.copyOf(batches));
+    }
+
+    @Test
+    void load_MissingKeyCompletesWithNull() {
+        // Given
+        loader = new BatchLoader<>(keys -> Map.of(), Duration.ofMillis(1), 100);
+
+        // When/Then
+        assertNull(loader.load("missing").join());
+    }
+
+    @Test
+    void load_FailedBatchFailsEveryCaller() {
+        // Given
+        loader = new BatchLoader<>(keys -> {
+            throw new IllegalStateException("boom");
+        }, Duration.ofSeconds(10), 100);
+
+        // When
+        CompletableFuture<String> first = loader.load("a");
+        CompletableFuture<String> second = loader.load("b");
+        loader.flush();
+
+        // Then
+        CompletionException error = assertThrows(CompletionException.class, first::join);
+        assertEquals("boom", error.getCause().getMessage());
+        assertThrows(CompletionException.class, second::join);
+    }
+
+    private Function<List<String>, Map<String, String>> upperCase() {
+        return keys -> {
+            batches.add(List.copyOf(keys));
+            return keys.stream().collect(Collectors.toMap(key -> key, String::toUpperCase));
+        };
+    }
+
+    /** Like {@link #upperCase()}, but a batch containing {@code key} waits for {@code release}. */
+    private Function<List<String>, Map<String, String>> blockingOn(String key, CountDownLatch release) {
+        Function<List<String>, Map<String, String>> upperCase = upperCase();
+        return keys -> {
+            if (keys.contains(key)) {
+                await(release);
+            }
+            return upperCase.apply(keys);
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
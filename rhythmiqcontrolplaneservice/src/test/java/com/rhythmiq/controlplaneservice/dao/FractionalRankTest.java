@@ -0,0 +1,90 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FractionalRankTest {
+
+    @Test
+    void between_OpenBoundsReturnsMiddleDigit() {
+        assertEquals("V", FractionalRank.between(null, null));
+    }
+
+    @Test
+    void between_SortsStrictlyBetweenBounds() {
+        // Given
+        String[][] bounds = {{"F", "V"}, {"V", "W"}, {"V1", "V2"}, {"z", null}, {null, "01"}, {"0V", "1"}};
+
+        for (String[] bound : bounds) {
+            // When
+            String rank = FractionalRank.between(bound[0], bound[1]);
+
+            // Then
+            assertTrue(bound[0] == null || bound[0].compareTo(rank) < 0, rank + " after " + bound[0]);
+            assertTrue(bound[1] == null || rank.compareTo(bound[1]) < 0, rank + " before " + bound[1]);
+            assertNotEquals('0', rank.charAt(rank.length() - 1));
+        }
+    }
+
+    @Test
+    void between_RandomInsertsKeepOrder() {
+        // Given
+        Random random = new Random(42);
+        List<String> ranks = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 2_000; i++) {
+            int position = random.nextInt(ranks.size() + 1);
+            String before = position > 0 ? ranks.get(position - 1) : null;
+            String after = position < ranks.size() ? ranks.get(position) : null;
+            ranks.add(position, FractionalRank.between(before, after));
+        }
+
+        // Then
+        List<String> sorted = new ArrayList<>(ranks);
+        sorted.sort(null);
+        assertEquals(sorted, ranks);
+    }
+
+    @Test
+    void spread_ReturnsShortEvenlySpacedRanks() {
+        // When
+        List<String> ranks = FractionalRank.spread(100);
+
+        // Then
+        assertEquals(100, ranks.size());
+        for (int i = 1; i < ranks.size(); i++) {
+            assertTrue(ranks.get(i - 1).compareTo(ranks.get(i)) < 0);
+        }
+        assertTrue(ranks.stream().allMatch(rank -> rank.length() <= 2));
+        assertEquals(List.of("V"), FractionalRank.spread(1));
+    }
+
+    @Test
+    void between_CountFillsTheGapWithShortRanks() {
+        // When
+        List<String> ranks = FractionalRank.between("F", "G", 99);
+
+        // Then
+        assertEquals(99, ranks.size());
+        assertTrue(ranks.get(0).compareTo("F") > 0);
+        assertTrue(ranks.get(98).compareTo("G") < 0);
+        for (int i = 1; i < ranks.size(); i++) {
+            assertTrue(ranks.get(i - 1).compareTo(ranks.get(i)) < 0);
+        }
+        assertTrue(ranks.stream().allMatch(rank -> rank.length() <= 4));
+        assertEquals(List.of(), FractionalRank.between(null, null, 0));
+    }
+
+    @Test
+    void between_RejectsInvalidRanks() {
+        assertThrows(IllegalArgumentException.class, () -> FractionalRank.between("V", "F"));
+        assertThrows(IllegalArgumentException.class, () -> FractionalRank.between("V0", null));
+        assertThrows(IllegalArgumentException.class, () -> FractionalRank.between("V-", null));
+    }
+}
@@ -0,0 +1,437 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal in-process stand-in for DynamoDB used by tests and benchmarks. It supports only the
+ * operations the DAOs issue, keeps items ordered by key, and can add a fixed per-request latency
+ * to model the network round trip. Requests that are not overridden fall through to the SDK's
+ * default {@link UnsupportedOperationException}.
+ *
+ * <p>Condition and filter expressions are not evaluated. Queries support only a partition-key
+ * equality condition, and update expressions only {@code SET}, {@code ADD} and {@code REMOVE} with
+ * plain operands, {@code if_not_exists} and a single {@code +} or {@code -}.
+ */
+public class InMemoryDynamoDbClient implements DynamoDbClient {
+    private static final int DEFAULT_SCAN_PAGE_SIZE = 100;
+    private static final Pattern EQUALITY = Pattern.compile("(#?[A-Za-z0-9_]+)\\s*=\\s*(:[A-Za-z0-9_]+)");
+
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    private final long latencyNanos;
+    private final AtomicInteger pendingScanFailures = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    public InMemoryDynamoDbClient() {
+        this(Duration.ZERO);
+    }
+
+    public InMemoryDynamoDbClient(Duration latency) {
+        this.latencyNanos = latency.toNanos();
+    }
+
+    public void createTable(String tableName, String hashKey, String rangeKey) {
+        tables.put(tableName, new Table(hashKey, rangeKey));
+    }
+
+    public void failNextScans(int count) {
+        pendingScanFailures.set(count);
+    }
+
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    public int itemCount(String tableName) {
+        return table(tableName).items.size();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        simulateRequest();
+        table(request.tableName()).put(request.item());
+        return PutItemResponse.builder().build();
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        simulateRequest();
+        Map<String, AttributeValue> item = table(request.tableName()).get(request.key());
+        return item != null ? GetItemResponse.builder().item(item).build() : GetItemResponse.builder().build();
+    }
+
+    @Override
+    public DeleteItemResponse deleteItem(DeleteItemRequest request) {
+        simulateRequest();
+        table(request.tableName()).remove(request.key());
+        return DeleteItemResponse.builder().build();
+    }
+
+    @Override
+    public UpdateItemResponse updateItem(UpdateItemRequest request) {
+        simulateRequest();
+        Map<String, AttributeValue> updated = table(request.tableName()).update(request.key(), request.updateExpression(),
+                request.expressionAttributeNames(), request.expressionAttributeValues());
+        return UpdateItemResponse.builder().attributes(updated).build();
+    }
+
+    @Override
+    public TransactWriteItemsResponse transactWriteItems(TransactWriteItemsRequest request) {
+        simulateRequest();
+        synchronized (this) {
+            for (TransactWriteItem write : request.transactItems()) {
+                if (write.put() != null) {
+                    table(write.put().tableName()).put(write.put().item());
+                } else if (write.update() != null) {
+                    table(write.update().tableName()).update(write.update().key(), write.update().updateExpression(),
+                            write.update().expressionAttributeNames(), write.update().expressionAttributeValues());
+                } else if (write.delete() != null) {
+                    table(write.delete().tableName()).remove(write.delete().key());
+                }
+            }
+        }
+        return TransactWriteItemsResponse.builder().build();
+    }
+
+    @Override
+    public QueryResponse query(QueryRequest request) {
+        simulateRequest();
+        Table table = table(request.tableName());
+        AttributeValue hashValue = null;
+        Matcher matcher = EQUALITY.matcher(request.keyConditionExpression());
+        while (matcher.find()) {
+            String name = request.expressionAttributeNames().getOrDefault(matcher.group(1), matcher.group(1));
+            if (name.equals(table.hashKey)) {
+                hashValue = request.expressionAttributeValues().get(matcher.group(2));
+            }
+        }
+        if (hashValue == null) {
+            throw new UnsupportedOperationException("Only partition-key equality queries are supported");
+        }
+
+        List<Map<String, AttributeValue>> matches = table.partition(Table.valueString(hashValue));
+        if (Boolean.FALSE.equals(request.scanIndexForward())) {
+            Collections.reverse(matches);
+        }
+        int start = 0;
+        if (request.hasExclusiveStartKey()) {
+            String startKey = table.keyString(request.exclusiveStartKey());
+            while (start < matches.size() && !table.keyString(matches.get(start)).equals(startKey)) {
+                start++;
+            }
+            start++;
+        }
+        int end = request.limit() != null ? Math.min(matches.size(), start + request.limit()) : matches.size();
+        start = Math.min(start, end);
+
+        QueryResponse.Builder response = QueryResponse.builder()
+                .items(new ArrayList<>(matches.subList(start, end)))
+                .count(end - start)
+                .scannedCount(end - start);
+        if (end < matches.size()) {
+            response.lastEvaluatedKey(table.keyOf(matches.get(end - 1)));
+        }
+        return response.build();
+    }
+
+    @Override
+    public ScanResponse scan(ScanRequest request) {
+        simulateRequest();
+        if (pendingScanFailures.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+            throw ProvisionedThroughputExceededException.builder().message("Simulated throttling").build();
+        }
+
+        Table table = table(request.tableName());
+        Snapshot snapshot = request.segment() != null
+                ? table.segment(request.segment(), request.totalSegments())
+                : table.snapshot();
+
+        int start = request.hasExclusiveStartKey() ? snapshot.indexAfter(table.keyString(request.exclusiveStartKey())) : 0;
+        int pageSize = request.limit() != null ? request.limit() : DEFAULT_SCAN_PAGE_SIZE;
+        int end = Math.min(snapshot.items.size(), start + pageSize);
+
+        ScanResponse.Builder response = ScanResponse.builder()
+                .items(new ArrayList<>(snapshot.items.subList(start, end)))
+                .count(end - start)
+                .scannedCount(end - start);
+        if (end < snapshot.items.size()) {
+            response.lastEvaluatedKey(table.keyOf(snapshot.items.get(end - 1)));
+        }
+        return response.build();
+    }
+
+    protected void simulateRequest() {
+        requestCount.incrementAndGet();
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    protected Table table(String tableName) {
+        Table table = tables.get(tableName);
+        if (table == null) {
+            throw ResourceNotFoundException.builder().message("Table not found: " + tableName).build();
+        }
+        return table;
+    }
+
+    protected static final class Table {
+        final String hashKey;
+        final String rangeKey;
+        final ConcurrentSkipListMap<String, Map<String, AttributeValue>> items = new ConcurrentSkipListMap<>();
+        private volatile Snapshot snapshot;
+        private final Map<Integer, List<Snapshot>> segments = new ConcurrentHashMap<>();
+
+        Table(String hashKey, String rangeKey) {
+            this.hashKey = hashKey;
+            this.rangeKey = rangeKey;
+        }
+
+        Map<String, AttributeValue> get(Map<String, AttributeValue> key) {
+            return items.get(keyString(key));
+        }
+
+        void put(Map<String, AttributeValue> item) {
+            items.put(keyString(item), Collections.unmodifiableMap(new HashMap<>(item)));
+            invalidate();
+        }
+
+        Map<String, AttributeValue> remove(Map<String, AttributeValue> key) {
+            Map<String, AttributeValue> removed = items.remove(keyString(key));
+            invalidate();
+            return removed;
+        }
+
+        List<Map<String, AttributeValue>> partition(String hashValue) {
+            if (rangeKey == null) {
+                Map<String, AttributeValue> item = items.get(hashValue);
+                return item != null ? new ArrayList<>(List.of(item)) : new ArrayList<>();
+            }
+            return new ArrayList<>(items.subMap(hashValue + '\u0000', hashValue + '\u0001').values());
+        }
+
+        synchronized Map<String, AttributeValue> update(Map<String, AttributeValue> key, String expression,
+                                                        Map<String, String> names, Map<String, AttributeValue> values) {
+            Map<String, AttributeValue> current = items.get(keyString(key));
+            Map<String, AttributeValue> item = current != null ? new HashMap<>(current) : new HashMap<>(key);
+            UpdateExpression.apply(item, expression, names, values);
+            put(item);
+            return items.get(keyString(key));
+        }
+
+        String keyString(Map<String, AttributeValue> item) {
+            String hash = valueString(item.get(hashKey));
+            return rangeKey == null ? hash : hash + '\u0000' + valueString(item.get(rangeKey));
+        }
+
+        Map<String, AttributeValue> keyOf(Map<String, AttributeValue> item) {
+            Map<String, AttributeValue> key = new HashMap<>();
+            key.put(hashKey, item.get(hashKey));
+            if (rangeKey != null) {
+                key.put(rangeKey, item.get(rangeKey));
+            }
+            return key;
+        }
+
+        Snapshot snapshot() {
+            Snapshot current = snapshot;
+            if (current == null) {
+                current = new Snapshot(new ArrayList<>(items.keySet()), new ArrayList<>(items.values()));
+                snapshot = current;
+            }
+            return current;
+        }
+
+        Snapshot segment(int segment, int totalSegments) {
+            return segments.computeIfAbsent(totalSegments, total -> {
+                List<List<String>> keys = new ArrayList<>();
+                List<List<Map<String, AttributeValue>>> values = new ArrayList<>();
+                for (int i = 0; i < total; i++) {
+                    keys.add(new ArrayList<>());
+                    values.add(new ArrayList<>());
+                }
+                items.forEach((key, item) -> {
+                    int target = Math.floorMod(key.hashCode(), total);
+                    keys.get(target).add(key);
+                    values.get(target).add(item);
+                });
+                List<Snapshot> snapshots = new ArrayList<>();
+                for (int i = 0; i < total; i++) {
+                    snapshots.add(new Snapshot(keys.get(i), values.get(i)));
+                }
+                return snapshots;
+            }).get(segment);
+        }
+
+        private void invalidate() {
+            snapshot = null;
+            segments.clear();
+        }
+
+        static String valueString(AttributeValue value) {
+            if (value == null) {
+                throw new IllegalArgumentException("Item is missing a key attribute");
+            }
+            return value.s() != null ? value.s() : value.n();
+        }
+    }
+
+    /** Applies the small subset of update-expression syntax described on the class. */
+    private static final class UpdateExpression {
+        private static final Pattern CLAUSE = Pattern.compile("\\b(SET|ADD|REMOVE|DELETE)\\b", Pattern.CASE_INSENSITIVE);
+
+        static void apply(Map<String, AttributeValue> item, String expression, Map<String, String> names,
+                          Map<String, AttributeValue> values) {
+            Matcher matcher = CLAUSE.matcher(expression);
+            List<int[]> clauses = new ArrayList<>();
+            while (matcher.find()) {
+                clauses.add(new int[] {matcher.start(), matcher.end()});
+            }
+            for (int i = 0; i < clauses.size(); i++) {
+                String keyword = expression.substring(clauses.get(i)[0], clauses.get(i)[1]).toUpperCase();
+                int end = i + 1 < clauses.size() ? clauses.get(i + 1)[0] : expression.length();
+                for (String action : splitTopLevel(expression.substring(clauses.get(i)[1], end))) {
+                    switch (keyword) {
+                        case "SET" -> {
+                            int equals = action.indexOf('=');
+                            String path = name(action.substring(0, equals).trim(), names);
+                            item.put(path, evaluate(action.substring(equals + 1).trim(), item, names, values));
+                        }
+                        case "ADD" -> {
+                            String[] parts = action.trim().split("\\s+");
+                            String path = name(parts[0], names);
+                            AttributeValue delta = values.get(parts[1]);
+                            item.put(path, add(item.getOrDefault(path, number(0)), delta, 1));
+                        }
+                        case "REMOVE" -> item.remove(name(action.trim(), names));
+                        default -> throw new UnsupportedOperationException("Unsupported update clause: " + keyword);
+                    }
+                }
+            }
+        }
+
+        private static AttributeValue evaluate(String operand, Map<String, AttributeValue> item, Map<String, String> names,
+                                               Map<String, AttributeValue> values) {
+            int operator = topLevelOperator(operand);
+            if (operator > 0) {
+                AttributeValue left = evaluate(operand.substring(0, operator).trim(), item, names, values);
+                AttributeValue right = evaluate(operand.substring(operator + 1).trim(), item, names, values);
+                return add(left, right, operand.charAt(operator) == '+' ? 1 : -1);
+            }
+            if (operand.startsWith("if_not_exists(")) {
+                List<String> arguments = splitTopLevel(operand.substring("if_not_exists(".length(), operand.length() - 1));
+                AttributeValue existing = item.get(name(arguments.get(0).trim(), names));
+                return existing != null ? existing : evaluate(arguments.get(1).trim(), item, names, values);
+            }
+            if (operand.startsWith(":")) {
+                return values.get(operand);
+            }
+            return item.get(name(operand, names));
+        }
+
+        private static AttributeValue add(AttributeValue left, AttributeValue right, int sign) {
+            BigDecimal delta = new BigDecimal(right.n()).multiply(BigDecimal.valueOf(sign));
+            return number(new BigDecimal(left.n()).add(delta).toPlainString());
+        }
+
+        private static int topLevelOperator(String operand) {
+            int depth = 0;
+            for (int i = 0; i < operand.length(); i++) {
+                char c = operand.charAt(i);
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (depth == 0 && (c == '+' || c == '-') && i > 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static List<String> splitTopLevel(String text) {
+            List<String> parts = new ArrayList<>();
+            int depth = 0;
+            int start = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (c == ',' && depth == 0) {
+                    parts.add(text.substring(start, i));
+                    start = i + 1;
+                }
+            }
+            if (!text.substring(start).isBlank()) {
+                parts.add(text.substring(start));
+            }
+            return parts;
+        }
+
+        private static String name(String path, Map<String, String> names) {
+            return names != null ? names.getOrDefault(path, path) : path;
+        }
+
+        private static AttributeValue number(Object value) {
+            return AttributeValue.builder().n(value.toString()).build();
+        }
+    }
+
+    protected static final class Snapshot {
+        final List<String> keys;
+        final List<Map<String, AttributeValue>> items;
+
+        Snapshot(List<String> keys, List<Map<String, AttributeValue>> items) {
+            this.keys = keys;
+            this.items = items;
+        }
+
+        int indexAfter(String exclusiveStartKey) {
+            int index = Collections.binarySearch(keys, exclusiveStartKey);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+    }
+}
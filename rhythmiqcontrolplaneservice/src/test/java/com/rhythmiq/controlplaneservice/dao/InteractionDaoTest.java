@@ -4,15 +4,28 @@ import com.rhythmiq.controlplaneservice.model.Interaction;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
 import software.amazon.awssdk.enhanced.dynamodb.*;
 import software.amazon.awssdk.enhanced.dynamodb.model.*;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -58,11 +71,170 @@ public class InteractionDaoTest {
         assertEquals(type, interaction.getType());
         assertEquals(rating, interaction.getRating());
         assertEquals(feedback, interaction.getFeedback());
-        assertNotNull(interaction.getInteractionId());
-        assertNotNull(interaction.getCreatedAt());
+        assertTrue(Ulid.isUlid(interaction.getInteractionId()));
+        assertEquals(InteractionDao.typeShard(type, interaction.getInteractionId(), InteractionDao.DEFAULT_TYPE_SHARDS),
+                interaction.getTypeShard());
+        assertEquals(interaction.getCreatedAt().toEpochMilli(), Ulid.timestamp(interaction.getInteractionId()).toEpochMilli());
         verify(interactionTable).putItem(interaction);
     }
 
+    @Test
+    void testCreateInteraction_WithRollupsWritesBothInOneTransaction() {
+        // Given
+        when(interactionTable.tableSchema()).thenReturn(TableSchema.fromBean(Interaction.class));
+        InteractionRollupDao rollups = mock(InteractionRollupDao.class);
+        InteractionDao rollupDao = new InteractionDao(dynamoDbClient, rollups);
+
+        // When
+        Interaction interaction = rollupDao.createInteraction("user1", "song123", Interaction.InteractionType.PLAY, null, null);
+
+        // Then
+        ArgumentCaptor<software.amazon.awssdk.services.dynamodb.model.Put> captor =
+                ArgumentCaptor.forClass(software.amazon.awssdk.services.dynamodb.model.Put.class);
+        verify(rollups).putWithRollup(captor.capture(), eq(interaction));
+        assertEquals("Interactions", captor.getValue().tableName());
+        assertEquals(interaction.getInteractionId(), captor.getValue().item().get("interactionId").s());
+        verify(interactionTable, never()).putItem(any(Interaction.class));
+    }
+
+    @Test
+    void testCreateInteraction_NotifiesTheWriteListenerAfterWriting() {
+        // Given
+        List<Interaction> notified = new ArrayList<>();
+        Consumer<Interaction> listener = interaction -> {
+            verify(interactionTable).putItem(interaction);
+            notified.add(interaction);
+        };
+        InteractionDao listeningDao = new InteractionDao(dynamoDbClient, null, 1, 1,
+                InteractionDao.DEFAULT_TYPE_SHARDS, null, listener.andThen(interaction -> {
+                    throw new IllegalStateException("listener failure");
+                }));
+
+        // When
+        Interaction interaction = listeningDao.createInteraction("user1", "song123", Interaction.InteractionType.PLAY,
+                null, null);
+
+        // Then: the listener saw the stored interaction, and its failure did not fail the write
+        assertEquals(List.of(interaction), notified);
+    }
+
+    @Test
+    void testCreateInteractionAsync_WithoutFlushDeadlineWritesImmediately() {
+        // When
+        CompletableFuture<Interaction> result = interactionDao.createInteractionAsync(
+                "user1", "song123", Interaction.InteractionType.PLAY, null, null);
+
+        // Then
+        assertTrue(result.isDone());
+        verify(interactionTable).putItem(result.join());
+        verify(dynamoDbClient, never()).batchWriteItem(any(BatchWriteItemEnhancedRequest.class));
+    }
+
+    @Test
+    void testCreateInteractionAsync_BatchesWrites() throws Exception {
+        // Given
+        when(interactionTable.tableSchema()).thenReturn(TableSchema.fromBean(Interaction.class));
+        when(interactionTable.tableName()).thenReturn("Interactions");
+        BatchWriteResult batchResult = mock(BatchWriteResult.class);
+        when(batchResult.unprocessedPutItemsForTable(interactionTable)).thenReturn(List.of());
+        when(dynamoDbClient.batchWriteItem(any(BatchWriteItemEnhancedRequest.class))).thenReturn(batchResult);
+
+        // One flusher and a deadline far longer than the gap between the two submits, so both land
+        // in the same batch.
+        try (InteractionDao bufferedDao = new InteractionDao(dynamoDbClient, Duration.ofSeconds(1), 100, 1)) {
+            // When
+            CompletableFuture<Interaction> first = bufferedDao.createInteractionAsync(
+                    "user1", "song1", Interaction.InteractionType.PLAY, null, null);
+            CompletableFuture<Interaction> second = bufferedDao.createInteractionAsync(
+                    "user1", "song2", Interaction.InteractionType.SKIP, null, null);
+
+            // Then
+            assertEquals("song1", first.get(5, TimeUnit.SECONDS).getSongId());
+            assertEquals("song2", second.get(5, TimeUnit.SECONDS).getSongId());
+        }
+        ArgumentCaptor<BatchWriteItemEnhancedRequest> captor = ArgumentCaptor.forClass(BatchWriteItemEnhancedRequest.class);
+        verify(dynamoDbClient, times(1)).batchWriteItem(captor.capture());
+        assertEquals(1, captor.getValue().writeBatches().size());
+        assertEquals(2, captor.getValue().writeBatches().get(0).writeRequests().size());
+        verify(interactionTable, never()).putItem(any(Interaction.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCreateInteractionAsync_WithRollupsWritesTheBatchAndRollupsInOneTransaction() throws Exception {
+        // Given
+        when(interactionTable.tableSchema()).thenReturn(TableSchema.fromBean(Interaction.class));
+        InteractionRollupDao rollups = mock(InteractionRollupDao.class);
+
+        try (InteractionDao bufferedDao = new InteractionDao(dynamoDbClient, Duration.ofSeconds(1), 100, 1,
+                InteractionDao.DEFAULT_TYPE_SHARDS, rollups)) {
+            // When
+            CompletableFuture<Interaction> first = bufferedDao.createInteractionAsync(
+                    "user1", "song1", Interaction.InteractionType.PLAY, null, null);
+            CompletableFuture<Interaction> second = bufferedDao.createInteractionAsync(
+                    "user1", "song1", Interaction.InteractionType.LIKE, null, null);
+
+            // Then
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        }
+        ArgumentCaptor<List<software.amazon.awssdk.services.dynamodb.model.Put>> puts = ArgumentCaptor.forClass(List.class);
+        verify(rollups).putAllWithRollups(puts.capture(), any());
+        assertEquals(2, puts.getValue().size());
+        verify(dynamoDbClient, never()).batchWriteItem(any(BatchWriteItemEnhancedRequest.class));
+    }
+
+    @Test
+    void testCreateInteractionAsync_FailedRollupUpdateFailsTheWrite() {
+        // Given
+        when(interactionTable.tableSchema()).thenReturn(TableSchema.fromBean(Interaction.class));
+        InteractionRollupDao rollups = mock(InteractionRollupDao.class);
+        when(rollups.putAllWithRollups(any(), any())).thenThrow(TransactionCanceledException.builder()
+                .cancellationReasons(
+                        CancellationReason.builder().code("None").build(),
+                        CancellationReason.builder().code("ValidationError").build())
+                .build());
+        List<Interaction> notified = new ArrayList<>();
+
+        CompletableFuture<Interaction> write;
+        try (InteractionDao bufferedDao = new InteractionDao(dynamoDbClient, Duration.ofMillis(20), 100, 1,
+                InteractionDao.DEFAULT_TYPE_SHARDS, rollups, notified::add)) {
+            // When
+            write = bufferedDao.createInteractionAsync("user1", "song1", Interaction.InteractionType.PLAY, null, null);
+        }
+
+        // Then
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> write.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TransactionCanceledException.class, failure.getCause());
+        assertTrue(notified.isEmpty());
+        verify(rollups, times(1)).putAllWithRollups(any(), any());
+    }
+
+    @Test
+    void testCreateInteractionAsync_RetriesARollupTransactionCancelledByAConflict() throws Exception {
+        // Given
+        when(interactionTable.tableSchema()).thenReturn(TableSchema.fromBean(Interaction.class));
+        InteractionRollupDao rollups = mock(InteractionRollupDao.class);
+        when(rollups.putAllWithRollups(any(), any()))
+                .thenThrow(TransactionCanceledException.builder()
+                        .cancellationReasons(
+                                CancellationReason.builder().code("None").build(),
+                                CancellationReason.builder().code("TransactionConflict").build())
+                        .build())
+                .thenReturn(1);
+
+        try (InteractionDao bufferedDao = new InteractionDao(dynamoDbClient, Duration.ofMillis(20), 100, 1,
+                InteractionDao.DEFAULT_TYPE_SHARDS, rollups)) {
+            // When
+            CompletableFuture<Interaction> write = bufferedDao.createInteractionAsync(
+                    "user1", "song1", Interaction.InteractionType.PLAY, null, null);
+
+            // Then
+            assertEquals("song1", write.get(5, TimeUnit.SECONDS).getSongId());
+        }
+        verify(rollups, times(2)).putAllWithRollups(any(), any());
+    }
+
     @Test
     void testGetInteraction() {
         // Given
@@ -107,6 +279,168 @@ public class InteractionDaoTest {
         verify(interactionTable).query(any(QueryConditional.class));
     }
 
+    @Test
+    void testGetRecentInteractions_QueriesNewestFirstAndSkipsLegacyIds() {
+        // Given
+        String userId = "user1";
+        Instant now = Instant.now();
+        Interaction newest = createTestInteraction(userId, Ulid.next(now));
+        Interaction legacy = createTestInteraction(userId, "01234567-89ab-cdef-0123-456789abcdef");
+        Interaction older = createTestInteraction(userId, Ulid.next(now.minusSeconds(60)));
+        Interaction oldest = createTestInteraction(userId, Ulid.next(now.minusSeconds(120)));
+
+        @SuppressWarnings("unchecked")
+        PageIterable<Interaction> pageIterable = mock(PageIterable.class);
+        when(pageIterable.items()).thenReturn(() -> List.of(newest, legacy, older, oldest).iterator());
+        ArgumentCaptor<QueryEnhancedRequest> request = ArgumentCaptor.forClass(QueryEnhancedRequest.class);
+        when(interactionTable.query(request.capture())).thenReturn(pageIterable);
+
+        // When
+        List<Interaction> result = interactionDao.getRecentInteractions(userId, 2);
+
+        // Then
+        assertEquals(List.of(newest, older), result);
+        assertFalse(request.getValue().scanIndexForward());
+        assertEquals(2, request.getValue().limit());
+    }
+
+    @Test
+    void testGetRecentInteractions_RejectsNonPositiveLimit() {
+        assertThrows(IllegalArgumentException.class, () -> interactionDao.getRecentInteractions("user1", 0));
+        verifyNoInteractions(interactionTable);
+    }
+
+    @Test
+    void testGetInteractionsSince_ReadsUpToLimitNewestFirst() {
+        // Given
+        String userId = "user1";
+        Instant since = Instant.now().minusSeconds(3600);
+        Interaction newer = createTestInteraction(userId, Ulid.next(since.plusSeconds(60)));
+        Interaction older = createTestInteraction(userId, Ulid.next(since.plusSeconds(1)));
+
+        @SuppressWarnings("unchecked")
+        PageIterable<Interaction> pageIterable = mock(PageIterable.class);
+        when(pageIterable.items()).thenReturn(() -> List.of(newer, older).iterator());
+        ArgumentCaptor<QueryEnhancedRequest> request = ArgumentCaptor.forClass(QueryEnhancedRequest.class);
+        when(interactionTable.query(request.capture())).thenReturn(pageIterable);
+
+        // When
+        List<Interaction> result = interactionDao.getInteractionsSince(userId, since, 50);
+
+        // Then
+        assertEquals(List.of(newer, older), result);
+        assertFalse(request.getValue().scanIndexForward());
+        assertEquals(50, request.getValue().limit());
+    }
+
+    @Test
+    void testGetInteractionsSince_RejectsLimitOutOfRange() {
+        Instant since = Instant.now().minusSeconds(3600);
+        assertThrows(IllegalArgumentException.class, () -> interactionDao.getInteractionsSince("user1", since, 0));
+        assertThrows(IllegalArgumentException.class, () -> interactionDao.getInteractionsSince("user1", since, 1_001));
+        verifyNoInteractions(interactionTable);
+    }
+
+    @Test
+    void testBackfillTypeShards_ConditionsEachUpdateOnTheInteractionExisting() {
+        // Given
+        String userId = "user1";
+        Interaction interaction = createTestInteraction(userId, Ulid.next(Instant.now()));
+
+        @SuppressWarnings("unchecked")
+        PageIterable<Interaction> pageIterable = mock(PageIterable.class);
+        when(pageIterable.items()).thenReturn(() -> List.of(interaction).iterator());
+        when(interactionTable.query(any(QueryConditional.class))).thenReturn(pageIterable);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<UpdateItemEnhancedRequest<Interaction>> request = ArgumentCaptor.forClass(UpdateItemEnhancedRequest.class);
+        when(interactionTable.updateItem(request.capture())).thenReturn(interaction);
+
+        // When
+        int updated = interactionDao.backfillTypeShards(userId);
+
+        // Then
+        assertEquals(1, updated);
+        assertEquals("attribute_exists(interactionId)", request.getValue().conditionExpression().expression());
+        assertTrue(request.getValue().ignoreNulls());
+    }
+
+    @Test
+    void testBackfillTypeShards_SkipsInteractionsDeletedSinceTheyWereRead() {
+        // Given
+        String userId = "user1";
+        Interaction deleted = createTestInteraction(userId, Ulid.next(Instant.now().minusSeconds(60)));
+        Interaction kept = createTestInteraction(userId, Ulid.next(Instant.now()));
+
+        @SuppressWarnings("unchecked")
+        PageIterable<Interaction> pageIterable = mock(PageIterable.class);
+        when(pageIterable.items()).thenReturn(() -> List.of(deleted, kept).iterator());
+        when(interactionTable.query(any(QueryConditional.class))).thenReturn(pageIterable);
+        when(interactionTable.updateItem(any(UpdateItemEnhancedRequest.class)))
+                .thenThrow(ConditionalCheckFailedException.builder().message("The conditional request failed").build())
+                .thenReturn(kept);
+
+        // When
+        int updated = interactionDao.backfillTypeShards(userId);
+
+        // Then
+        assertEquals(1, updated);
+        verify(interactionTable, times(2)).updateItem(any(UpdateItemEnhancedRequest.class));
+    }
+
+    @Test
+    void testMigrateLegacyInteractionIds_RekeysOnlyUuidIds() {
+        // Given
+        String userId = "user1";
+        Interaction legacy = createTestInteraction(userId, UUID.randomUUID().toString());
+        Interaction current = createTestInteraction(userId, Ulid.next(Instant.now()));
+
+        @SuppressWarnings("unchecked")
+        PageIterable<Interaction> pageIterable = mock(PageIterable.class);
+        when(pageIterable.items()).thenReturn(() -> List.of(legacy, current).iterator());
+        when(interactionTable.query(any(QueryConditional.class))).thenReturn(pageIterable);
+
+        // When
+        int migrated = interactionDao.migrateLegacyInteractionIds(userId);
+
+        // Then
+        assertEquals(1, migrated);
+        verify(dynamoDbClient).transactWriteItems(any(TransactWriteItemsEnhancedRequest.class));
+    }
+
+    @Test
+    void testQueryUserInteractions_PagesLazilyAndReturnsAResumeToken() {
+        // Given
+        String userId = "user1";
+        Interaction first = createTestInteraction(userId, Ulid.next(Instant.now()));
+        Interaction second = createTestInteraction(userId, Ulid.next(Instant.now()));
+        Map<String, AttributeValue> lastEvaluatedKey = Map.of(
+                "userId", AttributeValue.builder().s(userId).build(),
+                "interactionId", AttributeValue.builder().s(second.getInteractionId()).build());
+        when(interactionTable.tableSchema()).thenReturn(TableSchema.fromBean(Interaction.class));
+        ArgumentCaptor<QueryEnhancedRequest> request = ArgumentCaptor.forClass(QueryEnhancedRequest.class);
+        when(interactionTable.query(request.capture())).thenReturn(
+                PageIterable.create(() -> List.of(Page.create(List.of(first, second), lastEvaluatedKey)).iterator()));
+
+        // When
+        QueryCursor<Interaction> cursor = interactionDao.queryUserInteractions(userId, 1, 2, null);
+        List<Interaction> result = cursor.stream().toList();
+
+        // Then
+        assertEquals(List.of(first), result);
+        assertEquals(2, request.getValue().limit());
+        assertNull(request.getValue().exclusiveStartKey());
+        assertEquals(Map.of(
+                "userId", AttributeValue.builder().s(userId).build(),
+                "interactionId", AttributeValue.builder().s(first.getInteractionId()).build()),
+                PaginationToken.decode(cursor.nextToken()));
+    }
+
+    @Test
+    void testQueryUserInteractions_RejectsOversizedPages() {
+        assertThrows(IllegalArgumentException.class, () -> interactionDao.queryUserInteractions("user1", null, 1_001, null));
+        verifyNoInteractions(interactionTable);
+    }
+
     @Test
     void testGetUserSongInteractions() {
         // Given
@@ -145,39 +479,47 @@ public class InteractionDaoTest {
     }
 
     @Test
-    void testGetInteractionsByType() {
+    void testGetInteractionsByType_MergesShardsByCreatedAt() {
         // Given
-        Interaction.InteractionType type = Interaction.InteractionType.LIKE;
-        List<Interaction> expectedInteractions = Arrays.asList(
-                createTestInteraction(UUID.randomUUID().toString(), UUID.randomUUID().toString()),
-                createTestInteraction(UUID.randomUUID().toString(), UUID.randomUUID().toString())
-        );
+        InteractionDao shardedDao = new InteractionDao(dynamoDbClient, null, 10_000, 4, 2);
+        Instant start = Instant.parse("2024-05-01T12:00:00Z");
+        Interaction first = createTestInteraction("user1", Ulid.next(start), "song1", start);
+        Interaction second = createTestInteraction("user2", Ulid.next(start), "song2", start.plusSeconds(1));
+        Interaction third = createTestInteraction("user1", Ulid.next(start), "song3", start.plusSeconds(2));
+        Interaction fourth = createTestInteraction("user3", Ulid.next(start), "song4", start.plusSeconds(3));
 
         @SuppressWarnings("unchecked")
         DynamoDbIndex<Interaction> index = mock(DynamoDbIndex.class);
-        when(interactionTable.index("TypeIndex")).thenReturn(index);
-        @SuppressWarnings("unchecked")
-        PageIterable<Interaction> pageIterable = mock(PageIterable.class);
-        when(index.query(any(QueryConditional.class))).thenReturn(pageIterable);
-        doAnswer(invocation -> {
-            @SuppressWarnings("unchecked")
-            Consumer<Page<Interaction>> consumer = invocation.getArgument(0);
-            @SuppressWarnings("unchecked")
-            Page<Interaction> page = mock(Page.class);
-            when(page.items()).thenReturn(expectedInteractions);
-            consumer.accept(page);
-            return null;
-        }).when(pageIterable).forEach(any());
+        when(interactionTable.index(Interaction.TYPE_SHARD_INDEX)).thenReturn(index);
+        SdkIterable<Page<Interaction>> shardA = () -> List.of(Page.create(List.of(first, third))).iterator();
+        SdkIterable<Page<Interaction>> shardB = () -> List.of(Page.create(List.of(second, fourth))).iterator();
+        when(index.query(any(QueryConditional.class))).thenReturn(shardA, shardB);
 
         // When
-        List<Interaction> result = interactionDao.getInteractionsByType(type);
+        List<Interaction> result = shardedDao.getInteractionsByType(Interaction.InteractionType.PLAY);
 
         // Then
-        assertNotNull(result);
-        assertEquals(expectedInteractions.size(), result.size());
-        assertEquals(expectedInteractions, result);
-        verify(interactionTable).index("TypeIndex");
-        verify(index).query(any(QueryConditional.class));
+        assertEquals(List.of(first, second, third, fourth), result);
+        verify(index, times(2)).query(any(QueryConditional.class));
+        shardedDao.close();
+    }
+
+    @Test
+    void testTypeShard_SpreadsOneTypeOverEveryShard() {
+        // Given
+        Map<String, Integer> counts = new HashMap<>();
+
+        // When
+        for (int i = 0; i < 8_000; i++) {
+            counts.merge(InteractionDao.typeShard(Interaction.InteractionType.PLAY, Ulid.next(Instant.now()), 8), 1, Integer::sum);
+        }
+
+        // Then
+        assertEquals(8, counts.size());
+        counts.forEach((shard, count) -> {
+            assertTrue(shard.startsWith("PLAY#"), shard);
+            assertTrue(count > 800 && count < 1_200, shard + " got " + count);
+        });
     }
 
     @Test
@@ -232,11 +574,49 @@ public class InteractionDaoTest {
                 .build());
     }
 
+    @Test
+    void testDeleteInteraction_WithRollupsTakesTheInteractionOutOfItsRollup() {
+        // Given
+        Interaction interaction = createTestInteraction("user1", "interaction1");
+        when(interactionTable.getItem(any(GetItemEnhancedRequest.class))).thenReturn(interaction);
+        InteractionRollupDao rollups = mock(InteractionRollupDao.class);
+        InteractionDao rollupDao = new InteractionDao(dynamoDbClient, rollups);
+
+        // When
+        rollupDao.deleteInteraction("user1", "interaction1");
+
+        // Then
+        ArgumentCaptor<software.amazon.awssdk.services.dynamodb.model.Delete> captor =
+                ArgumentCaptor.forClass(software.amazon.awssdk.services.dynamodb.model.Delete.class);
+        verify(rollups).deleteWithRollup(captor.capture(), eq(interaction));
+        assertEquals("Interactions", captor.getValue().tableName());
+        assertEquals("interaction1", captor.getValue().key().get("interactionId").s());
+        verify(interactionTable, never()).deleteItem(any(Key.class));
+    }
+
+    @Test
+    void testDeleteInteraction_WithRollupsIgnoresAMissingInteraction() {
+        // Given
+        when(interactionTable.getItem(any(GetItemEnhancedRequest.class))).thenReturn(null);
+        InteractionRollupDao rollups = mock(InteractionRollupDao.class);
+        InteractionDao rollupDao = new InteractionDao(dynamoDbClient, rollups);
+
+        // When
+        rollupDao.deleteInteraction("user1", "interaction1");
+
+        // Then
+        verifyNoInteractions(rollups);
+    }
+
     private Interaction createTestInteraction(String userId, String interactionId) {
         return createTestInteraction(userId, interactionId, "song123");
     }
 
     private Interaction createTestInteraction(String userId, String interactionId, String songId) {
+        return createTestInteraction(userId, interactionId, songId, Instant.now());
+    }
+
+    private Interaction createTestInteraction(String userId, String interactionId, String songId, Instant createdAt) {
         return Interaction.builder()
                 .userId(userId)
                 .interactionId(interactionId)
@@ -244,7 +624,7 @@ public class InteractionDaoTest {
                 .type(Interaction.InteractionType.LIKE)
                 .rating(4.5)
                 .feedback("Test feedback")
-                .createdAt(Instant.now())
+                .createdAt(createdAt)
                 .build();
     }
 }
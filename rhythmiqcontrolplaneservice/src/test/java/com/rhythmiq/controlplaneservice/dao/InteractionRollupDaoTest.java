@@ -0,0 +1,216 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import com.rhythmiq.controlplaneservice.model.Interaction;
+import com.rhythmiq.controlplaneservice.model.InteractionRollup;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.Delete;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InteractionRollupDaoTest {
+    private static final String USER_ID = "user1";
+
+    private InMemoryDynamoDbClient dynamoDbClient;
+    private InteractionRollupDao rollupDao;
+
+    @BeforeEach
+    void setUp() {
+        dynamoDbClient = new InMemoryDynamoDbClient();
+        dynamoDbClient.createTable("Interactions", "userId", "interactionId");
+        dynamoDbClient.createTable(InteractionRollupDao.TABLE_NAME, "userId", "songId");
+        rollupDao = new InteractionRollupDao(dynamoDbClient);
+    }
+
+    @Test
+    void testGetRollup_MissingPairIsEmpty() {
+        // Act
+        Optional<InteractionRollup> rollup = rollupDao.getRollup(USER_ID, "song1");
+
+        // Assert
+        assertTrue(rollup.isEmpty());
+    }
+
+    @Test
+    void testPutWithRollup_WritesTheInteractionAndItsCounters() {
+        // Arrange
+        Interaction like = interaction("i1", "song1", Interaction.InteractionType.LIKE, null);
+        Put put = Put.builder()
+            .tableName("Interactions")
+            .item(Map.of(
+                "userId", AttributeValue.builder().s(USER_ID).build(),
+                "interactionId", AttributeValue.builder().s("i1").build()))
+            .build();
+
+        // Act
+        rollupDao.putWithRollup(put, like);
+        InteractionRollup rollup = rollupDao.getRollup(USER_ID, "song1").orElseThrow();
+
+        // Assert
+        assertEquals(1, dynamoDbClient.itemCount("Interactions"));
+        assertEquals(new InteractionRollup(USER_ID, "song1", 1, 0, 0, 1, 0, 0, 0, 4), rollup);
+    }
+
+    @Test
+    void testPutWithRollup_InteractionWithoutASongIsAPlainPut() {
+        // Arrange
+        Interaction feedback = interaction("i1", null, Interaction.InteractionType.FEEDBACK, null);
+
+        // Act
+        rollupDao.putWithRollup(interactionPut("i1"), feedback);
+
+        // Assert
+        assertEquals(1, dynamoDbClient.itemCount("Interactions"));
+        assertEquals(0, dynamoDbClient.itemCount(InteractionRollupDao.TABLE_NAME));
+    }
+
+    @Test
+    void testDeleteWithRollup_RemovesTheInteractionFromItsCounters() {
+        // Arrange
+        Interaction play = interaction("i1", "song1", Interaction.InteractionType.PLAY, null);
+        Interaction rating = interaction("i2", "song1", Interaction.InteractionType.RATE, 5.0);
+        rollupDao.putWithRollup(interactionPut("i1"), play);
+        rollupDao.putWithRollup(interactionPut("i2"), rating);
+
+        // Act
+        rollupDao.deleteWithRollup(interactionDelete("i2"), rating);
+
+        // Assert
+        assertEquals(1, dynamoDbClient.itemCount("Interactions"));
+        assertEquals(new InteractionRollup(USER_ID, "song1", 1, 1, 0, 0, 0, 0, 0, 1),
+            rollupDao.getRollup(USER_ID, "song1").orElseThrow());
+    }
+
+    @Test
+    void testDeleteWithRollup_InteractionWithoutASongIsAPlainDelete() {
+        // Arrange
+        Interaction feedback = interaction("i1", null, Interaction.InteractionType.FEEDBACK, null);
+        rollupDao.putWithRollup(interactionPut("i1"), feedback);
+
+        // Act
+        rollupDao.deleteWithRollup(interactionDelete("i1"), feedback);
+
+        // Assert
+        assertEquals(0, dynamoDbClient.itemCount("Interactions"));
+        assertEquals(0, dynamoDbClient.itemCount(InteractionRollupDao.TABLE_NAME));
+    }
+
+    @Test
+    void testPutAllWithRollups_CoalescesInteractionsWithTheSameUserAndSong() {
+        // Arrange
+        List<Interaction> interactions = List.of(
+            interaction("i1", "song1", Interaction.InteractionType.PLAY, null),
+            interaction("i2", "song2", Interaction.InteractionType.SKIP, null),
+            interaction("i3", "song1", Interaction.InteractionType.PLAY, null),
+            interaction("i4", "song1", Interaction.InteractionType.LIKE, null),
+            interaction("i5", null, Interaction.InteractionType.FEEDBACK, null));
+        List<Put> puts = List.of(interactionPut("i1"), interactionPut("i2"), interactionPut("i3"),
+            interactionPut("i4"), interactionPut("i5"));
+
+        // Act
+        int updates = rollupDao.putAllWithRollups(puts, interactions);
+
+        // Assert
+        assertEquals(2, updates);
+        assertEquals(5, dynamoDbClient.itemCount("Interactions"));
+        assertEquals(2, dynamoDbClient.itemCount(InteractionRollupDao.TABLE_NAME));
+        assertEquals(new InteractionRollup(USER_ID, "song1", 3, 2, 0, 1, 0, 0, 0, 6),
+            rollupDao.getRollup(USER_ID, "song1").orElseThrow());
+        assertEquals(new InteractionRollup(USER_ID, "song2", 1, 0, 1, 0, 0, 0, 0, -1),
+            rollupDao.getRollup(USER_ID, "song2").orElseThrow());
+    }
+
+    @Test
+    void testPutAllWithRollups_AccumulatesRatingsAcrossCalls() {
+        // Act
+        rollupDao.putAllWithRollups(List.of(interactionPut("i1")),
+            List.of(interaction("i1", "song1", Interaction.InteractionType.RATE, 5.0)));
+        rollupDao.putAllWithRollups(List.of(interactionPut("i2")),
+            List.of(interaction("i2", "song1", Interaction.InteractionType.RATE, 2.0)));
+        InteractionRollup rollup = rollupDao.getRollup(USER_ID, "song1").orElseThrow();
+
+        // Assert
+        assertEquals(2, rollup.ratingCount());
+        assertEquals(7.0, rollup.ratingSum());
+        assertEquals(3.5, rollup.averageRating());
+        assertEquals(2.0, rollup.engagement());
+    }
+
+    @Test
+    void testGetTopSongs_QueriesTheEngagementIndexDescending() {
+        // Arrange
+        DynamoDbClient client = mock(DynamoDbClient.class);
+        when(client.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder()
+            .items(List.of(Map.of(
+                "userId", AttributeValue.builder().s(USER_ID).build(),
+                "songId", AttributeValue.builder().s("song1").build(),
+                "interactions", AttributeValue.builder().n("2").build(),
+                "likes", AttributeValue.builder().n("2").build(),
+                "engagement", AttributeValue.builder().n("8").build())))
+            .build());
+
+        // Act
+        List<InteractionRollup> top = new InteractionRollupDao(client).getTopSongs(USER_ID, 10);
+
+        // Assert
+        ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(client).query(captor.capture());
+        assertEquals(InteractionRollupDao.ENGAGEMENT_INDEX, captor.getValue().indexName());
+        assertFalse(captor.getValue().scanIndexForward());
+        assertEquals(10, captor.getValue().limit());
+        assertEquals(List.of(new InteractionRollup(USER_ID, "song1", 2, 0, 0, 2, 0, 0, 0, 8)), top);
+    }
+
+    @Test
+    void testGetTopSongs_RejectsLimitOutOfRange() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> rollupDao.getTopSongs(USER_ID, 0));
+        assertThrows(IllegalArgumentException.class,
+            () -> rollupDao.getTopSongs(USER_ID, InteractionRollupDao.MAX_TOP_SONGS + 1));
+    }
+
+    private static Put interactionPut(String interactionId) {
+        return Put.builder()
+            .tableName("Interactions")
+            .item(interactionKey(interactionId))
+            .build();
+    }
+
+    private static Delete interactionDelete(String interactionId) {
+        return Delete.builder()
+            .tableName("Interactions")
+            .key(interactionKey(interactionId))
+            .build();
+    }
+
+    private static Map<String, AttributeValue> interactionKey(String interactionId) {
+        return Map.of(
+            "userId", AttributeValue.builder().s(USER_ID).build(),
+            "interactionId", AttributeValue.builder().s(interactionId).build());
+    }
+
+    private static Interaction interaction(String interactionId, String songId, Interaction.InteractionType type,
+                                           Double rating) {
+        return Interaction.builder()
+            .userId(USER_ID)
+            .interactionId(interactionId)
+            .songId(songId)
+            .type(type)
+            .rating(rating)
+            .build();
+    }
+}
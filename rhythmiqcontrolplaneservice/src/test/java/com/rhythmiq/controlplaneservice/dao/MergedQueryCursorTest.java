@@ -0,0 +1,112 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MergedQueryCursorTest {
+    private static final List<List<String>> SHARDS = List.of(
+            List.of("a", "d", "g", "j"),
+            List.of("b", "e"),
+            List.of("c", "f", "h", "i", "k"));
+    private static final int PAGE_SIZE = 2;
+
+    private final AtomicInteger pagesFetched = new AtomicInteger();
+
+    @Test
+    void next_MergesShardsInOrder() {
+        // Given
+        MergedQueryCursor<String> cursor = cursor(null, null);
+
+        // When
+        List<String> merged = cursor.stream().toList();
+
+        // Then
+        assertEquals(List.of("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k"), merged);
+        assertNull(cursor.nextToken());
+    }
+
+    @Test
+    void next_ReadsOnePagePerShardUpFront() {
+        // Given
+        MergedQueryCursor<String> cursor = cursor(null, null);
+
+        // When
+        String first = cursor.next();
+
+        // Then
+        assertEquals("a", first);
+        assertEquals(SHARDS.size(), pagesFetched.get());
+    }
+
+    @Test
+    void nextToken_ResumesEveryShardWhereItStopped() {
+        // Given
+        MergedQueryCursor<String> cursor = cursor(null, 5);
+        List<String> firstRun = cursor.stream().toList();
+
+        // When
+        MergedQueryCursor<String> resumed = cursor(cursor.nextToken(), 4);
+        List<String> secondRun = resumed.stream().toList();
+        MergedQueryCursor<String> rest = cursor(resumed.nextToken(), null);
+
+        // Then
+        assertEquals(List.of("a", "b", "c", "d", "e"), firstRun);
+        assertEquals(List.of("f", "g", "h", "i"), secondRun);
+        assertEquals(List.of("j", "k"), rest.stream().toList());
+        assertNull(rest.nextToken());
+    }
+
+    @Test
+    void constructor_RejectsATokenForAnotherShardCount() {
+        // Given
+        MergedQueryCursor<String> cursor = cursor(null, 1);
+        cursor.next();
+        String token = cursor.nextToken();
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> new MergedQueryCursor<>(
+                List.of(query(SHARDS.get(0))), MergedQueryCursorTest::key, Comparator.naturalOrder(), token, null, Runnable::run));
+    }
+
+    @Test
+    void merge_MergesSortedLists() {
+        assertEquals(List.of("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k"),
+                MergedQueryCursor.merge(SHARDS, Comparator.naturalOrder()));
+        assertEquals(List.of(), MergedQueryCursor.merge(List.of(), Comparator.<String>naturalOrder()));
+    }
+
+    private MergedQueryCursor<String> cursor(String token, Integer limit) {
+        List<Function<Map<String, AttributeValue>, SdkIterable<Page<String>>>> queries = new ArrayList<>();
+        SHARDS.forEach(shard -> queries.add(query(shard)));
+        return new MergedQueryCursor<>(queries, MergedQueryCursorTest::key, Comparator.naturalOrder(), token, limit, Runnable::run);
+    }
+
+    /** Pages of {@code shard} after the start key, {@value #PAGE_SIZE} items each. */
+    private Function<Map<String, AttributeValue>, SdkIterable<Page<String>>> query(List<String> shard) {
+        return startKey -> {
+            int from = startKey == null ? 0 : shard.indexOf(startKey.get("id").s()) + 1;
+            List<Page<String>> pages = new ArrayList<>();
+            for (int i = from; i < shard.size(); i += PAGE_SIZE) {
+                List<String> items = shard.subList(i, Math.min(i + PAGE_SIZE, shard.size()));
+                boolean last = i + PAGE_SIZE >= shard.size();
+                pages.add(Page.create(items, last ? null : key(items.get(items.size() - 1))));
+            }
+            return () -> pages.stream().peek(page -> pagesFetched.incrementAndGet()).iterator();
+        };
+    }
+
+    private static Map<String, AttributeValue> key(String id) {
+        return Map.of("id", AttributeValue.builder().s(id).build());
+    }
+}
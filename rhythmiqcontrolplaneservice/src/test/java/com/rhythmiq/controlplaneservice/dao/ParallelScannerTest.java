@@ -0,0 +1,114 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelScannerTest {
+    private static final String TABLE_NAME = "Profiles";
+    private static final int ITEM_COUNT = 1_000;
+
+    private InMemoryDynamoDbClient dynamoDbClient;
+
+    @BeforeEach
+    void setUp() {
+        dynamoDbClient = new InMemoryDynamoDbClient();
+        dynamoDbClient.createTable(TABLE_NAME, "profile_id", null);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .item(Map.of("profile_id", AttributeValue.builder().s("id" + i).build()))
+                .build());
+        }
+    }
+
+    @Test
+    void scan_DeliversEveryItemExactlyOnce() {
+        // Given
+        ParallelScanner scanner = new ParallelScanner(dynamoDbClient, 8, 16);
+        Set<String> seen = new HashSet<>();
+
+        // When
+        long delivered = scanner.scan(ScanRequest.builder().tableName(TABLE_NAME).limit(25).build(),
+            item -> assertTrue(seen.add(item.get("profile_id").s())));
+
+        // Then
+        assertEquals(ITEM_COUNT, delivered);
+        assertEquals(ITEM_COUNT, seen.size());
+    }
+
+    @Test
+    void scan_ReportsCompletionForEverySegment() {
+        // Given
+        ParallelScanner scanner = new ParallelScanner(dynamoDbClient, 4);
+        Map<Integer, Long> completedSegments = new ConcurrentHashMap<>();
+
+        // When
+        scanner.scan(ScanRequest.builder().tableName(TABLE_NAME).build(), item -> { },
+            (segment, pageItemCount, segmentItemCount, segmentComplete) -> {
+                if (segmentComplete) {
+                    completedSegments.put(segment, segmentItemCount);
+                }
+            });
+
+        // Then
+        assertEquals(Set.of(0, 1, 2, 3), completedSegments.keySet());
+        assertEquals(ITEM_COUNT, completedSegments.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void scan_RetriesThrottledSegments() {
+        // Given
+        dynamoDbClient.failNextScans(3);
+        ParallelScanner scanner = new ParallelScanner(dynamoDbClient, 4);
+
+        // When
+        long delivered = scanner.scan(ScanRequest.builder().tableName(TABLE_NAME).build(), item -> { });
+
+        // Then
+        assertEquals(ITEM_COUNT, delivered);
+    }
+
+    @Test
+    void scan_FailsWhenRetriesAreExhausted() {
+        // Given
+        dynamoDbClient.failNextScans(Integer.MAX_VALUE);
+        ParallelScanner scanner = new ParallelScanner(dynamoDbClient, 2);
+
+        // When/Then
+        assertThrows(ProvisionedThroughputExceededException.class,
+            () -> scanner.scan(ScanRequest.builder().tableName(TABLE_NAME).build(), item -> { }));
+    }
+
+    @Test
+    void scan_PropagatesConsumerFailure() {
+        // Given
+        ParallelScanner scanner = new ParallelScanner(dynamoDbClient, 4, 1);
+        AtomicInteger consumed = new AtomicInteger();
+
+        // When/Then
+        assertThrows(IllegalStateException.class,
+            () -> scanner.scan(ScanRequest.builder().tableName(TABLE_NAME).build(), item -> {
+                if (consumed.incrementAndGet() == 10) {
+                    throw new IllegalStateException("consumer failed");
+                }
+            }));
+        assertEquals(10, consumed.get());
+    }
+
+    @Test
+    void constructor_RejectsInvalidSegmentCount() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelScanner(dynamoDbClient, 0));
+    }
+}
@@ -1,23 +1,50 @@
 package com.rhythmiq.controlplaneservice.dao;
 
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
 import com.rhythmiq.controlplaneservice.model.Preference;
+import com.rhythmiq.controlplaneservice.model.PreferenceVector;
+import com.rhythmiq.controlplaneservice.model.UpdatePreferenceRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
 import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.PutItemEnhancedRequest;
+import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
 
 
 import java.time.Instant;
 import java.util.*;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -30,6 +57,9 @@ public class PreferenceDaoTest {
     @Mock
     private DynamoDbEnhancedClient dynamoDbClient;
 
+    @Mock
+    private DynamoDbClient lowLevelClient;
+
     @Mock
     private DynamoDbTable<Preference> preferenceTable;
 
@@ -41,19 +71,32 @@ public class PreferenceDaoTest {
     void setUp() {
         preferenceSchema = TableSchema.fromBean(Preference.class);
         when(dynamoDbClient.table(anyString(), eq(preferenceSchema))).thenReturn(preferenceTable);
-        preferenceDao = new PreferenceDao(dynamoDbClient);
+        preferenceDao = new PreferenceDao(dynamoDbClient, lowLevelClient);
     }
 
     @Test
     void testCreatePreference() {
         // Arrange
         Preference preference = createTestPreference("profile1", "pref1", 0);
+        stubLastRank("V");
         
         // Act
         preferenceDao.createPreference(preference);
         
         // Assert
-        verify(preferenceTable).putItem(any(Preference.class));
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        assertEquals("pref1", writes.get(0).put().item().get("preferenceId").s());
+        assertEquals("attribute_not_exists(preferenceId)", writes.get(0).put().conditionExpression());
+        assertEquals("k", writes.get(0).put().item().get("rank").s());
+        assertEquals(PreferenceDao.COUNTER_ID, writes.get(1).update().key().get("preferenceId").s());
+        assertEquals("ADD #count :delta", writes.get(1).update().updateExpression());
+        assertEquals("1", writes.get(1).update().expressionAttributeValues().get(":delta").n());
+        assertEquals(PreferenceVectorStore.VECTOR_ID, writes.get(2).update().key().get("preferenceId").s());
+        assertEquals("SET #e0 = :e0 ADD #version :one", writes.get(2).update().updateExpression());
+        assertEquals("p:pref1", writes.get(2).update().expressionAttributeNames().get("#e0"));
+        verify(preferenceTable, never()).putItem(any(Preference.class));
         assertNotNull(preference.getCreatedAt());
         assertNotNull(preference.getUpdatedAt());
     }
@@ -102,19 +145,191 @@ public class PreferenceDaoTest {
     }
 
     @Test
-    void testUpdatePreference() {
+    void testListPreferences_WithFields() {
+        // Arrange
+        String profileId = "profile1";
+        @SuppressWarnings("unchecked")
+        PageIterable<Preference> pageIterable = mock(PageIterable.class);
+        @SuppressWarnings("unchecked")
+        SdkIterable<Preference> sdkIterable = mock(SdkIterable.class);
+        when(pageIterable.items()).thenReturn(sdkIterable);
+        when(sdkIterable.stream()).thenReturn(Stream.of(createTestPreference(profileId, "pref1", 0)));
+        when(preferenceTable.query(any(QueryEnhancedRequest.class))).thenReturn(pageIterable);
+
+        // Act
+        List<Preference> result = preferenceDao.listPreferences(profileId, Set.of("value"));
+
+        // Assert
+        assertEquals(1, result.size());
+        ArgumentCaptor<QueryEnhancedRequest> captor = ArgumentCaptor.forClass(QueryEnhancedRequest.class);
+        verify(preferenceTable).query(captor.capture());
+        assertEquals(List.of("profileId", "preferenceId", "value"), captor.getValue().attributesToProject());
+    }
+
+    @Test
+    void testListPreferences_UnknownField() {
+        assertThrows(IllegalArgumentException.class, () -> preferenceDao.listPreferences("profile1", Set.of("secret")));
+    }
+
+    @Test
+    void testUpdatePreference_IsCountedLikeSave() {
         // Arrange
         Preference preference = createTestPreference("profile1", "pref1", 0);
         Instant originalUpdatedAt = preference.getUpdatedAt();
+        stubLastRank(null);
 
         // Act
         preferenceDao.updatePreference(preference);
 
         // Assert
-        verify(preferenceTable).putItem(any(Preference.class));
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        assertEquals("pref1", writes.get(0).put().item().get("preferenceId").s());
+        assertEquals(PreferenceDao.COUNTER_ID, writes.get(1).update().key().get("preferenceId").s());
+        verify(preferenceTable, never()).putItem(any(Preference.class));
         assertTrue(preference.getUpdatedAt().isAfter(originalUpdatedAt));
     }
 
+    @Test
+    void testUpdatePreference_WithoutIndexIsWrittenUnindexed() {
+        // Arrange
+        Preference preference = createTestPreference("profile1", "pref1", 0);
+        preference.setIndex(null);
+        stubLastRank(null);
+
+        // Act
+        preferenceDao.updatePreference(preference);
+
+        // Assert
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        Map<String, AttributeValue> item = captor.getValue().transactItems().get(0).put().item();
+        assertEquals("pref1", item.get("preferenceId").s());
+        assertFalse(item.containsKey("index"));
+    }
+
+    @Test
+    void testUpdatePreference_RejectsIndexOutOfRange() {
+        // Arrange
+        Preference preference = createTestPreference("profile1", "pref1", PreferenceDao.MAX_PREFERENCES);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> preferenceDao.updatePreference(preference));
+        verify(lowLevelClient, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    void testUpdatePreference_RejectsInsertPastTheLimit() {
+        // Arrange
+        Preference preference = createTestPreference("profile1", "pref1", 0);
+        stubLastRank(null);
+        when(lowLevelClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(cancelledWith(reason("None"), counterAt(PreferenceDao.MAX_PREFERENCES)));
+
+        // Act & Assert
+        assertThrows(ConflictException.class, () -> preferenceDao.updatePreference(preference));
+        verify(preferenceTable, never()).putItem(any(Preference.class));
+    }
+
+    @Test
+    void testPatchPreference_SetsOnlyPresentFields() {
+        // Arrange
+        Preference stored = createTestPreference("profile1", "pref1", 0);
+        stored.setValue("new-value");
+        when(lowLevelClient.updateItem(any(UpdateItemRequest.class)))
+            .thenReturn(UpdateItemResponse.builder().attributes(preferenceSchema.itemToMap(stored, true)).build());
+
+        // Act
+        Preference result = preferenceDao.patchPreference("profile1", "pref1",
+            UpdatePreferenceRequest.builder().value("new-value").build());
+
+        // Assert
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(lowLevelClient, times(2)).updateItem(captor.capture());
+        UpdateItemRequest update = captor.getAllValues().get(0);
+        assertEquals("SET #updatedAt = :updatedAt, #value = :value", update.updateExpression());
+        assertEquals(PreferenceVectorStore.VECTOR_ID, captor.getAllValues().get(1).key().get("preferenceId").s());
+        assertEquals("attribute_exists(preferenceId)", update.conditionExpression());
+        assertEquals(ReturnValue.ALL_NEW, update.returnValues());
+        assertEquals("new-value", result.getValue());
+        verify(preferenceTable, never()).getItem(any(Key.class));
+        verify(preferenceTable, never()).putItem(any(Preference.class));
+    }
+
+    @Test
+    void testPatchPreference_IndexChangeSetsTypeSortKeyInTheSameWrite() {
+        // Arrange
+        Preference stored = createTestPreference("profile1", "pref1", 7);
+        when(lowLevelClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder()
+            .item(Map.of(
+                "preferenceId", AttributeValue.builder().s("pref1").build(),
+                "type", AttributeValue.builder().s("GENRE").build()))
+            .build());
+        when(lowLevelClient.updateItem(any(UpdateItemRequest.class)))
+            .thenReturn(UpdateItemResponse.builder().attributes(preferenceSchema.itemToMap(stored, true)).build());
+
+        // Act
+        preferenceDao.patchPreference("profile1", "pref1", UpdatePreferenceRequest.builder().index(7).build());
+
+        // Assert: the patch and the vector update, no separate sort key write
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(lowLevelClient, times(2)).updateItem(captor.capture());
+        UpdateItemRequest update = captor.getAllValues().get(0);
+        assertEquals("SET #updatedAt = :updatedAt, #index = :index, #typeSortKey = :typeSortKey",
+            update.updateExpression());
+        assertEquals("GENRE#007", update.expressionAttributeValues().get(":typeSortKey").s());
+        assertEquals("attribute_exists(preferenceId) AND #type = :type", update.conditionExpression());
+        assertEquals(PreferenceVectorStore.VECTOR_ID, captor.getAllValues().get(1).key().get("preferenceId").s());
+    }
+
+    @Test
+    void testPatchPreference_IndexChangeRacingATypeChangeConflicts() {
+        // Arrange
+        when(lowLevelClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder()
+            .item(Map.of(
+                "preferenceId", AttributeValue.builder().s("pref1").build(),
+                "type", AttributeValue.builder().s("GENRE").build()))
+            .build());
+        when(lowLevelClient.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().build());
+
+        // Act & Assert
+        assertThrows(ConflictException.class, () -> preferenceDao.patchPreference("profile1", "pref1",
+            UpdatePreferenceRequest.builder().index(3).build()));
+    }
+
+    @Test
+    void testPatchPreference_IndexChangeOnMissingPreference() {
+        // Arrange
+        when(lowLevelClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().build());
+
+        // Act & Assert
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> preferenceDao.patchPreference(
+            "profile1", "missing", UpdatePreferenceRequest.builder().index(3).build()));
+        assertFalse(e instanceof ConflictException);
+        verify(lowLevelClient, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    void testPatchPreference_MissingPreference() {
+        // Arrange
+        when(lowLevelClient.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().build());
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> preferenceDao.patchPreference("profile1", "missing",
+            UpdatePreferenceRequest.builder().weight(0.5).build()));
+    }
+
+    @Test
+    void testPatchPreference_InvalidIndex() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> preferenceDao.patchPreference("profile1", "pref1",
+            UpdatePreferenceRequest.builder().index(100).build()));
+        verify(lowLevelClient, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
     @Test
     void testDeletePreference() {
         // Arrange
@@ -124,27 +339,97 @@ public class PreferenceDaoTest {
         // Act
         preferenceDao.deletePreference(profileId, preferenceId);
 
+        // Assert
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        assertEquals(preferenceId, writes.get(0).delete().key().get("preferenceId").s());
+        assertEquals("-1", writes.get(1).update().expressionAttributeValues().get(":delta").n());
+        assertEquals("REMOVE #e0 ADD #version :one", writes.get(2).update().updateExpression());
+        assertEquals("p:" + preferenceId, writes.get(2).update().expressionAttributeNames().get("#e0"));
+        verify(preferenceTable, never()).deleteItem(any(Preference.class));
+    }
+
+    @Test
+    void testDeletePreference_WithoutCounterSeedsItAndRetries() {
+        // Arrange
+        stubConsistentCount(createTestPreference("profile1", "pref1", 0), createTestPreference("profile1", "pref2", 1));
+        when(lowLevelClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(cancelled("None", "ConditionalCheckFailed"))
+            .thenReturn(TransactWriteItemsResponse.builder().build());
+
+        // Act
+        preferenceDao.deletePreference("profile1", "pref1");
+
+        // Assert
+        assertSeededCount("2");
+        verify(lowLevelClient, times(2)).transactWriteItems(any(TransactWriteItemsRequest.class));
+        verify(preferenceTable, never()).deleteItem(any(Preference.class));
+    }
+
+    @Test
+    void testDeletePreference_DriftedCounterFallsBackToPlainDelete() {
+        // Arrange
+        when(lowLevelClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(cancelledWith(reason("None"), counterAt(0)));
+
+        // Act
+        preferenceDao.deletePreference("profile1", "pref1");
+
         // Assert
         verify(preferenceTable).deleteItem(any(Preference.class));
+        verify(lowLevelClient).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    void testDeletePreference_MissingPreferenceIsNoOp() {
+        // Arrange
+        when(lowLevelClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(cancelled("ConditionalCheckFailed", "None"));
+
+        // Act
+        preferenceDao.deletePreference("profile1", "pref1");
+
+        // Assert
+        verify(preferenceTable, never()).deleteItem(any(Preference.class));
     }
 
     @Test
     void testSavePreference_ValidIndex() {
         // Arrange
         Preference preference = createTestPreference("profile1", "pref1", 0);
-        @SuppressWarnings("unchecked")
-        PageIterable<Preference> pageIterable = mock(PageIterable.class);
-        @SuppressWarnings("unchecked")
-        SdkIterable<Preference> sdkIterable = mock(SdkIterable.class);
-        when(pageIterable.items()).thenReturn(sdkIterable);
-        when(sdkIterable.stream()).thenReturn(Collections.<Preference>emptyList().stream());
-        when(preferenceTable.scan((ScanEnhancedRequest) any())).thenReturn(pageIterable);
+        stubLastRank(null);
 
         // Act
         preferenceDao.savePreference(preference);
 
         // Assert
-        verify(preferenceTable).putItem(any(Preference.class));
+        assertEquals("V", preference.getRank());
+        verify(lowLevelClient).transactWriteItems(any(TransactWriteItemsRequest.class));
+        verify(preferenceTable, never()).scan(any(ScanEnhancedRequest.class));
+    }
+
+    @Test
+    void testSavePreference_ExistingPreferenceIsOverwrittenWithoutCounting() {
+        // Arrange
+        Preference preference = createTestPreference("profile1", "pref1", 0);
+        Preference existing = createTestPreference("profile1", "pref1", 0);
+        existing.setRank("F");
+        stubLastRank("V");
+        when(preferenceTable.getItem(any(Key.class))).thenReturn(existing);
+        when(lowLevelClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(cancelled("ConditionalCheckFailed", "None"));
+
+        // Act
+        preferenceDao.savePreference(preference);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<PutItemEnhancedRequest<Preference>> captor = ArgumentCaptor.forClass(PutItemEnhancedRequest.class);
+        verify(preferenceTable).putItem(captor.capture());
+        assertEquals(preference, captor.getValue().item());
+        assertEquals("attribute_exists(preferenceId)", captor.getValue().conditionExpression().expression());
+        assertEquals("F", captor.getValue().item().getRank());
     }
 
     @Test
@@ -162,17 +447,9 @@ public class PreferenceDaoTest {
     void testSavePreference_MaxPreferencesReached() {
         // Arrange
         Preference preference = createTestPreference("profile1", "pref1", 0);
-        List<Preference> existingPreferences = new ArrayList<>();
-        for (int i = 0; i < 100; i++) {
-            existingPreferences.add(createTestPreference("profile1", "pref" + i, i));
-        }
-        @SuppressWarnings("unchecked")
-        PageIterable<Preference> pageIterable = mock(PageIterable.class);
-        @SuppressWarnings("unchecked")
-        SdkIterable<Preference> sdkIterable = mock(SdkIterable.class);
-        when(pageIterable.items()).thenReturn(sdkIterable);
-        when(sdkIterable.stream()).thenReturn(existingPreferences.stream());
-        when(preferenceTable.scan((ScanEnhancedRequest) any())).thenReturn(pageIterable);
+        stubLastRank(null);
+        when(lowLevelClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(cancelledWith(reason("None"), counterAt(PreferenceDao.MAX_PREFERENCES)));
 
         // Act & Assert
         assertThrows(IllegalStateException.class, () -> {
@@ -180,6 +457,26 @@ public class PreferenceDaoTest {
         });
     }
 
+    @Test
+    void testSavePreference_WithoutCounterSeedsItBeforeInserting() {
+        // Arrange: a profile from before the counter, already at the limit
+        Preference preference = createTestPreference("profile1", "pref1", 0);
+        stubLastRank(null);
+        List<Preference> existing = new ArrayList<>();
+        for (int i = 0; i < PreferenceDao.MAX_PREFERENCES; i++) {
+            existing.add(createTestPreference("profile1", "old" + i, 0));
+        }
+        stubConsistentCount(existing.toArray(new Preference[0]));
+        when(lowLevelClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(cancelled("None", "ConditionalCheckFailed"))
+            .thenThrow(cancelledWith(reason("None"), counterAt(PreferenceDao.MAX_PREFERENCES)));
+
+        // Act & Assert
+        assertThrows(ConflictException.class, () -> preferenceDao.savePreference(preference));
+        assertSeededCount(String.valueOf(PreferenceDao.MAX_PREFERENCES));
+        verify(lowLevelClient, times(2)).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
     @Test
     void testReorderPreferences() {
         // Arrange
@@ -204,7 +501,146 @@ public class PreferenceDaoTest {
         preferenceDao.reorderPreferences(profileId, newOrder);
 
         // Assert
-        verify(preferenceTable, times(3)).putItem(any(Preference.class));
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        assertEquals(4, captor.getValue().transactItems().size());
+        verify(preferenceTable, never()).putItem(any(Preference.class));
+    }
+
+    @Test
+    void testReorderPreferences_WritesOnlyChangedIndexes() {
+        // Arrange
+        String profileId = "profile1";
+        stubQuery(profileId, Arrays.asList(
+            createTestPreference(profileId, "pref1", 0),
+            createTestPreference(profileId, "pref2", 1),
+            createTestPreference(profileId, "pref3", 2)
+        ));
+
+        // Act
+        preferenceDao.reorderPreferences(profileId, Arrays.asList("pref1", "pref3", "pref2"));
+
+        // Assert
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        assertEquals(3, writes.size());
+        assertEquals("pref3", writes.get(0).update().key().get("preferenceId").s());
+        assertEquals("SET #index = :index, #updatedAt = :updatedAt, #typeSortKey = :typeSortKey",
+            writes.get(0).update().updateExpression());
+        assertEquals("1", writes.get(0).update().expressionAttributeValues().get(":index").n());
+        assertEquals("GENRE#001", writes.get(0).update().expressionAttributeValues().get(":typeSortKey").s());
+        assertEquals("#index = :previousIndex", writes.get(0).update().conditionExpression());
+        assertEquals("2", writes.get(0).update().expressionAttributeValues().get(":previousIndex").n());
+        assertEquals(PreferenceVectorStore.VECTOR_ID, writes.get(2).update().key().get("preferenceId").s());
+        assertEquals("SET #e0 = :e0, #e1 = :e1 ADD #version :one", writes.get(2).update().updateExpression());
+    }
+
+    @Test
+    void testReorderPreferences_RanksFollowTheNewOrder() {
+        // Arrange
+        String profileId = "profile1";
+        Preference first = createTestPreference(profileId, "pref1", 0);
+        first.setRank("F");
+        Preference second = createTestPreference(profileId, "pref2", 1);
+        second.setRank("V");
+        Preference third = createTestPreference(profileId, "pref3", 2);
+        third.setRank("k");
+        stubQuery(profileId, Arrays.asList(first, second, third));
+
+        // Act
+        preferenceDao.reorderPreferences(profileId, Arrays.asList("pref1", "pref3", "pref2"));
+
+        // Assert: "F" and "k" are already in order, so only pref2 is re-ranked
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        assertEquals(3, writes.size());
+        assertEquals("pref3", writes.get(0).update().key().get("preferenceId").s());
+        assertEquals("SET #index = :index, #updatedAt = :updatedAt, #typeSortKey = :typeSortKey",
+            writes.get(0).update().updateExpression());
+        assertEquals("pref2", writes.get(1).update().key().get("preferenceId").s());
+        assertEquals("SET #index = :index, #rank = :rank, #updatedAt = :updatedAt, #typeSortKey = :typeSortKey",
+            writes.get(1).update().updateExpression());
+        assertEquals("#index = :previousIndex AND #rank = :previousRank", writes.get(1).update().conditionExpression());
+        assertEquals(FractionalRank.between("k", null), writes.get(1).update().expressionAttributeValues().get(":rank").s());
+        assertEquals(PreferenceVectorStore.VECTOR_ID, writes.get(2).update().key().get("preferenceId").s());
+        assertEquals(PreferenceVectorStore.encode(second), writes.get(2).update().expressionAttributeValues().get(":e1"));
+    }
+
+    @Test
+    void testReorderPreferences_FullListIsOneTransactionAndRebuildsTheVector() {
+        // Arrange
+        String profileId = "profile1";
+        List<Preference> preferences = new ArrayList<>();
+        List<String> reversed = new ArrayList<>();
+        for (int i = 0; i < PreferenceDao.MAX_PREFERENCES; i++) {
+            preferences.add(createTestPreference(profileId, "pref" + i, i));
+            reversed.add(0, "pref" + i);
+        }
+        stubQuery(profileId, preferences);
+
+        // Act
+        preferenceDao.reorderPreferences(profileId, reversed);
+
+        // Assert: every index changes, which leaves no room for the vector update in the transaction
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        assertEquals(PreferenceDao.MAX_PREFERENCES, writes.size());
+        assertTrue(writes.stream().noneMatch(write ->
+            PreferenceVectorStore.VECTOR_ID.equals(write.update().key().get("preferenceId").s())));
+        ArgumentCaptor<UpdateItemRequest> invalidation = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(lowLevelClient).updateItem(invalidation.capture());
+        assertEquals(PreferenceVectorStore.VECTOR_ID, invalidation.getValue().key().get("preferenceId").s());
+        assertEquals("REMOVE #complete ADD #version :one", invalidation.getValue().updateExpression());
+    }
+
+    @Test
+    void testReorderPreferences_UnchangedOrderWritesNothing() {
+        // Arrange
+        String profileId = "profile1";
+        stubQuery(profileId, Arrays.asList(
+            createTestPreference(profileId, "pref1", 0),
+            createTestPreference(profileId, "pref2", 1)
+        ));
+
+        // Act
+        preferenceDao.reorderPreferences(profileId, Arrays.asList("pref1", "pref2"));
+
+        // Assert
+        verify(lowLevelClient, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    void testReorderPreferences_DuplicateId() {
+        // Arrange
+        String profileId = "profile1";
+        stubQuery(profileId, Arrays.asList(
+            createTestPreference(profileId, "pref1", 0),
+            createTestPreference(profileId, "pref2", 1)
+        ));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+            () -> preferenceDao.reorderPreferences(profileId, Arrays.asList("pref2", "pref2")));
+        verify(lowLevelClient, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    void testReorderPreferences_ConcurrentModification() {
+        // Arrange
+        String profileId = "profile1";
+        stubQuery(profileId, Arrays.asList(
+            createTestPreference(profileId, "pref1", 0),
+            createTestPreference(profileId, "pref2", 1)
+        ));
+        when(lowLevelClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(cancelled("None", "ConditionalCheckFailed"));
+
+        // Act & Assert
+        assertThrows(ConflictException.class,
+            () -> preferenceDao.reorderPreferences(profileId, Arrays.asList("pref2", "pref1")));
     }
 
     @Test
@@ -245,6 +681,605 @@ public class PreferenceDaoTest {
         });
     }
 
+    @Test
+    void testListPreferences_SkipsCounterItem() {
+        // Arrange
+        String profileId = "profile1";
+        Preference preference = createTestPreference(profileId, "pref1", 0);
+        Preference counter = Preference.builder().profileId(profileId).preferenceId(PreferenceDao.COUNTER_ID).build();
+        @SuppressWarnings("unchecked")
+        PageIterable<Preference> pageIterable = mock(PageIterable.class);
+        @SuppressWarnings("unchecked")
+        SdkIterable<Preference> sdkIterable = mock(SdkIterable.class);
+        when(pageIterable.items()).thenReturn(sdkIterable);
+        when(sdkIterable.stream()).thenReturn(Stream.of(counter, preference));
+        when(preferenceTable.query(any(QueryConditional.class))).thenReturn(pageIterable);
+
+        // Act
+        List<Preference> result = preferenceDao.listPreferences(profileId);
+
+        // Assert
+        assertEquals(List.of(preference), result);
+    }
+
+    @Test
+    void testMovePreference_WritesOnlyTheMovedPreference() {
+        // Arrange
+        String profileId = "profile1";
+        stubRankQuery(Arrays.asList(
+            rankedPreference(profileId, "pref1", "F"),
+            rankedPreference(profileId, "pref2", "V"),
+            rankedPreference(profileId, "pref3", "k")
+        ));
+
+        // Act
+        Preference moved = preferenceDao.movePreference(profileId, "pref3", null);
+
+        // Assert
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        assertEquals(2, writes.size());
+        assertEquals("pref3", writes.get(0).update().key().get("preferenceId").s());
+        assertEquals("SET #rank = :rank, #updatedAt = :updatedAt", writes.get(0).update().updateExpression());
+        assertEquals(FractionalRank.between(null, "F"), writes.get(0).update().expressionAttributeValues().get(":rank").s());
+        assertEquals(FractionalRank.between(null, "F"), moved.getRank());
+        // The vector entry carries the new rank, so the moved preference is weighted as first
+        assertEquals(PreferenceVectorStore.VECTOR_ID, writes.get(1).update().key().get("preferenceId").s());
+        assertEquals(PreferenceVectorStore.encode(moved), writes.get(1).update().expressionAttributeValues().get(":e0"));
+        verify(lowLevelClient, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    void testMovePreference_PlacesAfterAnchor() {
+        // Arrange
+        String profileId = "profile1";
+        stubRankQuery(Arrays.asList(
+            rankedPreference(profileId, "pref1", "F"),
+            rankedPreference(profileId, "pref2", "V"),
+            rankedPreference(profileId, "pref3", "k")
+        ));
+
+        // Act
+        Preference moved = preferenceDao.movePreference(profileId, "pref1", "pref2");
+
+        // Assert
+        assertTrue(moved.getRank().compareTo("V") > 0);
+        assertTrue(moved.getRank().compareTo("k") < 0);
+    }
+
+    @Test
+    void testMovePreference_UnknownPreference() {
+        // Arrange
+        String profileId = "profile1";
+        stubRankQuery(List.of(rankedPreference(profileId, "pref1", "V")));
+        stubQuery(profileId, List.of(rankedPreference(profileId, "pref1", "V")));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> preferenceDao.movePreference(profileId, "missing", null));
+        verify(lowLevelClient, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    void testRebalanceRanks_RewritesRanksInOrder() {
+        // Arrange
+        String profileId = "profile1";
+        Preference unranked = createTestPreference(profileId, "pref3", 2);
+        stubQuery(profileId, Arrays.asList(
+            unranked,
+            rankedPreference(profileId, "pref2", "VVVVVVVVVVVVVV"),
+            rankedPreference(profileId, "pref1", "0001")
+        ));
+
+        // Act
+        int rewritten = preferenceDao.rebalanceRanks(profileId);
+
+        // Assert
+        assertEquals(3, rewritten);
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        List<String> spread = FractionalRank.spread(3);
+        assertEquals("pref1", writes.get(0).update().key().get("preferenceId").s());
+        assertEquals(spread.get(0), writes.get(0).update().expressionAttributeValues().get(":rank").s());
+        assertEquals("#rank = :previousRank", writes.get(0).update().conditionExpression());
+        assertEquals("pref2", writes.get(1).update().key().get("preferenceId").s());
+        assertEquals("pref3", writes.get(2).update().key().get("preferenceId").s());
+        assertEquals("attribute_exists(preferenceId) AND attribute_not_exists(#rank)",
+            writes.get(2).update().conditionExpression());
+        ArgumentCaptor<UpdateItemRequest> invalidation = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(lowLevelClient).updateItem(invalidation.capture());
+        assertEquals(PreferenceVectorStore.VECTOR_ID, invalidation.getValue().key().get("preferenceId").s());
+        assertEquals("REMOVE #complete ADD #version :one", invalidation.getValue().updateExpression());
+    }
+
+    @Test
+    void testReplacePreferences_WritesOnlyTheDiff() {
+        // Arrange
+        String profileId = "profile1";
+        stubQuery(profileId, Arrays.asList(
+            createTestPreference(profileId, "pref1", 0),
+            createTestPreference(profileId, "pref2", 1),
+            createTestPreference(profileId, "pref3", 2)
+        ));
+        Preference changed = createTestPreference(profileId, "pref2", 1);
+        changed.setValue("new-value");
+
+        // Act
+        List<Preference> result = preferenceDao.replacePreferences(profileId, Arrays.asList(
+            createTestPreference(profileId, "pref1", 0),
+            changed,
+            createTestPreference(profileId, "pref4", 3)));
+
+        // Assert
+        assertEquals(Arrays.asList("pref1", "pref2", "pref4"),
+            result.stream().map(Preference::getPreferenceId).toList());
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        assertEquals(4, writes.size());
+        assertEquals("pref3", writes.get(0).delete().key().get("preferenceId").s());
+        assertEquals("pref2", writes.get(1).put().item().get("preferenceId").s());
+        assertEquals("#updatedAt = :previousUpdatedAt", writes.get(1).put().conditionExpression());
+        assertEquals("pref4", writes.get(2).put().item().get("preferenceId").s());
+        assertEquals("attribute_not_exists(preferenceId)", writes.get(2).put().conditionExpression());
+        assertEquals("SET #e0 = :e0, #e1 = :e1 REMOVE #e2 ADD #version :one", writes.get(3).update().updateExpression());
+        assertEquals("p:pref3", writes.get(3).update().expressionAttributeNames().get("#e2"));
+    }
+
+    @Test
+    void testReplacePreferences_KeepsInferredPreferences() {
+        // Arrange
+        String profileId = "profile1";
+        Preference listedInferred = createTestPreference(profileId, "inferred-a", 1);
+        listedInferred.setIsUserSet(false);
+        Preference omittedInferred = createTestPreference(profileId, "inferred-b", 2);
+        omittedInferred.setIsUserSet(false);
+        stubQuery(profileId, Arrays.asList(createTestPreference(profileId, "pref1", 0), listedInferred, omittedInferred));
+        Preference edited = createTestPreference(profileId, "inferred-a", 1);
+        edited.setIsUserSet(null);
+        edited.setWeight(0.5);
+        Preference added = createTestPreference(profileId, "pref2", 3);
+        added.setIsUserSet(null);
+
+        // Act
+        List<Preference> result = preferenceDao.replacePreferences(profileId, Arrays.asList(edited, added));
+
+        // Assert
+        assertEquals(Arrays.asList("inferred-a", "pref2", "inferred-b"),
+            result.stream().map(Preference::getPreferenceId).toList());
+        assertEquals(false, edited.getIsUserSet());
+        assertEquals(true, added.getIsUserSet());
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        assertEquals("pref1", writes.get(0).delete().key().get("preferenceId").s());
+        assertEquals("inferred-a", writes.get(1).put().item().get("preferenceId").s());
+        assertFalse(writes.get(1).put().item().get("isUserSet").bool());
+        assertEquals("pref2", writes.get(2).put().item().get("preferenceId").s());
+        assertTrue(writes.stream().noneMatch(write -> write.delete() != null
+            && "inferred-b".equals(write.delete().key().get("preferenceId").s())));
+    }
+
+    @Test
+    void testReplacePreferences_UnchangedSetWritesNothing() {
+        // Arrange
+        String profileId = "profile1";
+        stubQuery(profileId, List.of(createTestPreference(profileId, "pref1", 0)));
+
+        // Act
+        preferenceDao.replacePreferences(profileId, List.of(createTestPreference(profileId, "pref1", 0)));
+
+        // Assert
+        verify(lowLevelClient, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    void testReplacePreferences_NetInsertsAreCounted() {
+        // Arrange
+        String profileId = "profile1";
+        stubQuery(profileId, List.of());
+
+        // Act
+        List<Preference> result = preferenceDao.replacePreferences(profileId, Arrays.asList(
+            createTestPreference(profileId, "pref1", 0),
+            createTestPreference(profileId, "pref2", 1)));
+
+        // Assert
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient).transactWriteItems(captor.capture());
+        TransactWriteItem counter = captor.getValue().transactItems().get(2);
+        assertEquals(PreferenceDao.COUNTER_ID, counter.update().key().get("preferenceId").s());
+        assertEquals("2", counter.update().expressionAttributeValues().get(":delta").n());
+        assertEquals("98", counter.update().expressionAttributeValues().get(":limit").n());
+        assertTrue(result.get(0).getRank().compareTo(result.get(1).getRank()) < 0);
+    }
+
+    @Test
+    void testReplacePreferences_WithoutCounterSeedsItAndRetries() {
+        // Arrange
+        String profileId = "profile1";
+        stubQuery(profileId, List.of());
+        stubConsistentCount();
+        when(lowLevelClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(cancelled("None", "None", "ConditionalCheckFailed", "None"))
+            .thenReturn(TransactWriteItemsResponse.builder().build());
+
+        // Act
+        preferenceDao.replacePreferences(profileId, Arrays.asList(
+            createTestPreference(profileId, "pref1", 0),
+            createTestPreference(profileId, "pref2", 1)));
+
+        // Assert
+        assertSeededCount("0");
+        verify(lowLevelClient, times(2)).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    void testReplacePreferences_LargeChangeSetIsChunkedWithItsOwnCounts() {
+        // Arrange
+        String profileId = "profile1";
+        stubQuery(profileId, List.of());
+        List<Preference> desired = new ArrayList<>();
+        for (int i = 0; i < PreferenceDao.MAX_PREFERENCES; i++) {
+            desired.add(createTestPreference(profileId, "pref" + i, i));
+        }
+
+        // Act: 100 inserts plus the counter and the vector exceed one transaction
+        List<Preference> result = preferenceDao.replacePreferences(profileId, desired);
+
+        // Assert
+        assertEquals(PreferenceDao.MAX_PREFERENCES, result.size());
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(lowLevelClient, times(2)).transactWriteItems(captor.capture());
+        List<TransactWriteItem> first = captor.getAllValues().get(0).transactItems();
+        List<TransactWriteItem> second = captor.getAllValues().get(1).transactItems();
+        assertEquals(PreferenceDao.TRANSACT_CHUNK_SIZE, first.size());
+        assertEquals(PreferenceDao.COUNTER_ID, first.get(99).update().key().get("preferenceId").s());
+        assertEquals("99", first.get(99).update().expressionAttributeValues().get(":delta").n());
+        assertEquals(2, second.size());
+        assertEquals("1", second.get(1).update().expressionAttributeValues().get(":delta").n());
+        ArgumentCaptor<UpdateItemRequest> invalidation = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(lowLevelClient).updateItem(invalidation.capture());
+        assertEquals("REMOVE #complete ADD #version :one", invalidation.getValue().updateExpression());
+    }
+
+    @Test
+    void testReplacePreferences_ConcurrentEdit() {
+        // Arrange
+        String profileId = "profile1";
+        stubQuery(profileId, List.of(createTestPreference(profileId, "pref1", 0)));
+        Preference changed = createTestPreference(profileId, "pref1", 0);
+        changed.setWeight(0.5);
+        when(lowLevelClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(cancelled("ConditionalCheckFailed"));
+
+        // Act & Assert
+        assertThrows(ConflictException.class, () -> preferenceDao.replacePreferences(profileId, List.of(changed)));
+    }
+
+    @Test
+    void testReplacePreferences_DuplicateId() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> preferenceDao.replacePreferences("profile1", Arrays.asList(
+            createTestPreference("profile1", "pref1", 0),
+            createTestPreference("profile1", "pref1", 1))));
+        verify(preferenceTable, never()).query(any(QueryConditional.class));
+    }
+
+    @Test
+    void testDocumentMode_ListIsOneGetItem() {
+        // Arrange
+        String profileId = "profile1";
+        List<Preference> stored = Arrays.asList(
+            createTestPreference(profileId, "pref1", 0),
+            createTestPreference(profileId, "pref2", 1));
+        PreferenceDao documentDao = documentDao();
+        stubDocument(profileId, stored, 3);
+
+        // Act
+        List<Preference> result = documentDao.listPreferences(profileId);
+
+        // Assert
+        assertEquals(stored, result);
+        verify(lowLevelClient).getItem(any(GetItemRequest.class));
+        verify(preferenceTable, never()).query(any(QueryConditional.class));
+    }
+
+    @Test
+    void testDocumentMode_SaveWritesNextVersion() {
+        // Arrange
+        String profileId = "profile1";
+        PreferenceDao documentDao = documentDao();
+        stubDocument(profileId, List.of(createTestPreference(profileId, "pref1", 0)), 3);
+        Preference added = createTestPreference(profileId, "pref2", 1);
+
+        // Act
+        documentDao.savePreference(added);
+
+        // Assert
+        ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(lowLevelClient).putItem(captor.capture());
+        PutItemRequest write = captor.getValue();
+        assertEquals(PreferenceDocumentStore.DOCUMENT_ID, write.item().get("preferenceId").s());
+        assertEquals("4", write.item().get("version").n());
+        assertEquals("#version = :expectedVersion", write.conditionExpression());
+        assertEquals("3", write.expressionAttributeValues().get(":expectedVersion").n());
+        List<Preference> written = PreferenceDocumentStore.decode(write.item().get("document").b().asByteArray());
+        assertEquals(Arrays.asList("pref1", "pref2"),
+            written.stream().map(Preference::getPreferenceId).toList());
+        verify(lowLevelClient, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    void testDocumentMode_RetriesAfterVersionConflict() {
+        // Arrange
+        String profileId = "profile1";
+        PreferenceDao documentDao = documentDao();
+        stubDocument(profileId, List.of(createTestPreference(profileId, "pref1", 0)), 1);
+        when(lowLevelClient.putItem(any(PutItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder().build())
+            .thenReturn(PutItemResponse.builder().build());
+
+        // Act
+        documentDao.deletePreference(profileId, "pref1");
+
+        // Assert
+        verify(lowLevelClient, times(2)).getItem(any(GetItemRequest.class));
+        verify(lowLevelClient, times(2)).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void testDocumentMode_UnchangedDocumentIsNotWritten() {
+        // Arrange
+        String profileId = "profile1";
+        PreferenceDao documentDao = documentDao();
+        stubDocument(profileId, List.of(createTestPreference(profileId, "pref1", 0)), 1);
+
+        // Act
+        documentDao.deletePreference(profileId, "missing");
+
+        // Assert
+        verify(lowLevelClient, never()).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void testDocumentMode_MaxPreferencesReached() {
+        // Arrange
+        String profileId = "profile1";
+        List<Preference> full = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            full.add(createTestPreference(profileId, "pref" + i, i));
+        }
+        PreferenceDao documentDao = documentDao();
+        stubDocument(profileId, full, 7);
+
+        // Act & Assert
+        assertThrows(ConflictException.class,
+            () -> documentDao.createPreference(createTestPreference(profileId, "extra", 0)));
+        verify(lowLevelClient, never()).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void testMigrateToDocument_CopiesItemsOnce() {
+        // Arrange
+        String profileId = "profile1";
+        when(lowLevelClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().build());
+        stubQuery(profileId, Arrays.asList(
+            createTestPreference(profileId, "pref1", 0),
+            createTestPreference(profileId, "pref2", 1)));
+
+        // Act
+        int migrated = preferenceDao.migrateToDocument(profileId);
+
+        // Assert
+        assertEquals(2, migrated);
+        ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(lowLevelClient).putItem(captor.capture());
+        assertEquals("1", captor.getValue().item().get("version").n());
+        assertEquals("attribute_not_exists(preferenceId)", captor.getValue().conditionExpression());
+    }
+
+    private PreferenceDao documentDao() {
+        return new PreferenceDao(dynamoDbClient, lowLevelClient, PreferenceDao.StorageMode.DOCUMENT);
+    }
+
+    private void stubDocument(String profileId, List<Preference> preferences, long version) {
+        Map<String, AttributeValue> item = Map.of(
+            "profileId", AttributeValue.builder().s(profileId).build(),
+            "preferenceId", AttributeValue.builder().s(PreferenceDocumentStore.DOCUMENT_ID).build(),
+            "document", AttributeValue.builder()
+                .b(SdkBytes.fromByteArray(PreferenceDocumentStore.encode(preferences)))
+                .build(),
+            "version", AttributeValue.builder().n(Long.toString(version)).build());
+        when(lowLevelClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().item(item).build());
+    }
+
+    @Test
+    void testListPreferences_ByTypeQueriesTypeIndex() {
+        // Arrange
+        String profileId = "profile1";
+        Preference genre = createTestPreference(profileId, "pref1", 0);
+        Preference artist = createTestPreference(profileId, "pref2", 1);
+        artist.setType(Preference.PreferenceType.ARTIST);
+        stubTypeQuery(Arrays.asList(genre, artist));
+
+        // Act
+        List<Preference> result = preferenceDao.listPreferences(profileId, Preference.PreferenceType.ARTIST);
+
+        // Assert
+        assertEquals(List.of(artist), result);
+        verify(preferenceTable, never()).query(any(QueryConditional.class));
+    }
+
+    @Test
+    void testListPreferencesByType_QueriesEachType() {
+        // Arrange
+        String profileId = "profile1";
+        Preference genre = createTestPreference(profileId, "pref1", 0);
+        Preference artist = createTestPreference(profileId, "pref2", 1);
+        artist.setType(Preference.PreferenceType.ARTIST);
+        Preference mood = createTestPreference(profileId, "pref3", 2);
+        mood.setType(Preference.PreferenceType.MOOD);
+        stubTypeQuery(Arrays.asList(genre, artist, mood));
+
+        // Act
+        Map<Preference.PreferenceType, List<Preference>> result = preferenceDao.listPreferencesByType(profileId,
+            EnumSet.of(Preference.PreferenceType.GENRE, Preference.PreferenceType.ARTIST, Preference.PreferenceType.ERA));
+
+        // Assert
+        assertEquals(List.of(genre), result.get(Preference.PreferenceType.GENRE));
+        assertEquals(List.of(artist), result.get(Preference.PreferenceType.ARTIST));
+        assertEquals(List.of(), result.get(Preference.PreferenceType.ERA));
+        assertFalse(result.containsKey(Preference.PreferenceType.MOOD));
+    }
+
+    @Test
+    void testGetPreferenceVector_IsOneGetItem() {
+        // Arrange
+        String profileId = "profile1";
+        Preference first = createTestPreference(profileId, "pref1", 0);
+        Preference second = createTestPreference(profileId, "pref2", 1);
+        Map<String, AttributeValue> item = Map.of(
+            "profileId", AttributeValue.builder().s(profileId).build(),
+            "preferenceId", AttributeValue.builder().s(PreferenceVectorStore.VECTOR_ID).build(),
+            "p:pref1", PreferenceVectorStore.encode(first),
+            "p:pref2", PreferenceVectorStore.encode(second),
+            "version", AttributeValue.builder().n("4").build(),
+            "complete", AttributeValue.builder().bool(true).build(),
+            "format", AttributeValue.builder().n(Integer.toString(PreferenceVectorStore.FORMAT)).build());
+        when(lowLevelClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().item(item).build());
+
+        // Act
+        PreferenceVector vector = preferenceDao.getPreferenceVector(profileId);
+
+        // Assert
+        assertEquals(PreferenceVector.of(List.of(first, second)), vector);
+        assertEquals(1f, vector.score(0) + vector.score(1), 1e-6f);
+        assertTrue(vector.score(0) > vector.score(1));
+        verify(preferenceTable, never()).query(any(QueryConditional.class));
+        verify(lowLevelClient, never()).putItem(any(PutItemRequest.class));
+    }
+
+    @Test
+    void testGetPreferenceVector_MissingVectorIsRebuilt() {
+        // Arrange
+        String profileId = "profile1";
+        List<Preference> preferences = List.of(createTestPreference(profileId, "pref1", 0));
+        when(lowLevelClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().build());
+        stubQuery(profileId, preferences);
+
+        // Act
+        PreferenceVector vector = preferenceDao.getPreferenceVector(profileId);
+
+        // Assert
+        assertEquals(PreferenceVector.of(preferences), vector);
+        ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(lowLevelClient).putItem(captor.capture());
+        assertTrue(captor.getValue().item().get("complete").bool());
+        assertEquals(Integer.toString(PreferenceVectorStore.FORMAT), captor.getValue().item().get("format").n());
+        assertEquals("1", captor.getValue().item().get("version").n());
+        assertEquals("attribute_not_exists(#version)", captor.getValue().conditionExpression());
+    }
+
+    /** Serves TypeIndex begins_with queries from {@code preferences}, as DynamoDB would. */
+    private void stubTypeQuery(List<Preference> preferences) {
+        @SuppressWarnings("unchecked")
+        DynamoDbIndex<Preference> typeIndex = mock(DynamoDbIndex.class);
+        when(preferenceTable.index(PreferenceDao.TYPE_INDEX)).thenReturn(typeIndex);
+        when(typeIndex.query(any(QueryEnhancedRequest.class))).thenAnswer(invocation -> {
+            QueryEnhancedRequest request = invocation.getArgument(0);
+            String prefix = request.queryConditional()
+                .expression(preferenceSchema, PreferenceDao.TYPE_INDEX)
+                .expressionValues()
+                .values()
+                .stream()
+                .map(AttributeValue::s)
+                .filter(value -> value.endsWith("#"))
+                .findFirst()
+                .orElseThrow();
+            List<Preference> matches = preferences.stream()
+                .filter(preference -> preference.getTypeSortKey().startsWith(prefix))
+                .toList();
+            SdkIterable<Page<Preference>> pages = () -> List.of(Page.create(matches)).iterator();
+            return pages;
+        });
+    }
+
+    private void stubLastRank(String rank) {
+        QueryResponse.Builder response = QueryResponse.builder();
+        response.items(rank != null ? List.of(Map.of("rank", AttributeValue.builder().s(rank).build())) : List.of());
+        when(lowLevelClient.query(any(QueryRequest.class))).thenReturn(response.build());
+    }
+
+    private void stubRankQuery(List<Preference> preferences) {
+        @SuppressWarnings("unchecked")
+        DynamoDbIndex<Preference> rankIndex = mock(DynamoDbIndex.class);
+        @SuppressWarnings("unchecked")
+        SdkIterable<Page<Preference>> pages = mock(SdkIterable.class);
+        when(preferenceTable.index(PreferenceDao.RANK_INDEX)).thenReturn(rankIndex);
+        when(rankIndex.query(any(QueryConditional.class))).thenReturn(pages);
+        when(pages.stream()).thenAnswer(invocation -> Stream.of(Page.create(new ArrayList<>(preferences))));
+    }
+
+    private Preference rankedPreference(String profileId, String preferenceId, String rank) {
+        Preference preference = createTestPreference(profileId, preferenceId, 0);
+        preference.setRank(rank);
+        return preference;
+    }
+
+    private void stubQuery(String profileId, List<Preference> preferences) {
+        @SuppressWarnings("unchecked")
+        PageIterable<Preference> pageIterable = mock(PageIterable.class);
+        @SuppressWarnings("unchecked")
+        SdkIterable<Preference> sdkIterable = mock(SdkIterable.class);
+        when(pageIterable.items()).thenReturn(sdkIterable);
+        when(sdkIterable.stream()).thenReturn(preferences.stream());
+        when(preferenceTable.query(eq(QueryConditional.keyEqualTo(Key.builder().partitionValue(profileId).build()))))
+            .thenReturn(pageIterable);
+    }
+
+    private void stubConsistentCount(Preference... preferences) {
+        @SuppressWarnings("unchecked")
+        PageIterable<Preference> pageIterable = mock(PageIterable.class);
+        @SuppressWarnings("unchecked")
+        SdkIterable<Preference> sdkIterable = mock(SdkIterable.class);
+        when(pageIterable.items()).thenReturn(sdkIterable);
+        when(sdkIterable.stream()).thenAnswer(invocation -> Arrays.stream(preferences));
+        when(preferenceTable.query(argThat((QueryEnhancedRequest request) ->
+            request != null && Boolean.TRUE.equals(request.consistentRead())))).thenReturn(pageIterable);
+    }
+
+    private void assertSeededCount(String count) {
+        ArgumentCaptor<PutItemRequest> captor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(lowLevelClient).putItem(captor.capture());
+        assertEquals(PreferenceDao.COUNTER_ID, captor.getValue().item().get("preferenceId").s());
+        assertEquals(count, captor.getValue().item().get("preferenceCount").n());
+        assertEquals("attribute_not_exists(preferenceId)", captor.getValue().conditionExpression());
+    }
+
+    private static TransactionCanceledException cancelled(String... codes) {
+        return cancelledWith(Arrays.stream(codes).map(PreferenceDaoTest::reason).toArray(CancellationReason[]::new));
+    }
+
+    private static TransactionCanceledException cancelledWith(CancellationReason... reasons) {
+        return TransactionCanceledException.builder()
+            .cancellationReasons(reasons)
+            .build();
+    }
+
+    private static CancellationReason reason(String code) {
+        return CancellationReason.builder().code(code).build();
+    }
+
+    /** A failed counter check on a profile whose counter item holds {@code count}. */
+    private static CancellationReason counterAt(int count) {
+        return CancellationReason.builder()
+            .code("ConditionalCheckFailed")
+            .item(Map.of("preferenceCount", AttributeValue.builder().n(String.valueOf(count)).build()))
+            .build();
+    }
+
     private Preference createTestPreference(String profileId, String preferenceId, int index) {
         Preference preference = new Preference();
         preference.setProfileId(profileId);
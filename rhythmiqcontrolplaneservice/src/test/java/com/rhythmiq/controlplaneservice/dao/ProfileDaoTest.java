@@ -1,16 +1,31 @@
 package com.rhythmiq.controlplaneservice.dao;
 
+import com.rhythmiq.controlplaneservice.cache.OffHeapCache;
+import com.rhythmiq.controlplaneservice.exception.ConflictException;
+import com.rhythmiq.controlplaneservice.exception.PreconditionFailedException;
 import com.rhythmiq.controlplaneservice.model.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -39,8 +54,8 @@ class ProfileDaoTest {
             .phoneNumber("1234567890")
             .build();
 
-        when(dynamoDbClient.putItem(any(PutItemRequest.class)))
-            .thenReturn(PutItemResponse.builder().build());
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenReturn(TransactWriteItemsResponse.builder().build());
 
         // When
         CreateProfileResponse response = profileDao.createProfile(request);
@@ -49,7 +64,15 @@ class ProfileDaoTest {
         assertNotNull(response);
         assertNotNull(response.getId());
         assertEquals("Profile created successfully", response.getMessage());
-        verify(dynamoDbClient).putItem(any(PutItemRequest.class));
+
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDbClient).transactWriteItems(captor.capture());
+        List<String> writtenIds = captor.getValue().transactItems().stream()
+            .map(write -> write.put().item().get("profile_id").s())
+            .collect(Collectors.toList());
+        assertEquals(List.of(response.getId(), "EMAIL#test@example.com", "USERNAME#testuser"), writtenIds);
+        assertEquals("1", captor.getValue().transactItems().get(0).put().item().get("version").n());
+        verify(dynamoDbClient, never()).putItem(any(PutItemRequest.class));
     }
 
     @Test
@@ -63,8 +86,13 @@ class ProfileDaoTest {
             .phoneNumber("1234567890")
             .build();
 
-        when(dynamoDbClient.putItem(any(PutItemRequest.class)))
-            .thenThrow(ConditionalCheckFailedException.builder().build());
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(TransactionCanceledException.builder()
+                .cancellationReasons(
+                    CancellationReason.builder().code("None").build(),
+                    CancellationReason.builder().code("ConditionalCheckFailed").build(),
+                    CancellationReason.builder().code("None").build())
+                .build());
 
         // When/Then
         IllegalStateException exception = assertThrows(
@@ -100,6 +128,170 @@ class ProfileDaoTest {
         assertEquals("test@example.com", response.getProfile().getEmail());
     }
 
+    @Test
+    void getProfile_CoalescedReadsShareBatchGet() throws Exception {
+        // Given: the first batch stays in flight until a second one is sent, so later reads coalesce
+        ProfileDao coalescingDao = new ProfileDao(dynamoDbClient, Duration.ofMillis(200));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch firstBatchSent = new CountDownLatch(1);
+        CountDownLatch secondBatchSent = new CountDownLatch(1);
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        when(dynamoDbClient.batchGetItem(any(BatchGetItemRequest.class)))
+            .thenAnswer(invocation -> {
+                int call = calls.incrementAndGet();
+                BatchGetItemRequest request = invocation.getArgument(0);
+                List<Map<String, AttributeValue>> keys = request.requestItems().get("Profiles").keys();
+                List<String> ids = new ArrayList<>();
+                keys.forEach(key -> ids.add(key.get("profile_id").s()));
+                batches.add(ids);
+                if (call == 1) {
+                    firstBatchSent.countDown();
+                    secondBatchSent.await(5, TimeUnit.SECONDS);
+                } else {
+                    secondBatchSent.countDown();
+                }
+                List<Map<String, AttributeValue>> items = keys.stream()
+                    .filter(key -> !key.get("profile_id").s().equals("missing"))
+                    .map(key -> Map.of(
+                        "profile_id", key.get("profile_id"),
+                        "first_name", AttributeValue.builder().s("Name-" + key.get("profile_id").s()).build()))
+                    .collect(Collectors.toList());
+                return BatchGetItemResponse.builder().responses(Map.of("Profiles", items)).build();
+            });
+
+        // When
+        CompletableFuture<GetProfileResponse> first = CompletableFuture.supplyAsync(() -> coalescingDao.getProfile("a"));
+        assertTrue(firstBatchSent.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<GetProfileResponse>> responses = Stream.of("b", "a", "b", "missing")
+            .map(id -> CompletableFuture.supplyAsync(() -> coalescingDao.getProfile(id)))
+            .collect(Collectors.toList());
+
+        // Then
+        assertEquals("Name-a", first.get(5, TimeUnit.SECONDS).getProfile().getFirstName());
+        assertEquals("Name-b", responses.get(0).get(5, TimeUnit.SECONDS).getProfile().getFirstName());
+        assertEquals("Name-a", responses.get(1).get(5, TimeUnit.SECONDS).getProfile().getFirstName());
+        assertEquals("Name-b", responses.get(2).get(5, TimeUnit.SECONDS).getProfile().getFirstName());
+        assertFalse(responses.get(3).get(5, TimeUnit.SECONDS).isSuccess());
+        verify(dynamoDbClient, never()).getItem(any(GetItemRequest.class));
+        verify(dynamoDbClient, times(2)).batchGetItem(any(BatchGetItemRequest.class));
+        assertEquals(List.of("a"), batches.get(0));
+        assertEquals(3, batches.get(1).size());
+        assertEquals(Set.of("a", "b", "missing"), Set.copyOf(batches.get(1)));
+        coalescingDao.close();
+    }
+
+    @Test
+    void getProfile_NearCacheServesRepeatReads() {
+        // Given
+        ProfileDao cachingDao = new ProfileDao(dynamoDbClient, null, new OffHeapCache(64 * 1024, Duration.ofMinutes(1)));
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s("test-id").build(),
+                "first_name", AttributeValue.builder().s("Test").build())).build());
+
+        // When
+        cachingDao.getProfile("test-id");
+        GetProfileResponse response = cachingDao.getProfile("test-id");
+        cachingDao.getProfile("test-id", Set.of("firstName"));
+
+        // Then
+        assertTrue(response.isSuccess());
+        assertEquals("Test", response.getProfile().getFirstName());
+        verify(dynamoDbClient, times(2)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void updateProfile_EvictsNearCache() {
+        // Given
+        ProfileDao cachingDao = new ProfileDao(dynamoDbClient, null, new OffHeapCache(64 * 1024, Duration.ofMinutes(1)));
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s("test-id").build(),
+                "first_name", AttributeValue.builder().s("Old").build())).build())
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s("test-id").build(),
+                "first_name", AttributeValue.builder().s("New").build(),
+                "version", AttributeValue.builder().n("2").build())).build());
+        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenReturn(UpdateItemResponse.builder().attributes(Map.of(
+                "profile_id", AttributeValue.builder().s("test-id").build(),
+                "first_name", AttributeValue.builder().s("New").build(),
+                "version", AttributeValue.builder().n("2").build())).build());
+        cachingDao.getProfile("test-id");
+
+        // When
+        UpdateProfileResponse updated = cachingDao.updateProfile("test-id", UpdateProfileRequest.builder().firstName("New").build());
+        GetProfileResponse response = cachingDao.getProfile("test-id");
+
+        // Then
+        assertEquals("New", updated.getProfile().getFirstName());
+        assertEquals("New", response.getProfile().getFirstName());
+        assertEquals(2L, response.getProfile().getVersion());
+        verify(dynamoDbClient, times(2)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void getProfile_ReadOverlappingUpdateDoesNotFillNearCache() {
+        // Given: the update lands after the read fetched the old item but before it is cached
+        ProfileDao cachingDao = new ProfileDao(dynamoDbClient, null, new OffHeapCache(64 * 1024, Duration.ofMinutes(1)));
+        Map<String, AttributeValue> oldItem = Map.of(
+            "profile_id", AttributeValue.builder().s("test-id").build(),
+            "first_name", AttributeValue.builder().s("Old").build());
+        Map<String, AttributeValue> newItem = Map.of(
+            "profile_id", AttributeValue.builder().s("test-id").build(),
+            "first_name", AttributeValue.builder().s("New").build(),
+            "version", AttributeValue.builder().n("2").build());
+        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenReturn(UpdateItemResponse.builder().attributes(newItem).build());
+        AtomicInteger reads = new AtomicInteger();
+        when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenAnswer(invocation -> {
+            if (reads.getAndIncrement() == 0) {
+                cachingDao.updateProfile("test-id", UpdateProfileRequest.builder().firstName("New").build());
+                return GetItemResponse.builder().item(oldItem).build();
+            }
+            return GetItemResponse.builder().item(newItem).build();
+        });
+
+        // When
+        GetProfileResponse stale = cachingDao.getProfile("test-id");
+        GetProfileResponse response = cachingDao.getProfile("test-id");
+
+        // Then
+        assertEquals("Old", stale.getProfile().getFirstName());
+        assertEquals("New", response.getProfile().getFirstName());
+        verify(dynamoDbClient, times(2)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void getProfileVersion_ReadsOnlyVersion() {
+        // Given
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s("test-id").build(),
+                "version", AttributeValue.builder().n("7").build())).build());
+
+        // When
+        Optional<Long> version = profileDao.getProfileVersion("test-id");
+
+        // Then
+        assertEquals(Optional.of(7L), version);
+        ArgumentCaptor<GetItemRequest> captor = ArgumentCaptor.forClass(GetItemRequest.class);
+        verify(dynamoDbClient).getItem(captor.capture());
+        assertEquals(Set.of("profile_id", "version"), Set.copyOf(captor.getValue().expressionAttributeNames().values()));
+        assertTrue(captor.getValue().consistentRead());
+    }
+
+    @Test
+    void getProfileVersion_LegacyItemIsVersionZero() {
+        // Given
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s("test-id").build())).build());
+
+        // When/Then
+        assertEquals(Optional.of(0L), profileDao.getProfileVersion("test-id"));
+    }
+
     @Test
     void getProfile_NotFound() {
         // Given
@@ -128,24 +320,32 @@ class ProfileDaoTest {
             "phone_number", AttributeValue.builder().s("1234567890").build()
         );
 
-        when(dynamoDbClient.query(any(QueryRequest.class)))
-            .thenReturn(QueryResponse.builder().items(List.of(item)).build());
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(markerItem("EMAIL#test@example.com", "test-id")).build())
+            .thenReturn(GetItemResponse.builder().item(item).build());
 
         // When
-        GetProfileResponse response = profileDao.getProfileByEmail(email);
+        GetProfileResponse response = profileDao.getProfileByEmail("Test@Example.com");
 
         // Then
         assertTrue(response.isSuccess());
         assertNotNull(response.getProfile());
         assertEquals(email, response.getProfile().getEmail());
+
+        ArgumentCaptor<GetItemRequest> captor = ArgumentCaptor.forClass(GetItemRequest.class);
+        verify(dynamoDbClient, times(2)).getItem(captor.capture());
+        assertEquals("EMAIL#test@example.com", captor.getAllValues().get(0).key().get("profile_id").s());
+        assertEquals("test-id", captor.getAllValues().get(1).key().get("profile_id").s());
+        assertTrue(captor.getAllValues().stream().allMatch(GetItemRequest::consistentRead));
+        verify(dynamoDbClient, never()).query(any(QueryRequest.class));
     }
 
     @Test
     void getProfileByEmail_NotFound() {
         // Given
         String email = "nonexistent@example.com";
-        when(dynamoDbClient.query(any(QueryRequest.class)))
-            .thenReturn(QueryResponse.builder().items(List.of()).build());
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().build());
 
         // When
         GetProfileResponse response = profileDao.getProfileByEmail(email);
@@ -153,6 +353,37 @@ class ProfileDaoTest {
         // Then
         assertFalse(response.isSuccess());
         assertEquals("Profile not found", response.getMessage());
+        verify(dynamoDbClient, times(1)).getItem(any(GetItemRequest.class));
+    }
+
+    @Test
+    void getProfileByUsername_Success() {
+        // Given
+        Map<String, AttributeValue> item = Map.of(
+            "profile_id", AttributeValue.builder().s("test-id").build(),
+            "username", AttributeValue.builder().s("testuser").build()
+        );
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(markerItem("USERNAME#testuser", "test-id")).build())
+            .thenReturn(GetItemResponse.builder().item(item).build());
+
+        // When
+        GetProfileResponse response = profileDao.getProfileByUsername("testuser");
+
+        // Then
+        assertTrue(response.isSuccess());
+        assertEquals("test-id", response.getProfile().getProfileId());
+    }
+
+    @Test
+    void getProfile_MarkerIdIsNotFound() {
+        // When
+        GetProfileResponse response = profileDao.getProfile("EMAIL#test@example.com");
+
+        // Then
+        assertFalse(response.isSuccess());
+        assertEquals("Profile not found", response.getMessage());
+        verify(dynamoDbClient, never()).getItem(any(GetItemRequest.class));
     }
 
     @Test
@@ -167,8 +398,12 @@ class ProfileDaoTest {
             .phoneNumber("0987654321")
             .build();
 
-        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class)))
-            .thenReturn(UpdateItemResponse.builder().build());
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s(profileId).build(),
+                "username", AttributeValue.builder().s("testuser").build())).build());
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenReturn(TransactWriteItemsResponse.builder().build());
 
         // When
         UpdateProfileResponse response = profileDao.updateProfile(profileId, request);
@@ -176,7 +411,147 @@ class ProfileDaoTest {
         // Then
         assertNotNull(response);
         assertEquals("Profile updated successfully", response.getMessage());
-        verify(dynamoDbClient).updateItem(any(UpdateItemRequest.class));
+
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDbClient).transactWriteItems(captor.capture());
+        List<TransactWriteItem> writes = captor.getValue().transactItems();
+        assertEquals(3, writes.size());
+        assertEquals(profileId, writes.get(0).update().key().get("profile_id").s());
+        assertEquals("USERNAME#newusername", writes.get(1).put().item().get("profile_id").s());
+        assertEquals("USERNAME#testuser", writes.get(2).delete().key().get("profile_id").s());
+        verify(dynamoDbClient, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    @Test
+    void updateProfile_WithoutUsernameIsSingleUpdate() {
+        // Given
+        String profileId = "test-id";
+        UpdateProfileRequest request = UpdateProfileRequest.builder()
+            .firstName("NewFirst")
+            .build();
+
+        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenReturn(UpdateItemResponse.builder().build());
+
+        // When
+        profileDao.updateProfile(profileId, request);
+
+        // Then
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDbClient).updateItem(captor.capture());
+        assertEquals("SET updated_at = :updated_at, #version = if_not_exists(#version, :zero) + :one, "
+            + "#first_name = :first_name", captor.getValue().updateExpression());
+        assertEquals(Map.of("#version", "version", "#first_name", "first_name"),
+            captor.getValue().expressionAttributeNames());
+        verify(dynamoDbClient, never()).getItem(any(GetItemRequest.class));
+        verify(dynamoDbClient, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    void updateProfile_ReturnsUpdatedProfile() {
+        // Given
+        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenReturn(UpdateItemResponse.builder().attributes(Map.of(
+                "profile_id", AttributeValue.builder().s("test-id").build(),
+                "first_name", AttributeValue.builder().s("NewFirst").build(),
+                "version", AttributeValue.builder().n("5").build())).build());
+
+        // When
+        UpdateProfileResponse response = profileDao.updateProfile("test-id",
+            UpdateProfileRequest.builder().firstName("NewFirst").build(), 4L);
+
+        // Then
+        assertEquals("NewFirst", response.getProfile().getFirstName());
+        assertEquals(5L, response.getProfile().getVersion());
+
+        ArgumentCaptor<UpdateItemRequest> captor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDbClient).updateItem(captor.capture());
+        assertEquals(ReturnValue.ALL_NEW, captor.getValue().returnValues());
+        assertEquals("attribute_exists(profile_id) AND #version = :expected_version", captor.getValue().conditionExpression());
+        assertEquals("4", captor.getValue().expressionAttributeValues().get(":expected_version").n());
+    }
+
+    @Test
+    void updateProfile_VersionMismatch() {
+        // Given
+        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+            .thenThrow(ConditionalCheckFailedException.builder()
+                .item(Map.of("version", AttributeValue.builder().n("6").build()))
+                .build());
+
+        // When/Then
+        assertThrows(PreconditionFailedException.class, () -> profileDao.updateProfile("test-id",
+            UpdateProfileRequest.builder().firstName("NewFirst").build(), 4L));
+    }
+
+    @Test
+    void updateProfile_UsernameChangeComputesNewProfile() {
+        // Given
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s("test-id").build(),
+                "username", AttributeValue.builder().s("testuser").build(),
+                "last_name", AttributeValue.builder().s("User").build(),
+                "version", AttributeValue.builder().n("3").build())).build());
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenReturn(TransactWriteItemsResponse.builder().build());
+
+        // When
+        UpdateProfileResponse response = profileDao.updateProfile("test-id",
+            UpdateProfileRequest.builder().username("newname").build(), 3L);
+
+        // Then
+        assertEquals("newname", response.getProfile().getUsername());
+        assertEquals("User", response.getProfile().getLastName());
+        assertEquals(4L, response.getProfile().getVersion());
+
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDbClient).transactWriteItems(captor.capture());
+        assertEquals("attribute_exists(profile_id) AND #version = :current_version",
+            captor.getValue().transactItems().get(0).update().conditionExpression());
+    }
+
+    @Test
+    void updateProfile_UsernameChangeWithStaleVersion() {
+        // Given
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s("test-id").build(),
+                "username", AttributeValue.builder().s("testuser").build(),
+                "version", AttributeValue.builder().n("3").build())).build());
+
+        // When/Then
+        assertThrows(PreconditionFailedException.class, () -> profileDao.updateProfile("test-id",
+            UpdateProfileRequest.builder().username("newname").build(), 2L));
+        verify(dynamoDbClient, never()).transactWriteItems(any(TransactWriteItemsRequest.class));
+    }
+
+    @Test
+    void updateProfile_UsernameTaken() {
+        // Given
+        String profileId = "test-id";
+        UpdateProfileRequest request = UpdateProfileRequest.builder()
+            .username("takenname")
+            .build();
+
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s(profileId).build(),
+                "username", AttributeValue.builder().s("testuser").build())).build());
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(TransactionCanceledException.builder()
+                .cancellationReasons(
+                    CancellationReason.builder().code("None").build(),
+                    CancellationReason.builder().code("ConditionalCheckFailed").build(),
+                    CancellationReason.builder().code("None").build())
+                .build());
+
+        // When/Then
+        ConflictException exception = assertThrows(
+            ConflictException.class,
+            () -> profileDao.updateProfile(profileId, request)
+        );
+        assertEquals("Username already exists", exception.getMessage());
     }
 
     @Test
@@ -187,8 +562,8 @@ class ProfileDaoTest {
             .username("newusername")
             .build();
 
-        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class)))
-            .thenThrow(ConditionalCheckFailedException.builder().build());
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().build());
 
         // When/Then
         IllegalStateException exception = assertThrows(
@@ -202,20 +577,77 @@ class ProfileDaoTest {
     void deleteProfile_Success() {
         // Given
         String profileId = "test-id";
-        when(dynamoDbClient.deleteItem(any(DeleteItemRequest.class)))
-            .thenReturn(DeleteItemResponse.builder().build());
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s(profileId).build(),
+                "email", AttributeValue.builder().s("test@example.com").build(),
+                "username", AttributeValue.builder().s("testuser").build())).build());
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenReturn(TransactWriteItemsResponse.builder().build());
 
         // When/Then
         assertDoesNotThrow(() -> profileDao.deleteProfile(profileId));
-        verify(dynamoDbClient).deleteItem(any(DeleteItemRequest.class));
+
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDbClient).transactWriteItems(captor.capture());
+        List<String> deletedIds = captor.getValue().transactItems().stream()
+            .map(write -> write.delete().key().get("profile_id").s())
+            .collect(Collectors.toList());
+        assertEquals(List.of(profileId, "EMAIL#test@example.com", "USERNAME#testuser"), deletedIds);
+    }
+
+    @Test
+    void deleteProfile_LeavesMarkerOwnedByAnotherProfile() {
+        // Given: the backfill found the email marker already owned by someone else
+        String profileId = "test-id";
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s(profileId).build(),
+                "email", AttributeValue.builder().s("test@example.com").build(),
+                "username", AttributeValue.builder().s("testuser").build())).build());
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(TransactionCanceledException.builder()
+                .cancellationReasons(
+                    CancellationReason.builder().code("None").build(),
+                    CancellationReason.builder().code("ConditionalCheckFailed").build(),
+                    CancellationReason.builder().code("None").build())
+                .build())
+            .thenReturn(TransactWriteItemsResponse.builder().build());
+
+        // When/Then
+        assertDoesNotThrow(() -> profileDao.deleteProfile(profileId));
+
+        ArgumentCaptor<TransactWriteItemsRequest> captor = ArgumentCaptor.forClass(TransactWriteItemsRequest.class);
+        verify(dynamoDbClient, times(2)).transactWriteItems(captor.capture());
+        List<String> retriedIds = captor.getAllValues().get(1).transactItems().stream()
+            .map(write -> write.delete().key().get("profile_id").s())
+            .collect(Collectors.toList());
+        assertEquals(List.of(profileId, "USERNAME#testuser"), retriedIds);
+    }
+
+    @Test
+    void deleteProfile_ProfileGoneBeforeDelete() {
+        // Given
+        String profileId = "test-id";
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s(profileId).build())).build());
+        when(dynamoDbClient.transactWriteItems(any(TransactWriteItemsRequest.class)))
+            .thenThrow(TransactionCanceledException.builder()
+                .cancellationReasons(CancellationReason.builder().code("ConditionalCheckFailed").build())
+                .build());
+
+        // When/Then
+        assertThrows(IllegalStateException.class, () -> profileDao.deleteProfile(profileId));
+        verify(dynamoDbClient, times(1)).transactWriteItems(any(TransactWriteItemsRequest.class));
     }
 
     @Test
     void deleteProfile_NotFound() {
         // Given
         String profileId = "non-existent-id";
-        when(dynamoDbClient.deleteItem(any(DeleteItemRequest.class)))
-            .thenThrow(ConditionalCheckFailedException.builder().build());
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().build());
 
         // When/Then
         IllegalStateException exception = assertThrows(
@@ -244,7 +676,7 @@ class ProfileDaoTest {
             .thenReturn(scanResponse);
 
         // When
-        ListProfilesResponse response = profileDao.listProfiles();
+        ListProfilesResponse response = profileDao.listProfiles(null, null);
 
         // Then
         assertNotNull(response);
@@ -255,7 +687,209 @@ class ProfileDaoTest {
         assertEquals("Test1", profile.getFirstName());
         assertEquals("Last1", profile.getLastName());
         assertEquals("test1@example.com", profile.getEmail());
+        assertNull(response.getNextToken());
 
         verify(dynamoDbClient).scan(any(ScanRequest.class));
     }
+
+    @Test
+    void listProfiles_ReturnsNextTokenAndResumesFromIt() {
+        // Given
+        Map<String, AttributeValue> lastKey = Map.of("profile_id", AttributeValue.builder().s("id1").build());
+        when(dynamoDbClient.scan(any(ScanRequest.class)))
+            .thenReturn(ScanResponse.builder()
+                .items(List.of(Map.of("profile_id", AttributeValue.builder().s("id1").build())))
+                .lastEvaluatedKey(lastKey)
+                .build());
+
+        // When
+        ListProfilesResponse firstPage = profileDao.listProfiles(1, null);
+        profileDao.listProfiles(1, firstPage.getNextToken());
+
+        // Then
+        assertNotNull(firstPage.getNextToken());
+        ArgumentCaptor<ScanRequest> captor = ArgumentCaptor.forClass(ScanRequest.class);
+        verify(dynamoDbClient, times(2)).scan(captor.capture());
+        assertEquals(1, captor.getAllValues().get(0).limit());
+        assertFalse(captor.getAllValues().get(0).hasExclusiveStartKey());
+        assertEquals(lastKey, captor.getAllValues().get(1).exclusiveStartKey());
+    }
+
+    @Test
+    void listProfiles_KeepsScanningUntilThePageIsFull() {
+        // Given: the first Scan page also read a marker, which the filter dropped
+        Map<String, AttributeValue> markerKey = Map.of("profile_id", AttributeValue.builder().s("EMAIL#a@example.com").build());
+        Map<String, AttributeValue> lastKey = Map.of("profile_id", AttributeValue.builder().s("id2").build());
+        when(dynamoDbClient.scan(any(ScanRequest.class)))
+            .thenReturn(ScanResponse.builder()
+                .items(List.of(Map.of("profile_id", AttributeValue.builder().s("id1").build())))
+                .lastEvaluatedKey(markerKey)
+                .build())
+            .thenReturn(ScanResponse.builder()
+                .items(List.of(Map.of("profile_id", AttributeValue.builder().s("id2").build())))
+                .lastEvaluatedKey(lastKey)
+                .build());
+
+        // When
+        ListProfilesResponse page = profileDao.listProfiles(2, null);
+
+        // Then
+        assertEquals(List.of("id1", "id2"), page.getProfiles().stream()
+            .map(ProfileSummary::getProfileId)
+            .collect(Collectors.toList()));
+        ArgumentCaptor<ScanRequest> captor = ArgumentCaptor.forClass(ScanRequest.class);
+        verify(dynamoDbClient, times(2)).scan(captor.capture());
+        assertEquals(2, captor.getAllValues().get(0).limit());
+        assertEquals(1, captor.getAllValues().get(1).limit());
+        assertEquals(markerKey, captor.getAllValues().get(1).exclusiveStartKey());
+        assertEquals(lastKey, PaginationToken.decode(page.getNextToken()));
+    }
+
+    @Test
+    void listProfiles_InvalidToken() {
+        assertThrows(IllegalArgumentException.class, () -> profileDao.listProfiles(null, "not-a-token"));
+        verify(dynamoDbClient, never()).scan(any(ScanRequest.class));
+    }
+
+    @Test
+    void listProfiles_LimitOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> profileDao.listProfiles(101, null));
+        verify(dynamoDbClient, never()).scan(any(ScanRequest.class));
+    }
+
+    @Test
+    void forEachProfilePage_VisitsEveryPage() {
+        // Given
+        Map<String, AttributeValue> lastKey = Map.of("profile_id", AttributeValue.builder().s("id1").build());
+        when(dynamoDbClient.scan(any(ScanRequest.class)))
+            .thenReturn(ScanResponse.builder()
+                .items(List.of(Map.of("profile_id", AttributeValue.builder().s("id1").build())))
+                .lastEvaluatedKey(lastKey)
+                .build())
+            .thenReturn(ScanResponse.builder()
+                .items(List.of(Map.of("profile_id", AttributeValue.builder().s("id2").build())))
+                .build());
+
+        // When
+        List<List<ProfileSummary>> pages = new ArrayList<>();
+        profileDao.forEachProfilePage(pages::add);
+
+        // Then
+        assertEquals(2, pages.size());
+        assertEquals("id1", pages.get(0).get(0).getProfileId());
+        assertEquals("id2", pages.get(1).get(0).getProfileId());
+        verify(dynamoDbClient, times(2)).scan(any(ScanRequest.class));
+    }
+
+    @Test
+    void getProfiles_SplitsIntoChunksOf100() {
+        // Given
+        List<String> profileIds = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            profileIds.add("id" + i);
+        }
+        when(dynamoDbClient.batchGetItem(any(BatchGetItemRequest.class)))
+            .thenAnswer(invocation -> {
+                BatchGetItemRequest request = invocation.getArgument(0);
+                return BatchGetItemResponse.builder()
+                    .responses(Map.of("Profiles", request.requestItems().get("Profiles").keys()))
+                    .build();
+            });
+
+        // When
+        List<Profile> profiles = profileDao.getProfiles(profileIds);
+
+        // Then
+        assertEquals(150, profiles.size());
+        assertEquals("id0", profiles.get(0).getProfileId());
+        assertEquals("id149", profiles.get(149).getProfileId());
+        ArgumentCaptor<BatchGetItemRequest> captor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+        verify(dynamoDbClient, times(2)).batchGetItem(captor.capture());
+        assertEquals(Set.of(100, 50), captor.getAllValues().stream()
+            .map(request -> request.requestItems().get("Profiles").keys().size())
+            .collect(Collectors.toSet()));
+    }
+
+    @Test
+    void getProfiles_RetriesUnprocessedKeys() {
+        // Given
+        Map<String, AttributeValue> first = Map.of("profile_id", AttributeValue.builder().s("id1").build());
+        Map<String, AttributeValue> second = Map.of("profile_id", AttributeValue.builder().s("id2").build());
+        when(dynamoDbClient.batchGetItem(any(BatchGetItemRequest.class)))
+            .thenReturn(BatchGetItemResponse.builder()
+                .responses(Map.of("Profiles", List.of(first)))
+                .unprocessedKeys(Map.of("Profiles", KeysAndAttributes.builder().keys(List.of(second)).build()))
+                .build())
+            .thenReturn(BatchGetItemResponse.builder()
+                .responses(Map.of("Profiles", List.of(second)))
+                .build());
+
+        // When
+        List<Profile> profiles = profileDao.getProfiles(List.of("id1", "id2"));
+
+        // Then
+        assertEquals(List.of("id1", "id2"), profiles.stream().map(Profile::getProfileId).collect(Collectors.toList()));
+        verify(dynamoDbClient, times(2)).batchGetItem(any(BatchGetItemRequest.class));
+    }
+
+    @Test
+    void batchGetProfiles_ReportsMissingIds() {
+        // Given
+        when(dynamoDbClient.batchGetItem(any(BatchGetItemRequest.class)))
+            .thenReturn(BatchGetItemResponse.builder()
+                .responses(Map.of("Profiles", List.of(Map.of("profile_id", AttributeValue.builder().s("id1").build()))))
+                .build());
+
+        // When
+        BatchGetProfilesResponse response = profileDao.batchGetProfiles(List.of("id1", "missing", "id1"));
+
+        // Then
+        assertEquals(1, response.getProfiles().size());
+        assertEquals(List.of("missing"), response.getNotFound());
+    }
+
+    @Test
+    void getProfiles_TooManyIds() {
+        List<String> profileIds = new ArrayList<>();
+        for (int i = 0; i <= ProfileDao.MAX_BATCH_GET_IDS; i++) {
+            profileIds.add("id" + i);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> profileDao.getProfiles(profileIds));
+        verify(dynamoDbClient, never()).batchGetItem(any(BatchGetItemRequest.class));
+    }
+
+    @Test
+    void getProfile_ProjectsRequestedFields() {
+        // Given
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+            .thenReturn(GetItemResponse.builder().item(Map.of(
+                "profile_id", AttributeValue.builder().s("test-id").build(),
+                "first_name", AttributeValue.builder().s("Test").build())).build());
+
+        // When
+        GetProfileResponse response = profileDao.getProfile("test-id", Set.of("firstName"));
+
+        // Then
+        ArgumentCaptor<GetItemRequest> captor = ArgumentCaptor.forClass(GetItemRequest.class);
+        verify(dynamoDbClient).getItem(captor.capture());
+        assertEquals("#f0, #f1, #f2", captor.getValue().projectionExpression());
+        assertEquals(Set.of("profile_id", "version", "first_name"),
+            Set.copyOf(captor.getValue().expressionAttributeNames().values()));
+        assertEquals("Test", response.getProfile().getFirstName());
+        assertNull(response.getProfile().getEmail());
+    }
+
+    @Test
+    void getProfile_UnknownFieldIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> profileDao.getProfile("test-id", Set.of("password")));
+        verify(dynamoDbClient, never()).getItem(any(GetItemRequest.class));
+    }
+
+    private static Map<String, AttributeValue> markerItem(String markerId, String ownerId) {
+        return Map.of(
+            "profile_id", AttributeValue.builder().s(markerId).build(),
+            "owner_id", AttributeValue.builder().s(ownerId).build()
+        );
+    }
 }
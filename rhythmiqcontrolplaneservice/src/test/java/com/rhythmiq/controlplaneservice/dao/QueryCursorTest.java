@@ -0,0 +1,127 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCursorTest {
+    private static final List<String> ITEMS = List.of("a", "b", "c", "d", "e", "f", "g");
+    private static final int PAGE_SIZE = 3;
+
+    private final AtomicInteger pagesFetched = new AtomicInteger();
+    private final List<Map<String, AttributeValue>> startKeys = new ArrayList<>();
+
+    @Test
+    void next_FetchesPagesOnlyAsTheyAreReached() {
+        // Given
+        QueryCursor<String> cursor = cursor(null, null);
+
+        // When
+        String first = cursor.next();
+
+        // Then
+        assertEquals("a", first);
+        assertEquals(1, pagesFetched.get());
+        assertEquals(ITEMS, collect(cursor, first));
+        assertEquals(3, pagesFetched.get());
+        assertNull(cursor.nextToken());
+        assertThrows(NoSuchElementException.class, cursor::next);
+    }
+
+    @Test
+    void stream_StoppingEarlyFetchesNoFurtherPages() {
+        // Given
+        QueryCursor<String> cursor = cursor(null, null);
+
+        // When
+        List<String> firstTwo = cursor.stream().limit(2).toList();
+
+        // Then
+        assertEquals(List.of("a", "b"), firstTwo);
+        assertEquals(1, pagesFetched.get());
+    }
+
+    @Test
+    void nextToken_ResumesAfterTheLastItemMidPage() {
+        // Given
+        QueryCursor<String> cursor = cursor(null, 4);
+        List<String> firstRun = cursor.stream().toList();
+
+        // When
+        QueryCursor<String> resumed = cursor(PaginationToken.decode(cursor.nextToken()), 2);
+
+        // Then
+        assertEquals(List.of("a", "b", "c", "d"), firstRun);
+        assertEquals(2, pagesFetched.get());
+        assertEquals(List.of("e", "f"), resumed.stream().toList());
+        assertEquals("d", startKeys.get(startKeys.size() - 1).get("id").s());
+        assertNotNull(resumed.nextToken());
+    }
+
+    @Test
+    void nextToken_IsNullOnceTheLastPageIsRead() {
+        // Given
+        QueryCursor<String> cursor = cursor(PaginationToken.decode(PaginationToken.encode(key("e"))), null);
+
+        // When
+        List<String> rest = cursor.stream().toList();
+
+        // Then
+        assertEquals(List.of("f", "g"), rest);
+        assertNull(cursor.nextToken());
+    }
+
+    @Test
+    void constructor_RejectsNonPositiveLimit() {
+        assertThrows(IllegalArgumentException.class, () -> cursor(null, 0));
+    }
+
+    private QueryCursor<String> cursor(Map<String, AttributeValue> startKey, Integer limit) {
+        return new QueryCursor<>(this::query, QueryCursorTest::key, startKey, limit);
+    }
+
+    /** Pages of {@link #ITEMS} after the start key, fetched one by one like the SDK's paginator. */
+    private SdkIterable<Page<String>> query(Map<String, AttributeValue> startKey) {
+        startKeys.add(startKey);
+        int from = startKey == null ? 0 : ITEMS.indexOf(startKey.get("id").s()) + 1;
+        return () -> new Iterator<>() {
+            private int next = from;
+            private boolean done = from >= ITEMS.size();
+
+            @Override
+            public boolean hasNext() {
+                return !done;
+            }
+
+            @Override
+            public Page<String> next() {
+                pagesFetched.incrementAndGet();
+                int to = Math.min(next + PAGE_SIZE, ITEMS.size());
+                List<String> items = ITEMS.subList(next, to);
+                next = to;
+                done = to == ITEMS.size();
+                return Page.create(items, done ? null : key(items.get(items.size() - 1)));
+            }
+        };
+    }
+
+    private static Map<String, AttributeValue> key(String id) {
+        return Map.of("id", AttributeValue.builder().s(id).build());
+    }
+
+    private static List<String> collect(QueryCursor<String> cursor, String first) {
+        List<String> items = new ArrayList<>(List.of(first));
+        cursor.forEachRemaining(items::add);
+        return items;
+    }
+}
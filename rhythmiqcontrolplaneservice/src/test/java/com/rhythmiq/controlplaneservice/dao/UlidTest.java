@@ -0,0 +1,80 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UlidTest {
+
+    @Test
+    void next_SortsInGenerationOrderWithinAndAcrossMilliseconds() {
+        // Given
+        Instant start = Instant.parse("2024-05-01T12:00:00Z");
+        String previous = Ulid.next(start);
+
+        for (int i = 1; i < 10_000; i++) {
+            // When
+            String id = Ulid.next(start.plusMillis(i / 100));
+
+            // Then
+            assertTrue(previous.compareTo(id) < 0, previous + " not before " + id);
+            previous = id;
+        }
+    }
+
+    @Test
+    void timestamp_RoundTripsTheMillisecond() {
+        // Given
+        Instant at = Instant.parse("2024-05-01T12:34:56.789Z");
+
+        // When
+        String id = Ulid.next(at);
+
+        // Then
+        assertEquals(Ulid.LENGTH, id.length());
+        assertTrue(Ulid.isUlid(id));
+        assertEquals(at, Ulid.timestamp(id));
+    }
+
+    @Test
+    void bounds_EncloseEveryIdOfThatMillisecond() {
+        // Given
+        Instant at = Instant.parse("2024-05-01T12:00:00Z");
+
+        // When
+        String id = Ulid.next(at);
+
+        // Then
+        assertEquals("00000000000000000000000000", Ulid.lowerBound(Instant.EPOCH));
+        assertTrue(Ulid.lowerBound(at).compareTo(id) <= 0);
+        assertTrue(id.compareTo(Ulid.upperBound(at)) <= 0);
+        assertTrue(Ulid.upperBound(at).compareTo(Ulid.lowerBound(at.plusMillis(1))) < 0);
+    }
+
+    @Test
+    void fromUuid_IsDeterministic() {
+        // Given
+        Instant at = Instant.parse("2024-05-01T12:00:00Z");
+        UUID uuid = UUID.randomUUID();
+
+        // When
+        String id = Ulid.fromUuid(at, uuid);
+
+        // Then
+        assertEquals(id, Ulid.fromUuid(at, uuid));
+        assertEquals(at, Ulid.timestamp(id));
+        assertEquals(Ulid.upperBound(at), Ulid.fromUuid(at, new UUID(-1L, -1L)));
+    }
+
+    @Test
+    void isUlid_RejectsUuidsAndMalformedIds() {
+        assertFalse(Ulid.isUlid(UUID.randomUUID().toString()));
+        assertFalse(Ulid.isUlid("01HXYZ"));
+        assertFalse(Ulid.isUlid("01HXYZ0000000000000000000U"));
+        assertFalse(Ulid.isUlid("81HXYZ00000000000000000000"));
+        assertFalse(Ulid.isUlid(null));
+    }
+}
@@ -0,0 +1,169 @@
+package com.rhythmiq.controlplaneservice.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindBufferTest {
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    private WriteBehindBuffer<String> buffer;
+
+    @AfterEach
+    void tearDown() {
+        buffer.close();
+    }
+
+    @Test
+    void submit_FullBatchesAreWrittenWithoutWaitingForTheDeadline() throws Exception {
+        // Given
+        buffer = new WriteBehindBuffer<>(recordAll(), 25, Duration.ofMinutes(1), 1_000, 1);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            results.add(buffer.submit("item-" + i));
+        }
+
+        // Then
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("item-" + i, results.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(4, batches.size());
+        batches.forEach(batch -> assertEquals(25, batch.size()));
+    }
+
+    @Test
+    void submit_PartialBatchIsWrittenAtTheDeadline() throws Exception {
+        // Given
+        buffer = new WriteBehindBuffer<>(recordAll(), 25, Duration.ofMillis(50), 1_000, 1);
+
+        // When
+        CompletableFuture<String> first = buffer.submit("a");
+        CompletableFuture<String> second = buffer.submit("b");
+
+        // Then
+        assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        assertEquals("b", second.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of("a", "b")), batches);
+    }
+
+    @Test
+    void submit_UnprocessedItemsAreRetried() throws Exception {
+        // Given
+        AtomicBoolean throttled = new AtomicBoolean(true);
+        buffer = new WriteBehindBuffer<>(items -> {
+            batches.add(List.copyOf(items));
+            return throttled.getAndSet(false) ? items.subList(0, 1) : List.of();
+        }, 25, Duration.ofMillis(50), 1_000, 1);
+
+        // When
+        CompletableFuture<String> first = buffer.submit("a");
+        CompletableFuture<String> second = buffer.submit("b");
+
+        // Then
+        assertEquals("b", second.get(5, TimeUnit.SECONDS));
+        assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(1).size());
+        assertEquals(2, buffer.batchCount());
+    }
+
+    @Test
+    void submit_ItemsNeverProcessedFailAfterTheLastAttempt() {
+        // Given
+        buffer = new WriteBehindBuffer<>(items -> items, 1, Duration.ofMillis(1), 10, 1);
+
+        // When
+        CompletableFuture<String> result = buffer.submit("a");
+
+        // Then
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(30, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, thrown.getCause());
+        assertEquals(WriteBehindBuffer.MAX_ATTEMPTS, buffer.batchCount());
+    }
+
+    @Test
+    void submit_WriterFailureFailsTheBatch() {
+        // Given
+        RuntimeException failure = new RuntimeException("boom");
+        buffer = new WriteBehindBuffer<>(items -> {
+            throw failure;
+        }, 25, Duration.ofMillis(5), 1_000, 1);
+
+        // When
+        CompletableFuture<String> result = buffer.submit("a");
+
+        // Then
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertSame(failure, thrown.getCause());
+    }
+
+    @Test
+    void submit_RejectsWhenTheQueueIsFull() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        buffer = new WriteBehindBuffer<>(items -> {
+            await(release);
+            return List.of();
+        }, 1, Duration.ofMillis(1), 2, 1);
+        buffer.submit("in-flight");
+        while (buffer.queuedCount() > 0) {
+            Thread.onSpinWait();
+        }
+        buffer.submit("queued-1");
+        buffer.submit("queued-2");
+
+        // When / Then
+        assertThrows(RejectedExecutionException.class, () -> buffer.submit("rejected"));
+        release.countDown();
+    }
+
+    @Test
+    void close_WritesEverythingStillQueuedAndStopsIntake() throws Exception {
+        // Given
+        buffer = new WriteBehindBuffer<>(recordAll(), 25, Duration.ofMinutes(1), 1_000, 2);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            results.add(buffer.submit("item-" + i));
+        }
+
+        // When
+        buffer.close();
+
+        // Then
+        for (CompletableFuture<String> result : results) {
+            assertTrue(result.isDone());
+            assertFalse(result.isCompletedExceptionally());
+        }
+        assertEquals(10, batches.stream().mapToInt(List::size).sum());
+        assertThrows(RejectedExecutionException.class, () -> buffer.submit("late"));
+    }
+
+    private Function<List<String>, List<String>> recordAll() {
+        return items -> {
+            batches.add(List.copyOf(items));
+            return List.of();
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
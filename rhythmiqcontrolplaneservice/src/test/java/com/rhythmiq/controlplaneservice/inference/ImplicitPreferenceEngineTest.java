@@ -0,0 +1,240 @@
+package com.rhythmiq.controlplaneservice.inference;
+
+import com.rhythmiq.controlplaneservice.dao.AffinityDao;
+import com.rhythmiq.controlplaneservice.dao.PreferenceDao;
+import com.rhythmiq.controlplaneservice.model.Affinity;
+import com.rhythmiq.controlplaneservice.model.Interaction;
+import com.rhythmiq.controlplaneservice.model.Preference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ImplicitPreferenceEngineTest {
+    private static final String PROFILE_ID = "profile1";
+
+    @Mock
+    private PreferenceDao preferenceDao;
+
+    @Mock
+    private AffinityDao affinityDao;
+
+    private ImplicitPreferenceEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, SongMetadataProvider.SongMetadata> catalogue = Map.of(
+            "song1", new SongMetadataProvider.SongMetadata(List.of("Nina Simone"), List.of("jazz", "soul")),
+            "song2", new SongMetadataProvider.SongMetadata(List.of("Miles Davis"), List.of("jazz")));
+        engine = new ImplicitPreferenceEngine(preferenceDao, affinityDao,
+            songId -> Optional.ofNullable(catalogue.get(songId)),
+            Duration.ofDays(30), 10, 1_000, null);
+    }
+
+    @Test
+    void testFlush_WritesOnlyAffinitiesOfTheSongsPlayed() {
+        // Arrange
+        Affinity unrelated = new Affinity(Preference.PreferenceType.ARTIST, "Miles Davis", 2.0, Instant.now());
+        when(affinityDao.load(PROFILE_ID)).thenReturn(snapshot(7, unrelated));
+        when(preferenceDao.listPreferences(PROFILE_ID)).thenReturn(List.of());
+        engine.accept(interaction("song1", Interaction.InteractionType.PLAY));
+        engine.accept(interaction("song1", Interaction.InteractionType.LIKE));
+
+        // Act
+        int updated = engine.flush();
+
+        // Assert
+        assertEquals(1, updated);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Affinity>> written = ArgumentCaptor.forClass(Collection.class);
+        verify(affinityDao).write(eq(PROFILE_ID), written.capture(), eq(List.of()), eq(7L));
+        assertEquals(3, written.getValue().size());
+        assertTrue(written.getValue().stream().noneMatch(affinity -> affinity.value().equals("Miles Davis")));
+        assertTrue(written.getValue().stream().allMatch(affinity -> Math.abs(affinity.score() - 5.0) < 1e-3));
+    }
+
+    @Test
+    void testFlush_SavesTopAffinitiesAsInferredPreferences() {
+        // Arrange
+        when(affinityDao.load(PROFILE_ID)).thenReturn(snapshot(0));
+        Preference userSet = Preference.builder()
+            .profileId(PROFILE_ID)
+            .preferenceId("pref1")
+            .type(Preference.PreferenceType.GENRE)
+            .value("soul")
+            .index(0)
+            .isUserSet(true)
+            .build();
+        when(preferenceDao.listPreferences(PROFILE_ID)).thenReturn(List.of(userSet));
+        engine.accept(interaction("song1", Interaction.InteractionType.LIKE));
+        engine.accept(interaction("song2", Interaction.InteractionType.PLAY));
+
+        // Act
+        engine.flush();
+
+        // Assert
+        ArgumentCaptor<Preference> saved = ArgumentCaptor.forClass(Preference.class);
+        verify(preferenceDao, times(3)).savePreference(saved.capture());
+        Map<String, Preference> byValue = new HashMap<>();
+        saved.getAllValues().forEach(preference -> byValue.put(preference.getValue(), preference));
+        assertFalse(byValue.containsKey("soul"));
+        assertEquals(1.0, byValue.get("jazz").getWeight());
+        assertEquals(1.0, byValue.get("Nina Simone").getWeight());
+        assertEquals(0.25, byValue.get("Miles Davis").getWeight());
+        // Numbered after the user-set preference at index 0, strongest first
+        assertEquals(Set.of(1, 2), Set.of(byValue.get("jazz").getIndex(), byValue.get("Nina Simone").getIndex()));
+        assertEquals(3, byValue.get("Miles Davis").getIndex());
+        assertTrue(saved.getAllValues().stream().allMatch(preference -> Boolean.FALSE.equals(preference.getIsUserSet())));
+        verify(preferenceDao, never()).deletePreference(anyString(), anyString());
+    }
+
+    @Test
+    void testFlush_InferredIndexesFillGapsWhenUserIndexesReachTheLimit() {
+        // Arrange
+        when(affinityDao.load(PROFILE_ID)).thenReturn(snapshot(0));
+        Preference userSet = Preference.builder()
+            .profileId(PROFILE_ID)
+            .preferenceId("pref1")
+            .type(Preference.PreferenceType.GENRE)
+            .value("soul")
+            .index(PreferenceDao.MAX_PREFERENCES - 1)
+            .isUserSet(true)
+            .build();
+        when(preferenceDao.listPreferences(PROFILE_ID)).thenReturn(List.of(userSet));
+        engine.accept(interaction("song1", Interaction.InteractionType.LIKE));
+
+        // Act
+        engine.flush();
+
+        // Assert
+        ArgumentCaptor<Preference> saved = ArgumentCaptor.forClass(Preference.class);
+        verify(preferenceDao, times(2)).savePreference(saved.capture());
+        assertEquals(Set.of(0, 1), Set.of(saved.getAllValues().get(0).getIndex(), saved.getAllValues().get(1).getIndex()));
+    }
+
+    @Test
+    void testFlush_RemovesInferredPreferencesThatTurnNegative() {
+        // Arrange
+        Affinity artist = new Affinity(Preference.PreferenceType.ARTIST, "Miles Davis", 1.0, Instant.now());
+        Affinity genre = new Affinity(Preference.PreferenceType.GENRE, "jazz", 5.0, Instant.now());
+        when(affinityDao.load(PROFILE_ID)).thenReturn(snapshot(3, artist, genre));
+        Preference inferredArtist = inferred(Preference.PreferenceType.ARTIST, "Miles Davis", 0, 1.0);
+        Preference inferredGenre = inferred(Preference.PreferenceType.GENRE, "jazz", 0, 1.0);
+        when(preferenceDao.listPreferences(PROFILE_ID)).thenReturn(List.of(inferredArtist, inferredGenre));
+        engine.accept(interaction("song2", Interaction.InteractionType.DISLIKE));
+
+        // Act
+        engine.flush();
+
+        // Assert
+        verify(preferenceDao).deletePreference(PROFILE_ID, inferredArtist.getPreferenceId());
+        verify(preferenceDao, never()).savePreference(any(Preference.class));
+    }
+
+    @Test
+    void testFlush_RequeuesSignalsAfterRepeatedConflicts() {
+        // Arrange
+        when(affinityDao.load(PROFILE_ID)).thenReturn(snapshot(1));
+        doThrow(ConditionalCheckFailedException.builder().build())
+            .when(affinityDao).write(eq(PROFILE_ID), any(), any(), anyLong());
+        engine.accept(interaction("song1", Interaction.InteractionType.PLAY));
+
+        // Act
+        int updated = engine.flush();
+
+        // Assert
+        assertEquals(0, updated);
+        verify(affinityDao, times(3)).write(eq(PROFILE_ID), any(), any(), anyLong());
+        verifyNoInteractions(preferenceDao);
+
+        // The interaction is still buffered and applies once the write goes through.
+        doNothing().when(affinityDao).write(eq(PROFILE_ID), any(), any(), anyLong());
+        when(preferenceDao.listPreferences(PROFILE_ID)).thenReturn(List.of());
+        assertEquals(1, engine.flush());
+    }
+
+    @Test
+    void testAccept_IgnoresInteractionsWithoutSignal() {
+        // Act
+        boolean feedback = engine.accept(interaction("song1", Interaction.InteractionType.FEEDBACK));
+        Interaction unrated = interaction("song1", Interaction.InteractionType.RATE);
+
+        // Assert
+        assertFalse(feedback);
+        assertFalse(engine.accept(unrated));
+        assertEquals(0, engine.flush());
+        verifyNoInteractions(affinityDao, preferenceDao);
+    }
+
+    @Test
+    void testSignalStrength_RatingsAreCenteredOnThree() {
+        Interaction rating = interaction("song1", Interaction.InteractionType.RATE);
+        rating.setRating(5.0);
+        assertEquals(4, ImplicitPreferenceEngine.signalStrength(rating));
+        rating.setRating(2.0);
+        assertEquals(-2, ImplicitPreferenceEngine.signalStrength(rating));
+    }
+
+    @Test
+    void testAffinity_DecaysByHalfEachHalfLife() {
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        Affinity affinity = new Affinity(Preference.PreferenceType.GENRE, "jazz", 8.0, start);
+        Duration halfLife = Duration.ofDays(30);
+
+        assertEquals(4.0, affinity.scoreAt(start.plus(halfLife), halfLife), 1e-9);
+        assertEquals(3.0, affinity.plus(-1.0, start.plus(halfLife), halfLife).score(), 1e-9);
+        // An older event is decayed to the affinity's time rather than counted at full strength.
+        assertEquals(9.0, affinity.plus(2.0, start.minus(halfLife), halfLife).score(), 1e-9);
+    }
+
+    private static AffinityDao.Snapshot snapshot(long version, Affinity... affinities) {
+        Map<String, Affinity> byName = new HashMap<>();
+        for (Affinity affinity : affinities) {
+            byName.put(AffinityDao.attributeName(affinity), affinity);
+        }
+        return new AffinityDao.Snapshot(byName, version);
+    }
+
+    private static Preference inferred(Preference.PreferenceType type, String value, int index, double weight) {
+        return Preference.builder()
+            .profileId(PROFILE_ID)
+            .preferenceId(ImplicitPreferenceEngine.inferredId(type, value))
+            .type(type)
+            .value(value)
+            .index(index)
+            .weight(weight)
+            .isUserSet(false)
+            .build();
+    }
+
+    private static Interaction interaction(String songId, Interaction.InteractionType type) {
+        return Interaction.builder()
+            .userId(PROFILE_ID)
+            .interactionId("interaction-" + songId)
+            .songId(songId)
+            .type(type)
+            .createdAt(Instant.now())
+            .build();
+    }
+}
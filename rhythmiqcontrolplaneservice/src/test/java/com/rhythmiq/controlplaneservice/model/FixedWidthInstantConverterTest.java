@@ -0,0 +1,52 @@
+package com.rhythmiq.controlplaneservice.model;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedWidthInstantConverterTest {
+    private final FixedWidthInstantConverter converter = new FixedWidthInstantConverter();
+
+    @Test
+    void testTransformFrom_WritesNineFractionDigits() {
+        // When
+        AttributeValue whole = converter.transformFrom(Instant.parse("2024-01-01T00:00:00Z"));
+        AttributeValue half = converter.transformFrom(Instant.parse("2024-01-01T00:00:00.5Z"));
+
+        // Then
+        assertEquals("2024-01-01T00:00:00.000000000Z", whole.s());
+        assertEquals("2024-01-01T00:00:00.500000000Z", half.s());
+        assertTrue(whole.s().compareTo(half.s()) < 0);
+    }
+
+    @Test
+    void testTransformTo_ReadsBothForms() {
+        // Given
+        Instant instant = Instant.parse("2024-01-01T00:00:00.123Z");
+
+        // Then
+        assertEquals(instant, converter.transformTo(converter.transformFrom(instant)));
+        assertEquals(instant, converter.transformTo(AttributeValue.builder().s("2024-01-01T00:00:00.123Z").build()));
+    }
+
+    @Test
+    void testInteractionSchema_StoresCreatedAtFixedWidth() {
+        // Given
+        Interaction interaction = Interaction.builder()
+                .userId("user1")
+                .interactionId("interaction1")
+                .createdAt(Instant.parse("2024-01-01T00:00:00Z"))
+                .build();
+
+        // When
+        Map<String, AttributeValue> item = TableSchema.fromBean(Interaction.class).itemToMap(interaction, true);
+
+        // Then
+        assertEquals("2024-01-01T00:00:00.000000000Z", item.get("createdAt").s());
+    }
+}
@@ -0,0 +1,90 @@
+package com.rhythmiq.controlplaneservice.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreferenceVectorTest {
+
+    @Test
+    void testScoresAreNormalizedPerTypeAndSortedByScore() {
+        // Given
+        List<Preference> preferences = List.of(
+            preference(Preference.PreferenceType.GENRE, "jazz", 2, 1.0),
+            preference(Preference.PreferenceType.ARTIST, "Nina Simone", 0, 0.5),
+            preference(Preference.PreferenceType.GENRE, "rock", 0, 1.0));
+
+        // When
+        PreferenceVector vector = PreferenceVector.of(preferences);
+
+        // Then
+        assertEquals(3, vector.size());
+        assertEquals(Preference.PreferenceType.GENRE, vector.type(0));
+        assertEquals("rock", vector.value(0));
+        assertEquals("jazz", vector.value(1));
+        assertEquals(1f, vector.score(0) + vector.score(1), 1e-6f);
+        assertEquals(Preference.PreferenceType.ARTIST, vector.type(2));
+        assertEquals(1f, vector.score(2), 1e-6f);
+    }
+
+    @Test
+    void testZeroWeightsShareTheTypeEvenly() {
+        // Given
+        List<Preference> preferences = List.of(
+            preference(Preference.PreferenceType.MOOD, "calm", 0, 0.0),
+            preference(Preference.PreferenceType.MOOD, "dark", 1, -1.0));
+
+        // When
+        PreferenceVector vector = PreferenceVector.of(preferences);
+
+        // Then
+        assertEquals(0.5f, vector.score(0), 1e-6f);
+        assertEquals(0.5f, vector.score(1), 1e-6f);
+    }
+
+    @Test
+    void testEntriesMatchPreferences() {
+        // Given
+        List<Preference> preferences = List.of(
+            preference(Preference.PreferenceType.TEMPO, "120", 3, 0.7),
+            preference(Preference.PreferenceType.TEMPO, "90", 1, 0.2));
+
+        // When
+        PreferenceVector fromEntries = PreferenceVector.fromEntries(
+            preferences.stream().map(PreferenceVector.Entry::of).toList());
+
+        // Then
+        assertEquals(PreferenceVector.of(preferences), fromEntries);
+        assertTrue(PreferenceVector.of(List.of()).isEmpty());
+    }
+
+    @Test
+    void testRanksDecidePositionsBeforeIndexes() {
+        // Given: moved to the top by rank, the legacy index still says last
+        Preference moved = preference(Preference.PreferenceType.GENRE, "jazz", 2, 1.0);
+        moved.setRank("F");
+        Preference other = preference(Preference.PreferenceType.GENRE, "rock", 0, 1.0);
+        other.setRank("V");
+        Preference unranked = preference(Preference.PreferenceType.GENRE, "soul", 1, 1.0);
+
+        // When
+        PreferenceVector vector = PreferenceVector.of(List.of(other, unranked, moved));
+
+        // Then
+        assertEquals("jazz", vector.value(0));
+        assertEquals("rock", vector.value(1));
+        assertEquals("soul", vector.value(2));
+        assertEquals(PreferenceVector.inListOrder(List.of(moved, other, unranked)), vector);
+    }
+
+    private static Preference preference(Preference.PreferenceType type, String value, int index, double weight) {
+        return Preference.builder()
+            .type(type)
+            .value(value)
+            .index(index)
+            .weight(weight)
+            .build();
+    }
+}
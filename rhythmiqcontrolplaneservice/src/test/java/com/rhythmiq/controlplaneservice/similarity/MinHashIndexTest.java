@@ -0,0 +1,115 @@
+package com.rhythmiq.controlplaneservice.similarity;
+
+import com.rhythmiq.controlplaneservice.model.Interaction;
+import com.rhythmiq.controlplaneservice.model.Preference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinHashIndexTest {
+    private MinHashIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new MinHashIndex();
+        index.put("similar", tokens("t", 0, 36, "s", 4));
+        index.put("query", tokens("t", 0, 40, "q", 0));
+        index.put("unrelated", tokens("u", 0, 40, "u", 0));
+    }
+
+    @Test
+    void similarProfiles_RanksCandidatesByEstimatedJaccard() {
+        // When
+        List<MinHashIndex.SimilarProfile> similar = index.similarProfiles("query", 5);
+
+        // Then
+        assertEquals(1, similar.size());
+        assertEquals("similar", similar.get(0).profileId());
+        // The true Jaccard similarity is 36 / 44.
+        assertEquals(36.0 / 44, similar.get(0).similarity(), 0.15);
+    }
+
+    @Test
+    void addTokens_FoldsNewTokensIntoTheExistingSignature() {
+        // Given
+        index.put("almost", tokens("t", 0, 39, "a", 0));
+
+        // When
+        index.addTokens("almost", List.of("t39"));
+
+        // Then
+        List<MinHashIndex.SimilarProfile> similar = index.similarProfiles("query", 1);
+        assertEquals(List.of(new MinHashIndex.SimilarProfile("almost", 1.0)), similar);
+    }
+
+    @Test
+    void put_ReplacesTheSignatureAndItsBuckets() {
+        // When
+        index.put("similar", tokens("v", 0, 40, "v", 0));
+
+        // Then
+        assertEquals(List.of(), index.similarProfiles("query", 5));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void remove_DropsTheProfileFromEveryBucket() {
+        // When
+        index.remove("similar");
+
+        // Then
+        assertEquals(List.of(), index.similarProfiles("query", 5));
+        assertEquals(List.of(), index.similarProfiles("similar", 5));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void load_RestoresASnapshot(@TempDir Path directory) throws Exception {
+        // Given
+        Path file = directory.resolve("minhash.idx");
+
+        // When
+        index.snapshot(file);
+        MinHashIndex loaded = MinHashIndex.load(file);
+
+        // Then
+        assertEquals(3, loaded.size());
+        assertEquals(index.similarProfiles("query", 5), loaded.similarProfiles("query", 5));
+    }
+
+    @Test
+    void tokensOf_UsesPreferenceValuesAndLikesOnly() {
+        // Given
+        List<Preference> preferences = List.of(
+                Preference.builder().type(Preference.PreferenceType.GENRE).value(" Jazz ").build(),
+                Preference.builder().type(Preference.PreferenceType.ARTIST).build());
+        List<Interaction> interactions = List.of(
+                Interaction.builder().songId("song1").type(Interaction.InteractionType.LIKE).build(),
+                Interaction.builder().songId("song2").type(Interaction.InteractionType.PLAY).build());
+
+        // When
+        Set<String> tokens = MinHashIndex.tokensOf(preferences, interactions);
+
+        // Then
+        assertEquals(Set.of("GENRE:jazz", "LIKE:song1"), tokens);
+    }
+
+    /** {@code count} shared tokens {@code prefix0..} followed by {@code extra} tokens unique to the profile. */
+    private static List<String> tokens(String prefix, int start, int count, String extraPrefix, int extra) {
+        List<String> tokens = new ArrayList<>();
+        for (int i = start; i < start + count; i++) {
+            tokens.add(prefix + i);
+        }
+        for (int i = 0; i < extra; i++) {
+            tokens.add(extraPrefix + "-extra-" + i);
+        }
+        return tokens;
+    }
+}